@@ -0,0 +1,58 @@
+package org.hibernate.test.cache.benchmark;
+
+import java.io.File;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the redis benchmarks once per thread count with the gc profiler,
+ * reporting throughput, latency percentiles (sample time mode) and allocation rate.
+ * <p/>
+ * Arguments are passed to JMH (benchmark patterns default to the JedisClient and region benchmarks).
+ * Thread counts come from [benchmark.threads] (default 1,8,64,256).
+ * JSON results are written to target/benchmark/{benchmarks}-t{threads}.json.
+ * <p/>
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.main=org.hibernate.test.cache.benchmark.BenchmarkRunner -Djmh.args=""
+ */
+public final class BenchmarkRunner {
+
+    private static final String DEFAULT_BENCHMARKS = "JedisClientBenchmark|RegionBenchmark";
+    private static final String RESULT_DIR = "target/benchmark";
+
+    private BenchmarkRunner() { }
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cmdOptions = new CommandLineOptions(args);
+        String include = cmdOptions.getIncludes().isEmpty() ? DEFAULT_BENCHMARKS : join(cmdOptions.getIncludes());
+        new File(RESULT_DIR).mkdirs();
+
+        for (String threads : System.getProperty("benchmark.threads", "1,8,64,256").split(",")) {
+            ChainedOptionsBuilder options = new OptionsBuilder()
+                    .parent(cmdOptions)
+                    .include(include)
+                    .threads(Integer.parseInt(threads.trim()))
+                    .mode(Mode.Throughput)
+                    .mode(Mode.SampleTime)
+                    .addProfiler(GCProfiler.class)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(RESULT_DIR + "/" + include.replaceAll("[^A-Za-z0-9]+", "_") + "-t" + threads.trim() + ".json");
+            new Runner(options.build()).run();
+        }
+    }
+
+    private static String join(Iterable<String> patterns) {
+        StringBuilder sb = new StringBuilder();
+        for (String pattern : patterns) {
+            if (sb.length() > 0)
+                sb.append('|');
+            sb.append(pattern);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,102 @@
+package org.hibernate.test.cache.benchmark;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.boot.spi.SessionFactoryOptions;
+import org.hibernate.cache.redis.DataSourceContextHolderKey;
+import org.hibernate.cache.redis.jedis.JedisClient;
+import org.hibernate.test.cache.server.EmbeddedRedisServer;
+
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+
+/**
+ * Redis connection and hibernate settings shared by the benchmarks.
+ * <p/>
+ * The redis server is taken from the system properties [benchmark.redis.host] (default localhost)
+ * and [benchmark.redis.port], pass them to the forked benchmark jvm with
+ * -jvmArgsAppend "-Dbenchmark.redis.port=6379".
+ * Without [benchmark.redis.port] an {@link EmbeddedRedisServer} is started in the benchmark jvm,
+ * [benchmark.redis.latencyMicros] adds a simulated network latency to each of its round trips.
+ */
+public final class BenchmarkSupport {
+
+    public static final String REDIS_HOST;
+    public static final int REDIS_PORT;
+
+    static {
+        Integer port = Integer.getInteger("benchmark.redis.port");
+        if (port != null) {
+            REDIS_HOST = System.getProperty("benchmark.redis.host", "localhost");
+            REDIS_PORT = port;
+        } else {
+            EmbeddedRedisServer server;
+            try {
+                server = EmbeddedRedisServer.start();
+            } catch (IOException e) {
+                throw new IllegalStateException("Fail to start embedded redis server.", e);
+            }
+            server.setLatency(Long.getLong("benchmark.redis.latencyMicros", 0L), TimeUnit.MICROSECONDS);
+            REDIS_HOST = server.getHost();
+            REDIS_PORT = server.getPort();
+        }
+    }
+
+    /**
+     * enough connections for the largest thread count of {@link BenchmarkRunner}
+     */
+    private static final int MAX_CONNECTIONS = 512;
+    private static final int EXPIRY_IN_SECONDS = 3600;
+
+    private BenchmarkSupport() { }
+
+    /**
+     * cache properties pointing to the benchmark redis server
+     */
+    public static Properties cacheProperties() {
+        Properties props = new Properties();
+        props.setProperty("redis.host", REDIS_HOST);
+        props.setProperty("redis.port", String.valueOf(REDIS_PORT));
+        props.setProperty("redis.expiryInSeconds", String.valueOf(EXPIRY_IN_SECONDS));
+        return props;
+    }
+
+    /**
+     * JedisClient with a pool large enough for every benchmark thread
+     */
+    public static JedisClient createJedisClient() {
+        JedisPoolConfig poolConfig = new JedisPoolConfig();
+        poolConfig.setMaxTotal(MAX_CONNECTIONS);
+        poolConfig.setMaxIdle(MAX_CONNECTIONS);
+        return new JedisClient(new JedisPool(poolConfig, REDIS_HOST, REDIS_PORT),
+                               EXPIRY_IN_SECONDS,
+                               new DataSourceContextHolderKey());
+    }
+
+    /**
+     * SessionFactoryOptions answering the default (false / 0 / null) for every setting
+     */
+    public static SessionFactoryOptions sessionFactoryOptions() {
+        return (SessionFactoryOptions) Proxy.newProxyInstance(
+                SessionFactoryOptions.class.getClassLoader(),
+                new Class<?>[] { SessionFactoryOptions.class },
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        Class<?> type = method.getReturnType();
+                        if (type == boolean.class)
+                            return Boolean.FALSE;
+                        if (type == int.class)
+                            return 0;
+                        if (type == long.class)
+                            return 0L;
+                        return null;
+                    }
+                });
+    }
+}
@@ -0,0 +1,142 @@
+package org.hibernate.test.cache.benchmark;
+
+import java.io.Serializable;
+import java.lang.reflect.Constructor;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hibernate.cache.spi.entry.CollectionCacheEntry;
+import org.hibernate.cache.spi.entry.StandardCacheEntryImpl;
+
+/**
+ * Hibernate second level cache values used as benchmark payloads
+ */
+public final class CachePayloads {
+
+    /**
+     * payload names accepted by {@link #payload(String)}
+     */
+    public static final String SMALL_ENTITY = "smallEntity";
+    public static final String WIDE_ENTITY = "wideEntity";
+    public static final String COLLECTION = "collection";
+    public static final String QUERY_RESULT = "queryResult";
+
+    private static final int WIDE_ENTITY_PROPERTIES = 64;
+    private static final int COLLECTION_SIZE = 50;
+    private static final int QUERY_RESULT_ROWS = 1000;
+
+    private CachePayloads() { }
+
+    /**
+     * entity cache entry with the disassembled state of a small entity (8 properties)
+     */
+    public static StandardCacheEntryImpl smallEntity(long id) {
+        Serializable[] state = new Serializable[] {
+                "customer-" + id,
+                "customer" + id + "@example.com",
+                (int) (id % 100),
+                new BigDecimal("1234.56"),
+                new Timestamp(1476000000000L + id),
+                Boolean.TRUE,
+                null,
+                id * 31
+        };
+        return cacheEntry(state, "org.hibernate.test.cache.model.Customer", 1);
+    }
+
+    /**
+     * payload by name, see the constants of this class
+     */
+    public static Object payload(String name) {
+        if (SMALL_ENTITY.equals(name))
+            return smallEntity(42L);
+        if (WIDE_ENTITY.equals(name))
+            return wideEntity(42L);
+        if (COLLECTION.equals(name))
+            return collectionEntry(42L, COLLECTION_SIZE);
+        if (QUERY_RESULT.equals(name))
+            return queryResult(QUERY_RESULT_ROWS);
+        throw new IllegalArgumentException("unknown payload. name=" + name);
+    }
+
+    /**
+     * entity cache entry of a wide (64 properties) entity: strings, numbers, dates, flags and nulls
+     */
+    public static StandardCacheEntryImpl wideEntity(long id) {
+        Serializable[] state = new Serializable[WIDE_ENTITY_PROPERTIES];
+        for (int i = 0; i < state.length; i++) {
+            switch (i % 8) {
+                case 0:
+                    state[i] = "property-" + i + "-of-order-" + id;
+                    break;
+                case 1:
+                    state[i] = id * 1000 + i;
+                    break;
+                case 2:
+                    state[i] = new BigDecimal(id + "." + i);
+                    break;
+                case 3:
+                    state[i] = new Timestamp(1476000000000L + id * 1000 + i);
+                    break;
+                case 4:
+                    state[i] = (i & 1) == 0;
+                    break;
+                case 5:
+                    state[i] = null;
+                    break;
+                case 6:
+                    state[i] = i;
+                    break;
+                default:
+                    state[i] = "STATUS_" + (i % 3);
+                    break;
+            }
+        }
+        return cacheEntry(state, "org.hibernate.test.cache.model.Order", 7);
+    }
+
+    /**
+     * collection cache entry of a bag / set of entities: the element ids
+     */
+    public static CollectionCacheEntry collectionEntry(long ownerId, int size) {
+        Serializable[] ids = new Serializable[size];
+        for (int i = 0; i < size; i++) {
+            ids[i] = ownerId * 1000 + i;
+        }
+        try {
+            Constructor<CollectionCacheEntry> ctor = CollectionCacheEntry.class.getDeclaredConstructor(Serializable.class);
+            ctor.setAccessible(true);
+            return ctor.newInstance((Serializable) ids);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * query cache value of an entity query: the timestamp followed by the ids of the result rows
+     */
+    public static List<Object> queryResult(int rows) {
+        List<Object> result = new ArrayList<Object>(rows + 1);
+        result.add(1476000000000L << 12);
+        for (int i = 0; i < rows; i++) {
+            result.add(100000L + i * 7);
+        }
+        return result;
+    }
+
+    /**
+     * create {@link StandardCacheEntryImpl} the way hibernate disassembles entities
+     */
+    public static StandardCacheEntryImpl cacheEntry(Serializable[] state, String subclass, Object version) {
+        try {
+            Constructor<StandardCacheEntryImpl> ctor =
+                    StandardCacheEntryImpl.class.getDeclaredConstructor(Serializable[].class, String.class, Object.class);
+            ctor.setAccessible(true);
+            return ctor.newInstance(state, subclass, version);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package org.hibernate.test.cache.benchmark;
+
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+/**
+ * JedisPool counting the connections borrowed by each thread.
+ * <p/>
+ * JedisClient borrows one connection per command, pipeline or transaction,
+ * so the count is the number of redis round trips.
+ */
+public class CountingJedisPool extends JedisPool {
+
+    private static final ThreadLocal<long[]> borrowed = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            return new long[1];
+        }
+    };
+
+    public CountingJedisPool(GenericObjectPoolConfig poolConfig, String host, int port) {
+        super(poolConfig, host, port);
+    }
+
+    /**
+     * connections borrowed by the current thread so far
+     */
+    public static long borrowedByCurrentThread() {
+        return borrowed.get()[0];
+    }
+
+    @Override
+    public Jedis getResource() {
+        borrowed.get()[0]++;
+        return super.getResource();
+    }
+}
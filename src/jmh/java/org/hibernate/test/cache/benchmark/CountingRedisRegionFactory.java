@@ -0,0 +1,34 @@
+package org.hibernate.test.cache.benchmark;
+
+import java.util.Properties;
+
+import org.hibernate.boot.spi.SessionFactoryOptions;
+import org.hibernate.cache.redis.RedisRegionFactory;
+import org.hibernate.cache.redis.jedis.JedisClient;
+import org.hibernate.cache.redis.util.JedisTool;
+
+import redis.clients.jedis.JedisPoolConfig;
+
+/**
+ * RedisRegionFactory whose regions use a {@link CountingJedisPool}.
+ * The expiration thread keeps the uncounted pool.
+ */
+public class CountingRedisRegionFactory extends RedisRegionFactory {
+
+    private static final int MAX_CONNECTIONS = 512;
+
+    @Override
+    protected void initializeRegionFactory(SessionFactoryOptions settings, Properties properties) {
+        super.initializeRegionFactory(settings, properties);
+
+        JedisPoolConfig poolConfig = new JedisPoolConfig();
+        poolConfig.setMaxTotal(MAX_CONNECTIONS);
+        poolConfig.setMaxIdle(MAX_CONNECTIONS);
+        redis = new JedisClient(new CountingJedisPool(poolConfig, BenchmarkSupport.REDIS_HOST, BenchmarkSupport.REDIS_PORT),
+                                redis.getExpiryInSeconds(),
+                                redis.getDataSourceContextHolderKey());
+        timestamper = JedisTool.createTimestamper(settings, properties, redis);
+    }
+
+    private static final long serialVersionUID = 2470237456437265211L;
+}
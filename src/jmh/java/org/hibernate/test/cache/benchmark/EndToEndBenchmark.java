@@ -0,0 +1,264 @@
+package org.hibernate.test.cache.benchmark;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.SharedCacheMode;
+
+import org.hibernate.BaseSessionEventListener;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cache.spi.access.AccessType;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.mapping.Collection;
+import org.hibernate.test.cache.benchmark.model.Customer;
+import org.hibernate.test.cache.benchmark.model.PurchaseOrder;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Hibernate second level cache end to end: a SessionFactory on an in-memory H2 database
+ * with the redis region factory (see {@link BenchmarkSupport} for the redis server).
+ * <p/>
+ * Every invocation is one transaction of a workload:
+ * <ul>
+ * <li>entityLookup : load a customer</li>
+ * <li>collectionNavigation : load a customer and its orders</li>
+ * <li>queryCache : cacheable query for the orders of a customer</li>
+ * <li>updateMix : entity lookup, every [updatePercent]th transaction updates the customer</li>
+ * </ul>
+ * Besides throughput and latency percentiles, the counters report transactions, redis round trips
+ * and second level / query cache hits and misses (totals of the iteration).
+ * {@link EndToEndReport} turns them into round trips per transaction and hit ratio.
+ * <p/>
+ * READ_ONLY can be measured for the read workloads with -p accessType=READ_ONLY.
+ * <p/>
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args="EndToEndBenchmark -t 8"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EndToEndBenchmark {
+
+    private static final int ORDERS_PER_CUSTOMER = 5;
+    private static final String ORDERS_OF_CUSTOMER = "from PurchaseOrder o where o.customer.id = :customerId";
+
+    @Param({ "NONSTRICT_READ_WRITE", "READ_WRITE", "TRANSACTIONAL" })
+    public AccessType accessType;
+
+    @Param({ "1000" })
+    public int customerCount;
+
+    @Param({ "20" })
+    public int updatePercent;
+
+    private StandardServiceRegistry registry;
+    private SessionFactory sessionFactory;
+
+    /**
+     * per thread counters, summed over all threads by JMH
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters extends BaseSessionEventListener {
+        public long transactions;
+        public long roundTrips;
+        public long cacheHits;
+        public long cacheMisses;
+
+        private long roundTripsBefore;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            transactions = 0;
+            roundTrips = 0;
+            cacheHits = 0;
+            cacheMisses = 0;
+        }
+
+        @Override
+        public void cacheGetEnd(boolean hit) {
+            if (hit) {
+                cacheHits++;
+            } else {
+                cacheMisses++;
+            }
+        }
+
+        private void transactionStarted() {
+            roundTripsBefore = CountingJedisPool.borrowedByCurrentThread();
+        }
+
+        private void transactionFinished() {
+            transactions++;
+            roundTrips += CountingJedisPool.borrowedByCurrentThread() - roundTripsBefore;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Properties props = BenchmarkSupport.cacheProperties();
+        props.setProperty(AvailableSettings.DRIVER, "org.h2.Driver");
+        props.setProperty(AvailableSettings.URL, "jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1");
+        props.setProperty(AvailableSettings.USER, "sa");
+        props.setProperty(AvailableSettings.POOL_SIZE, "300");
+        props.setProperty(AvailableSettings.DIALECT, "org.hibernate.dialect.H2Dialect");
+        props.setProperty(AvailableSettings.HBM2DDL_AUTO, "create-drop");
+        props.setProperty(AvailableSettings.USE_SECOND_LEVEL_CACHE, "true");
+        props.setProperty(AvailableSettings.USE_QUERY_CACHE, "true");
+        props.setProperty(AvailableSettings.CACHE_REGION_FACTORY, CountingRedisRegionFactory.class.getName());
+        props.setProperty(AvailableSettings.CACHE_REGION_PREFIX, "benchmark-" + accessType.getExternalName());
+
+        registry = new StandardServiceRegistryBuilder().applySettings(props).build();
+        Metadata metadata = new MetadataSources(registry)
+                .addAnnotatedClass(Customer.class)
+                .addAnnotatedClass(PurchaseOrder.class)
+                .getMetadataBuilder()
+                .applySharedCacheMode(SharedCacheMode.ALL)
+                .applyAccessType(accessType)
+                .build();
+        for (Collection collection : metadata.getCollectionBindings()) {
+            collection.setCacheConcurrencyStrategy(accessType.getExternalName());
+        }
+        sessionFactory = metadata.buildSessionFactory();
+        sessionFactory.getCache().evictAllRegions();
+        sessionFactory.getCache().evictQueryRegions();
+
+        Session session = sessionFactory.openSession();
+        try {
+            session.beginTransaction();
+            long orderId = 0;
+            for (long id = 0; id < customerCount; id++) {
+                Customer customer = new Customer(id, "customer-" + id, "customer" + id + "@example.com", "city-" + (id % 50));
+                session.persist(customer);
+                for (int i = 0; i < ORDERS_PER_CUSTOMER; i++) {
+                    session.persist(new PurchaseOrder(orderId++, customer, new BigDecimal(id + "." + i),
+                                                      new Date(1476000000000L + orderId), "NEW"));
+                }
+                if (id % 100 == 0) {
+                    session.flush();
+                    session.clear();
+                }
+            }
+            session.getTransaction().commit();
+        } finally {
+            session.close();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        try {
+            sessionFactory.getCache().evictAllRegions();
+            sessionFactory.getCache().evictQueryRegions();
+            sessionFactory.close();
+        } finally {
+            StandardServiceRegistryBuilder.destroy(registry);
+        }
+    }
+
+    @Benchmark
+    public Object entityLookup(Counters counters) {
+        Session session = openSession(counters);
+        try {
+            session.beginTransaction();
+            Customer customer = session.get(Customer.class, randomCustomerId());
+            session.getTransaction().commit();
+            return customer;
+        } finally {
+            closeSession(session, counters);
+        }
+    }
+
+    @Benchmark
+    public BigDecimal collectionNavigation(Counters counters) {
+        Session session = openSession(counters);
+        try {
+            session.beginTransaction();
+            BigDecimal total = BigDecimal.ZERO;
+            for (PurchaseOrder order : session.get(Customer.class, randomCustomerId()).getOrders()) {
+                total = total.add(order.getAmount());
+            }
+            session.getTransaction().commit();
+            return total;
+        } finally {
+            closeSession(session, counters);
+        }
+    }
+
+    @Benchmark
+    public List<?> queryCache(Counters counters) {
+        Session session = openSession(counters);
+        try {
+            session.beginTransaction();
+            List<?> orders = session.createQuery(ORDERS_OF_CUSTOMER)
+                                    .setParameter("customerId", randomCustomerId())
+                                    .setCacheable(true)
+                                    .list();
+            session.getTransaction().commit();
+            return orders;
+        } finally {
+            closeSession(session, counters);
+        }
+    }
+
+    @Benchmark
+    public Object updateMix(Counters counters) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Session session = openSession(counters);
+        try {
+            session.beginTransaction();
+            Customer customer = session.get(Customer.class, randomCustomerId());
+            if (random.nextInt(100) < updatePercent) {
+                customer.setCity("city-" + random.nextInt(50));
+            }
+            session.getTransaction().commit();
+            return customer;
+        } catch (RuntimeException e) {
+            // optimistic lock failures of concurrent updates
+            if (session.getTransaction().isActive()) {
+                session.getTransaction().rollback();
+            }
+            return e;
+        } finally {
+            closeSession(session, counters);
+        }
+    }
+
+    private Session openSession(Counters counters) {
+        counters.transactionStarted();
+        return sessionFactory.withOptions().eventListeners(counters).openSession();
+    }
+
+    private static void closeSession(Session session, Counters counters) {
+        session.close();
+        counters.transactionFinished();
+    }
+
+    private long randomCustomerId() {
+        return ThreadLocalRandom.current().nextInt(customerCount);
+    }
+}
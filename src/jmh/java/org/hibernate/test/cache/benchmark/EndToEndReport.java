@@ -0,0 +1,107 @@
+package org.hibernate.test.cache.benchmark;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs {@link EndToEndBenchmark} and writes transactions/s, p99 latency, redis round trips per transaction
+ * and cache hit ratio per access strategy and workload to target/benchmark/end-to-end-report.md.
+ * <p/>
+ * Arguments are passed to JMH, e.g. -t 8 for the thread count.
+ * <p/>
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.main=org.hibernate.test.cache.benchmark.EndToEndReport -Djmh.args="-t 8"
+ */
+public final class EndToEndReport {
+
+    private static final String REPORT_FILE = "target/benchmark/end-to-end-report.md";
+
+    private EndToEndReport() { }
+
+    public static void main(String[] args) throws Exception {
+        Collection<RunResult> results = new Runner(new OptionsBuilder()
+                                                           .parent(new CommandLineOptions(args))
+                                                           .include(EndToEndBenchmark.class.getSimpleName())
+                                                           .build()).run();
+
+        // access type -> workload -> row
+        Map<String, Map<String, Row>> rows = new TreeMap<String, Map<String, Row>>();
+        for (RunResult result : results) {
+            String accessType = result.getParams().getParam("accessType");
+            String workload = result.getParams().getBenchmark();
+            workload = workload.substring(workload.lastIndexOf('.') + 1);
+
+            Map<String, Row> accessTypeRows = rows.get(accessType);
+            if (accessTypeRows == null) {
+                accessTypeRows = new TreeMap<String, Row>();
+                rows.put(accessType, accessTypeRows);
+            }
+            Row row = accessTypeRows.get(workload);
+            if (row == null) {
+                row = new Row();
+                accessTypeRows.put(workload, row);
+            }
+
+            switch (result.getParams().getMode()) {
+                case Throughput:
+                    row.transactionsPerSecond = result.getPrimaryResult().getScore();
+                    Map<String, Result> counters = result.getSecondaryResults();
+                    double transactions = score(counters, "transactions");
+                    double hits = score(counters, "cacheHits");
+                    double misses = score(counters, "cacheMisses");
+                    row.roundTripsPerTransaction = score(counters, "roundTrips") / transactions;
+                    row.hitRatio = hits / (hits + misses);
+                    break;
+                case SampleTime:
+                    // sample time is reported in the output time unit (seconds) per operation
+                    row.p99Millis = result.getPrimaryResult().getStatistics().getPercentile(99.0) * 1000;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        File file = new File(REPORT_FILE);
+        file.getParentFile().mkdirs();
+        PrintWriter out = new PrintWriter(file, "UTF-8");
+        try {
+            out.println("# Second level cache end to end");
+            for (Map.Entry<String, Map<String, Row>> accessType : rows.entrySet()) {
+                out.println();
+                out.println("## " + accessType.getKey());
+                out.println();
+                out.println("| workload | tx/s | p99 (ms) | round trips / tx | hit ratio |");
+                out.println("|---|---:|---:|---:|---:|");
+                for (Map.Entry<String, Row> row : accessType.getValue().entrySet()) {
+                    Row r = row.getValue();
+                    out.println(String.format("| %s | %.0f | %.3f | %.2f | %.3f |",
+                                              row.getKey(), r.transactionsPerSecond, r.p99Millis,
+                                              r.roundTripsPerTransaction, r.hitRatio));
+                }
+            }
+        } finally {
+            out.close();
+        }
+        System.out.println("End to end report written to " + file.getAbsolutePath());
+    }
+
+    private static double score(Map<String, Result> results, String name) {
+        Result result = results.get(name);
+        return result != null ? result.getScore() : Double.NaN;
+    }
+
+    private static final class Row {
+        private double transactionsPerSecond = Double.NaN;
+        private double p99Millis = Double.NaN;
+        private double roundTripsPerTransaction = Double.NaN;
+        private double hitRatio = Double.NaN;
+    }
+}
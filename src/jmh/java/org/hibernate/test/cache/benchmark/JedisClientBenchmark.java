@@ -0,0 +1,100 @@
+package org.hibernate.test.cache.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.cache.redis.jedis.JedisClient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link JedisClient} operations against a redis server (see {@link BenchmarkSupport}).
+ * <p/>
+ * keys are chosen at random from [keyCount] preloaded entity cache entries.
+ * del / expire hit keys removed by earlier invocations as well, they cost the same round trips.
+ * <p/>
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args="JedisClientBenchmark -t 8 -prof gc"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JedisClientBenchmark {
+
+    private static final String REGION = "benchmark:jedisClient";
+    private static final int MGET_SIZE = 10;
+
+    @Param({ "1000" })
+    public int keyCount;
+
+    private JedisClient client;
+    private Object value;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        client = BenchmarkSupport.createJedisClient();
+        client.deleteRegion(REGION);
+        value = CachePayloads.smallEntity(42L);
+        for (int i = 0; i < keyCount; i++) {
+            client.set(REGION, key(i), value);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        client.deleteRegion(REGION);
+        client.getJedisPool().destroy();
+    }
+
+    @Benchmark
+    public Object get() {
+        return client.get(REGION, randomKey());
+    }
+
+    @Benchmark
+    public void set() {
+        client.set(REGION, randomKey(), value);
+    }
+
+    @Benchmark
+    public List<Object> mget() {
+        List<Object> keys = new ArrayList<Object>(MGET_SIZE);
+        for (int i = 0; i < MGET_SIZE; i++) {
+            keys.add(randomKey());
+        }
+        return client.mget(REGION, keys);
+    }
+
+    @Benchmark
+    public Long del() {
+        return client.del(REGION, randomKey());
+    }
+
+    @Benchmark
+    public void expire() {
+        client.expire(REGION);
+    }
+
+    private String randomKey() {
+        return key(ThreadLocalRandom.current().nextInt(keyCount));
+    }
+
+    private static String key(int i) {
+        return "Customer#" + i;
+    }
+}
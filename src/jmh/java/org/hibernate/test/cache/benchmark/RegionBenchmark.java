@@ -0,0 +1,115 @@
+package org.hibernate.test.cache.benchmark;
+
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.boot.spi.SessionFactoryOptions;
+import org.hibernate.cache.internal.CacheDataDescriptionImpl;
+import org.hibernate.cache.redis.jedis.JedisClient;
+import org.hibernate.cache.redis.regions.RedisEntityRegion;
+import org.hibernate.cache.redis.strategy.RedisAccessStrategyFactoryImpl;
+import org.hibernate.cache.redis.util.JedisTool;
+import org.hibernate.cache.spi.access.AccessType;
+import org.hibernate.cache.spi.access.EntityRegionAccessStrategy;
+import org.hibernate.internal.util.compare.ComparableComparator;
+import org.hibernate.type.LongType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link RedisEntityRegion} get / put and the access strategy get / putFromLoad
+ * for every access type, against a redis server (see {@link BenchmarkSupport}).
+ * <p/>
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args="RegionBenchmark -t 8 -prof gc"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RegionBenchmark {
+
+    private static final String REGION = "benchmark:region";
+
+    @Param({ "READ_ONLY", "NONSTRICT_READ_WRITE", "READ_WRITE", "TRANSACTIONAL" })
+    public AccessType accessType;
+
+    @Param({ "1000" })
+    public int keyCount;
+
+    private JedisClient client;
+    private RedisEntityRegion region;
+    private EntityRegionAccessStrategy strategy;
+    private Object value;
+    private long txTimestamp;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Properties props = BenchmarkSupport.cacheProperties();
+        SessionFactoryOptions options = BenchmarkSupport.sessionFactoryOptions();
+
+        client = BenchmarkSupport.createJedisClient();
+        region = new RedisEntityRegion(new RedisAccessStrategyFactoryImpl(),
+                                       client,
+                                       REGION,
+                                       options,
+                                       new CacheDataDescriptionImpl(true, true, ComparableComparator.INSTANCE, LongType.INSTANCE),
+                                       props,
+                                       JedisTool.createTimestamper(options, props, client));
+        strategy = region.buildAccessStrategy(accessType);
+        txTimestamp = region.nextTimestamp();
+        region.clear();
+
+        value = CachePayloads.smallEntity(42L);
+        for (int i = 0; i < keyCount; i++) {
+            region.put(key(i), value);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        region.clear();
+        client.getJedisPool().destroy();
+    }
+
+    @Benchmark
+    public Object regionGet() {
+        return region.get(randomKey());
+    }
+
+    @Benchmark
+    public void regionPut() {
+        region.put(randomKey(), value);
+    }
+
+    @Benchmark
+    public Object strategyGet() {
+        return strategy.get(null, randomKey(), txTimestamp);
+    }
+
+    @Benchmark
+    public boolean strategyPutFromLoad() {
+        return strategy.putFromLoad(null, randomKey(), value, txTimestamp, 1);
+    }
+
+    private String randomKey() {
+        return key(ThreadLocalRandom.current().nextInt(keyCount));
+    }
+
+    private static String key(int i) {
+        return "Customer#" + i;
+    }
+}
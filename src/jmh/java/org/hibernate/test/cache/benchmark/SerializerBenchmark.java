@@ -0,0 +1,95 @@
+package org.hibernate.test.cache.benchmark;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.cache.redis.serializer.BinaryRedisSerializer;
+import org.hibernate.cache.redis.serializer.FstRedisSerializer;
+import org.hibernate.cache.redis.serializer.HibernateCacheEntryRedisSerializer;
+import org.hibernate.cache.redis.serializer.KryoRedisSerializer;
+import org.hibernate.cache.redis.serializer.RedisSerializer;
+import org.hibernate.cache.redis.serializer.SnappyHibernateCacheEntryRedisSerializer;
+import org.hibernate.cache.redis.serializer.SnappyRedisSerializer;
+import org.hibernate.cache.redis.serializer.ZstdDictionaryRedisSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * serialize / deserialize cost of the value serializers for every payload of {@link CachePayloads}.
+ * <p/>
+ * run with the gc profiler to see allocated bytes per operation:
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args="SerializerBenchmark -prof gc"
+ * <p/>
+ * {@link SerializerReport} runs the matrix and writes a comparison with the serialized sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializerBenchmark {
+
+    @Param({ "binary", "fst", "snappy", "zstd", "compact", "snappy-compact", "kryo", "kryo-registered", "kryo-unsafe" })
+    public String serializer;
+
+    @Param({ CachePayloads.SMALL_ENTITY, CachePayloads.WIDE_ENTITY, CachePayloads.COLLECTION, CachePayloads.QUERY_RESULT })
+    public String payload;
+
+    private RedisSerializer<Object> redisSerializer;
+    private Object value;
+    private byte[] bytes;
+
+    @Setup
+    public void setup() {
+        redisSerializer = createSerializer(serializer);
+        value = CachePayloads.payload(payload);
+        bytes = redisSerializer.serialize(value);
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return redisSerializer.serialize(value);
+    }
+
+    @Benchmark
+    public Object deserialize() {
+        return redisSerializer.deserialize(bytes);
+    }
+
+    /**
+     * create the serializer of a {@link #serializer} param value
+     */
+    public static RedisSerializer<Object> createSerializer(String name) {
+        if ("binary".equals(name))
+            return new BinaryRedisSerializer<Object>();
+        if ("fst".equals(name))
+            return new FstRedisSerializer<Object>();
+        if ("snappy".equals(name))
+            return new SnappyRedisSerializer<Object>();
+        if ("zstd".equals(name))
+            return new ZstdDictionaryRedisSerializer<Object>();
+        if ("compact".equals(name))
+            return new HibernateCacheEntryRedisSerializer<Object>();
+        if ("snappy-compact".equals(name))
+            return new SnappyHibernateCacheEntryRedisSerializer<Object>();
+        if (name.startsWith("kryo")) {
+            Properties props = new Properties();
+            props.setProperty("redis.serializer.kryo.register", String.valueOf(!"kryo".equals(name)));
+            props.setProperty("redis.serializer.kryo.unsafe", String.valueOf("kryo-unsafe".equals(name)));
+            KryoRedisSerializer<Object> kryo = new KryoRedisSerializer<Object>();
+            kryo.configure("benchmark", props, null);
+            return kryo;
+        }
+        throw new IllegalArgumentException("unknown serializer. name=" + name);
+    }
+}
@@ -0,0 +1,108 @@
+package org.hibernate.test.cache.benchmark;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs {@link SerializerBenchmark} with the gc profiler and writes a comparison table
+ * (ns/op, allocated B/op and serialized size per serializer and payload)
+ * to target/benchmark/serializer-report.md.
+ * <p/>
+ * Arguments are passed to JMH, e.g. -p payload=wideEntity to limit the matrix.
+ * <p/>
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.main=org.hibernate.test.cache.benchmark.SerializerReport -Djmh.args=""
+ */
+public final class SerializerReport {
+
+    private static final String REPORT_FILE = "target/benchmark/serializer-report.md";
+    private static final String ALLOCATION = "gc.alloc.rate.norm";
+
+    private SerializerReport() { }
+
+    public static void main(String[] args) throws Exception {
+        Collection<RunResult> results = new Runner(new OptionsBuilder()
+                                                           .parent(new CommandLineOptions(args))
+                                                           .include(SerializerBenchmark.class.getSimpleName())
+                                                           .addProfiler(GCProfiler.class)
+                                                           .build()).run();
+
+        // payload -> serializer -> row
+        Map<String, Map<String, Row>> rows = new TreeMap<String, Map<String, Row>>();
+        for (RunResult result : results) {
+            String payload = result.getParams().getParam("payload");
+            String serializer = result.getParams().getParam("serializer");
+            String method = result.getParams().getBenchmark();
+            method = method.substring(method.lastIndexOf('.') + 1);
+
+            Map<String, Row> payloadRows = rows.get(payload);
+            if (payloadRows == null) {
+                payloadRows = new TreeMap<String, Row>();
+                rows.put(payload, payloadRows);
+            }
+            Row row = payloadRows.get(serializer);
+            if (row == null) {
+                row = new Row(SerializerBenchmark.createSerializer(serializer)
+                                                 .serialize(CachePayloads.payload(payload)).length);
+                payloadRows.put(serializer, row);
+            }
+
+            Result allocation = result.getSecondaryResults().get(ALLOCATION);
+            double bytesPerOp = allocation != null ? allocation.getScore() : Double.NaN;
+            if ("serialize".equals(method)) {
+                row.serializeNanos = result.getPrimaryResult().getScore();
+                row.serializeBytes = bytesPerOp;
+            } else {
+                row.deserializeNanos = result.getPrimaryResult().getScore();
+                row.deserializeBytes = bytesPerOp;
+            }
+        }
+
+        File file = new File(REPORT_FILE);
+        file.getParentFile().mkdirs();
+        PrintWriter out = new PrintWriter(file, "UTF-8");
+        try {
+            out.println("# Serializer comparison");
+            out.println();
+            out.println("zstd runs without a trained dictionary, sizes of a trained region are smaller.");
+            for (Map.Entry<String, Map<String, Row>> payload : rows.entrySet()) {
+                out.println();
+                out.println("## " + payload.getKey());
+                out.println();
+                out.println("| serializer | size (bytes) | serialize ns/op | serialize B/op | deserialize ns/op | deserialize B/op |");
+                out.println("|---|---:|---:|---:|---:|---:|");
+                for (Map.Entry<String, Row> row : payload.getValue().entrySet()) {
+                    Row r = row.getValue();
+                    out.println(String.format("| %s | %d | %.0f | %.0f | %.0f | %.0f |",
+                                              row.getKey(), r.size,
+                                              r.serializeNanos, r.serializeBytes,
+                                              r.deserializeNanos, r.deserializeBytes));
+                }
+            }
+        } finally {
+            out.close();
+        }
+        System.out.println("Serializer report written to " + file.getAbsolutePath());
+    }
+
+    private static final class Row {
+        private final int size;
+        private double serializeNanos = Double.NaN;
+        private double serializeBytes = Double.NaN;
+        private double deserializeNanos = Double.NaN;
+        private double deserializeBytes = Double.NaN;
+
+        private Row(int size) {
+            this.size = size;
+        }
+    }
+}
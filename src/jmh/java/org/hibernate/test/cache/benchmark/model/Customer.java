@@ -0,0 +1,68 @@
+package org.hibernate.test.cache.benchmark.model;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.OneToMany;
+import javax.persistence.Version;
+
+/**
+ * entity of the end to end benchmark
+ */
+@Entity
+public class Customer {
+
+    @Id
+    private Long id;
+
+    private String name;
+
+    private String email;
+
+    private String city;
+
+    @Version
+    private int version;
+
+    @OneToMany(mappedBy = "customer")
+    private Set<PurchaseOrder> orders = new HashSet<PurchaseOrder>();
+
+    protected Customer() { }
+
+    public Customer(Long id, String name, String email, String city) {
+        this.id = id;
+        this.name = name;
+        this.email = email;
+        this.city = city;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public String getCity() {
+        return city;
+    }
+
+    public void setCity(String city) {
+        this.city = city;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public Set<PurchaseOrder> getOrders() {
+        return orders;
+    }
+}
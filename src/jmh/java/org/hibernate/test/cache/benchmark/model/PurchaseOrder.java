@@ -0,0 +1,61 @@
+package org.hibernate.test.cache.benchmark.model;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+import javax.persistence.Entity;
+import javax.persistence.FetchType;
+import javax.persistence.Id;
+import javax.persistence.ManyToOne;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+
+/**
+ * entity of the end to end benchmark
+ */
+@Entity
+public class PurchaseOrder {
+
+    @Id
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    private Customer customer;
+
+    private BigDecimal amount;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date orderedAt;
+
+    private String status;
+
+    protected PurchaseOrder() { }
+
+    public PurchaseOrder(Long id, Customer customer, BigDecimal amount, Date orderedAt, String status) {
+        this.id = id;
+        this.customer = customer;
+        this.amount = amount;
+        this.orderedAt = orderedAt;
+        this.status = status;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Customer getCustomer() {
+        return customer;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public Date getOrderedAt() {
+        return orderedAt;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+}
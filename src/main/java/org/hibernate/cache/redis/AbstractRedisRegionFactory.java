@@ -16,13 +16,22 @@
 
 package org.hibernate.cache.redis;
 
+import org.hibernate.boot.Metadata;
 import org.hibernate.boot.spi.SessionFactoryOptions;
 import org.hibernate.cache.CacheException;
 import org.hibernate.cache.redis.jedis.JedisClient;
+import org.hibernate.cache.redis.jmx.RedisRegionControl;
+import org.hibernate.cache.redis.jmx.SlowOperationLogControl;
+import org.hibernate.cache.redis.metrics.ClusterStatisticsPublisher;
+import org.hibernate.cache.redis.metrics.MetricsReporter;
 import org.hibernate.cache.redis.regions.*;
+import org.hibernate.cache.redis.serializer.FstRedisSerializer;
+import org.hibernate.cache.redis.serializer.KryoRedisSerializer;
 import org.hibernate.cache.redis.strategy.RedisAccessStrategyFactory;
 import org.hibernate.cache.redis.strategy.RedisAccessStrategyFactoryImpl;
 import org.hibernate.cache.redis.timestamper.JedisCacheTimestamper;
+import org.hibernate.cache.redis.util.CollectionUtil;
+import org.hibernate.cache.redis.util.HibernateCacheUtil;
 import org.hibernate.cache.redis.util.JedisTool;
 import org.hibernate.cache.spi.*;
 import org.hibernate.cache.spi.access.AccessType;
@@ -30,10 +39,14 @@ import org.hibernate.cfg.Settings;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.LinkedHashSet;
 import java.util.Properties;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.ConcurrentSkipListSet;
 
+import javax.management.ObjectName;
+
 /**
  * Region Factory for Redis
  *
@@ -43,6 +56,12 @@ import java.util.concurrent.ConcurrentSkipListSet;
 abstract class AbstractRedisRegionFactory implements RegionFactory {
 
     private static final Logger log = LoggerFactory.getLogger(AbstractRedisRegionFactory.class);
+    private static final String REGISTER_CLASSES_PROPERTY = "redis.serializer.fst.registerClasses";
+    private static final String SERIALIZER_FINGERPRINT_KEY = "hibernate-redis:serializer:fingerprint";
+    private static final String SERIALIZER_FINGERPRINTS_KEY = "hibernate-redis:serializer:fingerprints";
+    private static final long FINGERPRINT_RETENTION_MILLIS = 24 * 3600 * 1000L;
+    private static final String JMX_ENABLED_PROPERTY = "redis.jmx.enabled";
+    private static final String DEFAULT_FACTORY_NAME = "default";
     /**
      * Settings object for the Hibernate persistence unit.
      */
@@ -65,11 +84,31 @@ abstract class AbstractRedisRegionFactory implements RegionFactory {
      */
     protected JedisCacheTimestamper timestamper = null;
 
+    /**
+     * Whether to register mapped classes with FST.
+     */
+    protected boolean registerClasses = true;
+
+    /**
+     * Whether to register an MBean per region and for the slow operation log.
+     */
+    protected boolean jmxEnabled = true;
+
+    /**
+     * Names of the registered region and slow operation log MBeans
+     */
+    protected final Set<ObjectName> regionMBeanNames = new ConcurrentSkipListSet<ObjectName>();
+
     /**
      * expiration management thread
      */
     protected static Thread expirationThread = null;
 
+    /**
+     * publisher of the cluster wide statistics, null if disabled
+     */
+    protected ClusterStatisticsPublisher clusterStatisticsPublisher = null;
+
     /**
      * Whether to optimize for minimals puts or minimal gets.
      * <p/>
@@ -94,7 +133,69 @@ abstract class AbstractRedisRegionFactory implements RegionFactory {
         }
         redis = JedisTool.createJedisClient(properties);
         timestamper = JedisTool.createTimestamper(settings, properties, redis);
+        registerClasses = Boolean.valueOf(properties.getProperty(REGISTER_CLASSES_PROPERTY, "true"));
+        jmxEnabled = Boolean.valueOf(properties.getProperty(JMX_ENABLED_PROPERTY, "true"));
+        registerSlowOperationLogMBean(settings);
         startExpirationThread(redis);
+        startMetricsReporter(properties);
+        startClusterStatisticsPublisher(properties);
+    }
+
+    /**
+     * report the region metrics with [redis.metrics.reporter.class], if configured
+     */
+    protected void startMetricsReporter(Properties properties) {
+        MetricsReporter reporter = JedisTool.createMetricsReporter(properties);
+        if (reporter != null) {
+            redis.getMetrics().startReporter(reporter, JedisTool.getMetricsReporterIntervalInSeconds(properties));
+        }
+    }
+
+    /**
+     * publish the region counters to redis, if [redis.metrics.cluster.enabled]
+     */
+    protected void startClusterStatisticsPublisher(Properties properties) {
+        clusterStatisticsPublisher = JedisTool.createClusterStatisticsPublisher(properties, redis);
+        if (clusterStatisticsPublisher != null) {
+            clusterStatisticsPublisher.start(JedisTool.getClusterStatisticsIntervalInSeconds(properties));
+        }
+    }
+
+    /**
+     * Called by {@link RedisCacheIntegrator} with the mapping, before any region is built.
+     * <p/>
+     * Registers mapped entity, id and embeddable classes and {@link FstRedisSerializer#COMMON_CLASSES}
+     * with FST, and adds the registration fingerprint to the fingerprints registered in redis within a day,
+     * so a node starting with another class set warns even if other nodes registered concurrently.
+     * Mapped classes are also passed to {@link KryoRedisSerializer}.
+     * Values written by nodes with another fingerprint are cache misses.
+     */
+    protected void integrate(Metadata metadata) {
+        Set<Class<?>> mappedClasses = HibernateCacheUtil.getMappedClasses(metadata);
+        KryoRedisSerializer.setMappedClasses(mappedClasses);
+
+        if (!registerClasses || redis == null)
+            return;
+
+        Set<Class<?>> classes = new LinkedHashSet<Class<?>>(FstRedisSerializer.COMMON_CLASSES);
+        classes.addAll(mappedClasses);
+        String fingerprint = Integer.toHexString(FstRedisSerializer.registerClasses(classes));
+
+        try {
+            long now = System.currentTimeMillis();
+            Set<String> others = new TreeSet<String>(
+                    redis.addMember(SERIALIZER_FINGERPRINTS_KEY, fingerprint, now, now - FINGERPRINT_RETENTION_MILLIS));
+            others.remove(fingerprint);
+            if (!others.isEmpty()) {
+                log.warn("Serializer class registration differs from the other nodes. "
+                         + "Cached values of nodes with another class set are ignored until all nodes run the same mapping. "
+                         + "fingerprint=[{}], others=[{}]", fingerprint, others);
+            }
+            redis.setRaw(SERIALIZER_FINGERPRINT_KEY + ":" + fingerprint,
+                         CollectionUtil.toString(FstRedisSerializer.getRegisteredClassNames()).getBytes(FstRedisSerializer.UTF_8));
+        } catch (Exception e) {
+            log.warn("Fail to save serializer fingerprint. fingerprint=" + fingerprint, e);
+        }
     }
 
     @Override
@@ -116,13 +217,13 @@ abstract class AbstractRedisRegionFactory implements RegionFactory {
                                           Properties properties,
                                           CacheDataDescription metadata) throws CacheException {
         regionNames.add(regionName);
-        return new RedisEntityRegion(accessStrategyFactory,
+        return registerMBean(new RedisEntityRegion(accessStrategyFactory,
                                      redis,
                                      regionName,
                                      settings,
                                      metadata,
                                      loadCacheProperties(properties),
-                                     timestamper);
+                                     timestamper));
     }
 
     @Override
@@ -130,13 +231,13 @@ abstract class AbstractRedisRegionFactory implements RegionFactory {
                                                 Properties properties,
                                                 CacheDataDescription metadata) throws CacheException {
         regionNames.add(regionName);
-        return new RedisNaturalIdRegion(accessStrategyFactory,
+        return registerMBean(new RedisNaturalIdRegion(accessStrategyFactory,
                                         redis,
                                         regionName,
                                         settings,
                                         metadata,
                                         loadCacheProperties(properties),
-                                        timestamper);
+                                        timestamper));
     }
 
     @Override
@@ -144,24 +245,24 @@ abstract class AbstractRedisRegionFactory implements RegionFactory {
                                                   Properties properties,
                                                   CacheDataDescription metadata) throws CacheException {
         regionNames.add(regionName);
-        return new RedisCollectionRegion(accessStrategyFactory,
+        return registerMBean(new RedisCollectionRegion(accessStrategyFactory,
                                          redis,
                                          regionName,
                                          settings,
                                          metadata,
                                          loadCacheProperties(properties),
-                                         timestamper);
+                                         timestamper));
     }
 
     @Override
     public QueryResultsRegion buildQueryResultsRegion(String regionName,
                                                       Properties properties) throws CacheException {
         regionNames.add(regionName);
-        return new RedisQueryResultsRegion(accessStrategyFactory,
+        return registerMBean(new RedisQueryResultsRegion(accessStrategyFactory,
                                            redis,
                                            regionName,
                                            loadCacheProperties(properties),
-                                           timestamper);
+                                           timestamper));
     }
 
     @Override
@@ -175,15 +276,55 @@ abstract class AbstractRedisRegionFactory implements RegionFactory {
                                          timestamper);
     }
 
+    /**
+     * register an MBean for the region, if [redis.jmx.enabled] (default true)
+     */
+    protected <R extends RedisDataRegion> R registerMBean(R region) {
+        if (jmxEnabled) {
+            ObjectName name = RedisRegionControl.register(getFactoryName(settings), region);
+            if (name != null) {
+                regionMBeanNames.add(name);
+            }
+        }
+        return region;
+    }
+
+    /**
+     * register an MBean for the slow operation log, if enabled by [redis.slowlog.enabled] and [redis.jmx.enabled]
+     */
+    protected void registerSlowOperationLogMBean(SessionFactoryOptions settings) {
+        if (jmxEnabled && redis.getSlowOperationLog() != null) {
+            ObjectName name = SlowOperationLogControl.register(getFactoryName(settings), redis.getSlowOperationLog());
+            if (name != null) {
+                regionMBeanNames.add(name);
+            }
+        }
+    }
+
+    private static String getFactoryName(SessionFactoryOptions settings) {
+        return settings != null && settings.getSessionFactoryName() != null
+               ? settings.getSessionFactoryName()
+               : DEFAULT_FACTORY_NAME;
+    }
+
     /**
      * Cleanup any resources that the regionFactory might have references to.
      */
     protected void destroy() {
+        for (ObjectName name : regionMBeanNames) {
+            RedisRegionControl.unregister(name);
+        }
+        regionMBeanNames.clear();
         if (expirationThread != null) {
             expirationThread.interrupt();
             expirationThread = null;
         }
+        if (clusterStatisticsPublisher != null) {
+            clusterStatisticsPublisher.stop();
+            clusterStatisticsPublisher = null;
+        }
         if (redis != null) {
+            redis.getMetrics().stopReporter();
             redis.destroy();
             redis = null;
         }
@@ -0,0 +1,33 @@
+package org.hibernate.cache.redis;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+
+/**
+ * Passes the mapping metadata to the Redis region factory.
+ * <p/>
+ * Hibernate runs integrators after {@link RegionFactory#start} and before any cache region is built,
+ * so mapped classes are registered with the serializer before the first cache value is written.
+ * Registered through META-INF/services/org.hibernate.integrator.spi.Integrator.
+ */
+public class RedisCacheIntegrator implements Integrator {
+
+    @Override
+    public void integrate(Metadata metadata,
+                          SessionFactoryImplementor sessionFactory,
+                          SessionFactoryServiceRegistry serviceRegistry) {
+        RegionFactory regionFactory = serviceRegistry.getService(RegionFactory.class);
+        if (regionFactory instanceof AbstractRedisRegionFactory) {
+            ((AbstractRedisRegionFactory) regionFactory).integrate(metadata);
+        }
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory,
+                             SessionFactoryServiceRegistry serviceRegistry) {
+        // no op
+    }
+}
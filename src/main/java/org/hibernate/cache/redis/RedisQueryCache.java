@@ -0,0 +1,200 @@
+package org.hibernate.cache.redis;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.persistence.EntityNotFoundException;
+
+import org.hibernate.HibernateException;
+import org.hibernate.UnresolvableObjectException;
+import org.hibernate.cache.internal.StandardQueryCache;
+import org.hibernate.cache.redis.regions.RedisQueryResultsRegion;
+import org.hibernate.cache.redis.regions.RedisTimestampsRegion;
+import org.hibernate.cache.redis.regions.RedisTransactionalDataRegion;
+import org.hibernate.cache.spi.QueryKey;
+import org.hibernate.cache.spi.access.EntityRegionAccessStrategy;
+import org.hibernate.engine.spi.CacheImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.type.EntityType;
+import org.hibernate.type.Type;
+import org.hibernate.type.TypeHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Query cache which reads a cached result together with the timestamps of its query spaces
+ * in one round trip, see {@link RedisQueryResultsRegion#getIfUpToDate}.
+ * <p/>
+ * {@link StandardQueryCache} reads the result and then checks every query space against the timestamps region.
+ * Here the check runs on the redis server, only up to date results are returned, so the timestamps
+ * cache hit/miss statistics of hibernate are not updated by cache hits.
+ * <p/>
+ * Entities in a cached result are kept as identifiers. Before they are assembled, the entities
+ * not yet in the persistence context are read ahead from their redis entity regions with one
+ * pipelined multi-get, instead of one read per entity. Read ahead entities do not extend the expiration
+ * of their cache items.
+ * Built by {@link RedisQueryCacheFactory}.
+ */
+public class RedisQueryCache extends StandardQueryCache {
+
+    private static final Logger log = LoggerFactory.getLogger(RedisQueryCache.class);
+
+    private final RedisQueryResultsRegion region;
+    private final RedisTimestampsRegion timestampsRegion;
+
+    public RedisQueryCache(RedisQueryResultsRegion region,
+                           RedisTimestampsRegion timestampsRegion,
+                           CacheImplementor cacheManager) {
+        super(region, cacheManager);
+        this.region = region;
+        this.timestampsRegion = timestampsRegion;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List get(QueryKey key,
+                    Type[] returnTypes,
+                    boolean isNaturalKeyLookup,
+                    Set<Serializable> spaces,
+                    SharedSessionContractImplementor session) throws HibernateException {
+        List cacheable = null;
+        try {
+            session.getEventListenerManager().cacheGetStart();
+            Set<Serializable> checkedSpaces = isNaturalKeyLookup ? Collections.<Serializable>emptySet() : spaces;
+            cacheable = (List) region.getIfUpToDate(session, key, checkedSpaces, timestampsRegion);
+        } finally {
+            session.getEventListenerManager().cacheGetEnd(cacheable != null);
+        }
+        if (cacheable == null) {
+            log.debug("Query results were not found in cache or not up to date. region=[{}]", region.getName());
+            return null;
+        }
+
+        final boolean singleResult = returnTypes.length == 1;
+        for (int i = 1; i < cacheable.size(); i++) {
+            if (singleResult) {
+                returnTypes[0].beforeAssemble((Serializable) cacheable.get(i), session);
+            } else {
+                TypeHelper.beforeAssemble((Serializable[]) cacheable.get(i), returnTypes, session);
+            }
+        }
+
+        List<RedisTransactionalDataRegion> prefetchedRegions = prefetchEntities(cacheable, returnTypes, session);
+        try {
+            final List result = new ArrayList(cacheable.size() - 1);
+            for (int i = 1; i < cacheable.size(); i++) {
+                if (singleResult) {
+                    result.add(returnTypes[0].assemble((Serializable) cacheable.get(i), session, null));
+                } else {
+                    result.add(TypeHelper.assemble((Serializable[]) cacheable.get(i), returnTypes, session, null));
+                }
+            }
+            return result;
+        } catch (RuntimeException e) {
+            if (isNaturalKeyLookup
+                && (e instanceof UnresolvableObjectException || e instanceof EntityNotFoundException)) {
+                log.debug("Unable to reassemble cached natural-id query result. key=[{}]", key);
+                region.evict(key);
+                return null;
+            }
+            throw e;
+        } finally {
+            for (RedisTransactionalDataRegion prefetchedRegion : prefetchedRegions) {
+                prefetchedRegion.clearPrefetched();
+            }
+        }
+    }
+
+    /**
+     * read ahead the cache items of the entities referenced by the cached rows
+     *
+     * @return regions with read ahead items
+     */
+    private List<RedisTransactionalDataRegion> prefetchEntities(List cacheable,
+                                                                Type[] returnTypes,
+                                                                SharedSessionContractImplementor session) {
+        if (cacheable.size() <= 1 || !session.getCacheMode().isGetEnabled())
+            return Collections.emptyList();
+
+        Map<String, List<Object>> keysByRegion = new HashMap<String, List<Object>>();
+        Map<String, RedisTransactionalDataRegion> regions = new HashMap<String, RedisTransactionalDataRegion>();
+        try {
+            for (int column = 0; column < returnTypes.length; column++) {
+                EntityPersister persister = cachedPersister(returnTypes[column], session);
+                if (persister == null)
+                    continue;
+
+                EntityRegionAccessStrategy accessStrategy = persister.getCacheAccessStrategy();
+                RedisTransactionalDataRegion entityRegion = (RedisTransactionalDataRegion) accessStrategy.getRegion();
+                List<Object> keys = keysByRegion.get(entityRegion.getName());
+                if (keys == null) {
+                    keys = new ArrayList<Object>();
+                    keysByRegion.put(entityRegion.getName(), keys);
+                    regions.put(entityRegion.getName(), entityRegion);
+                }
+                for (int i = 1; i < cacheable.size(); i++) {
+                    Object id = returnTypes.length == 1
+                                ? cacheable.get(i)
+                                : ((Serializable[]) cacheable.get(i))[column];
+                    if (id == null
+                        || session.getPersistenceContext().containsEntity(session.generateEntityKey((Serializable) id, persister)))
+                        continue;
+                    keys.add(accessStrategy.generateCacheKey(id, persister, session.getFactory(), session.getTenantIdentifier()));
+                }
+            }
+            for (Iterator<List<Object>> it = keysByRegion.values().iterator(); it.hasNext(); ) {
+                if (it.next().isEmpty())
+                    it.remove();
+            }
+            if (keysByRegion.isEmpty())
+                return Collections.emptyList();
+
+            Map<String, List<Object>> values = region.getRedis().mget(keysByRegion);
+            List<RedisTransactionalDataRegion> prefetchedRegions = new ArrayList<RedisTransactionalDataRegion>(regions.size());
+            for (Map.Entry<String, List<Object>> entry : keysByRegion.entrySet()) {
+                List<Object> keys = entry.getValue();
+                List<Object> regionValues = values.get(entry.getKey());
+                Map<Object, Object> items = new HashMap<Object, Object>(keys.size() * 2);
+                for (int i = 0; i < keys.size(); i++) {
+                    items.put(keys.get(i), regionValues.get(i));
+                }
+                RedisTransactionalDataRegion entityRegion = regions.get(entry.getKey());
+                entityRegion.setPrefetched(items);
+                prefetchedRegions.add(entityRegion);
+            }
+            log.trace("prefetched entities of cached query result. regions=[{}]", keysByRegion.keySet());
+            return prefetchedRegions;
+        } catch (Exception e) {
+            log.warn("Fail to prefetch entities of cached query result. region=" + region.getName(), e);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * persister of an entity return type cached in a redis region and referenced by its identifier, null otherwise
+     */
+    private static EntityPersister cachedPersister(Type returnType, SharedSessionContractImplementor session) {
+        if (!returnType.isEntityType() || !((EntityType) returnType).isReferenceToPrimaryKey())
+            return null;
+
+        EntityPersister persister = session.getFactory().getMetamodel()
+                                           .entityPersister(((EntityType) returnType).getAssociatedEntityName());
+        if (!persister.hasCache()
+            || persister.getIdentifierType().isComponentType()
+            || !(persister.getCacheAccessStrategy().getRegion() instanceof RedisTransactionalDataRegion))
+            return null;
+        return persister;
+    }
+
+    @Override
+    public String toString() {
+        return "RedisQueryCache(" + region.getName() + ')';
+    }
+}
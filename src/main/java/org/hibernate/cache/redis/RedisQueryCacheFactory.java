@@ -0,0 +1,30 @@
+package org.hibernate.cache.redis;
+
+import org.hibernate.cache.internal.StandardQueryCache;
+import org.hibernate.cache.redis.regions.RedisQueryResultsRegion;
+import org.hibernate.cache.redis.regions.RedisTimestampsRegion;
+import org.hibernate.cache.spi.QueryCache;
+import org.hibernate.cache.spi.QueryCacheFactory;
+import org.hibernate.cache.spi.QueryResultsRegion;
+import org.hibernate.cache.spi.TimestampsRegion;
+import org.hibernate.engine.spi.CacheImplementor;
+
+/**
+ * Builds a {@link RedisQueryCache} for query results regions of a redis region factory,
+ * a {@link StandardQueryCache} otherwise.
+ * <p/>
+ * hibernate.cache.query_cache_factory=org.hibernate.cache.redis.RedisQueryCacheFactory
+ */
+public class RedisQueryCacheFactory implements QueryCacheFactory {
+
+    @Override
+    public QueryCache buildQueryCache(QueryResultsRegion region, CacheImplementor cacheManager) {
+        TimestampsRegion timestampsRegion = cacheManager.getUpdateTimestampsCache().getRegion();
+        if (region instanceof RedisQueryResultsRegion && timestampsRegion instanceof RedisTimestampsRegion) {
+            return new RedisQueryCache((RedisQueryResultsRegion) region,
+                                       (RedisTimestampsRegion) timestampsRegion,
+                                       cacheManager);
+        }
+        return new StandardQueryCache(region, cacheManager);
+    }
+}
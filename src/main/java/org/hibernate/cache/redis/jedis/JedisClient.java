@@ -16,25 +16,43 @@
 
 package org.hibernate.cache.redis.jedis;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 
 import org.hibernate.cache.redis.DataSourceContextHolderKey;
+import org.hibernate.cache.redis.metrics.CacheMetrics;
+import org.hibernate.cache.redis.metrics.RegionMetrics;
+import org.hibernate.cache.redis.serializer.QueryResultsRedisSerializer;
+import org.hibernate.cache.redis.serializer.ReadWriteRedisSerializer;
+import org.hibernate.cache.redis.serializer.RedisFieldCodec;
 import org.hibernate.cache.redis.serializer.RedisSerializer;
 import org.hibernate.cache.redis.serializer.SerializationTool;
 import org.hibernate.cache.redis.serializer.SnappyRedisSerializer;
 import org.hibernate.cache.redis.serializer.StringRedisSerializer;
+import org.hibernate.cache.redis.strategy.ReadWriteSoftLock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import redis.clients.jedis.Client;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPubSub;
 import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
 import redis.clients.jedis.Transaction;
 import redis.clients.util.Pool;
 
@@ -51,9 +69,315 @@ public class JedisClient {
 
 	public static final int DEFAULT_EXPIRY_IN_SECONDS = 120;
 	public static final String DEFAULT_REGION_NAME = "hibernate";
-	private static final int MAX_TIMESTAMP_UPDATE_ATTEMPTS = 5;
+	/**
+	 * KEYS[1] timestamp key, ARGV[1] current time millis or the last timestamp of the caller,
+	 * ARGV[2] "1" to overwrite a value that is not a number. the key is a monotonic floor, the script returns
+	 * max(key, ARGV[1]) + 1 and stores it.
+	 */
+	private static final RedisScript NEXT_TIMESTAMP_SCRIPT = new RedisScript("local floor = tonumber(ARGV[1])\n"
+			+ "local current = redis.call('GET', KEYS[1])\n"
+			+ "if current then\n"
+			+ "  local value = tonumber(current)\n"
+			+ "  if not value then\n"
+			+ "    if ARGV[2] ~= '1' then return -1 end\n"
+			+ "  elseif value > floor then\n"
+			+ "    floor = value\n"
+			+ "  end\n"
+			+ "end\n"
+			+ "local next = floor + 1\n"
+			+ "redis.call('SET', KEYS[1], tostring(next))\n"
+			+ "return next");
+	/**
+	 * functions of the soft lock scripts, see {@link org.hibernate.cache.redis.serializer.ReadWriteRedisSerializer}
+	 * for the format of locks. KEYS[1] region, KEYS[2] its expiration zset, KEYS[3] hash of the locks of items
+	 * left in place, ARGV[1] item key, ARGV[2] new expiration score or '0' if the region does not expire.
+	 * a lock with the digest of the locked item is written to KEYS[3] and the item stays in the region,
+	 * other locks replace the item. timestamps are kept as strings, they may exceed the integer precision of lua tostring.
+	 */
+	private static final String SOFT_LOCK_FUNCTIONS = "local function decode(value)\n"
+			+ "  if not value or string.sub(value, 1, 2) ~= '\\0l' then return nil end\n"
+			+ "  local timeout, unlock, count, concurrent, digest, id = string.match(string.sub(value, 3), '^(%d+):(%d+):(%d+):(%d):(%x*):([^\\n]*)\\n')\n"
+			+ "  if not timeout then return nil end\n"
+			+ "  return { timeout = timeout, unlock = unlock, count = tonumber(count), concurrent = concurrent, digest = digest, id = id }\n"
+			+ "end\n"
+			+ "local function read()\n"
+			+ "  local value = redis.call('HGET', KEYS[1], ARGV[1])\n"
+			+ "  local lock = decode(value)\n"
+			+ "  if not lock then lock = decode(redis.call('HGET', KEYS[3], ARGV[1])) end\n"
+			+ "  return value, lock\n"
+			+ "end\n"
+			+ "local function save(value)\n"
+			+ "  redis.call('HSET', KEYS[1], ARGV[1], value)\n"
+			+ "  redis.call('HDEL', KEYS[3], ARGV[1])\n"
+			+ "  if ARGV[2] ~= '0' then redis.call('ZADD', KEYS[2], ARGV[2], ARGV[1]) end\n"
+			+ "end\n"
+			+ "local function saveLock(lock)\n"
+			+ "  local value = '\\0l' .. lock.timeout .. ':' .. lock.unlock .. ':' .. tostring(lock.count) .. ':' .. lock.concurrent .. ':'\n"
+			+ "       .. lock.digest .. ':' .. lock.id .. '\\n'\n"
+			+ "  if lock.digest ~= '' then redis.call('HSET', KEYS[3], ARGV[1], value) else save(value) end\n"
+			+ "end\n"
+			+ "local function release(lock, timestamp)\n"
+			+ "  if lock.count > 0 then lock.count = lock.count - 1 end\n"
+			+ "  if lock.count == 0 then lock.unlock = timestamp end\n"
+			+ "  lock.digest = ''\n"
+			+ "  saveLock(lock)\n"
+			+ "end\n"
+			+ "local function expired(id, timestamp)\n"
+			+ "  saveLock({ timeout = timestamp, unlock = timestamp, count = 0, concurrent = '0', digest = '', id = id })\n"
+			+ "end\n";
+	/**
+	 * ARGV[3] lock timeout, ARGV[4] new lock id, ARGV[5] current timestamp. returns the lock id and the digest
+	 * of the locked item or '', the id of the existing lock if the item is locked concurrently. a locked item
+	 * with digest is left in place, only its lock is written.
+	 */
+	private static final RedisScript LOCK_ITEM_SCRIPT = new RedisScript(SOFT_LOCK_FUNCTIONS
+			+ "local current, lock = read()\n"
+			+ "if lock and lock.count > 0 and tonumber(lock.timeout) >= tonumber(ARGV[5]) then\n"
+			+ "  lock.count = lock.count + 1\n"
+			+ "  lock.concurrent = '1'\n"
+			+ "  lock.timeout = ARGV[3]\n"
+			+ "  lock.digest = ''\n"
+			+ "else\n"
+			+ "  lock = { timeout = ARGV[3], unlock = '0', count = 1, concurrent = '0', digest = '', id = ARGV[4] }\n"
+			+ "  if current and string.sub(current, 1, 2) == '\\0i' then\n"
+			+ "    lock.digest = string.match(string.sub(current, 3), '^%d+:%-?%d*:(%x+)\\n') or ''\n"
+			+ "  end\n"
+			+ "end\n"
+			+ "saveLock(lock)\n"
+			+ "return { lock.id, lock.digest }");
+	/**
+	 * ARGV[3] lock id, ARGV[4] unlock timestamp. returns 1 if the lock was released, 0 if it had expired
+	 * and was replaced by a released lock.
+	 */
+	private static final RedisScript UNLOCK_ITEM_SCRIPT = new RedisScript(SOFT_LOCK_FUNCTIONS
+			+ "local _, lock = read()\n"
+			+ "if lock and lock.id == ARGV[3] then\n"
+			+ "  release(lock, ARGV[4])\n"
+			+ "  return 1\n"
+			+ "end\n"
+			+ "expired(ARGV[3], ARGV[4])\n"
+			+ "return 0");
+	/**
+	 * ARGV[3] lock id, ARGV[4] unlock timestamp, ARGV[5] new item or '' if it is not cached or unchanged,
+	 * ARGV[6] digest of the locked item if the new item has the same digest, or ''. replaces the lock by the new item
+	 * and returns 1, unless the item was locked concurrently or the lock expired. an unchanged item left in place
+	 * is kept, only its lock is deleted.
+	 */
+	private static final RedisScript REPLACE_LOCK_SCRIPT = new RedisScript(SOFT_LOCK_FUNCTIONS
+			+ "local current, lock = read()\n"
+			+ "if lock and lock.id == ARGV[3] then\n"
+			+ "  if lock.concurrent == '1' then\n"
+			+ "    release(lock, ARGV[4])\n"
+			+ "    return 0\n"
+			+ "  end\n"
+			+ "  if lock.digest ~= '' and lock.digest == ARGV[6] and current and string.sub(current, 1, 2) == '\\0i'\n"
+			+ "      and string.match(string.sub(current, 3), '^%d+:%-?%d*:(%x+)\\n') == lock.digest then\n"
+			+ "    redis.call('HDEL', KEYS[3], ARGV[1])\n"
+			+ "    if ARGV[2] ~= '0' then redis.call('ZADD', KEYS[2], ARGV[2], ARGV[1]) end\n"
+			+ "    return 1\n"
+			+ "  end\n"
+			+ "  if ARGV[5] == '' then\n"
+			+ "    release(lock, ARGV[4])\n"
+			+ "    return 0\n"
+			+ "  end\n"
+			+ "  save(ARGV[5])\n"
+			+ "  return 1\n"
+			+ "end\n"
+			+ "expired(ARGV[3], ARGV[4])\n"
+			+ "return 0");
+	/**
+	 * ARGV[3] transaction timestamp, ARGV[4] '1' to put only if absent or locked, ARGV[5] version or '', ARGV[6] loaded item.
+	 * caches the item and returns 1 if the key is absent, locked by a lock which expired or was released before
+	 * the transaction started or, unless ARGV[4], cached with an older version.
+	 */
+	private static final RedisScript PUT_FROM_LOAD_SCRIPT = new RedisScript(SOFT_LOCK_FUNCTIONS
+			+ "local current, lock = read()\n"
+			+ "if lock then\n"
+			+ "  local tx = tonumber(ARGV[3])\n"
+			+ "  if tx <= tonumber(lock.timeout) and (lock.count > 0 or tx <= tonumber(lock.unlock)) then return 0 end\n"
+			+ "elseif current then\n"
+			+ "  if ARGV[4] == '1' or ARGV[5] == '' or string.sub(current, 1, 2) ~= '\\0i' then return 0 end\n"
+			+ "  local cached = string.match(string.sub(current, 3), '^%d+:(%-?%d+):')\n"
+			+ "  if not cached or tonumber(ARGV[5]) <= tonumber(cached) then return 0 end\n"
+			+ "end\n"
+			+ "save(ARGV[6])\n"
+			+ "return 1");
+	/**
+	 * ARGV[3] new item. caches the item and returns 1 if the key is absent.
+	 */
+	private static final RedisScript PUT_IF_ABSENT_SCRIPT = new RedisScript(SOFT_LOCK_FUNCTIONS
+			+ "if redis.call('HEXISTS', KEYS[1], ARGV[1]) == 1 or redis.call('HEXISTS', KEYS[3], ARGV[1]) == 1 then return 0 end\n"
+			+ "save(ARGV[3])\n"
+			+ "return 1");
+	/**
+	 * functions of the scripts which put values conditionally on their version. KEYS[1] region, KEYS[2] its expiration
+	 * zset, ARGV[1] field. a version is written by {@link #setIfNewer} as the header [0x00]['v'][version]['\n'],
+	 * or as the last part of the header of a value stored as fields.
+	 */
+	private static final String VERSION_FUNCTIONS = "local function cachedVersion(value)\n"
+			+ "  local version = nil\n"
+			+ "  if string.sub(value, 1, 2) == '\\0v' then version = string.match(string.sub(value, 3), '^(%-?%d+)\\n')\n"
+			+ "  elseif string.sub(value, 1, 2) == '\\0p' then version = string.match(string.sub(value, 3), '^%d+:%w+:(%-?%d+)\\n') end\n"
+			+ "  return version and tonumber(version)\n"
+			+ "end\n"
+			+ "local function rejected(current, now, minimal, newVersion)\n"
+			+ "  if not current or minimal == '' then return false end\n"
+			+ "  local score = redis.call('ZSCORE', KEYS[2], ARGV[1])\n"
+			+ "  if score and tonumber(now) > tonumber(score) then return false end\n"
+			+ "  local cached = cachedVersion(current)\n"
+			+ "  local version = tonumber(newVersion)\n"
+			+ "  if minimal == '1' then return not (version and cached and version > cached) end\n"
+			+ "  return version and cached and version < cached\n"
+			+ "end\n";
+	/**
+	 * ARGV[2] new expiration score or '0', ARGV[3] current time millis, ARGV[4] '1' to put only if absent or older,
+	 * ARGV[5] version or '', ARGV[6] value.
+	 * returns 1 if the value was cached, 0 if a newer (or, with ARGV[4], the same) version is cached.
+	 */
+	private static final RedisScript SET_IF_NEWER_SCRIPT = new RedisScript(VERSION_FUNCTIONS
+			+ "if rejected(redis.call('HGET', KEYS[1], ARGV[1]), ARGV[3], ARGV[4], ARGV[5]) then return 0 end\n"
+			+ "redis.call('HSET', KEYS[1], ARGV[1], ARGV[6])\n"
+			+ "if ARGV[2] ~= '0' then redis.call('ZADD', KEYS[2], ARGV[2], ARGV[1]) end\n"
+			+ "return 1");
+	/**
+	 * KEYS[3] fields hash, KEYS[4] fields hash of the replaced value, ARGV[2] new expiration score or '0',
+	 * ARGV[3] fields header, ARGV[4] expiration of the fields hash in seconds, ARGV[5] digest of the cached fields the
+	 * changed fields apply to or '' to replace all fields, ARGV[6] digest of the new fields, ARGV[7] current time millis,
+	 * ARGV[8] '1' to put only if absent or older, '0' to put unless newer or '' to put unconditionally,
+	 * ARGV[9] version or '', ARGV[10] token of KEYS[4] or '', ARGV[11..] field names and values.
+	 * returns 1 if the fields were saved, 0 if a newer (or, with ARGV[8] '1', the same) version is cached,
+	 * -1 if the cached fields are not the expected ones. a replaced value stored as fields is only replaced if its
+	 * hash is KEYS[4], which is deleted, otherwise nothing is saved and the token of its hash is returned.
+	 */
+	private static final RedisScript SET_FIELDS_SCRIPT = new RedisScript(VERSION_FUNCTIONS
+			+ "local function fields(value)\n"
+			+ "  if value and string.sub(value, 1, 2) == '\\0p' then return string.match(string.sub(value, 3), '^(%d+:%w+)') end\n"
+			+ "  return nil\n"
+			+ "end\n"
+			+ "local current = redis.call('HGET', KEYS[1], ARGV[1])\n"
+			+ "if rejected(current, ARGV[7], ARGV[8], ARGV[9]) then return 0 end\n"
+			+ "local cached = fields(current)\n"
+			+ "if ARGV[5] ~= '' then\n"
+			+ "  if not cached or cached ~= fields(ARGV[3]) or redis.call('HGET', KEYS[3], 'd') ~= ARGV[5] then return -1 end\n"
+			+ "elseif cached then\n"
+			+ "  local replaced = string.match(cached, ':(%w+)$')\n"
+			+ "  if replaced ~= ARGV[10] then return replaced end\n"
+			+ "  redis.call('DEL', KEYS[4])\n"
+			+ "end\n"
+			+ "for i = 11, #ARGV, 2 do\n"
+			+ "  redis.call('HSET', KEYS[3], ARGV[i], ARGV[i + 1])\n"
+			+ "end\n"
+			+ "redis.call('HSET', KEYS[3], 'd', ARGV[6])\n"
+			+ "redis.call('EXPIRE', KEYS[3], ARGV[4])\n"
+			+ "redis.call('HSET', KEYS[1], ARGV[1], ARGV[3])\n"
+			+ "if ARGV[2] ~= '0' then redis.call('ZADD', KEYS[2], ARGV[2], ARGV[1]) end\n"
+			+ "return 1");
+	/**
+	 * KEYS[1] region, KEYS[2] its expiration zset, KEYS[3] fields hash the value is expected to be stored in,
+	 * ARGV[1] field, ARGV[2] current time millis, ARGV[3] new expiration score or '0' if the region does not expire,
+	 * ARGV[4] expiration of the fields hash in seconds, ARGV[5] token of KEYS[3] or ''.
+	 * returns the cached value, followed by the names and values of its fields if it is stored as fields in KEYS[3].
+	 */
+	private static final RedisScript GET_FIELDS_SCRIPT = new RedisScript("if ARGV[3] ~= '0' then\n"
+			+ "  local score = redis.call('ZSCORE', KEYS[2], ARGV[1])\n"
+			+ "  if score and tonumber(ARGV[2]) > tonumber(score) then\n"
+			+ "    redis.call('ZREM', KEYS[2], ARGV[1])\n"
+			+ "    redis.call('HDEL', KEYS[1], ARGV[1])\n"
+			+ "    return false\n"
+			+ "  end\n"
+			+ "end\n"
+			+ "local value = redis.call('HGET', KEYS[1], ARGV[1])\n"
+			+ "if not value then return false end\n"
+			+ "if ARGV[3] ~= '0' then redis.call('ZADD', KEYS[2], ARGV[3], ARGV[1]) end\n"
+			+ "local token = nil\n"
+			+ "if string.sub(value, 1, 2) == '\\0p' then token = string.match(string.sub(value, 3), '^%d+:(%w+)') end\n"
+			+ "if not token or token ~= ARGV[5] then return { value } end\n"
+			+ "local reply = redis.call('HGETALL', KEYS[3])\n"
+			+ "if ARGV[3] ~= '0' then redis.call('EXPIRE', KEYS[3], ARGV[4]) end\n"
+			+ "table.insert(reply, 1, value)\n"
+			+ "return reply");
+	/**
+	 * KEYS[1] region, KEYS[2] its expiration zset, ARGV[1] field, ARGV[2] value. deletes the field if it still
+	 * has the value, returns 1 if deleted.
+	 */
+	private static final RedisScript DELETE_VALUE_SCRIPT = new RedisScript("if redis.call('HGET', KEYS[1], ARGV[1]) ~= ARGV[2] then return 0 end\n"
+			+ "redis.call('HDEL', KEYS[1], ARGV[1])\n"
+			+ "redis.call('ZREM', KEYS[2], ARGV[1])\n"
+			+ "return 1");
+	private static final RedisScript MEMORY_USAGE_SCRIPT = new RedisScript("local total = 0\n"
+			+ "for _, key in ipairs(KEYS) do\n"
+			+ "  local usage = redis.call('MEMORY', 'USAGE', key, 'SAMPLES', ARGV[1])\n"
+			+ "  if usage then total = total + usage end\n"
+			+ "end\n"
+			+ "return total");
+	/**
+	 * KEYS[1] query results region, KEYS[2] its expiration zset, KEYS[3] timestamps region,
+	 * ARGV[1] result key, ARGV[2] current time millis, ARGV[3] new expiration score or '0' if the region does not expire,
+	 * ARGV[4..] query space fields.
+	 * returns the cached result if none of its spaces was updated since it was cached. query results are not chunked,
+	 * the chunks would be keys the script can not declare; a chunked result written by an older version is a miss
+	 * and its header is deleted, its chunks are left to expire.
+	 */
+	private static final RedisScript QUERY_RESULT_SCRIPT = new RedisScript("if ARGV[3] ~= '0' then\n"
+			+ "  local score = redis.call('ZSCORE', KEYS[2], ARGV[1])\n"
+			+ "  if score and tonumber(ARGV[2]) > tonumber(score) then\n"
+			+ "    redis.call('ZREM', KEYS[2], ARGV[1])\n"
+			+ "    redis.call('HDEL', KEYS[1], ARGV[1])\n"
+			+ "    return false\n"
+			+ "  end\n"
+			+ "end\n"
+			+ "local value = redis.call('HGET', KEYS[1], ARGV[1])\n"
+			+ "if value and string.sub(value, 1, 2) == '\\0c' then\n"
+			+ "  redis.call('ZREM', KEYS[2], ARGV[1])\n"
+			+ "  redis.call('HDEL', KEYS[1], ARGV[1])\n"
+			+ "  return false\n"
+			+ "end\n"
+			+ "if not value or string.sub(value, 1, 2) ~= '\\0q' then return false end\n"
+			+ "local nl = string.find(value, '\\n', 3, true)\n"
+			+ "local timestamp = nl and tonumber(string.sub(value, 3, nl - 1))\n"
+			+ "if not timestamp then return false end\n"
+			+ "for i = 4, #ARGV do\n"
+			+ "  local last = tonumber(redis.call('HGET', KEYS[3], ARGV[i]))\n"
+			+ "  if last and last >= timestamp then return false end\n"
+			+ "end\n"
+			+ "if ARGV[3] ~= '0' then redis.call('ZADD', KEYS[2], ARGV[3], ARGV[1]) end\n"
+			+ "return value");
 	private static final Logger log = LoggerFactory.getLogger(JedisClient.class);
 
+	private static final String TIMESTAMPS_CHANNEL_PREFIX = "hibernate-redis:timestamps:";
+	/**
+	 * a chunked value is stored as the header [0x00]['c'][chunk count][':'][token]['\n'] in the region,
+	 * its chunks in the hash [c:{region}:{token}] under the fields "0".."count-1"
+	 */
+	private static final byte CHUNK_MARK = 0;
+	private static final byte CHUNKED = 'c';
+	private static final String CHUNK_KEY_PREFIX = "c:";
+	/**
+	 * a value stored as fields is the header [0x00]['p'][field count][':'][token]['\n'] in the region,
+	 * its fields in the hash [p:{region}:{token}] with the digest of all fields under "d"
+	 */
+	private static final byte FIELDS_MARK = 0;
+	private static final byte FIELDS = 'p';
+	private static final String FIELDS_KEY_PREFIX = "p:";
+	private static final String FIELDS_DIGEST = "d";
+	private static final Long SAVED = 1L;
+	private static final Long REJECTED = 0L;
+	private static final int FIELD_DIGESTS_CAPACITY = 10000;
+	/**
+	 * the lock of a read/write item with digest is kept in the hash [l:{region}] under the field of the item,
+	 * which stays in place in the region while it is locked
+	 */
+	private static final String LOCKS_KEY_PREFIX = "l:";
+	/**
+	 * a value saved by {@link #setIfNewer} starts with the header [0x00]['v'][version]['\n']
+	 */
+	private static final byte VERSION_MARK = 0;
+	private static final byte VERSIONED = 'v';
+	/**
+	 * invalidation message of all timestamps, fields always contain '#'
+	 */
+	public static final String ALL_TIMESTAMPS = "*";
+
 	DataSourceContextHolderKey dataSourceContextHolderKey;
 
 	private final Pool<Jedis> jedisPool;
@@ -63,6 +387,24 @@ public class JedisClient {
 	private final StringRedisSerializer regionSerializer = new StringRedisSerializer();
 	private final StringRedisSerializer keySerializer = new StringRedisSerializer();
 	private final RedisSerializer<Object> valueSerializer = new SnappyRedisSerializer<Object>();
+	private final ConcurrentMap<String, RedisSerializer<Object>> regionValueSerializers = new ConcurrentHashMap<String, RedisSerializer<Object>>();
+	private final ConcurrentMap<String, Integer> regionMaxValueSizes = new ConcurrentHashMap<String, Integer>();
+	private final ConcurrentMap<String, RedisFieldCodec> regionFieldCodecs = new ConcurrentHashMap<String, RedisFieldCodec>();
+	/**
+	 * digests of the fields this node wrote or read last by key, per region with a field codec, to send only the changed fields
+	 */
+	private final ConcurrentMap<String, ConcurrentMap<String, FieldDigests>> regionFieldDigests =
+			new ConcurrentHashMap<String, ConcurrentMap<String, FieldDigests>>();
+	private final CacheMetrics metrics = new CacheMetrics();
+	private final List<OperationListener> operationListeners = new CopyOnWriteArrayList<OperationListener>();
+	private final ThreadLocal<OperationTrace> currentTrace = new ThreadLocal<OperationTrace>();
+	private volatile boolean tracing = false;
+
+	private SlowOperationLog slowOperationLog = null;
+
+	private volatile int chunkSizeInBytes = 0;
+
+	private volatile String password = null;
 
 	public JedisClient() {
 		this(new JedisPool("localhost"), DEFAULT_EXPIRY_IN_SECONDS, new DataSourceContextHolderKey());
@@ -98,6 +440,150 @@ public class JedisClient {
 		this.expiryInSeconds = expiryInSeconds;
 	}
 
+	/**
+	 * metrics of the regions served by this client, and the pool wait time
+	 */
+	public CacheMetrics getMetrics() {
+		return this.metrics;
+	}
+
+	/**
+	 * trace the operations of this client and notify the listener
+	 */
+	public void addOperationListener(final OperationListener listener) {
+		operationListeners.add(listener);
+		tracing = true;
+	}
+
+	public void removeOperationListener(final OperationListener listener) {
+		operationListeners.remove(listener);
+		tracing = !operationListeners.isEmpty();
+	}
+
+	/**
+	 * slow log of this client, null if not enabled
+	 */
+	public synchronized SlowOperationLog getSlowOperationLog() {
+		return slowOperationLog;
+	}
+
+	/**
+	 * record the slow operations of this client in the specified log, null to disable
+	 */
+	public synchronized void setSlowOperationLog(final SlowOperationLog slowOperationLog) {
+		if (this.slowOperationLog != null)
+			removeOperationListener(this.slowOperationLog);
+		this.slowOperationLog = slowOperationLog;
+		if (slowOperationLog != null)
+			addOperationListener(slowOperationLog);
+	}
+
+	/**
+	 * register value serializer for the specified region
+	 *
+	 * @param region
+	 *            region name
+	 * @param serializer
+	 *            serializer for cache values of the region
+	 */
+	public void setValueSerializer(final String region, final RedisSerializer<Object> serializer) {
+		if (serializer == null) {
+			regionValueSerializers.remove(region);
+		} else {
+			regionValueSerializers.put(region, serializer);
+		}
+	}
+
+	/**
+	 * get value serializer for the specified region, default serializer if region has no own serializer.
+	 *
+	 * @param region
+	 *            region name
+	 */
+	public RedisSerializer<Object> getValueSerializer(final String region) {
+		RedisSerializer<Object> serializer = regionValueSerializers.get(region);
+		return serializer != null ? serializer : valueSerializer;
+	}
+
+	public int getChunkSizeInBytes() {
+		return chunkSizeInBytes;
+	}
+
+	/**
+	 * serialized values larger than the chunk size are split into chunks of this size,
+	 * written in one transaction and read back with one HMGET. 0 disables chunking. query results are not chunked,
+	 * see {@link #getQueryResult(String, Object, int, String, Collection)}.
+	 * chunks are kept for the expiration of the value; the chunks of a replaced or removed value are left to expire.
+	 *
+	 * @param chunkSizeInBytes
+	 *            chunk size in bytes, 0 to store values as one field
+	 */
+	public void setChunkSizeInBytes(final int chunkSizeInBytes) {
+		this.chunkSizeInBytes = chunkSizeInBytes;
+	}
+
+	/**
+	 * set the password of the server, used to authenticate the connections opened outside of the pool
+	 *
+	 * @param password
+	 *            password, null if the server requires none
+	 */
+	public void setPassword(final String password) {
+		this.password = password;
+	}
+
+	/**
+	 * register the maximum serialized size of values cached in the specified region,
+	 * larger values are not cached and counted as rejections in the region metrics.
+	 *
+	 * @param region
+	 *            region name
+	 * @param maxValueSizeInBytes
+	 *            maximum value size in bytes, 0 for no limit
+	 */
+	public void setMaxValueSize(final String region, final int maxValueSizeInBytes) {
+		if (maxValueSizeInBytes <= 0) {
+			regionMaxValueSizes.remove(region);
+		} else {
+			regionMaxValueSizes.put(region, maxValueSizeInBytes);
+		}
+	}
+
+	/**
+	 * maximum value size of the specified region in bytes, 0 for no limit
+	 */
+	public int getMaxValueSize(final String region) {
+		Integer maxValueSize = regionMaxValueSizes.get(region);
+		return maxValueSize != null ? maxValueSize : 0;
+	}
+
+	/**
+	 * register the codec splitting values of the specified region into fields. a value the codec splits is stored
+	 * in a hash of its own, field by field, and a write sends only the fields which changed since this node
+	 * wrote or read the value last. values stored as fields are not chunked.
+	 *
+	 * @param region
+	 *            region name
+	 * @param codec
+	 *            field codec, null to store values as a whole
+	 */
+	public void setFieldCodec(final String region, final RedisFieldCodec codec) {
+		if (codec == null) {
+			regionFieldCodecs.remove(region);
+			regionFieldDigests.remove(region);
+		} else {
+			regionFieldDigests.putIfAbsent(region, new ConcurrentHashMap<String, FieldDigests>());
+			regionFieldCodecs.put(region, codec);
+		}
+	}
+
+	/**
+	 * field codec of the specified region, null if values are stored as a whole
+	 */
+	public RedisFieldCodec getFieldCodec(final String region) {
+		return regionFieldCodecs.get(region);
+	}
+
 	/**
 	 * ping test for server alive
 	 */
@@ -167,408 +653,1814 @@ public class JedisClient {
 	 * @return return cached entity, if not exists return null.
 	 */
 	public Object get(final String region, final Object key, final int expirationInSeconds) {
-		final byte[] rawRegion = rawRegion(region);
-		final byte[] rawKey = rawKey(key);
+		if (regionFieldCodecs.containsKey(region))
+			return getWithFields(region, key, expirationInSeconds);
+
+		final OperationTrace trace = beginTrace(OperationTrace.GET, "ZSCORE HGET ZADD", region, key);
+		try {
+			final byte[] rawRegion = rawRegion(region);
+			final byte[] rawKey = rawKey(key);
+			final byte[] rawZkey = rawZkey(region);
+			final boolean lockedInPlace = isLockedInPlace(region);
 
-		// NOTE: expire 된 캐시 정보라면 삭제하고, null 값을 반환합니다.
-		if (expirationInSeconds > 0 && isExpired(region, key)) {
+			// NOTE: the item, its expiration and the lock of a locked item left in place are read in one round trip
+			final List<Response<?>> responses = new ArrayList<Response<?>>(3);
 			runWithPipeline(new JedisPipelinedCallback() {
 				@Override
 				public void execute(Pipeline pipeline) {
-					final byte[] rawZkey = rawZkey(region);
-					pipeline.zrem(rawZkey, rawKey);
-					pipeline.hdel(rawRegion, rawKey);
+					responses.add(pipeline.hget(rawRegion, rawKey));
+					responses.add(lockedInPlace ? pipeline.hget(rawLocksKey(region), rawKey) : null);
+					responses.add(expirationInSeconds > 0 ? pipeline.zscore(rawZkey, rawKey) : null);
 				}
 			});
-			return null;
-		}
 
-		byte[] rawValue = run(new JedisCallback<byte[]>() {
-			@Override
-			public byte[] execute(Jedis jedis) {
-				return jedis.hget(rawRegion, rawKey);
+			// NOTE: expire 된 캐시 정보라면 삭제하고, null 값을 반환합니다.
+			final Double score = responses.get(2) != null ? (Double) responses.get(2).get() : null;
+			if (score != null && System.currentTimeMillis() > score.longValue()) {
+				runWithPipeline(new JedisPipelinedCallback() {
+					@Override
+					public void execute(Pipeline pipeline) {
+						pipeline.zrem(rawZkey, rawKey);
+						pipeline.hdel(rawRegion, rawKey);
+					}
+				});
+				if (trace != null)
+					trace.setHit(false);
+				return null;
 			}
-		});
 
-		// after get, update expiration time
-		if (rawValue != null && rawValue.length > 0) {
-			if (expirationInSeconds > 0 && !region.contains("UpdateTimestampsCache")) {
-				run(new JedisCallback<Object>() {
+			byte[] rawValue = (byte[]) responses.get(0).get();
+			if (responses.get(1) != null && responses.get(1).get() != null)
+				rawValue = (byte[]) responses.get(1).get();
+
+			// after get, update expiration time, in the round trip which reads the chunks of a chunked value
+			JedisPipelinedCallback touch = null;
+			if (rawValue != null && rawValue.length > 0 && expirationInSeconds > 0) {
+				touch = new JedisPipelinedCallback() {
 					@Override
-					public Object execute(Jedis jedis) {
-						final byte[] rawZkey = rawZkey(region);
+					public void execute(Pipeline pipeline) {
 						final long score = System.currentTimeMillis() + expirationInSeconds * 1000L;
-						return jedis.zadd(rawZkey, score, rawKey);
+						pipeline.zadd(rawZkey, score, rawKey);
 					}
-				});
+				};
 			}
-		}
+			rawValue = readChunks(region, rawKey, rawValue, expirationInSeconds, touch);
 
-		return deserializeValue(rawValue);
+			Object value = deserializeValue(region, rawValue);
+			if (trace != null)
+				trace.setHit(value != null);
+			return value;
+		} finally {
+			endTrace(trace);
+		}
 	}
 
-	private Boolean isExpired(final String region, final Object key) {
-		final byte[] rawZkey = rawZkey(region);
-		final byte[] rawKey = rawKey(key);
+	/**
+	 * get an item of a region with a field codec in one scripted round trip, together with its fields if it is
+	 * stored in the fields hash this client last read or wrote for the key. the fields of a hash written by another
+	 * client are read with a second round trip, once its token is known from the header.
+	 * the expiration of the item and its fields is extended.
+	 */
+	private Object getWithFields(final String region, final Object key, final int expirationInSeconds) {
+		final OperationTrace trace = beginTrace(OperationTrace.GET, "EVALSHA", region, key);
+		try {
+			final byte[] rawKey = rawKey(key);
+			final FieldDigests remembered = fieldDigests(region, fieldDigestsKey(rawKey));
+			final String expectedToken = remembered != null ? remembered.token : "";
+			final long now = System.currentTimeMillis();
+			final int fieldsSeconds = chunkExpiryInSeconds(expirationInSeconds);
+			final List<byte[]> keys = Arrays.asList(rawRegion(region), rawZkey(region), rawFieldsKey(region, expectedToken));
+			final List<byte[]> args = Arrays.asList(rawKey,
+			                                        rawString(String.valueOf(now)),
+			                                        rawString(String.valueOf(expirationInSeconds > 0 ? now + expirationInSeconds * 1000L : 0L)),
+			                                        rawString(String.valueOf(fieldsSeconds)),
+			                                        rawString(expectedToken));
+			List<byte[]> reply = run(new JedisCallback<List<byte[]>>() {
+				@SuppressWarnings("unchecked")
+				@Override
+				public List<byte[]> execute(Jedis jedis) {
+					return (List<byte[]>) GET_FIELDS_SCRIPT.eval(jedis, keys, args);
+				}
+			});
 
-		Double timestamp = run(new JedisCallback<Double>() {
-			@Override
-			public Double execute(Jedis jedis) {
-				return jedis.zscore(rawZkey, rawKey);
+			Object value = null;
+			if (reply != null && !reply.isEmpty()) {
+				final byte[] rawValue = reply.get(0);
+				final String header = fieldsHeader(rawValue);
+				if (header != null && fieldsToken(header).equals(expectedToken)) {
+					Map<byte[], byte[]> rawFields = new LinkedHashMap<byte[], byte[]>();
+					for (int i = 1; i + 1 < reply.size(); i += 2) {
+						rawFields.put(reply.get(i), reply.get(i + 1));
+					}
+					value = joinFields(region, header, rawFields, fieldDigestsKey(rawKey));
+				} else if (header != null) {
+					final byte[] rawFieldsKey = rawFieldsKey(region, fieldsToken(header));
+					final List<Response<Map<byte[], byte[]>>> rawFields = new ArrayList<Response<Map<byte[], byte[]>>>(1);
+					runWithPipeline(new JedisPipelinedCallback() {
+						@Override
+						public void execute(Pipeline pipeline) {
+							rawFields.add(pipeline.hgetAll(rawFieldsKey));
+							if (expirationInSeconds > 0)
+								pipeline.expire(rawFieldsKey, fieldsSeconds);
+						}
+					});
+					value = joinFields(region, header, rawFields.get(0).get(), fieldDigestsKey(rawKey));
+				} else {
+					value = deserializeValue(region, readChunks(region, rawKey, rawValue, expirationInSeconds, null));
+				}
 			}
-		});
-		return timestamp != null && System.currentTimeMillis() > timestamp.longValue();
+			if (trace != null)
+				trace.setHit(value != null);
+			return value;
+		} finally {
+			endTrace(trace);
+		}
 	}
 
 	/**
-	 * retrieve all cached items in specified region
+	 * Get a cached query result together with the timestamps of its query spaces in one scripted round trip.
+	 * The result is returned only if it is still up to date, no space was updated at or after the timestamp
+	 * written by {@link org.hibernate.cache.redis.serializer.QueryResultsRedisSerializer}.
+	 * Spaces without timestamp are treated as not updated, like {@link org.hibernate.cache.spi.UpdateTimestampsCache}.
 	 *
 	 * @param region
-	 *            region
-	 * @return collection of cached items
+	 *            query results region name
+	 * @param key
+	 *            query key
+	 * @param expirationInSeconds
+	 *            expiration timeout in seconds
+	 * @param timestampsRegion
+	 *            timestamps region name
+	 * @param spaces
+	 *            query spaces of the result
+	 * @return cached result, null if not exists, expired or stale
 	 */
-	public Set<Object> keysInRegion(String region) {
+	public Object getQueryResult(final String region, final Object key, final int expirationInSeconds,
+	                             final String timestampsRegion, final Collection<?> spaces) {
+		final OperationTrace trace = beginTrace(OperationTrace.GET, "EVALSHA", region, key);
 		try {
-			final byte[] rawRegion = rawRegion(region);
-			Set<byte[]> rawKeys = run(new JedisCallback<Set<byte[]>>() {
+			final List<byte[]> keys = new ArrayList<byte[]>(3);
+			keys.add(rawRegion(region));
+			keys.add(rawZkey(region));
+			keys.add(rawRegion(timestampsRegion));
+
+			final long now = System.currentTimeMillis();
+			final long score = expirationInSeconds > 0 ? now + expirationInSeconds * 1000L : 0L;
+			final List<byte[]> args = new ArrayList<byte[]>(3 + spaces.size());
+			args.add(rawKey(key));
+			args.add(String.valueOf(now).getBytes(StringRedisSerializer.UTF_8));
+			args.add(String.valueOf(score).getBytes(StringRedisSerializer.UTF_8));
+			for (Object space : spaces) {
+				args.add(timestampField(space).getBytes(StringRedisSerializer.UTF_8));
+			}
+
+			byte[] rawValue = run(new JedisCallback<byte[]>() {
 				@Override
-				public Set<byte[]> execute(Jedis jedis) {
-					return jedis.hkeys(rawRegion);
+				public byte[] execute(Jedis jedis) {
+					return (byte[]) QUERY_RESULT_SCRIPT.eval(jedis, keys, args);
 				}
 			});
 
-			if (rawKeys != null)
-				return deserializeKeys(rawKeys);
-		} catch (Exception ignored) {
+			Object value = rawValue != null ? deserializeValue(region, rawValue) : null;
+			if (trace != null)
+				trace.setHit(value != null);
+			return value;
+		} finally {
+			endTrace(trace);
 		}
-		return new HashSet<Object>();
 	}
 
 	/**
-	 * get cache count in region
+	 * queue the chunk header of the value in the region and its chunks in the chunk hash of the token
+	 */
+	private void writeChunks(final Transaction tx, final String region, final byte[] rawKey, final byte[] rawValue,
+	                         final int chunkSize, final String token, final int expiryInSeconds) {
+		final int count = (rawValue.length + chunkSize - 1) / chunkSize;
+		final byte[] rawChunkKey = rawChunkKey(region, token);
+		for (int i = 0; i < count; i++) {
+			byte[] chunk = Arrays.copyOfRange(rawValue, i * chunkSize, Math.min(rawValue.length, (i + 1) * chunkSize));
+			tx.hset(rawChunkKey, String.valueOf(i).getBytes(StringRedisSerializer.UTF_8), chunk);
+		}
+		tx.expire(rawChunkKey, expiryInSeconds);
+
+		byte[] header = ("  " + count + ":" + token + "\n").getBytes(StringRedisSerializer.UTF_8);
+		header[0] = CHUNK_MARK;
+		header[1] = CHUNKED;
+		tx.hset(rawRegion(region), rawKey, header);
+	}
+
+	/**
+	 * reassemble a chunked value, see {@link #readChunks(Map, Map, int, JedisPipelinedCallback)}
 	 *
-	 * @param region
-	 *            region
-	 * @return cache item count in region
+	 * @return the value itself if not chunked, null if a chunk is missing
 	 */
-	public Long keySizeInRegion(final String region) {
-		final byte[] rawRegion = rawRegion(region);
-		return run(new JedisCallback<Long>() {
+	private byte[] readChunks(final String region, final byte[] rawKey, final byte[] rawValue, final int expirationInSeconds,
+	                          final JedisPipelinedCallback touch) {
+		Map<String, List<byte[]>> values = readChunks(Collections.singletonMap(region, Collections.singletonList(rawKey)),
+		                                              Collections.singletonMap(region, Collections.singletonList(rawValue)),
+		                                              expirationInSeconds, touch);
+		return values.get(region).get(0);
+	}
+
+	/**
+	 * reassemble the chunked values of a multiple get
+	 */
+	private List<byte[]> readChunks(final String region, final List<byte[]> rawKeys, final List<byte[]> rawValues) {
+		if (rawValues == null)
+			return null;
+		return readChunks(Collections.singletonMap(region, rawKeys), Collections.singletonMap(region, rawValues), 0, null)
+				.get(region);
+	}
+
+	/**
+	 * reassemble the chunked values of one or more regions with one pipeline of HMGETs of their chunks, extending
+	 * the expiration of the chunks. a chunked value with a missing chunk is a miss, its header is deleted unless
+	 * it was replaced meanwhile, so it can be cached again.
+	 *
+	 * @param rawKeysByRegion
+	 *            fields of the values by region
+	 * @param rawValuesByRegion
+	 *            values by region, in the order of the fields
+	 * @param touch
+	 *            commands queued in the same round trip, null if none
+	 * @return values by region, the values themselves if not chunked and null if a chunk is missing
+	 */
+	private Map<String, List<byte[]>> readChunks(final Map<String, List<byte[]>> rawKeysByRegion,
+	                                             final Map<String, List<byte[]>> rawValuesByRegion,
+	                                             final int expirationInSeconds, final JedisPipelinedCallback touch) {
+		final List<ChunkedValue> chunkedValues = new ArrayList<ChunkedValue>();
+		for (Map.Entry<String, List<byte[]>> entry : rawValuesByRegion.entrySet()) {
+			final List<byte[]> rawValues = entry.getValue();
+			for (int i = 0; i < rawValues.size(); i++) {
+				final String header = chunkHeader(rawValues.get(i));
+				if (header == null)
+					continue;
+				final int separator = header.indexOf(':');
+				final int count = Integer.parseInt(header.substring(0, separator));
+				final byte[][] fields = new byte[count][];
+				for (int n = 0; n < count; n++) {
+					fields[n] = String.valueOf(n).getBytes(StringRedisSerializer.UTF_8);
+				}
+				chunkedValues.add(new ChunkedValue(entry.getKey(), i, rawChunkKey(entry.getKey(), header.substring(separator + 1)), fields));
+			}
+		}
+		if (chunkedValues.isEmpty()) {
+			if (touch != null)
+				runWithPipeline(touch);
+			return rawValuesByRegion;
+		}
+
+		final List<Response<List<byte[]>>> responses = new ArrayList<Response<List<byte[]>>>(chunkedValues.size());
+		runWithPipeline(new JedisPipelinedCallback() {
 			@Override
-			public Long execute(Jedis jedis) {
-				return jedis.hlen(rawRegion);
+			public void execute(Pipeline pipeline) {
+				for (ChunkedValue chunkedValue : chunkedValues) {
+					responses.add(pipeline.hmget(chunkedValue.rawChunkKey, chunkedValue.fields));
+					pipeline.expire(chunkedValue.rawChunkKey, chunkExpiryInSeconds(expirationInSeconds));
+				}
+				if (touch != null)
+					touch.execute(pipeline);
+			}
+		});
+
+		final Map<String, List<byte[]>> values = new LinkedHashMap<String, List<byte[]>>(rawValuesByRegion.size());
+		for (Map.Entry<String, List<byte[]>> entry : rawValuesByRegion.entrySet()) {
+			values.put(entry.getKey(), new ArrayList<byte[]>(entry.getValue()));
+		}
+		final List<ChunkedValue> orphans = new ArrayList<ChunkedValue>();
+		for (int i = 0; i < chunkedValues.size(); i++) {
+			final ChunkedValue chunkedValue = chunkedValues.get(i);
+			final byte[] value = joinChunks(responses.get(i).get());
+			if (value == null) {
+				log.debug("chunk of value not found, header deleted. region=[{}], chunks=[{}]",
+				          chunkedValue.region, new String(chunkedValue.rawChunkKey, StringRedisSerializer.UTF_8));
+				orphans.add(chunkedValue);
+			}
+			values.get(chunkedValue.region).set(chunkedValue.index, value);
+		}
+		if (!orphans.isEmpty()) {
+			final List<List<byte[]>> orphanKeys = new ArrayList<List<byte[]>>(orphans.size());
+			final List<List<byte[]>> orphanArgs = new ArrayList<List<byte[]>>(orphans.size());
+			for (ChunkedValue orphan : orphans) {
+				orphanKeys.add(Arrays.asList(rawRegion(orphan.region), rawZkey(orphan.region)));
+				orphanArgs.add(Arrays.asList(rawKeysByRegion.get(orphan.region).get(orphan.index),
+				                             rawValuesByRegion.get(orphan.region).get(orphan.index)));
+			}
+			final List<Response<Object>> deleted = new ArrayList<Response<Object>>(orphans.size());
+			runWithPipeline(new JedisPipelinedCallback() {
+				@Override
+				public void execute(Pipeline pipeline) {
+					for (int i = 0; i < orphanKeys.size(); i++) {
+						deleted.add(DELETE_VALUE_SCRIPT.evalsha(pipeline, orphanKeys.get(i), orphanArgs.get(i)));
+					}
+				}
+			});
+			if (RedisScript.isNoScript(deleted.get(0))) {
+				run(new JedisCallback<Void>() {
+					@Override
+					public Void execute(Jedis jedis) {
+						for (int i = 0; i < orphanKeys.size(); i++) {
+							DELETE_VALUE_SCRIPT.eval(jedis, orphanKeys.get(i), orphanArgs.get(i));
+						}
+						return null;
+					}
+				});
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * the chunks of a value joined, null if a chunk is missing
+	 */
+	private static byte[] joinChunks(final List<byte[]> chunks) {
+		int length = 0;
+		for (byte[] chunk : chunks) {
+			if (chunk == null)
+				return null;
+			length += chunk.length;
+		}
+		byte[] value = new byte[length];
+		int offset = 0;
+		for (byte[] chunk : chunks) {
+			System.arraycopy(chunk, 0, value, offset, chunk.length);
+			offset += chunk.length;
+		}
+		return value;
+	}
+
+	/**
+	 * true if locked items with digest of the region stay in place, their locks are kept in the locks hash
+	 */
+	private boolean isLockedInPlace(final String region) {
+		RedisSerializer<Object> serializer = regionValueSerializers.get(region);
+		return serializer instanceof ReadWriteRedisSerializer && ((ReadWriteRedisSerializer) serializer).isDigest();
+	}
+
+	/**
+	 * true if the region holds query results, read by {@link #QUERY_RESULT_SCRIPT} and therefore not chunked
+	 */
+	private boolean isQueryResults(final String region) {
+		return regionValueSerializers.get(region) instanceof QueryResultsRedisSerializer;
+	}
+
+	/**
+	 * the values of a multiple get, the locks of locked items in place of the items
+	 */
+	private static List<byte[]> withLocks(final List<byte[]> rawValues, final List<byte[]> rawLocks) {
+		List<byte[]> values = new ArrayList<byte[]>(rawValues);
+		for (int i = 0; i < values.size(); i++) {
+			if (rawLocks.get(i) != null)
+				values.set(i, rawLocks.get(i));
+		}
+		return values;
+	}
+
+	/**
+	 * save the fields of a value, only the changed ones if the fields this node wrote or read last are still cached
+	 *
+	 * @param minimalPut
+	 *            '1' to save only if absent or older, '0' to save unless a newer version is cached, '' to save unconditionally
+	 * @param version
+	 *            version of the value written in the fields header, null if not versioned
+	 * @return true if the fields were saved
+	 */
+	private boolean setFields(final String region, final Object key, final Map<String, Object> fields, final int seconds,
+	                          final String minimalPut, final Long version) {
+		final OperationTrace trace = beginTrace(OperationTrace.PUT, "EVALSHA", region, key);
+		try {
+			final byte[] rawKey = rawKey(key);
+			final Map<String, byte[]> rawFields = new LinkedHashMap<String, byte[]>(fields.size());
+			final Map<String, Long> digests = new HashMap<String, Long>(fields.size());
+			long size = 0L;
+			for (Map.Entry<String, Object> field : fields.entrySet()) {
+				byte[] rawField = field.getValue() != null ? rawValue(region, field.getValue()) : new byte[0];
+				if (rawField == null) {
+					// NOTE: 이전 값이 남아 있지 않도록 삭제합니다.
+					del(region, key);
+					return false;
+				}
+				rawFields.put(field.getKey(), rawField);
+				digests.put(field.getKey(), SerializationTool.digest(rawField));
+				size += rawField.length;
+			}
+			if (!admit(region, key, size)) {
+				del(region, key);
+				return false;
+			}
+
+			final String digest = fieldsDigest(digests);
+			final String digestsKey = fieldDigestsKey(rawKey);
+			final FieldDigests previous = fieldDigests(region, digestsKey);
+			if (previous != null && previous.digests.keySet().equals(digests.keySet())) {
+				Map<String, byte[]> changed = new LinkedHashMap<String, byte[]>();
+				for (Map.Entry<String, byte[]> rawField : rawFields.entrySet()) {
+					if (!previous.digests.get(rawField.getKey()).equals(digests.get(rawField.getKey())))
+						changed.put(rawField.getKey(), rawField.getValue());
+				}
+				Object saved = evalSetFields(region, rawKey, rawFields.size(), previous.token, "", seconds, minimalPut,
+				                             version, previous.digest, digest, changed);
+				if (SAVED.equals(saved)) {
+					log.trace("changed fields saved. region=[{}], key=[{}], fields=[{}]", region, key, changed.keySet());
+					rememberFieldDigests(region, digestsKey, new FieldDigests(previous.token, digest, digests));
+					return true;
+				}
+				if (REJECTED.equals(saved))
+					return false;
+			}
+
+			final String token = Long.toHexString(ThreadLocalRandom.current().nextLong());
+			final String replacedToken = previous != null ? previous.token : "";
+			Object saved = evalSetFields(region, rawKey, rawFields.size(), token, replacedToken, seconds, minimalPut,
+			                             version, "", digest, rawFields);
+			if (saved instanceof byte[]) {
+				// NOTE: 다른 클라이언트가 저장한 fields hash 를 교체하므로, 그 hash 를 KEYS 에 지정하여 다시 저장합니다.
+				saved = evalSetFields(region, rawKey, rawFields.size(), token, replyString(saved), seconds,
+				                      minimalPut, version, "", digest, rawFields);
+			}
+			if (!SAVED.equals(saved))
+				return false;
+			rememberFieldDigests(region, digestsKey, new FieldDigests(token, digest, digests));
+			return true;
+		} finally {
+			endTrace(trace);
+		}
+	}
+
+	/**
+	 * @param replacedToken
+	 *            token of the fields hash of the value replaced by all fields, '' if unknown
+	 * @return 1 if saved, 0 if rejected by the version, -1 if the cached fields are not the expected ones,
+	 *         the token of the fields hash of the cached value if it is not the replaced one
+	 */
+	private Object evalSetFields(final String region, final byte[] rawKey, final int count, final String token,
+	                             final String replacedToken, final int seconds, final String minimalPut,
+	                             final Long version, final String expectedDigest, final String digest,
+	                             final Map<String, byte[]> rawFields) {
+		final List<byte[]> keys = Arrays.asList(rawRegion(region), rawZkey(region), rawFieldsKey(region, token),
+		                                        rawFieldsKey(region, replacedToken.length() > 0 ? replacedToken : token));
+
+		byte[] header = rawString("  " + count + ":" + token + (version != null ? ":" + version : "") + "\n");
+		header[0] = FIELDS_MARK;
+		header[1] = FIELDS;
+		final long now = System.currentTimeMillis();
+		final List<byte[]> args = new ArrayList<byte[]>(10 + 2 * rawFields.size());
+		args.add(rawKey);
+		args.add(rawString(String.valueOf(seconds > 0 ? now + seconds * 1000L : 0L)));
+		args.add(header);
+		args.add(rawString(String.valueOf(chunkExpiryInSeconds(seconds))));
+		args.add(rawString(expectedDigest));
+		args.add(rawString(digest));
+		args.add(rawString(String.valueOf(now)));
+		args.add(rawString(minimalPut));
+		args.add(rawString(version != null ? String.valueOf(version) : ""));
+		args.add(rawString(replacedToken));
+		for (Map.Entry<String, byte[]> rawField : rawFields.entrySet()) {
+			args.add(rawString(rawField.getKey()));
+			args.add(rawField.getValue());
+		}
+
+		return run(new JedisCallback<Object>() {
+			@Override
+			public Object execute(Jedis jedis) {
+				return SET_FIELDS_SCRIPT.eval(jedis, keys, args);
+			}
+		});
+	}
+
+	/**
+	 * reassemble the values stored as fields of a multiple get, with one HGETALL per value in one pipeline
+	 * for all regions. the expiration of the fields is not extended.
+	 *
+	 * @return reassembled values by region and index of their raw value, only regions with values stored as fields
+	 */
+	private Map<String, Map<Integer, Object>> readFields(final Map<String, List<byte[]>> rawValuesByRegion) {
+		final Map<String, Map<Integer, String>> headers = new HashMap<String, Map<Integer, String>>();
+		for (Map.Entry<String, List<byte[]>> entry : rawValuesByRegion.entrySet()) {
+			if (entry.getValue() == null)
+				continue;
+			for (int i = 0; i < entry.getValue().size(); i++) {
+				String header = fieldsHeader(entry.getValue().get(i));
+				if (header == null)
+					continue;
+				Map<Integer, String> regionHeaders = headers.get(entry.getKey());
+				if (regionHeaders == null) {
+					regionHeaders = new HashMap<Integer, String>();
+					headers.put(entry.getKey(), regionHeaders);
+				}
+				regionHeaders.put(i, header);
+			}
+		}
+		if (headers.isEmpty())
+			return Collections.emptyMap();
+
+		final Map<String, Map<Integer, Response<Map<byte[], byte[]>>>> responses =
+				new HashMap<String, Map<Integer, Response<Map<byte[], byte[]>>>>(headers.size());
+		runWithPipeline(new JedisPipelinedCallback() {
+			@Override
+			public void execute(Pipeline pipeline) {
+				for (Map.Entry<String, Map<Integer, String>> entry : headers.entrySet()) {
+					Map<Integer, Response<Map<byte[], byte[]>>> regionResponses =
+							new HashMap<Integer, Response<Map<byte[], byte[]>>>(entry.getValue().size());
+					for (Map.Entry<Integer, String> header : entry.getValue().entrySet()) {
+						regionResponses.put(header.getKey(),
+						                    pipeline.hgetAll(rawFieldsKey(entry.getKey(), fieldsToken(header.getValue()))));
+					}
+					responses.put(entry.getKey(), regionResponses);
+				}
+			}
+		});
+
+		Map<String, Map<Integer, Object>> values = new HashMap<String, Map<Integer, Object>>(headers.size());
+		for (Map.Entry<String, Map<Integer, String>> entry : headers.entrySet()) {
+			Map<Integer, Object> regionValues = new HashMap<Integer, Object>(entry.getValue().size());
+			for (Map.Entry<Integer, String> header : entry.getValue().entrySet()) {
+				Map<byte[], byte[]> rawFields = responses.get(entry.getKey()).get(header.getKey()).get();
+				regionValues.put(header.getKey(), joinFields(entry.getKey(), header.getValue(), rawFields, null));
+			}
+			values.put(entry.getKey(), regionValues);
+		}
+		return values;
+	}
+
+	/**
+	 * reassemble a value stored as fields from the fields of its hash
+	 *
+	 * @param digestsKey
+	 *            key to remember the digests of the fields under, null to not remember them
+	 * @return null if a field is missing
+	 */
+	private Object joinFields(final String region, final String header, final Map<byte[], byte[]> rawFields,
+	                          final String digestsKey) {
+		final RedisFieldCodec codec = regionFieldCodecs.get(region);
+		final int count = Integer.parseInt(header.substring(0, header.indexOf(':')));
+		if (codec == null || rawFields == null || rawFields.size() != count + 1) {
+			log.debug("fields of value not found. region=[{}], fields=[{}]", region, header);
+			return null;
+		}
+		String digest = null;
+		Map<String, Object> fields = new HashMap<String, Object>(count);
+		Map<String, Long> digests = new HashMap<String, Long>(count);
+		for (Map.Entry<byte[], byte[]> rawField : rawFields.entrySet()) {
+			String name = new String(rawField.getKey(), StringRedisSerializer.UTF_8);
+			if (FIELDS_DIGEST.equals(name)) {
+				digest = new String(rawField.getValue(), StringRedisSerializer.UTF_8);
+			} else {
+				byte[] rawValue = rawField.getValue();
+				fields.put(name, rawValue.length > 0 ? deserializeValue(region, rawValue) : null);
+				digests.put(name, SerializationTool.digest(rawValue));
+			}
+		}
+
+		Object value = codec.join(fields);
+		if (value != null && digest != null && digestsKey != null)
+			rememberFieldDigests(region, digestsKey, new FieldDigests(fieldsToken(header), digest, digests));
+		return value;
+	}
+
+	/**
+	 * token of the fields hash in the header of a value stored as fields
+	 */
+	private static String fieldsToken(final String header) {
+		return header.split(":")[1];
+	}
+
+	/**
+	 * [field count]:[token] of a value stored as fields, null if the value is not stored as fields
+	 */
+	private static String fieldsHeader(final byte[] rawValue) {
+		if (rawValue == null || rawValue.length < 4 || rawValue[0] != FIELDS_MARK || rawValue[1] != FIELDS)
+			return null;
+		for (int i = 2; i < rawValue.length; i++) {
+			if (rawValue[i] == '\n')
+				return new String(rawValue, 2, i - 2, StringRedisSerializer.UTF_8);
+		}
+		return null;
+	}
+
+	/**
+	 * digest of all fields, compared by the script before changed fields are applied
+	 */
+	private static String fieldsDigest(final Map<String, Long> digests) {
+		List<String> names = new ArrayList<String>(digests.keySet());
+		Collections.sort(names);
+		StringBuilder sb = new StringBuilder();
+		for (String name : names) {
+			sb.append(name).append('=').append(Long.toHexString(digests.get(name))).append(';');
+		}
+		return Long.toHexString(SerializationTool.digest(rawString(sb.toString())));
+	}
+
+	private static String fieldDigestsKey(final byte[] rawKey) {
+		return new String(rawKey, StringRedisSerializer.UTF_8);
+	}
+
+	/**
+	 * digests of the fields this node wrote or read last, null if not known
+	 */
+	private FieldDigests fieldDigests(final String region, final String digestsKey) {
+		ConcurrentMap<String, FieldDigests> digests = regionFieldDigests.get(region);
+		return digests != null ? digests.get(digestsKey) : null;
+	}
+
+	/**
+	 * forget the digests of the fields of a deleted value, so its next write does not try to apply changed fields
+	 * (like the write after an evicting update of a nonstrict read/write region)
+	 */
+	private void forgetFieldDigests(final String region, final byte[] rawKey) {
+		ConcurrentMap<String, FieldDigests> digests = regionFieldDigests.get(region);
+		if (digests != null)
+			digests.remove(fieldDigestsKey(rawKey));
+	}
+
+	/**
+	 * remember the digests of the fields of a value. the digests of a region are bounded, an arbitrary entry is
+	 * dropped when full, so a later write of that value sends all fields.
+	 */
+	private void rememberFieldDigests(final String region, final String digestsKey, final FieldDigests fieldDigests) {
+		ConcurrentMap<String, FieldDigests> digests = regionFieldDigests.get(region);
+		if (digests == null)
+			return;
+		if (digests.size() >= FIELD_DIGESTS_CAPACITY && !digests.containsKey(digestsKey)) {
+			Iterator<String> keys = digests.keySet().iterator();
+			if (keys.hasNext()) {
+				keys.next();
+				keys.remove();
+			}
+		}
+		digests.put(digestsKey, fieldDigests);
+	}
+
+	/**
+	 * [chunk count]:[token] of a chunked value, null if the value is not chunked
+	 */
+	private static String chunkHeader(final byte[] rawValue) {
+		if (rawValue == null || rawValue.length < 4 || rawValue[0] != CHUNK_MARK || rawValue[1] != CHUNKED)
+			return null;
+		for (int i = 2; i < rawValue.length; i++) {
+			if (rawValue[i] == '\n')
+				return new String(rawValue, 2, i - 2, StringRedisSerializer.UTF_8);
+		}
+		return null;
+	}
+
+	/**
+	 * chunks expire with the value. chunks of a value which does not expire get the default expiration, extended
+	 * by every read, so chunks of replaced values are not kept forever; a header whose chunks expired is deleted
+	 * by the read which misses them.
+	 */
+	private int chunkExpiryInSeconds(final int expirationInSeconds) {
+		if (expirationInSeconds > 0)
+			return expirationInSeconds;
+		return expiryInSeconds > 0 ? expiryInSeconds : DEFAULT_EXPIRY_IN_SECONDS;
+	}
+
+	/**
+	 * retrieve all cached items in specified region
+	 *
+	 * @param region
+	 *            region
+	 * @return collection of cached items
+	 */
+	public Set<Object> keysInRegion(String region) {
+		try {
+			final byte[] rawRegion = rawRegion(region);
+			Set<byte[]> rawKeys = run(new JedisCallback<Set<byte[]>>() {
+				@Override
+				public Set<byte[]> execute(Jedis jedis) {
+					return jedis.hkeys(rawRegion);
+				}
+			});
+
+			if (rawKeys != null)
+				return deserializeKeys(rawKeys);
+		} catch (Exception ignored) {
+		}
+		return new HashSet<Object>();
+	}
+
+	/**
+	 * get cache count in region
+	 *
+	 * @param region
+	 *            region
+	 * @return cache item count in region
+	 */
+	public Long keySizeInRegion(final String region) {
+		final byte[] rawRegion = rawRegion(region);
+		return run(new JedisCallback<Long>() {
+			@Override
+			public Long execute(Jedis jedis) {
+				return jedis.hlen(rawRegion);
+			}
+		});
+	}
+
+	/**
+	 * estimate the memory used by the region with MEMORY USAGE of its hash and expiration keys.
+	 * redis sums the sizes of the given number of sampled items and extrapolates to the whole region.
+	 *
+	 * @param region
+	 *            region
+	 * @param samples
+	 *            number of sampled items per key, 0 for all items
+	 * @return bytes used by the region, 0 if the region does not exist
+	 */
+	public long memoryUsageOfRegion(final String region, final int samples) {
+		final List<byte[]> keys = new ArrayList<byte[]>(2);
+		keys.add(rawRegion(region));
+		keys.add(rawZkey(region));
+		final List<byte[]> args = new ArrayList<byte[]>(1);
+		args.add(String.valueOf(samples).getBytes(StringRedisSerializer.UTF_8));
+
+		Object usage = run(new JedisCallback<Object>() {
+			@Override
+			public Object execute(Jedis jedis) {
+				return MEMORY_USAGE_SCRIPT.eval(jedis, keys, args);
+			}
+		});
+		return usage instanceof Long ? (Long) usage : 0L;
+	}
+
+	/**
+	 * get all cached items in specified region
+	 *
+	 * @param region
+	 *            region name
+	 * @return map of keys and all cached items in specified region
+	 */
+	public Map<Object, Object> hgetAll(final String region) {
+		final byte[] rawRegion = rawRegion(region);
+		Map<byte[], byte[]> rawMap = run(new JedisCallback<Map<byte[], byte[]>>() {
+			@Override
+			public Map<byte[], byte[]> execute(Jedis jedis) {
+				return jedis.hgetAll(rawRegion);
+			}
+		});
+
+		List<Object> keys = new ArrayList<Object>(rawMap.size());
+		List<byte[]> rawKeys = new ArrayList<byte[]>(rawMap.size());
+		List<byte[]> rawValues = new ArrayList<byte[]>(rawMap.size());
+		for (Map.Entry<byte[], byte[]> entry : rawMap.entrySet()) {
+			keys.add(deserializeKey(entry.getKey()));
+			rawKeys.add(entry.getKey());
+			rawValues.add(entry.getValue());
+		}
+		rawValues = readChunks(region, rawKeys, rawValues);
+		List<Object> values = deserializeValues(region, rawValues, readFields(Collections.singletonMap(region, rawValues)).get(region));
+
+		Map<Object, Object> map = new HashMap<Object, Object>();
+		for (int i = 0; i < keys.size(); i++) {
+			map.put(keys.get(i), values.get(i));
+		}
+		return map;
+	}
+
+	/**
+	 * multiple get cache items in specified region
+	 *
+	 * @param region
+	 *            region name
+	 * @param keys
+	 *            cache key collection to retrieve
+	 * @return cache items
+	 */
+	public List<Object> mget(final String region, final Collection<?> keys) {
+		final OperationTrace trace = beginTrace(OperationTrace.GET, "HMGET", region, null);
+		try {
+			final byte[] rawRegion = rawRegion(region);
+			final byte[][] rawKeys = rawKeys(keys);
+
+			List<byte[]> rawValues;
+			if (isLockedInPlace(region)) {
+				final List<Response<List<byte[]>>> responses = new ArrayList<Response<List<byte[]>>>(2);
+				runWithPipeline(new JedisPipelinedCallback() {
+					@Override
+					public void execute(Pipeline pipeline) {
+						responses.add(pipeline.hmget(rawRegion, rawKeys));
+						responses.add(pipeline.hmget(rawLocksKey(region), rawKeys));
+					}
+				});
+				rawValues = withLocks(responses.get(0).get(), responses.get(1).get());
+			} else {
+				rawValues = run(new JedisCallback<List<byte[]>>() {
+					@Override
+					public List<byte[]> execute(Jedis jedis) {
+						return jedis.hmget(rawRegion, rawKeys);
+					}
+				});
+			}
+			rawValues = readChunks(region, Arrays.asList(rawKeys), rawValues);
+			return deserializeValues(region, rawValues, readFields(Collections.singletonMap(region, rawValues)).get(region));
+		} finally {
+			endTrace(trace);
+		}
+	}
+
+	/**
+	 * multiple get cache items of several regions in one pipelined round trip, one HMGET per region.
+	 * expired items are returned as null, the expiration of the returned items is not extended.
+	 *
+	 * @param keysByRegion
+	 *            cache keys to retrieve by region name
+	 * @return cache items by region name, in the order of the keys
+	 */
+	public Map<String, List<Object>> mget(final Map<String, ? extends Collection<?>> keysByRegion) {
+		final OperationTrace trace = beginTrace(OperationTrace.GET, "HMGET ZSCORE", null, null);
+		try {
+			final Map<String, Response<List<byte[]>>> rawValues = new LinkedHashMap<String, Response<List<byte[]>>>();
+			final Map<String, List<byte[]>> rawKeysByRegion = new HashMap<String, List<byte[]>>();
+			final Map<String, Response<List<byte[]>>> rawLocks = new HashMap<String, Response<List<byte[]>>>();
+			final Map<String, List<Response<Double>>> scores = new HashMap<String, List<Response<Double>>>();
+
+			runWithPipeline(new JedisPipelinedCallback() {
+				@Override
+				public void execute(Pipeline pipeline) {
+					for (Map.Entry<String, ? extends Collection<?>> entry : keysByRegion.entrySet()) {
+						final String region = entry.getKey();
+						final byte[][] rawKeys = rawKeys(entry.getValue());
+						final byte[] rawZkey = rawZkey(region);
+						rawKeysByRegion.put(region, Arrays.asList(rawKeys));
+						rawValues.put(region, pipeline.hmget(rawRegion(region), rawKeys));
+						if (isLockedInPlace(region))
+							rawLocks.put(region, pipeline.hmget(rawLocksKey(region), rawKeys));
+
+						List<Response<Double>> regionScores = new ArrayList<Response<Double>>(rawKeys.length);
+						for (byte[] rawKey : rawKeys) {
+							regionScores.add(pipeline.zscore(rawZkey, rawKey));
+						}
+						scores.put(region, regionScores);
+					}
+				}
+			});
+
+			final long now = System.currentTimeMillis();
+			Map<String, List<byte[]>> valuesByRegion = new LinkedHashMap<String, List<byte[]>>(rawValues.size());
+			for (Map.Entry<String, Response<List<byte[]>>> entry : rawValues.entrySet()) {
+				List<byte[]> regionValues = new ArrayList<byte[]>(entry.getValue().get());
+				if (rawLocks.containsKey(entry.getKey()))
+					regionValues = withLocks(regionValues, rawLocks.get(entry.getKey()).get());
+				List<Response<Double>> regionScores = scores.get(entry.getKey());
+				for (int i = 0; i < regionValues.size(); i++) {
+					Double score = regionScores.get(i).get();
+					if (score != null && now > score.longValue())
+						regionValues.set(i, null);
+				}
+				valuesByRegion.put(entry.getKey(), regionValues);
+			}
+			// the chunks of all regions in one more round trip
+			valuesByRegion = readChunks(rawKeysByRegion, valuesByRegion, 0, null);
+
+			Map<String, Map<Integer, Object>> joined = readFields(valuesByRegion);
+			Map<String, List<Object>> values = new HashMap<String, List<Object>>(valuesByRegion.size());
+			for (Map.Entry<String, List<byte[]>> entry : valuesByRegion.entrySet()) {
+				values.put(entry.getKey(), deserializeValues(entry.getKey(), entry.getValue(), joined.get(entry.getKey())));
+			}
+			return values;
+		} finally {
+			endTrace(trace);
+		}
+	}
+
+	/**
+	 * save cache
+	 *
+	 * @param region
+	 *            region name
+	 * @param key
+	 *            cache key to save
+	 * @param value
+	 *            cache value to save
+	 */
+	public void set(String region, Object key, Object value) {
+		set(region, key, value, expiryInSeconds, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * save cache item
+	 *
+	 * @param region
+	 *            region name
+	 * @param key
+	 *            cache key to save
+	 * @param value
+	 *            cache value to save
+	 * @param timeoutInSeconds
+	 *            expire timeout in seconds
+	 */
+	public void set(String region, Object key, Object value, long timeoutInSeconds) {
+		set(region, key, value, timeoutInSeconds, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * save cache item
+	 *
+	 * @param region
+	 *            region name
+	 * @param key
+	 *            cache key to save
+	 * @param value
+	 *            cache value to save
+	 * @param timeout
+	 *            expire timeout
+	 * @param unit
+	 *            expire timeout unit
+	 */
+	public void set(final String region, final Object key, final Object value, long timeout, TimeUnit unit) {
+		final RedisFieldCodec codec = regionFieldCodecs.get(region);
+		final Map<String, Object> fields = codec != null ? codec.split(value) : null;
+		if (fields != null) {
+			setFields(region, key, fields, (int) unit.toSeconds(timeout), "", null);
+			return;
+		}
+
+		final OperationTrace trace = beginTrace(OperationTrace.PUT, "MULTI HSET ZADD", region, key);
+		try {
+			final byte[] rawRegion = rawRegion(region);
+			final byte[] rawKey = rawKey(key);
+			final byte[] rawValue = rawValue(region, value);
+			final int seconds = (int) unit.toSeconds(timeout);
+
+			if (!admit(region, key, rawValue)) {
+				// NOTE: 이전 값이 남아 있지 않도록 삭제합니다.
+				del(region, key);
+				return;
+			}
+
+			final int chunkSize = chunkSizeInBytes;
+			final boolean chunked = chunkSize > 0 && rawValue != null && rawValue.length > chunkSize && !isQueryResults(region);
+			final String token = chunked ? Long.toHexString(ThreadLocalRandom.current().nextLong()) : null;
+
+			runWithTx(new JedisTransactionalCallback() {
+				@Override
+				public void execute(Transaction tx) {
+					if (chunked) {
+						writeChunks(tx, region, rawKey, rawValue, chunkSize, token, chunkExpiryInSeconds(seconds));
+					} else {
+						tx.hset(rawRegion, rawKey, rawValue);
+					}
+					if (seconds > 0) {
+						final byte[] rawZkey = rawZkey(region);
+						final long score = System.currentTimeMillis() + seconds * 1000L;
+						tx.zadd(rawZkey, score, rawKey);
+					}
+				}
+			});
+		} finally {
+			endTrace(trace);
+		}
+	}
+
+	/**
+	 * save a loaded cache item in one round trip, unless a newer version of the item is cached.
+	 * the version is written as the header [0x00]['v'][decimal version]['\n'] before the value, reads skip it.
+	 * values saved this way are not chunked, values split by the field codec of the region are saved as fields
+	 * with the version in the fields header.
+	 *
+	 * @param region
+	 *            region name
+	 * @param key
+	 *            cache key to save
+	 * @param value
+	 *            cache value to save
+	 * @param expirationInSeconds
+	 *            expire timeout in seconds
+	 * @param version
+	 *            version of the value, null if the value is not versioned
+	 * @param minimalPut
+	 *            save the value only if the key is absent, or a value of an older version is cached
+	 * @return true if the value was saved
+	 */
+	public boolean setIfNewer(final String region, final Object key, final Object value, final int expirationInSeconds,
+	                          final Long version, final boolean minimalPut) {
+		final RedisFieldCodec codec = regionFieldCodecs.get(region);
+		final Map<String, Object> fields = codec != null ? codec.split(value) : null;
+		if (fields != null)
+			return setFields(region, key, fields, expirationInSeconds, minimalPut ? "1" : "0", version);
+
+		final OperationTrace trace = beginTrace(OperationTrace.PUT, "EVALSHA", region, key);
+		try {
+			final byte[] rawValue = rawValue(region, value);
+			if (rawValue == null || !admit(region, key, rawValue))
+				return false;
+
+			final byte[] rawVersionedValue;
+			if (version != null) {
+				byte[] header = rawString(" v" + version + "\n");
+				header[0] = VERSION_MARK;
+				rawVersionedValue = Arrays.copyOf(header, header.length + rawValue.length);
+				System.arraycopy(rawValue, 0, rawVersionedValue, header.length, rawValue.length);
+			} else {
+				rawVersionedValue = rawValue;
+			}
+
+			final long now = System.currentTimeMillis();
+			final List<byte[]> keys = Arrays.asList(rawRegion(region), rawZkey(region));
+			final List<byte[]> args = Arrays.asList(rawKey(key),
+			                                        rawString(String.valueOf(expirationInSeconds > 0 ? now + expirationInSeconds * 1000L : 0L)),
+			                                        rawString(String.valueOf(now)),
+			                                        rawString(minimalPut ? "1" : "0"),
+			                                        rawString(version != null ? String.valueOf(version) : ""),
+			                                        rawVersionedValue);
+			Object saved = run(new JedisCallback<Object>() {
+				@Override
+				public Object execute(Jedis jedis) {
+					return SET_IF_NEWER_SCRIPT.eval(jedis, keys, args);
+				}
+			});
+			return Long.valueOf(1L).equals(saved);
+		} finally {
+			endTrace(trace);
+		}
+	}
+
+	/**
+	 * delete cache item which is expired in region
+	 *
+	 * @param region
+	 *            region name
+	 */
+	public void expire(final String region) {
+		final OperationTrace trace = beginTrace(OperationTrace.EXPIRE, "ZRANGEBYSCORE HDEL ZREMRANGEBYSCORE", region, null);
+		try {
+			try {
+				final byte[] rawZkey = rawZkey(region);
+				final byte[] rawRegion = rawRegion(region);
+				final long score = System.currentTimeMillis();
+
+				// get key which score is less than current time
+				final Set<byte[]> rawKeys = run(new JedisCallback<Set<byte[]>>() {
+					@Override
+					public Set<byte[]> execute(Jedis jedis) {
+						return jedis.zrangeByScore(rawZkey, 0, score);
+					}
+				});
+
+				if (rawKeys != null && rawKeys.size() > 0) {
+					log.debug("delete expired cache item in region[{}] expire time=[{}]", region, score);
+
+					runWithPipeline(new JedisPipelinedCallback() {
+						@Override
+						public void execute(Pipeline pipeline) {
+							// delete cache item
+							for (final byte[] rawKey : rawKeys) {
+								pipeline.hdel(rawRegion, rawKey);
+							}
+							pipeline.zremrangeByScore(rawZkey, 0, score);
+						}
+					});
+
+				}
+			} catch (Exception ignored) {
+				log.warn("Error in Cache Expiration Method.", ignored);
+			}
+		} finally {
+			endTrace(trace);
+		}
+	}
+
+	/**
+	 * delete cache item in specified region.
+	 *
+	 * @param region
+	 *            region name
+	 * @param key
+	 *            cache key to delete
+	 * @return count of deleted key
+	 */
+	public Long del(final String region, final Object key) {
+		final OperationTrace trace = beginTrace(OperationTrace.REMOVE, "MULTI HDEL ZREM", region, key);
+		try {
+			final byte[] rawRegion = rawRegion(region);
+			final byte[] rawKey = rawKey(key);
+			final byte[] rawZkey = rawZkey(region);
+			final byte[] rawLocksKey = isLockedInPlace(region) ? rawLocksKey(region) : null;
+
+			runWithTx(new JedisTransactionalCallback() {
+				@Override
+				public void execute(Transaction tx) {
+					tx.hdel(rawRegion, rawKey);
+					tx.zrem(rawZkey, rawKey);
+					if (rawLocksKey != null)
+						tx.hdel(rawLocksKey, rawKey);
+				}
+			});
+			forgetFieldDigests(region, rawKey);
+
+			return 1L;
+		} finally {
+			endTrace(trace);
+		}
+	}
+
+	/**
+	 * multiplu delete cache items in specified region
+	 *
+	 * @param keys
+	 *            key collection to delete
+	 */
+	public void mdel(final String region, final Collection<?> keys) {
+		final OperationTrace trace = beginTrace(OperationTrace.REMOVE, "MULTI HDEL ZREM", region, null);
+		try {
+
+			final byte[] rawRegion = rawRegion(region);
+			final byte[] rawZkey = rawZkey(region);
+			final byte[][] rawKeys = rawKeys(keys);
+			final byte[] rawLocksKey = isLockedInPlace(region) ? rawLocksKey(region) : null;
+
+			runWithTx(new JedisTransactionalCallback() {
+				@Override
+				public void execute(Transaction tx) {
+					for (byte[] rawKey : rawKeys) {
+						tx.hdel(rawRegion, rawKey);
+						tx.zrem(rawZkey, rawKey);
+					}
+					if (rawLocksKey != null && rawKeys.length > 0)
+						tx.hdel(rawLocksKey, rawKeys);
+				}
+			});
+			for (byte[] rawKey : rawKeys) {
+				forgetFieldDigests(region, rawKey);
+			}
+		} finally {
+			endTrace(trace);
+		}
+	}
+
+	/**
+	 * soft lock an item of a read/write region, the lock replaces the item until it is released
+	 *
+	 * @param region
+	 *            region name
+	 * @param key
+	 *            item key
+	 * @param expirationInSeconds
+	 *            expiration timeout in seconds
+	 * @param timeout
+	 *            timestamp the lock expires at
+	 * @param now
+	 *            current timestamp
+	 * @param lockId
+	 *            id of a new lock
+	 * @return the lock, the existing lock if the item is locked concurrently. the lock has the digest of the locked
+	 *         item if the item has a digest and was left in place.
+	 */
+	public ReadWriteSoftLock lockItem(final String region, final Object key, final int expirationInSeconds,
+	                                  final long timeout, final long now, final String lockId) {
+		final OperationTrace trace = beginTrace(OperationTrace.PUT, "EVALSHA", region, key);
+		try {
+			List<?> reply = (List<?>) evalSoftLockScript(LOCK_ITEM_SCRIPT, region, key, expirationInSeconds,
+			                                             rawString(String.valueOf(timeout)), rawString(lockId),
+			                                             rawString(String.valueOf(now)));
+			String digest = replyString(reply.get(1));
+			return new ReadWriteSoftLock(replyString(reply.get(0)), digest.isEmpty() ? null : digest);
+		} finally {
+			endTrace(trace);
+		}
+	}
+
+	/**
+	 * release a soft lock, values loaded by transactions started before the unlock timestamp are not cached.
+	 * a lock which expired meanwhile is replaced by a released lock.
+	 *
+	 * @return true if the lock was released, false if it had expired
+	 */
+	public boolean unlockItem(final String region, final Object key, final int expirationInSeconds,
+	                          final String lockId, final long unlockTimestamp) {
+		final OperationTrace trace = beginTrace(OperationTrace.PUT, "EVALSHA", region, key);
+		try {
+			Object released = evalSoftLockScript(UNLOCK_ITEM_SCRIPT, region, key, expirationInSeconds,
+			                                     rawString(lockId), rawString(String.valueOf(unlockTimestamp)));
+			return Long.valueOf(1L).equals(released);
+		} finally {
+			endTrace(trace);
+		}
+	}
+
+	/**
+	 * replace a soft lock by the updated item, or only release it if the item was locked concurrently.
+	 * if the updated item has the digest of the locked item, which was left in place, it is not sent:
+	 * the script only deletes the lock, so an unchanged item is neither sent nor rewritten.
+	 *
+	 * @return true if the item was cached
+	 */
+	public boolean replaceLockedItem(final String region, final Object key, final int expirationInSeconds,
+	                                 final ReadWriteSoftLock lock, final long unlockTimestamp, final Object item) {
+		final OperationTrace trace = beginTrace(OperationTrace.PUT, "EVALSHA", region, key);
+		try {
+			byte[] rawItem = rawValue(region, item);
+			final boolean unchanged = lock.getDigest() != null && lock.getDigest().equals(ReadWriteRedisSerializer.digestOf(rawItem));
+			if (unchanged || (rawItem != null && !admit(region, key, rawItem)))
+				rawItem = null;
+			Object replaced = evalSoftLockScript(REPLACE_LOCK_SCRIPT, region, key, expirationInSeconds,
+			                                     rawString(lock.getLockId()), rawString(String.valueOf(unlockTimestamp)),
+			                                     rawItem != null ? rawItem : new byte[0],
+			                                     rawString(unchanged ? lock.getDigest() : ""));
+			return Long.valueOf(1L).equals(replaced);
+		} finally {
+			endTrace(trace);
+		}
+	}
+
+	/**
+	 * cache a loaded item if the key is absent, locked by a lock which expired or was released
+	 * before the transaction started or, unless minimalPut, cached with an older version
+	 *
+	 * @param version
+	 *            version of the item as a number, null if not versioned
+	 * @param minimalPut
+	 *            do not replace a cached item
+	 * @return true if the item was cached
+	 */
+	public boolean putFromLoad(final String region, final Object key, final int expirationInSeconds,
+	                           final long txTimestamp, final Long version, final boolean minimalPut, final Object item) {
+		final OperationTrace trace = beginTrace(OperationTrace.PUT, "EVALSHA", region, key);
+		try {
+			final byte[] rawItem = rawValue(region, item);
+			if (rawItem == null || !admit(region, key, rawItem))
+				return false;
+			Object cached = evalSoftLockScript(PUT_FROM_LOAD_SCRIPT, region, key, expirationInSeconds,
+			                                   rawString(String.valueOf(txTimestamp)), rawString(minimalPut ? "1" : "0"),
+			                                   rawString(version != null ? String.valueOf(version) : ""), rawItem);
+			return Long.valueOf(1L).equals(cached);
+		} finally {
+			endTrace(trace);
+		}
+	}
+
+	/**
+	 * cache an item if the key is absent
+	 *
+	 * @return true if the item was cached
+	 */
+	public boolean putIfAbsent(final String region, final Object key, final int expirationInSeconds, final Object item) {
+		final OperationTrace trace = beginTrace(OperationTrace.PUT, "EVALSHA", region, key);
+		try {
+			final byte[] rawItem = rawValue(region, item);
+			if (rawItem == null || !admit(region, key, rawItem))
+				return false;
+			Object cached = evalSoftLockScript(PUT_IF_ABSENT_SCRIPT, region, key, expirationInSeconds, rawItem);
+			return Long.valueOf(1L).equals(cached);
+		} finally {
+			endTrace(trace);
+		}
+	}
+
+	private Object evalSoftLockScript(final RedisScript script, final String region, final Object key,
+	                                  final int expirationInSeconds, final byte[]... args) {
+		final List<byte[]> keys = new ArrayList<byte[]>(3);
+		keys.add(rawRegion(region));
+		keys.add(rawZkey(region));
+		keys.add(rawLocksKey(region));
+
+		final long score = expirationInSeconds > 0 ? System.currentTimeMillis() + expirationInSeconds * 1000L : 0L;
+		final List<byte[]> scriptArgs = new ArrayList<byte[]>(2 + args.length);
+		scriptArgs.add(rawKey(key));
+		scriptArgs.add(rawString(String.valueOf(score)));
+		scriptArgs.addAll(Arrays.asList(args));
+
+		return run(new JedisCallback<Object>() {
+			@Override
+			public Object execute(Jedis jedis) {
+				return script.eval(jedis, keys, scriptArgs);
+			}
+		});
+	}
+
+	/**
+	 * false if the value exceeds the maximum value size of the region, counted as rejection
+	 */
+	private boolean admit(final String region, final Object key, final byte[] rawValue) {
+		return rawValue == null || admit(region, key, (long) rawValue.length);
+	}
+
+	private boolean admit(final String region, final Object key, final long size) {
+		final int maxValueSize = getMaxValueSize(region);
+		if (maxValueSize > 0 && size > maxValueSize) {
+			log.debug("value exceeds max value size, not cached. region=[{}], key=[{}], size=[{}], maxValueSize=[{}]",
+			          region, key, size, maxValueSize);
+			metrics.getRegionMetrics(region).recordRejection();
+			return false;
+		}
+		return true;
+	}
+
+	private static byte[] rawString(final String value) {
+		return value.getBytes(StringRedisSerializer.UTF_8);
+	}
+
+	private static String replyString(final Object reply) {
+		return reply instanceof byte[] ? new String((byte[]) reply, StringRedisSerializer.UTF_8) : String.valueOf(reply);
+	}
+
+	/**
+	 * delete region
+	 *
+	 * @param region
+	 *            region name to delete
+	 */
+	public void deleteRegion(final String region) throws JedisCacheException {
+		final OperationTrace trace = beginTrace(OperationTrace.CLEAR, "MULTI DEL", region, null);
+		try {
+			log.debug("delete region region=[{}]", region);
+
+			final byte[] rawRegion = rawRegion(region);
+			final byte[] rawZkey = rawZkey(region);
+			final byte[] rawLocksKey = rawLocksKey(region);
+
+			runWithTx(new JedisTransactionalCallback() {
+				@Override
+				public void execute(Transaction tx) {
+					tx.del(rawRegion);
+					tx.del(rawZkey);
+					tx.del(rawLocksKey);
+				}
+			});
+		} finally {
+			endTrace(trace);
+		}
+	}
+
+	/**
+	 * hash field of the query space timestamp of the specified key, prefixed like item keys
+	 */
+	public String timestampField(final Object key) {
+		return dataSourceContextHolderKey.getKey() + "#" + key.toString();
+	}
+
+	/**
+	 * channel of the invalidation messages of the timestamps region
+	 */
+	public static String timestampsChannel(final String region) {
+		return TIMESTAMPS_CHANNEL_PREFIX + region;
+	}
+
+	/**
+	 * get query space timestamps stored as plain numbers, in one HMGET
+	 *
+	 * @param region
+	 *            timestamps region
+	 * @param fields
+	 *            fields from {@link #timestampField(Object)}
+	 * @return timestamp by field, null if not exists
+	 */
+	public Map<String, Long> getTimestamps(final String region, final List<String> fields) {
+		final OperationTrace trace = beginTrace(OperationTrace.GET, "HMGET", region, null);
+		try {
+			final String[] rawFields = fields.toArray(new String[fields.size()]);
+			List<String> values = run(new JedisCallback<List<String>>() {
+				@Override
+				public List<String> execute(Jedis jedis) {
+					return jedis.hmget(region, rawFields);
+				}
+			});
+			Map<String, Long> timestamps = new HashMap<String, Long>(fields.size());
+			for (int i = 0; i < rawFields.length; i++) {
+				timestamps.put(rawFields[i], parseTimestamp(values.get(i)));
+			}
+			if (trace != null)
+				trace.setHit(timestamps.get(rawFields[0]) != null);
+			return timestamps;
+		} finally {
+			endTrace(trace);
+		}
+	}
+
+	/**
+	 * get all query space timestamps of the region
+	 */
+	public Map<String, Long> getAllTimestamps(final String region) {
+		Map<String, String> values = run(new JedisCallback<Map<String, String>>() {
+			@Override
+			public Map<String, String> execute(Jedis jedis) {
+				return jedis.hgetAll(region);
+			}
+		});
+		Map<String, Long> timestamps = new HashMap<String, Long>(values.size());
+		for (Map.Entry<String, String> value : values.entrySet()) {
+			Long timestamp = parseTimestamp(value.getValue());
+			if (timestamp != null)
+				timestamps.put(value.getKey(), timestamp);
+		}
+		return timestamps;
+	}
+
+	/**
+	 * save a query space timestamp as a plain number, without expiration, and publish the invalidation
+	 */
+	public void setTimestamp(final String region, final String field, final long timestamp) {
+		final OperationTrace trace = beginTrace(OperationTrace.PUT, "HSET PUBLISH", region, field);
+		try {
+			runWithPipeline(new JedisPipelinedCallback() {
+				@Override
+				public void execute(Pipeline pipeline) {
+					pipeline.hset(region, field, String.valueOf(timestamp));
+					pipeline.publish(timestampsChannel(region), field);
+				}
+			});
+		} finally {
+			endTrace(trace);
+		}
+	}
+
+	/**
+	 * remove a query space timestamp and publish the invalidation
+	 */
+	public void removeTimestamp(final String region, final String field) {
+		final OperationTrace trace = beginTrace(OperationTrace.REMOVE, "HDEL PUBLISH", region, field);
+		try {
+			runWithPipeline(new JedisPipelinedCallback() {
+				@Override
+				public void execute(Pipeline pipeline) {
+					pipeline.hdel(region, field);
+					pipeline.publish(timestampsChannel(region), field);
+				}
+			});
+		} finally {
+			endTrace(trace);
+		}
+	}
+
+	/**
+	 * remove all query space timestamps and publish the invalidation of all of them
+	 */
+	public void deleteTimestamps(final String region) {
+		final OperationTrace trace = beginTrace(OperationTrace.CLEAR, "DEL PUBLISH", region, null);
+		try {
+			runWithPipeline(new JedisPipelinedCallback() {
+				@Override
+				public void execute(Pipeline pipeline) {
+					pipeline.del(region);
+					pipeline.publish(timestampsChannel(region), ALL_TIMESTAMPS);
+				}
+			});
+		} finally {
+			endTrace(trace);
+		}
+	}
+
+	/**
+	 * subscribe the channels on a dedicated connection, blocks until the subscriber unsubscribes
+	 * or the connection fails. the connection is not borrowed from the pool, so a subscription
+	 * neither holds a pooled connection nor times out while no message is published.
+	 */
+	public void subscribe(final JedisPubSub subscriber, final String... channels) {
+		Jedis jedis = openConnection();
+		try {
+			jedis.subscribe(subscriber, channels);
+		} finally {
+			jedis.close();
+		}
+	}
+
+	/**
+	 * open a connection outside of the pool to the server and database of the pooled connections, without read timeout
+	 */
+	private Jedis openConnection() {
+		String host;
+		int port;
+		int connectionTimeout;
+		long database;
+		Jedis pooled = getResource();
+		try {
+			Client client = pooled.getClient();
+			host = client.getHost();
+			port = client.getPort();
+			connectionTimeout = client.getConnectionTimeout();
+			database = client.getDB();
+		} finally {
+			pooled.close();
+		}
+
+		Jedis jedis = new Jedis(host, port, connectionTimeout, 0);
+		try {
+			if (password != null)
+				jedis.auth(password);
+			if (database != 0L)
+				jedis.select((int) database);
+		} catch (RuntimeException e) {
+			jedis.close();
+			throw e;
+		}
+		return jedis;
+	}
+
+	private static Long parseTimestamp(final String value) {
+		if (value == null)
+			return null;
+		try {
+			return Long.valueOf(value);
+		} catch (NumberFormatException e) {
+			log.debug("Ignore timestamp which is not a number. value=[{}]", value);
+			return null;
+		}
+	}
+
+	/**
+	 * We want nextTimestamp to return a long that is greater than previous
+	 * calls to nextTimestamp.
+	 *
+	 * The simplest algorithm would be to ignore Redis and return
+	 * currentTimeMillis. However, different VMs can have small drifts in their
+	 * currentTimeMillis and this algorithm isn't safe in multi VM clusters.
+	 *
+	 * A better algorithm would be: SETNX rawKey currentTimeMillis INCR rawKey
+	 *
+	 * However, there are two problems. 1. Clients can have small drift in their
+	 * currentTimeMillis. If rawKey had been set but later evicted then a client
+	 * which is behind other clients in currentTimeMillis might be the first to
+	 * call SETNX and issue set to a value that had previously been issued by
+	 * another client. 2. Master-slave replication is not synchronous. Therefore
+	 * a slave promoted to master might have missed some calls to INCR. As a
+	 * result we might create timestamps that have already been issued.
+	 *
+	 * Instead we do the following in one lua script, atomically and in one round
+	 * trip: current = GET rawKey, new = max(current, currentTimeMillis) + 1,
+	 * SET rawKey $new
+	 *
+	 * If a client has drifted behind in currentTimeMillis then the current
+	 * timestamp will just be incremented. This solves 1. If current value is
+	 * behind we set to currentTimeMillis +1. This fixes 2.
+	 *
+	 * The timestamp is stored as a decimal string. A value serialized by an older
+	 * version is read once on the client and replaced by the script.
+	 */
+	public long nextTimestamp(final Object key) {
+		final OperationTrace trace = beginTrace(OperationTrace.TIMESTAMP, "EVALSHA", null, key);
+		try {
+			final byte[] rawKey = rawKey(key);
+
+			long timestamp = evalNextTimestamp(rawKey, System.currentTimeMillis(), false);
+			if (timestamp < 0) {
+				timestamp = convertTimestamp(key, rawKey, System.currentTimeMillis());
+			}
+			log.debug("updated timestamp: key=[{}], timestamp=[{}]", key, timestamp);
+			return timestamp;
+		} finally {
+			endTrace(trace);
+		}
+	}
+
+	/**
+	 * Cleanup any resources thathe JedisClient might have references to.
+	 */
+	public void destroy() {
+		if (jedisPool != null) {
+			jedisPool.destroy();
+		}
+	}
+
+	/**
+	 * publish the last timestamp of a caller on the stored timestamp, a monotonic floor shared with
+	 * {@link #nextTimestamp(Object)}, and read the redis clock, in one round trip.
+	 *
+	 * @param key
+	 *            timestamp key shared with {@link #nextTimestamp(Object)}
+	 * @param floor
+	 *            last timestamp of the caller
+	 * @return the next timestamp above the floor of all callers and redis time in millis
+	 */
+	public long[] leaseTimestamps(final Object key, final long floor) {
+		final OperationTrace trace = beginTrace(OperationTrace.TIMESTAMP, "TIME EVALSHA", null, key);
+		try {
+			final byte[] rawKey = rawKey(key);
+			final List<byte[]> args = timestampArgs(floor, false);
+			final List<Response<?>> responses = new ArrayList<Response<?>>(2);
+
+			runWithPipeline(new JedisPipelinedCallback() {
+				@Override
+				public void execute(Pipeline pipeline) {
+					responses.add(pipeline.time());
+					responses.add(NEXT_TIMESTAMP_SCRIPT.evalsha(pipeline, Collections.singletonList(rawKey), args));
+				}
+			});
+			@SuppressWarnings("unchecked")
+			List<String> time = (List<String>) responses.get(0).get();
+			long redisMillis = Long.parseLong(time.get(0)) * 1000L + Long.parseLong(time.get(1)) / 1000L;
+
+			long first = RedisScript.isNoScript(responses.get(1))
+					? evalNextTimestamp(rawKey, floor, false)
+					: ((Number) responses.get(1).get()).longValue();
+			if (first < 0) {
+				first = convertTimestamp(key, rawKey, floor);
 			}
-		});
+			log.debug("leased timestamps: key=[{}], first=[{}]", key, first);
+			return new long[] { first, redisMillis };
+		} finally {
+			endTrace(trace);
+		}
 	}
 
 	/**
-	 * get all cached items in specified region
-	 *
-	 * @param region
-	 *            region name
-	 * @return map of keys and all cached items in specified region
+	 * run {@link #NEXT_TIMESTAMP_SCRIPT}, -1 if the stored timestamp is not a number and overwrite is false
 	 */
-	public Map<Object, Object> hgetAll(String region) {
-		final byte[] rawRegion = rawRegion(region);
-		Map<byte[], byte[]> rawMap = run(new JedisCallback<Map<byte[], byte[]>>() {
+	private long evalNextTimestamp(final byte[] rawKey, final long floor, final boolean overwrite) {
+		final List<byte[]> args = timestampArgs(floor, overwrite);
+
+		Object timestamp = run(new JedisCallback<Object>() {
 			@Override
-			public Map<byte[], byte[]> execute(Jedis jedis) {
-				return jedis.hgetAll(rawRegion);
+			public Object execute(Jedis jedis) {
+				return NEXT_TIMESTAMP_SCRIPT.eval(jedis, Collections.singletonList(rawKey), args);
 			}
 		});
-
-		Map<Object, Object> map = new HashMap<Object, Object>();
-		for (Map.Entry<byte[], byte[]> entry : rawMap.entrySet()) {
-			Object key = deserializeKey(entry.getKey());
-			Object value = deserializeValue(entry.getValue());
-			map.put(key, value);
-		}
-		return map;
+		return ((Number) timestamp).longValue();
 	}
 
 	/**
-	 * multiple get cache items in specified region
-	 *
-	 * @param region
-	 *            region name
-	 * @param keys
-	 *            cache key collection to retrieve
-	 * @return cache items
+	 * replace a timestamp serialized by an older version, which the script can not read
 	 */
-	public List<Object> mget(final String region, final Collection<?> keys) {
-		final byte[] rawRegion = rawRegion(region);
-		final byte[][] rawKeys = rawKeys(keys);
+	private long convertTimestamp(final Object key, final byte[] rawKey, final long floor) {
+		Object legacyTimestamp = deserializeValue(getRawValue(rawKey));
+		log.info("convert serialized timestamp. key=[{}], timestamp=[{}]", key, legacyTimestamp);
+		long newFloor = legacyTimestamp instanceof Long ? Math.max(floor, (Long) legacyTimestamp) : floor;
+		return evalNextTimestamp(rawKey, newFloor, true);
+	}
+
+	private List<byte[]> timestampArgs(final long floor, final boolean overwrite) {
+		final List<byte[]> args = new ArrayList<byte[]>(2);
+		args.add(String.valueOf(floor).getBytes(StringRedisSerializer.UTF_8));
+		args.add((overwrite ? "1" : "0").getBytes(StringRedisSerializer.UTF_8));
+		return args;
+	}
 
-		List<byte[]> rawValues = run(new JedisCallback<List<byte[]>>() {
+	private byte[] getRawValue(final byte[] rawKey) {
+		return run(new JedisCallback<byte[]>() {
 			@Override
-			public List<byte[]> execute(Jedis jedis) {
-				return jedis.hmget(rawRegion, rawKeys);
+			public byte[] execute(Jedis jedis) {
+				return jedis.get(rawKey);
 			}
 		});
-		return deserializeValues(rawValues);
 	}
 
 	/**
-	 * save cache
+	 * get raw bytes stored under the specified plain redis key
 	 *
-	 * @param region
-	 *            region name
 	 * @param key
-	 *            cache key to save
-	 * @param value
-	 *            cache value to save
+	 *            redis key (not a region item key)
+	 * @return stored bytes, if not exists return null.
 	 */
-	public void set(String region, Object key, Object value) {
-		set(region, key, value, expiryInSeconds, TimeUnit.SECONDS);
+	public byte[] getRaw(final String key) {
+		final byte[] rawKey = rawRegion(key);
+		return run(new JedisCallback<byte[]>() {
+			@Override
+			public byte[] execute(Jedis jedis) {
+				return jedis.get(rawKey);
+			}
+		});
 	}
 
 	/**
-	 * save cache item
+	 * save raw bytes under the specified plain redis key, without expiration
 	 *
-	 * @param region
-	 *            region name
 	 * @param key
-	 *            cache key to save
+	 *            redis key (not a region item key)
 	 * @param value
-	 *            cache value to save
-	 * @param timeoutInSeconds
-	 *            expire timeout in seconds
+	 *            bytes to save
 	 */
-	public void set(String region, Object key, Object value, long timeoutInSeconds) {
-		set(region, key, value, timeoutInSeconds, TimeUnit.SECONDS);
+	public void setRaw(final String key, final byte[] value) {
+		final byte[] rawKey = rawRegion(key);
+		run(new JedisCallback<String>() {
+			@Override
+			public String execute(Jedis jedis) {
+				return jedis.set(rawKey, value);
+			}
+		});
 	}
 
 	/**
-	 * save cache item
+	 * save raw bytes under the specified plain redis key if it does not exist, expiring after the given time
 	 *
-	 * @param region
-	 *            region name
 	 * @param key
-	 *            cache key to save
+	 *            redis key (not a region item key)
 	 * @param value
-	 *            cache value to save
-	 * @param timeout
-	 *            expire timeout
-	 * @param unit
-	 *            expire timeout unit
+	 *            bytes to save
+	 * @param expiryInMillis
+	 *            expiration of the key in millis
+	 * @return true if saved, false if the key exists
 	 */
-	public void set(final String region, final Object key, final Object value, long timeout, TimeUnit unit) {
-		final byte[] rawRegion = rawRegion(region);
-		final byte[] rawKey = rawKey(key);
-		final byte[] rawValue = rawValue(value);
-		final int seconds = (int) unit.toSeconds(timeout);
-
-		runWithTx(new JedisTransactionalCallback() {
+	public boolean setRawIfAbsent(final String key, final byte[] value, final long expiryInMillis) {
+		final byte[] rawKey = rawRegion(key);
+		return "OK".equals(run(new JedisCallback<String>() {
 			@Override
-			public void execute(Transaction tx) {
-				tx.hset(rawRegion, rawKey, rawValue);
-				if (seconds > 0 && !region.contains("UpdateTimestampsCache")) {
-					final byte[] rawZkey = rawZkey(region);
-					final long score = System.currentTimeMillis() + seconds * 1000L;
-					tx.zadd(rawZkey, score, rawKey);
-				}
+			public String execute(Jedis jedis) {
+				return jedis.set(rawKey, value, rawString("NX"), rawString("PX"), expiryInMillis);
 			}
-		});
+		}));
 	}
 
 	/**
-	 * delete cache item which is expired in region
+	 * delete the specified plain redis key
 	 *
-	 * @param region
-	 *            region name
+	 * @param key
+	 *            redis key (not a region item key)
 	 */
-	public void expire(final String region) {
-
-		try {
-			final byte[] rawZkey = rawZkey(region);
-			final byte[] rawRegion = rawRegion(region);
-			final long score = System.currentTimeMillis();
-
-			// get key which score is less than current time
-			final Set<byte[]> rawKeys = run(new JedisCallback<Set<byte[]>>() {
-				@Override
-				public Set<byte[]> execute(Jedis jedis) {
-					return jedis.zrangeByScore(rawZkey, 0, score);
-				}
-			});
-
-			if (rawKeys != null && rawKeys.size() > 0) {
-				log.debug("delete expired cache item in region[{}] expire time=[{}]", region, score);
-
-				runWithPipeline(new JedisPipelinedCallback() {
-					@Override
-					public void execute(Pipeline pipeline) {
-						// delete cache item
-						for (final byte[] rawKey : rawKeys) {
-							pipeline.hdel(rawRegion, rawKey);
-						}
-						pipeline.zremrangeByScore(rawZkey, 0, score);
-					}
-				});
-
+	public void delRaw(final String key) {
+		final byte[] rawKey = rawRegion(key);
+		run(new JedisCallback<Long>() {
+			@Override
+			public Long execute(Jedis jedis) {
+				return jedis.del(rawKey);
 			}
-		} catch (Exception ignored) {
-			log.warn("Error in Cache Expiration Method.", ignored);
-		}
+		});
 	}
 
 	/**
-	 * delete cache item in specified region.
+	 * increment counter stored under the specified plain redis key
 	 *
-	 * @param region
-	 *            region name
 	 * @param key
-	 *            cache key to delete
-	 * @return count of deleted key
+	 *            redis key (not a region item key)
+	 * @return counter value after increment
 	 */
-	public Long del(final String region, final Object key) {
-		final byte[] rawRegion = rawRegion(region);
-		final byte[] rawKey = rawKey(key);
-		final byte[] rawZkey = rawZkey(region);
-
-		runWithTx(new JedisTransactionalCallback() {
+	public long increment(final String key) {
+		final byte[] rawKey = rawRegion(key);
+		return run(new JedisCallback<Long>() {
 			@Override
-			public void execute(Transaction tx) {
-				tx.hdel(rawRegion, rawKey);
-				tx.zrem(rawZkey, rawKey);
+			public Long execute(Jedis jedis) {
+				return jedis.incr(rawKey);
 			}
 		});
-
-		return 1L;
 	}
 
 	/**
-	 * multiplu delete cache items in specified region
+	 * add the member to the specified plain redis sorted set, remove members scored below minScore
+	 * and get the remaining members, in one pipeline.
 	 *
-	 * @param keys
-	 *            key collection to delete
+	 * @param indexKey
+	 *            redis key of the sorted set (not a region)
+	 * @return members of the sorted set, including the added member
 	 */
-	public void mdel(final String region, final Collection<?> keys) {
-
-		final byte[] rawRegion = rawRegion(region);
-		final byte[] rawZkey = rawZkey(region);
-		final byte[][] rawKeys = rawKeys(keys);
-
-		runWithTx(new JedisTransactionalCallback() {
+	public Set<String> addMember(final String indexKey, final String member, final long score, final long minScore) {
+		return run(new JedisCallback<Set<String>>() {
 			@Override
-			public void execute(Transaction tx) {
-				for (byte[] rawKey : rawKeys) {
-					tx.hdel(rawRegion, rawKey);
-					tx.zrem(rawZkey, rawKey);
-				}
+			public Set<String> execute(Jedis jedis) {
+				Pipeline pipeline = jedis.pipelined();
+				pipeline.zadd(indexKey, score, member);
+				pipeline.zremrangeByScore(indexKey, "-inf", "(" + minScore);
+				Response<Set<String>> members = pipeline.zrange(indexKey, 0, -1);
+				pipeline.sync();
+				return members.get();
 			}
 		});
 	}
 
 	/**
-	 * delete region
+	 * add the increments to the counters of the specified plain redis hash and index the hash
+	 * by score in a plain sorted set, in one pipeline. index entries scored below minScore are removed.
 	 *
-	 * @param region
-	 *            region name to delete
+	 * @param key
+	 *            redis key of the counter hash (not a region)
+	 * @param increments
+	 *            increment by hash field
+	 * @param expireInSeconds
+	 *            expiration of the counter hash
+	 * @param indexKey
+	 *            redis key of the index sorted set
 	 */
-	public void deleteRegion(final String region) throws JedisCacheException {
-		log.debug("delete region region=[{}]", region);
-
-		final byte[] rawRegion = rawRegion(region);
-		final byte[] rawZkey = rawZkey(region);
-
-		runWithTx(new JedisTransactionalCallback() {
+	public void incrementCounters(final String key, final Map<String, Long> increments, final int expireInSeconds,
+								  final String indexKey, final long score, final long minScore) {
+		runWithPipeline(new JedisPipelinedCallback() {
 			@Override
-			public void execute(Transaction tx) {
-				tx.del(rawRegion);
-				tx.del(rawZkey);
+			public void execute(Pipeline pipeline) {
+				for (Map.Entry<String, Long> increment : increments.entrySet()) {
+					pipeline.hincrBy(key, increment.getKey(), increment.getValue());
+				}
+				pipeline.expire(key, expireInSeconds);
+				pipeline.zadd(indexKey, score, key);
+				pipeline.zremrangeByScore(indexKey, "-inf", "(" + minScore);
 			}
 		});
 	}
 
 	/**
-	 * We want nextTimestamp to return a long that is greater than previous
-	 * calls to nextTimestamp.
-	 *
-	 * The simplest algorithm would be to ignore Redis and return
-	 * currentTimeMillis. However, different VMs can have small drifts in their
-	 * currentTimeMillis and this algorithm isn't safe in multi VM clusters.
-	 *
-	 * A better algorithm would be: SETNX rawKey currentTimeMillis INCR rawKey
-	 *
-	 * However, there are two problems. 1. Clients can have small drift in their
-	 * currentTimeMillis. If rawKey had been set but later evicted then a client
-	 * which is behind other clients in currentTimeMillis might be the first to
-	 * call SETNX and issue set to a value that had previously been issued by
-	 * another client. 2. Master-slave replication is not synchronous. Therefore
-	 * a slave promoted to master might have missed some calls to INCR. As a
-	 * result we might create timestamps that have already been issued.
-	 *
-	 * Instead we do the following: WATCH rawKey current = GET rawKey new =
-	 * max(current, currentTimeMillis) + 1 MULTI SET rawKey $new EXEC
-	 *
-	 * If a client has drifted behind in currentTimeMillis then the current
-	 * timestamp will just be incremented. This solves 1. If current value is
-	 * behind we set to currentTimeMillis +1. This fixes 2.
+	 * get the counters of the plain redis hashes indexed in the sorted set with a score between min and max.
+	 * expired hashes are skipped.
 	 *
-	 * If the exec fails because another client changed the value we retry the
-	 * update. To avoid deadlocking attempting the update we cap the number of
-	 * retries. After max retries we fall back to just incrementing the current
-	 * value which is a single Redis operation and will always succeed. This
-	 * does not fix problem 2. but gives us path to eventually recover.
-	 */
-	public long nextTimestamp(final Object key) {
-		final byte[] rawKey = rawKey(key);
-
-		Long updatedTimestamp = null;
-		int updateAttempts = 0;
-		while (updatedTimestamp == null && updateAttempts < MAX_TIMESTAMP_UPDATE_ATTEMPTS) {
-			updatedTimestamp = updateOrIncrementTimestamp(rawKey);
-			updateAttempts++;
-		}
-
-		if (updatedTimestamp != null) {
-			log.debug("updated timestamp: key=[{}], attempt=[{}], timestamp=[{}]", key, updateAttempts,
-					updatedTimestamp);
-			return updatedTimestamp;
-		} else {
-			// If we can't update the timestamp at least fall back to
-			// incrementing
-			Long incrementedTimestamp = incrementTimestamp(rawKey);
-			log.warn("updated timestamp failed {} times. Fall back to incrementing: key=[{}], timestamp=[{}]",
-					updateAttempts, key, incrementedTimestamp);
-			return incrementedTimestamp;
-		}
-	}
-
-	/**
-	 * Cleanup any resources thathe JedisClient might have references to.
+	 * @return counters by hash field, by hash key in score order
 	 */
-	public void destroy() {
-		if (jedisPool != null) {
-			jedisPool.destroy();
-		}
-	}
-
-	private Long updateOrIncrementTimestamp(final byte[] rawKey) {
-		return run(new JedisCallback<Long>() {
+	public Map<String, Map<String, Long>> getCounters(final String indexKey, final long min, final long max) {
+		return run(new JedisCallback<Map<String, Map<String, Long>>>() {
 			@Override
-			public Long execute(Jedis jedis) {
-				jedis.watch(rawKey);
-				Long currentTimestamp = (Long) deserializeValue(jedis.get(rawKey));
-				if (currentTimestamp == null) {
-					currentTimestamp = 0L;
+			public Map<String, Map<String, Long>> execute(Jedis jedis) {
+				Set<String> keys = jedis.zrangeByScore(indexKey, min, max);
+				Map<String, Response<Map<String, String>>> responses = new LinkedHashMap<String, Response<Map<String, String>>>();
+				Pipeline pipeline = jedis.pipelined();
+				for (String key : keys) {
+					responses.put(key, pipeline.hgetAll(key));
 				}
-				Long newTimestamp = Math.max(System.currentTimeMillis(), currentTimestamp) + 1;
-				Transaction tx = jedis.multi();
-				tx.set(rawKey, rawValue(newTimestamp));
-				List<Object> result = tx.exec(); // it the watch fails exec
-													// returns null
-				return result != null ? newTimestamp : null;
-			}
-		});
-	}
-
-	private Long incrementTimestamp(final byte[] rawKey) {
-		return run(new JedisCallback<Long>() {
-			@Override
-			public Long execute(Jedis jedis) {
-				return jedis.incr(rawKey);
+				pipeline.sync();
+
+				Map<String, Map<String, Long>> counters = new LinkedHashMap<String, Map<String, Long>>();
+				for (Map.Entry<String, Response<Map<String, String>>> response : responses.entrySet()) {
+					Map<String, String> fields = response.getValue().get();
+					if (fields == null || fields.isEmpty())
+						continue;
+					Map<String, Long> values = new HashMap<String, Long>();
+					for (Map.Entry<String, String> field : fields.entrySet()) {
+						values.put(field.getKey(), Long.valueOf(field.getValue()));
+					}
+					counters.put(response.getKey(), values);
+				}
+				return counters;
 			}
 		});
 	}
@@ -611,6 +2503,21 @@ public class JedisClient {
 		return rawRegion("z:" + region);
 	}
 
+	/**
+	 * serialize the key of the chunks of one chunked value
+	 */
+	private byte[] rawChunkKey(final String region, final String token) {
+		return rawRegion(CHUNK_KEY_PREFIX + region + ":" + token);
+	}
+
+	private byte[] rawLocksKey(final String region) {
+		return rawRegion(LOCKS_KEY_PREFIX + region);
+	}
+
+	private byte[] rawFieldsKey(final String region, final String token) {
+		return rawRegion(FIELDS_KEY_PREFIX + region + ":" + token);
+	}
+
 	/**
 	 * serializer region name
 	 */
@@ -629,8 +2536,29 @@ public class JedisClient {
 	 * serializer cache value
 	 */
 	private byte[] rawValue(final Object value) {
+		return rawValue(valueSerializer, value);
+	}
+
+	/**
+	 * serializer cache value with the serializer of the specified region
+	 */
+	private byte[] rawValue(final String region, final Object value) {
+		RegionMetrics regionMetrics = metrics.getRegionMetrics(region);
+		OperationTrace trace = currentTrace();
+		long start = trace != null ? System.nanoTime() : regionMetrics.start();
+		byte[] rawValue = rawValue(getValueSerializer(region), value);
+		if (rawValue != null && start != 0L) {
+			if (regionMetrics.isEnabled())
+				regionMetrics.recordSerialization(start, rawValue.length);
+			if (trace != null)
+				trace.addSerialization(System.nanoTime() - start, rawValue.length);
+		}
+		return rawValue;
+	}
+
+	private byte[] rawValue(final RedisSerializer<Object> serializer, final Object value) {
 		try {
-			return valueSerializer.serialize(value);
+			return serializer.serialize(value);
 		} catch (Exception e) {
 			log.warn("value를 직렬화하는데 실패했습니다. value=" + value, e);
 			return null;
@@ -644,15 +2572,127 @@ public class JedisClient {
 		return valueSerializer.deserialize(rawValue);
 	}
 
+	/**
+	 * deserialize raw value with the serializer of the specified region
+	 */
+	private Object deserializeValue(final String region, final byte[] rawValue) {
+		if (rawValue == null) {
+			return getValueSerializer(region).deserialize(rawValue);
+		}
+		RegionMetrics regionMetrics = metrics.getRegionMetrics(region);
+		OperationTrace trace = currentTrace();
+		long start = trace != null ? System.nanoTime() : regionMetrics.start();
+		if (fieldsHeader(rawValue) != null) {
+			// NOTE: fields are read together with the header by get and the multiple gets, never one by one.
+			log.debug("value stored as fields is not read. region=[{}]", region);
+			return null;
+		}
+		Object value = getValueSerializer(region).deserialize(stripVersion(rawValue));
+		if (start != 0L) {
+			if (regionMetrics.isEnabled())
+				regionMetrics.recordDeserialization(start, rawValue.length);
+			if (trace != null)
+				trace.addDeserialization(System.nanoTime() - start, rawValue.length);
+		}
+		return value;
+	}
+
+	/**
+	 * raw value without the version header written by {@link #setIfNewer}
+	 */
+	private static byte[] stripVersion(final byte[] rawValue) {
+		if (rawValue == null || rawValue.length < 4 || rawValue[0] != VERSION_MARK || rawValue[1] != VERSIONED)
+			return rawValue;
+		for (int i = 2; i < rawValue.length && i < 24; i++) {
+			if (rawValue[i] == '\n')
+				return i > 2 ? Arrays.copyOfRange(rawValue, i + 1, rawValue.length) : rawValue;
+			if ((rawValue[i] < '0' || rawValue[i] > '9') && !(i == 2 && rawValue[i] == '-'))
+				return rawValue;
+		}
+		return rawValue;
+	}
+
+	/**
+	 * borrow a connection from the pool, recording the wait time
+	 */
+	private Jedis getResource() {
+		boolean traced = tracing;
+		long start = traced ? System.nanoTime() : metrics.start();
+		Jedis jedis = jedisPool.getResource();
+		if (start != 0L) {
+			long waitNanos = System.nanoTime() - start;
+			metrics.recordPoolWaitNanos(waitNanos);
+			if (traced)
+				traceConnectionBorrowed(waitNanos);
+		}
+		return jedis;
+	}
+
+	/**
+	 * start tracing an operation, null if not traced or called within another traced operation
+	 */
+	private OperationTrace beginTrace(final String operation, final String command, final String region, final Object key) {
+		if (!tracing || currentTrace.get() != null)
+			return null;
+		OperationTrace trace = new OperationTrace(operation, command, region, key);
+		currentTrace.set(trace);
+		for (OperationListener listener : operationListeners) {
+			try {
+				listener.operationStarted(trace);
+			} catch (Exception e) {
+				log.warn("Fail to notify operation listener. listener=" + listener, e);
+			}
+		}
+		return trace;
+	}
+
+	private void endTrace(final OperationTrace trace) {
+		if (trace == null)
+			return;
+		currentTrace.remove();
+		trace.end();
+		for (OperationListener listener : operationListeners) {
+			try {
+				listener.operationCompleted(trace);
+			} catch (Exception e) {
+				log.warn("Fail to notify operation listener. listener=" + listener, e);
+			}
+		}
+	}
+
+	/**
+	 * trace of the operation running on the current thread, null if not traced
+	 */
+	private OperationTrace currentTrace() {
+		return tracing ? currentTrace.get() : null;
+	}
+
+	private void traceConnectionBorrowed(final long waitNanos) {
+		OperationTrace trace = currentTrace.get();
+		if (trace != null)
+			trace.addPoolWait(waitNanos);
+		for (OperationListener listener : operationListeners) {
+			try {
+				listener.connectionBorrowed(waitNanos);
+			} catch (Exception e) {
+				log.warn("Fail to notify operation listener. listener=" + listener, e);
+			}
+		}
+	}
+
 	/**
 	 * execute the specified callback
 	 */
 	private <T> T run(final JedisCallback<T> callback) {
 
-		Jedis jedis = jedisPool.getResource();
+		Jedis jedis = getResource();
+		OperationTrace trace = currentTrace();
+		long start = trace != null ? System.nanoTime() : 0L;
 		try {
 			return callback.execute(jedis);
 		} finally {
+			if (trace != null)
+				trace.addRedis(System.nanoTime() - start);
 			jedis.close();
 		}
 	}
@@ -666,12 +2706,16 @@ public class JedisClient {
 	 */
 	private List<Object> runWithTx(final JedisTransactionalCallback callback) {
 
-		Jedis jedis = jedisPool.getResource();
+		Jedis jedis = getResource();
+		OperationTrace trace = currentTrace();
+		long start = trace != null ? System.nanoTime() : 0L;
 		try {
 			Transaction tx = jedis.multi();
 			callback.execute(tx);
 			return tx.exec();
 		} finally {
+			if (trace != null)
+				trace.addRedis(System.nanoTime() - start);
 			jedis.close();
 		}
 	}
@@ -684,13 +2728,17 @@ public class JedisClient {
 	 *            executable instance unider Pipeline
 	 */
 	private void runWithPipeline(final JedisPipelinedCallback callback) {
-		final Jedis jedis = jedisPool.getResource();
+		final Jedis jedis = getResource();
+		OperationTrace trace = currentTrace();
+		long start = trace != null ? System.nanoTime() : 0L;
 		try {
 			final Pipeline pipeline = jedis.pipelined();
 			callback.execute(pipeline);
 			// use #sync(), not #exec()
 			pipeline.sync();
 		} finally {
+			if (trace != null)
+				trace.addRedis(System.nanoTime() - start);
 			jedis.close();
 		}
 	}
@@ -711,10 +2759,72 @@ public class JedisClient {
 	/**
 	 * deserialize the specified raw value collection
 	 *
+	 * @param joined
+	 *            values stored as fields, reassembled by {@link #readFields(Map)}, by index of their raw value
 	 * @return collection of original value
 	 */
-	private List<Object> deserializeValues(final List<byte[]> rawValues) {
-		return SerializationTool.deserialize(rawValues, valueSerializer);
+	private List<Object> deserializeValues(final String region, final List<byte[]> rawValues,
+	                                       final Map<Integer, Object> joined) {
+		RegionMetrics regionMetrics = metrics.getRegionMetrics(region);
+		OperationTrace trace = currentTrace();
+		long start = trace != null ? System.nanoTime() : regionMetrics.start();
+		List<byte[]> unversioned = rawValues;
+		if (rawValues != null) {
+			unversioned = new ArrayList<byte[]>(rawValues.size());
+			for (int i = 0; i < rawValues.size(); i++) {
+				unversioned.add(joined != null && joined.containsKey(i) ? null : stripVersion(rawValues.get(i)));
+			}
+		}
+		List<Object> values = SerializationTool.deserialize(unversioned, getValueSerializer(region));
+		if (joined != null && values != null) {
+			for (Map.Entry<Integer, Object> value : joined.entrySet()) {
+				values.set(value.getKey(), value.getValue());
+			}
+		}
+		if (start != 0L && rawValues != null) {
+			int bytes = 0;
+			for (byte[] rawValue : rawValues) {
+				if (rawValue != null)
+					bytes += rawValue.length;
+			}
+			if (regionMetrics.isEnabled())
+				regionMetrics.recordDeserialization(start, bytes);
+			if (trace != null)
+				trace.addDeserialization(System.nanoTime() - start, bytes);
+		}
+		return values;
+	}
+
+	/**
+	 * digests of the fields of a value, with the token of its fields hash and the digest of all fields
+	 */
+	/**
+	 * a chunked value of a multiple get, at index of the values of its region
+	 */
+	private static final class ChunkedValue {
+		final String region;
+		final int index;
+		final byte[] rawChunkKey;
+		final byte[][] fields;
+
+		ChunkedValue(String region, int index, byte[] rawChunkKey, byte[][] fields) {
+			this.region = region;
+			this.index = index;
+			this.rawChunkKey = rawChunkKey;
+			this.fields = fields;
+		}
+	}
+
+	private static final class FieldDigests {
+		final String token;
+		final String digest;
+		final Map<String, Long> digests;
+
+		FieldDigests(String token, String digest, Map<String, Long> digests) {
+			this.token = token;
+			this.digest = digest;
+			this.digests = digests;
+		}
 	}
 
 	public DataSourceContextHolderKey getDataSourceContextHolderKey() {
@@ -0,0 +1,27 @@
+package org.hibernate.cache.redis.jedis;
+
+/**
+ * Notified of the operations of a {@link JedisClient}, on the calling thread.
+ * <p/>
+ * Operations are only traced while at least one listener is registered, see
+ * {@link JedisClient#addOperationListener(OperationListener)}.
+ */
+public interface OperationListener {
+
+    /**
+     * operation started, the trace is still empty
+     */
+    void operationStarted(OperationTrace trace);
+
+    /**
+     * operation completed, also called when the operation failed
+     */
+    void operationCompleted(OperationTrace trace);
+
+    /**
+     * connection borrowed from the pool, within an operation or not
+     *
+     * @param waitNanos time waited for the connection
+     */
+    void connectionBorrowed(long waitNanos);
+}
@@ -0,0 +1,155 @@
+package org.hibernate.cache.redis.jedis;
+
+/**
+ * Time breakdown of one {@link JedisClient} operation, passed to the {@link OperationListener}s.
+ * <p/>
+ * Times are in nanoseconds. Redis time is measured around the commands of the operation, so it
+ * includes the network round trips and the time redis spends on the commands.
+ */
+public final class OperationTrace {
+
+    public static final String GET = "get";
+    public static final String PUT = "put";
+    public static final String REMOVE = "remove";
+    public static final String CLEAR = "clear";
+    public static final String EXPIRE = "expire";
+    public static final String TIMESTAMP = "timestamp";
+
+    private final String operation;
+    private final String command;
+    private final String region;
+    private final int keyHash;
+    private final long startNanos;
+    private final long startMillis;
+    private long endNanos;
+    private long poolWaitNanos;
+    private long redisNanos;
+    private long serializeNanos;
+    private long deserializeNanos;
+    private int commands;
+    private int payloadBytes;
+    private Boolean hit;
+    private Object attachment;
+
+    OperationTrace(String operation, String command, String region, Object key) {
+        this.operation = operation;
+        this.command = command;
+        this.region = region;
+        this.keyHash = key != null ? key.toString().hashCode() : 0;
+        this.startNanos = System.nanoTime();
+        this.startMillis = System.currentTimeMillis();
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    /**
+     * redis commands issued by the operation, e.g. "MULTI HSET ZADD"
+     */
+    public String getCommand() {
+        return command;
+    }
+
+    public String getRegion() {
+        return region;
+    }
+
+    /**
+     * hash of the cache key, the key itself is not kept
+     */
+    public int getKeyHash() {
+        return keyHash;
+    }
+
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    public long getDurationNanos() {
+        return (endNanos != 0L ? endNanos : System.nanoTime()) - startNanos;
+    }
+
+    public long getPoolWaitNanos() {
+        return poolWaitNanos;
+    }
+
+    public long getRedisNanos() {
+        return redisNanos;
+    }
+
+    public long getSerializeNanos() {
+        return serializeNanos;
+    }
+
+    public long getDeserializeNanos() {
+        return deserializeNanos;
+    }
+
+    /**
+     * number of connection borrows, each runs one command, transaction or pipeline
+     */
+    public int getCommands() {
+        return commands;
+    }
+
+    /**
+     * bytes written or read
+     */
+    public int getPayloadBytes() {
+        return payloadBytes;
+    }
+
+    /**
+     * hit or miss of a get, null for other operations
+     */
+    public Boolean getHit() {
+        return hit;
+    }
+
+    /**
+     * object attached by a listener in {@link OperationListener#operationStarted(OperationTrace)}
+     */
+    public Object getAttachment() {
+        return attachment;
+    }
+
+    public void setAttachment(Object attachment) {
+        this.attachment = attachment;
+    }
+
+    void end() {
+        endNanos = System.nanoTime();
+    }
+
+    void addPoolWait(long nanos) {
+        poolWaitNanos += nanos;
+    }
+
+    void addRedis(long nanos) {
+        redisNanos += nanos;
+        commands++;
+    }
+
+    void addSerialization(long nanos, int bytes) {
+        serializeNanos += nanos;
+        payloadBytes += bytes;
+    }
+
+    void addDeserialization(long nanos, int bytes) {
+        deserializeNanos += nanos;
+        payloadBytes += bytes;
+    }
+
+    void setHit(boolean hit) {
+        this.hit = hit;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("operation=[%s], command=[%s], region=[%s], keyHash=[%08x], duration=[%d]us, poolWait=[%d]us, redis=[%d]us (%d commands), "
+                             + "serialize=[%d]us, deserialize=[%d]us, payload=[%d]bytes, hit=[%s]",
+                             operation, command, region, keyHash, getDurationNanos() / 1000, poolWaitNanos / 1000,
+                             redisNanos / 1000, commands, serializeNanos / 1000, deserializeNanos / 1000, payloadBytes, hit);
+    }
+}
@@ -0,0 +1,90 @@
+package org.hibernate.cache.redis.jedis;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisDataException;
+
+/**
+ * Lua script of a {@link JedisClient}, called by its SHA1 digest.
+ * <p/>
+ * The digest is computed once from the source, so a call sends only the 40 bytes of the digest with EVALSHA
+ * instead of the whole script. When redis does not know the script (first call, SCRIPT FLUSH, restart or
+ * failover) it answers NOSCRIPT and the script is sent once with EVAL, which also caches it in redis.
+ */
+public final class RedisScript {
+
+    private static final String NO_SCRIPT = "NOSCRIPT";
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final byte[] source;
+    private final byte[] sha1;
+
+    public RedisScript(String source) {
+        this.source = source.getBytes(StandardCharsets.UTF_8);
+        this.sha1 = sha1hex(this.source).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * SHA1 digest of the source in lower case hex, as returned by SCRIPT LOAD
+     */
+    public String getSha1() {
+        return new String(sha1, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * EVALSHA, EVAL if redis does not know the script
+     */
+    public Object eval(Jedis jedis, List<byte[]> keys, List<byte[]> args) {
+        try {
+            return jedis.evalsha(sha1, keys, args);
+        } catch (JedisDataException e) {
+            if (!isNoScript(e))
+                throw e;
+            return jedis.eval(source, keys, args);
+        }
+    }
+
+    /**
+     * EVALSHA in a pipeline. the reply can not fall back to EVAL inside the pipeline, a reply failed with
+     * {@link #isNoScript(Response)} has to be evaluated again with {@link #eval(Jedis, List, List)}.
+     */
+    public Response<Object> evalsha(Pipeline pipeline, List<byte[]> keys, List<byte[]> args) {
+        return pipeline.evalsha(sha1, keys, args);
+    }
+
+    /**
+     * true if a pipelined reply failed because redis did not know the script
+     */
+    public static boolean isNoScript(Response<?> response) {
+        try {
+            response.get();
+            return false;
+        } catch (JedisDataException e) {
+            return isNoScript(e);
+        }
+    }
+
+    private static boolean isNoScript(JedisDataException e) {
+        return e.getMessage() != null && e.getMessage().startsWith(NO_SCRIPT);
+    }
+
+    private static String sha1hex(byte[] bytes) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(bytes);
+            char[] hex = new char[digest.length * 2];
+            for (int i = 0; i < digest.length; i++) {
+                hex[2 * i] = HEX[(digest[i] >> 4) & 0xf];
+                hex[2 * i + 1] = HEX[digest[i] & 0xf];
+            }
+            return new String(hex);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 not available", e);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package org.hibernate.cache.redis.jedis;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Client side slow log of a {@link JedisClient}.
+ * <p/>
+ * Keeps the traces of the last operations slower than the threshold in a ring buffer, with the
+ * time spent waiting for a connection, serializing, in redis (including the network) and deserializing.
+ * Unlike SLOWLOG of redis it shows pool waits, network problems and gc pauses seen by the client.
+ * <p/>
+ * Registered by [redis.slowlog.enabled=true], see {@link JedisClient#setSlowOperationLog(SlowOperationLog)}.
+ */
+public class SlowOperationLog implements OperationListener {
+
+    private final AtomicReferenceArray<OperationTrace> entries;
+    private final AtomicLong recorded = new AtomicLong();
+    private volatile long thresholdNanos;
+
+    /**
+     * @param thresholdMillis operations taking at least this long are recorded
+     * @param capacity        number of operations kept, older ones are overwritten
+     */
+    public SlowOperationLog(long thresholdMillis, int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity must be positive. capacity=" + capacity);
+        this.entries = new AtomicReferenceArray<OperationTrace>(capacity);
+        setThresholdMillis(thresholdMillis);
+    }
+
+    public long getThresholdMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(thresholdNanos);
+    }
+
+    public void setThresholdMillis(long thresholdMillis) {
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+    }
+
+    public int getCapacity() {
+        return entries.length();
+    }
+
+    /**
+     * number of slow operations since start or the last clear, including overwritten ones
+     */
+    public long getRecordedCount() {
+        return recorded.get();
+    }
+
+    @Override
+    public void operationStarted(OperationTrace trace) {
+    }
+
+    @Override
+    public void operationCompleted(OperationTrace trace) {
+        if (trace.getDurationNanos() < thresholdNanos)
+            return;
+        long index = recorded.getAndIncrement();
+        entries.set((int) (index % entries.length()), trace);
+    }
+
+    @Override
+    public void connectionBorrowed(long waitNanos) {
+    }
+
+    /**
+     * kept slow operations, newest first
+     */
+    public List<OperationTrace> getEntries() {
+        long last = recorded.get();
+        int count = (int) Math.min(last, entries.length());
+        List<OperationTrace> traces = new ArrayList<OperationTrace>(count);
+        for (long index = last - 1; index >= last - count; index--) {
+            OperationTrace trace = entries.get((int) (index % entries.length()));
+            if (trace != null)
+                traces.add(trace);
+        }
+        return traces;
+    }
+
+    public void clear() {
+        recorded.set(0L);
+        for (int i = 0; i < entries.length(); i++) {
+            entries.set(i, null);
+        }
+    }
+
+    /**
+     * one line of the log, start time followed by the trace
+     */
+    public static String format(OperationTrace trace) {
+        return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS").format(new Date(trace.getStartMillis())) + " " + trace;
+    }
+
+    /**
+     * write the kept slow operations to the file, newest first
+     *
+     * @return number of written operations
+     */
+    public int dump(File file) throws IOException {
+        List<OperationTrace> traces = getEntries();
+        PrintWriter writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+        try {
+            for (OperationTrace trace : traces) {
+                writer.println(format(trace));
+            }
+        } finally {
+            writer.close();
+        }
+        return traces.size();
+    }
+}
@@ -0,0 +1,63 @@
+package org.hibernate.cache.redis.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event of one cache operation of {@link org.hibernate.cache.redis.jedis.JedisClient}:
+ * get, put, remove, clear, expire or timestamp.
+ */
+@Name("org.hibernate.cache.redis.CacheOperation")
+@Label("Cache Operation")
+@Category({ "Hibernate", "Redis Cache" })
+@Description("Second level cache operation on redis")
+@StackTrace(false)
+class CacheOperationEvent extends Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Command")
+    @Description("Redis commands issued by the operation")
+    String command;
+
+    @Label("Region")
+    String region;
+
+    @Label("Key Hash")
+    int keyHash;
+
+    @Label("Payload Size")
+    @DataAmount
+    int payloadSize;
+
+    @Label("Pool Wait")
+    @Timespan
+    long poolWait;
+
+    @Label("Redis Time")
+    @Description("Time of the redis commands including the network round trips")
+    @Timespan
+    long redisTime;
+
+    @Label("Serialization Time")
+    @Timespan
+    long serializationTime;
+
+    @Label("Deserialization Time")
+    @Timespan
+    long deserializationTime;
+
+    @Label("Commands")
+    int commands;
+
+    @Label("Hit")
+    @Description("Hit or miss of a get, false for other operations")
+    boolean hit;
+}
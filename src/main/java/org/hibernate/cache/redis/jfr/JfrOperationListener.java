@@ -0,0 +1,53 @@
+package org.hibernate.cache.redis.jfr;
+
+import org.hibernate.cache.redis.jedis.OperationListener;
+import org.hibernate.cache.redis.jedis.OperationTrace;
+
+/**
+ * Emits a {@link CacheOperationEvent} per operation and a {@link PoolBorrowEvent} per borrowed connection.
+ * <p/>
+ * Registered by [redis.jfr.enabled=true], needs a jvm with jdk.jfr (java 11+, openjdk 8u262+).
+ * Without a running recording, events are dropped after a cheap {@link jdk.jfr.Event#isEnabled()} check.
+ */
+public class JfrOperationListener implements OperationListener {
+
+    @Override
+    public void operationStarted(OperationTrace trace) {
+        CacheOperationEvent event = new CacheOperationEvent();
+        if (!event.isEnabled())
+            return;
+        event.begin();
+        trace.setAttachment(event);
+    }
+
+    @Override
+    public void operationCompleted(OperationTrace trace) {
+        if (!(trace.getAttachment() instanceof CacheOperationEvent))
+            return;
+        CacheOperationEvent event = (CacheOperationEvent) trace.getAttachment();
+        event.end();
+        if (!event.shouldCommit())
+            return;
+        event.operation = trace.getOperation();
+        event.command = trace.getCommand();
+        event.region = trace.getRegion();
+        event.keyHash = trace.getKeyHash();
+        event.payloadSize = trace.getPayloadBytes();
+        event.poolWait = trace.getPoolWaitNanos();
+        event.redisTime = trace.getRedisNanos();
+        event.serializationTime = trace.getSerializeNanos();
+        event.deserializationTime = trace.getDeserializeNanos();
+        event.commands = trace.getCommands();
+        event.hit = Boolean.TRUE.equals(trace.getHit());
+        event.commit();
+    }
+
+    @Override
+    public void connectionBorrowed(long waitNanos) {
+        PoolBorrowEvent event = new PoolBorrowEvent();
+        if (!event.isEnabled())
+            return;
+        event.waitTime = waitNanos;
+        event.commit();
+    }
+}
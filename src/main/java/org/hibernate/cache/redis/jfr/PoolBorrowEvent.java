@@ -0,0 +1,22 @@
+package org.hibernate.cache.redis.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event of a connection borrowed from the jedis pool.
+ */
+@Name("org.hibernate.cache.redis.PoolBorrow")
+@Label("Connection Pool Borrow")
+@Category({ "Hibernate", "Redis Cache" })
+@StackTrace(false)
+class PoolBorrowEvent extends Event {
+
+    @Label("Wait Time")
+    @Timespan
+    long waitTime;
+}
@@ -0,0 +1,176 @@
+package org.hibernate.cache.redis.jmx;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.hibernate.cache.redis.metrics.RegionMetricsSnapshot;
+import org.hibernate.cache.redis.regions.RedisDataRegion;
+import org.hibernate.cache.redis.regions.RedisTransactionalDataRegion;
+import org.hibernate.cache.spi.GeneralDataRegion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * MBean of one cache region, registered as
+ * [org.hibernate.cache.redis:type=Region,factory={session factory name},name={region name}].
+ */
+public class RedisRegionControl implements RedisRegionControlMBean {
+
+    public static final String DOMAIN = "org.hibernate.cache.redis";
+
+    private static final Logger log = LoggerFactory.getLogger(RedisRegionControl.class);
+
+    private final RedisDataRegion region;
+
+    public RedisRegionControl(RedisDataRegion region) {
+        this.region = region;
+    }
+
+    /**
+     * register an MBean for the region with the platform MBean server
+     *
+     * @return registered name, null if registration failed
+     */
+    public static ObjectName register(String factoryName, RedisDataRegion region) {
+        try {
+            ObjectName name = new ObjectName(DOMAIN + ":type=Region,factory=" + ObjectName.quote(factoryName)
+                                             + ",name=" + ObjectName.quote(region.getName()));
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(new RedisRegionControl(region), name);
+            return name;
+        } catch (Exception e) {
+            log.warn("Fail to register region MBean. region=" + region.getName(), e);
+            return null;
+        }
+    }
+
+    public static void unregister(ObjectName name) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (Exception e) {
+            log.warn("Fail to unregister region MBean. name=" + name, e);
+        }
+    }
+
+    private RegionMetricsSnapshot snapshot() {
+        return region.getMetrics().snapshot();
+    }
+
+    @Override
+    public String getRegionName() {
+        return region.getName();
+    }
+
+    @Override
+    public long getHits() {
+        return snapshot().getHits();
+    }
+
+    @Override
+    public long getMisses() {
+        return snapshot().getMisses();
+    }
+
+    @Override
+    public double getHitRatio() {
+        return snapshot().getHitRatio();
+    }
+
+    @Override
+    public long getPuts() {
+        return snapshot().getPuts();
+    }
+
+    @Override
+    public long getRemoves() {
+        return snapshot().getRemoves();
+    }
+
+    @Override
+    public long getErrors() {
+        return snapshot().getErrors();
+    }
+
+    @Override
+    public long getRejections() {
+        return snapshot().getRejections();
+    }
+
+    @Override
+    public double getGetLatencyP50Micros() {
+        return RegionMetricsSnapshot.percentileInMicros(snapshot().getGetLatency(), 50);
+    }
+
+    @Override
+    public double getGetLatencyP99Micros() {
+        return RegionMetricsSnapshot.percentileInMicros(snapshot().getGetLatency(), 99);
+    }
+
+    @Override
+    public double getGetLatencyP999Micros() {
+        return RegionMetricsSnapshot.percentileInMicros(snapshot().getGetLatency(), 99.9);
+    }
+
+    @Override
+    public double getPutLatencyP50Micros() {
+        return RegionMetricsSnapshot.percentileInMicros(snapshot().getPutLatency(), 50);
+    }
+
+    @Override
+    public double getPutLatencyP99Micros() {
+        return RegionMetricsSnapshot.percentileInMicros(snapshot().getPutLatency(), 99);
+    }
+
+    @Override
+    public long getElementCount() {
+        return region.getElementCountInMemory();
+    }
+
+    @Override
+    public long getSizeInMemory() {
+        return region.getSizeInMemory();
+    }
+
+    @Override
+    public int getExpireInSeconds() {
+        return region.getExpireInSeconds();
+    }
+
+    @Override
+    public void setExpireInSeconds(int expireInSeconds) {
+        region.setExpireInSeconds(expireInSeconds);
+    }
+
+    @Override
+    public boolean isBypass() {
+        return region.isBypass();
+    }
+
+    @Override
+    public void setBypass(boolean bypass) {
+        region.setBypass(bypass);
+    }
+
+    @Override
+    public void resetStatistics() {
+        region.getMetrics().reset();
+    }
+
+    @Override
+    public void clear() {
+        log.info("clear region by MBean. region=[{}]", region.getName());
+        if (region instanceof RedisTransactionalDataRegion) {
+            ((RedisTransactionalDataRegion) region).clear();
+        } else if (region instanceof GeneralDataRegion) {
+            ((GeneralDataRegion) region).evictAll();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package org.hibernate.cache.redis.jmx;
+
+/**
+ * Live statistics and runtime settings of one cache region.
+ * <p/>
+ * Statistics are cumulative since start or the last {@link #resetStatistics()}, latencies in microseconds.
+ */
+public interface RedisRegionControlMBean {
+
+    String getRegionName();
+
+    long getHits();
+
+    long getMisses();
+
+    double getHitRatio();
+
+    long getPuts();
+
+    long getRemoves();
+
+    long getErrors();
+
+    /**
+     * puts skipped because the value exceeded [redis.maxValueSizeInBytes]
+     */
+    long getRejections();
+
+    double getGetLatencyP50Micros();
+
+    double getGetLatencyP99Micros();
+
+    double getGetLatencyP999Micros();
+
+    double getPutLatencyP50Micros();
+
+    double getPutLatencyP99Micros();
+
+    /**
+     * number of cached items in redis
+     */
+    long getElementCount();
+
+    /**
+     * estimated bytes of the cached items in redis
+     */
+    long getSizeInMemory();
+
+    int getExpireInSeconds();
+
+    /**
+     * applies to items put or read from now on
+     */
+    void setExpireInSeconds(int expireInSeconds);
+
+    boolean isBypass();
+
+    /**
+     * in bypass mode reads are cache misses and writes remove the cached item
+     */
+    void setBypass(boolean bypass);
+
+    void resetStatistics();
+
+    /**
+     * remove all cached items of the region
+     */
+    void clear();
+}
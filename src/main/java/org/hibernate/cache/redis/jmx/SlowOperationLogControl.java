@@ -0,0 +1,97 @@
+package org.hibernate.cache.redis.jmx;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.hibernate.cache.redis.jedis.OperationTrace;
+import org.hibernate.cache.redis.jedis.SlowOperationLog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * MBean of the slow operation log, registered as
+ * [org.hibernate.cache.redis:type=SlowOperationLog,factory={session factory name}].
+ */
+public class SlowOperationLogControl implements SlowOperationLogControlMBean {
+
+    private static final Logger log = LoggerFactory.getLogger(SlowOperationLogControl.class);
+
+    private final SlowOperationLog slowOperationLog;
+
+    public SlowOperationLogControl(SlowOperationLog slowOperationLog) {
+        this.slowOperationLog = slowOperationLog;
+    }
+
+    /**
+     * register an MBean for the slow operation log with the platform MBean server
+     *
+     * @return registered name, null if registration failed
+     */
+    public static ObjectName register(String factoryName, SlowOperationLog slowOperationLog) {
+        try {
+            ObjectName name = new ObjectName(RedisRegionControl.DOMAIN + ":type=SlowOperationLog,factory="
+                                             + ObjectName.quote(factoryName));
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(new SlowOperationLogControl(slowOperationLog), name);
+            return name;
+        } catch (Exception e) {
+            log.warn("Fail to register slow operation log MBean. factory=" + factoryName, e);
+            return null;
+        }
+    }
+
+    @Override
+    public long getThresholdMillis() {
+        return slowOperationLog.getThresholdMillis();
+    }
+
+    @Override
+    public void setThresholdMillis(long thresholdMillis) {
+        log.info("Change slow operation threshold. thresholdInMillis=[{}]", thresholdMillis);
+        slowOperationLog.setThresholdMillis(thresholdMillis);
+    }
+
+    @Override
+    public int getCapacity() {
+        return slowOperationLog.getCapacity();
+    }
+
+    @Override
+    public long getRecordedCount() {
+        return slowOperationLog.getRecordedCount();
+    }
+
+    @Override
+    public String[] getEntries() {
+        List<OperationTrace> traces = slowOperationLog.getEntries();
+        String[] entries = new String[traces.size()];
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] = SlowOperationLog.format(traces.get(i));
+        }
+        return entries;
+    }
+
+    @Override
+    public void clear() {
+        slowOperationLog.clear();
+    }
+
+    @Override
+    public int dump(String fileName) {
+        try {
+            int count = slowOperationLog.dump(new File(fileName));
+            log.info("Slow operations dumped. file=[{}], count=[{}]", fileName, count);
+            return count;
+        } catch (Exception e) {
+            log.warn("Fail to dump slow operations. file=" + fileName, e);
+            return -1;
+        }
+    }
+}
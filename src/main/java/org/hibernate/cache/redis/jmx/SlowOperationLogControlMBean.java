@@ -0,0 +1,35 @@
+package org.hibernate.cache.redis.jmx;
+
+/**
+ * Client side slow operation log of a region factory.
+ */
+public interface SlowOperationLogControlMBean {
+
+    long getThresholdMillis();
+
+    /**
+     * applies to operations completed from now on
+     */
+    void setThresholdMillis(long thresholdMillis);
+
+    int getCapacity();
+
+    /**
+     * number of slow operations since start or the last clear, including overwritten ones
+     */
+    long getRecordedCount();
+
+    /**
+     * kept slow operations, newest first
+     */
+    String[] getEntries();
+
+    void clear();
+
+    /**
+     * write the kept slow operations to the file
+     *
+     * @return number of written operations, -1 if writing failed
+     */
+    int dump(String fileName);
+}
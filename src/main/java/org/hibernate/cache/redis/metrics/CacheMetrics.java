@@ -0,0 +1,153 @@
+package org.hibernate.cache.redis.metrics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Metrics of all regions served by one {@link org.hibernate.cache.redis.jedis.JedisClient},
+ * plus the connection pool wait time shared by them.
+ * <p/>
+ * A {@link MetricsReporter} started with {@link #startReporter(MetricsReporter, long)} receives
+ * the snapshots of all regions periodically.
+ */
+public class CacheMetrics {
+
+    private static final Logger log = LoggerFactory.getLogger(CacheMetrics.class);
+
+    private final ConcurrentMap<String, RegionMetrics> regions = new ConcurrentHashMap<String, RegionMetrics>();
+    private final HistogramRecorder poolWait = new HistogramRecorder();
+
+    private volatile boolean enabled = true;
+    private ScheduledExecutorService reporterExecutor = null;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * start time of an operation, 0 when metrics are disabled
+     */
+    public long start() {
+        if (!enabled)
+            return 0L;
+        long now = System.nanoTime();
+        return now == 0L ? 1L : now;
+    }
+
+    /**
+     * metrics of the specified region, created on first use
+     */
+    public RegionMetrics getRegionMetrics(String regionName) {
+        RegionMetrics metrics = regions.get(regionName);
+        if (metrics == null) {
+            RegionMetrics created = new RegionMetrics(regionName, this);
+            metrics = regions.putIfAbsent(regionName, created);
+            if (metrics == null)
+                metrics = created;
+        }
+        return metrics;
+    }
+
+    /**
+     * metrics of all regions used so far
+     */
+    public Collection<RegionMetrics> getRegionMetrics() {
+        return Collections.unmodifiableCollection(regions.values());
+    }
+
+    /**
+     * connection borrowed from the pool after waiting since start
+     */
+    public void recordPoolWait(long start) {
+        if (start == 0L)
+            return;
+        poolWait.record(System.nanoTime() - start);
+    }
+
+    /**
+     * connection borrowed from the pool after waiting the given time
+     */
+    public void recordPoolWaitNanos(long waitNanos) {
+        if (enabled)
+            poolWait.record(waitNanos);
+    }
+
+    /**
+     * pool wait time in nanoseconds, cumulative since start or the last reset
+     */
+    public Histogram getPoolWait() {
+        return poolWait.snapshot();
+    }
+
+    public List<RegionMetricsSnapshot> snapshot() {
+        List<RegionMetricsSnapshot> snapshots = new ArrayList<RegionMetricsSnapshot>(regions.size());
+        for (RegionMetrics metrics : regions.values()) {
+            snapshots.add(metrics.snapshot());
+        }
+        return snapshots;
+    }
+
+    public void reset() {
+        for (RegionMetrics metrics : regions.values()) {
+            metrics.reset();
+        }
+        poolWait.reset();
+    }
+
+    /**
+     * report the metrics every intervalInSeconds on a daemon thread
+     */
+    public synchronized void startReporter(final MetricsReporter reporter, long intervalInSeconds) {
+        stopReporter();
+        reporterExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "hibernate-redis-metrics-reporter");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        reporterExecutor.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                report(reporter);
+            }
+        }, intervalInSeconds, intervalInSeconds, TimeUnit.SECONDS);
+        log.info("Metrics reporter started. reporter=[{}], intervalInSeconds=[{}]",
+                 reporter.getClass().getName(), intervalInSeconds);
+    }
+
+    public synchronized void stopReporter() {
+        if (reporterExecutor != null) {
+            reporterExecutor.shutdownNow();
+            reporterExecutor = null;
+        }
+    }
+
+    /**
+     * pass the current snapshots to the reporter, failures of the reporter are logged
+     */
+    public void report(MetricsReporter reporter) {
+        try {
+            reporter.report(snapshot(), getPoolWait());
+        } catch (Exception e) {
+            log.warn("Fail to report cache metrics. reporter=" + reporter, e);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package org.hibernate.cache.redis.metrics;
+
+/**
+ * Counters of one region summed over all nodes, as published by {@link ClusterStatisticsPublisher}.
+ * <p/>
+ * evictions are explicit removes of items (evict, update, remove), not expirations done by redis.
+ */
+public class ClusterRegionStatistics {
+
+    private final String regionName;
+    private long hits;
+    private long misses;
+    private long puts;
+    private long evictions;
+    private long clears;
+    private long writtenBytes;
+    private long readBytes;
+
+    public ClusterRegionStatistics(String regionName) {
+        this.regionName = regionName;
+    }
+
+    public String getRegionName() {
+        return regionName;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * hits / (hits + misses), 0 without any get
+     */
+    public double getHitRatio() {
+        long gets = hits + misses;
+        return gets == 0 ? 0.0 : (double) hits / gets;
+    }
+
+    public long getPuts() {
+        return puts;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public long getClears() {
+        return clears;
+    }
+
+    public long getWrittenBytes() {
+        return writtenBytes;
+    }
+
+    public long getReadBytes() {
+        return readBytes;
+    }
+
+    /**
+     * add the counters of another window or node
+     */
+    public void add(ClusterRegionStatistics other) {
+        hits += other.hits;
+        misses += other.misses;
+        puts += other.puts;
+        evictions += other.evictions;
+        clears += other.clears;
+        writtenBytes += other.writtenBytes;
+        readBytes += other.readBytes;
+    }
+
+    /**
+     * add the value of the named counter, unknown counters are ignored
+     */
+    void add(String counter, long value) {
+        if ("hits".equals(counter)) {
+            hits += value;
+        } else if ("misses".equals(counter)) {
+            misses += value;
+        } else if ("puts".equals(counter)) {
+            puts += value;
+        } else if ("evictions".equals(counter)) {
+            evictions += value;
+        } else if ("clears".equals(counter)) {
+            clears += value;
+        } else if ("writtenBytes".equals(counter)) {
+            writtenBytes += value;
+        } else if ("readBytes".equals(counter)) {
+            readBytes += value;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ClusterRegionStatistics{" +
+               "region=" + regionName +
+               ", hits=" + hits +
+               ", misses=" + misses +
+               ", hitRatio=" + String.format("%.3f", getHitRatio()) +
+               ", puts=" + puts +
+               ", evictions=" + evictions +
+               ", clears=" + clears +
+               ", writtenBytes=" + writtenBytes +
+               ", readBytes=" + readBytes +
+               '}';
+    }
+}
@@ -0,0 +1,139 @@
+package org.hibernate.cache.redis.metrics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.cache.redis.jedis.JedisClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Publishes the region counters of this node to redis, so every node can read cluster wide statistics.
+ * <p/>
+ * Each publish adds the counter increments since the previous publish to the hash of the current time window
+ * [hibernate-redis:stats:{windowStart}] with one pipelined batch of HINCRBY, fields are [{regionName}|{counter}].
+ * Window hashes are indexed by start time in the sorted set [hibernate-redis:stats:windows] and expire after
+ * the retention time. Read them with {@link #read(JedisClient, long, long)}.
+ * <p/>
+ * Increments of a failed publish are kept and sent with the next one.
+ */
+public class ClusterStatisticsPublisher {
+
+    private static final Logger log = LoggerFactory.getLogger(ClusterStatisticsPublisher.class);
+
+    public static final String KEY_PREFIX = "hibernate-redis:stats:";
+    public static final String WINDOWS_KEY = KEY_PREFIX + "windows";
+    static final String[] COUNTERS = { "hits", "misses", "puts", "evictions", "clears", "writtenBytes", "readBytes" };
+    private static final char FIELD_SEPARATOR = '|';
+
+    private final JedisClient redis;
+    private final long windowInMillis;
+    private final int retentionInSeconds;
+
+    /**
+     * counters published so far, by region name
+     */
+    private final Map<String, long[]> published = new HashMap<String, long[]>();
+    private ScheduledExecutorService executor = null;
+
+    public ClusterStatisticsPublisher(JedisClient redis, int windowInSeconds, int retentionInSeconds) {
+        this.redis = redis;
+        this.windowInMillis = windowInSeconds * 1000L;
+        this.retentionInSeconds = retentionInSeconds;
+    }
+
+    /**
+     * publish the increments since the last publish, failures are logged
+     */
+    public synchronized void publish() {
+        Map<String, long[]> current = new HashMap<String, long[]>();
+        Map<String, Long> increments = new LinkedHashMap<String, Long>();
+        for (RegionMetrics metrics : redis.getMetrics().getRegionMetrics()) {
+            long[] counters = metrics.counters();
+            long[] last = published.get(metrics.getRegionName());
+            for (int i = 0; i < COUNTERS.length; i++) {
+                // counters restart from 0 after a reset
+                long increment = last == null || counters[i] < last[i] ? counters[i] : counters[i] - last[i];
+                if (increment > 0)
+                    increments.put(metrics.getRegionName() + FIELD_SEPARATOR + COUNTERS[i], increment);
+            }
+            current.put(metrics.getRegionName(), counters);
+        }
+        if (increments.isEmpty())
+            return;
+
+        long now = System.currentTimeMillis();
+        long windowStart = now - now % windowInMillis;
+        try {
+            redis.incrementCounters(KEY_PREFIX + windowStart, increments, retentionInSeconds,
+                                    WINDOWS_KEY, windowStart, windowStart - retentionInSeconds * 1000L);
+            published.putAll(current);
+        } catch (Exception e) {
+            log.warn("Fail to publish cluster statistics. window=" + windowStart, e);
+        }
+    }
+
+    /**
+     * publish every intervalInSeconds on a daemon thread
+     */
+    public synchronized void start(long intervalInSeconds) {
+        stop();
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "hibernate-redis-cluster-statistics");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                publish();
+            }
+        }, intervalInSeconds, intervalInSeconds, TimeUnit.SECONDS);
+        log.info("Cluster statistics publisher started. intervalInSeconds=[{}], windowInSeconds=[{}]",
+                 intervalInSeconds, windowInMillis / 1000L);
+    }
+
+    /**
+     * stop publishing, the remaining increments are published once more
+     */
+    public synchronized void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+            publish();
+        }
+    }
+
+    /**
+     * read the cluster wide statistics of the windows starting between fromMillis and toMillis
+     *
+     * @return windows ordered by start time
+     */
+    public static List<ClusterStatisticsWindow> read(JedisClient redis, long fromMillis, long toMillis) {
+        Map<String, Map<String, Long>> counters = redis.getCounters(WINDOWS_KEY, fromMillis, toMillis);
+        List<ClusterStatisticsWindow> windows = new ArrayList<ClusterStatisticsWindow>(counters.size());
+        for (Map.Entry<String, Map<String, Long>> entry : counters.entrySet()) {
+            ClusterStatisticsWindow window =
+                    new ClusterStatisticsWindow(Long.parseLong(entry.getKey().substring(KEY_PREFIX.length())));
+            for (Map.Entry<String, Long> field : entry.getValue().entrySet()) {
+                int separator = field.getKey().lastIndexOf(FIELD_SEPARATOR);
+                if (separator < 0)
+                    continue;
+                window.region(field.getKey().substring(0, separator))
+                      .add(field.getKey().substring(separator + 1), field.getValue());
+            }
+            windows.add(window);
+        }
+        return windows;
+    }
+}
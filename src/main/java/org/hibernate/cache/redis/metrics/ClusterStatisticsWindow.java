@@ -0,0 +1,46 @@
+package org.hibernate.cache.redis.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Cluster wide counters of all regions within one time window.
+ */
+public class ClusterStatisticsWindow {
+
+    private final long windowStart;
+    private final Map<String, ClusterRegionStatistics> regions = new TreeMap<String, ClusterRegionStatistics>();
+
+    ClusterStatisticsWindow(long windowStart) {
+        this.windowStart = windowStart;
+    }
+
+    /**
+     * start of the window in epoch milliseconds
+     */
+    public long getWindowStart() {
+        return windowStart;
+    }
+
+    /**
+     * counters by region name
+     */
+    public Map<String, ClusterRegionStatistics> getRegions() {
+        return Collections.unmodifiableMap(regions);
+    }
+
+    ClusterRegionStatistics region(String regionName) {
+        ClusterRegionStatistics statistics = regions.get(regionName);
+        if (statistics == null) {
+            statistics = new ClusterRegionStatistics(regionName);
+            regions.put(regionName, statistics);
+        }
+        return statistics;
+    }
+
+    @Override
+    public String toString() {
+        return "ClusterStatisticsWindow{windowStart=" + windowStart + ", regions=" + regions.values() + '}';
+    }
+}
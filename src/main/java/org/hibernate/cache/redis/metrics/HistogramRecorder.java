@@ -0,0 +1,38 @@
+package org.hibernate.cache.redis.metrics;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.PackedHistogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Histogram written concurrently without locks, read through cumulative snapshots.
+ * <p/>
+ * Values go to an auto resizing packed {@link Recorder}, each snapshot moves the recorded interval
+ * into the cumulative histogram, so memory stays small for regions with few distinct values.
+ */
+class HistogramRecorder {
+
+    private static final int SIGNIFICANT_DIGITS = 2;
+
+    private final Recorder recorder = new Recorder(SIGNIFICANT_DIGITS, true);
+    private final Histogram total = new PackedHistogram(SIGNIFICANT_DIGITS);
+    private Histogram interval = null;
+
+    void record(long value) {
+        recorder.recordValue(value < 0 ? 0 : value);
+    }
+
+    /**
+     * copy of all values recorded since creation or the last {@link #reset()}
+     */
+    synchronized Histogram snapshot() {
+        interval = recorder.getIntervalHistogram(interval);
+        total.add(interval);
+        return total.copy();
+    }
+
+    synchronized void reset() {
+        recorder.reset();
+        total.reset();
+    }
+}
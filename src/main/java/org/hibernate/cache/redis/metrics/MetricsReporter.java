@@ -0,0 +1,27 @@
+package org.hibernate.cache.redis.metrics;
+
+import java.util.List;
+import java.util.Properties;
+
+import org.HdrHistogram.Histogram;
+
+/**
+ * Receives the region metrics periodically, configured with [redis.metrics.reporter.class].
+ * <p/>
+ * Implementations need a public no-arg constructor, and are called on the reporter thread only.
+ */
+public interface MetricsReporter {
+
+    /**
+     * called once before the first report
+     *
+     * @param props cache properties
+     */
+    void configure(Properties props);
+
+    /**
+     * @param regions  snapshots of all regions, cumulative since start
+     * @param poolWait connection pool wait time in nanoseconds, cumulative since start
+     */
+    void report(List<RegionMetricsSnapshot> regions, Histogram poolWait);
+}
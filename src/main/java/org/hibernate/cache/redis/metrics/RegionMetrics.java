@@ -0,0 +1,167 @@
+package org.hibernate.cache.redis.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms of one cache region.
+ * <p/>
+ * Counters are striped {@link LongAdder}s and latencies go to lock free HDR recorders, so recording
+ * from many threads does not contend. Latencies are in nanoseconds, payload sizes in bytes.
+ * <p/>
+ * usage :
+ * <pre>
+ * long start = metrics.start();
+ * Object value = redis.get(region, key);
+ * metrics.recordGet(start, value != null);
+ * </pre>
+ */
+public class RegionMetrics {
+
+    private final String regionName;
+    private final CacheMetrics cacheMetrics;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder puts = new LongAdder();
+    private final LongAdder removes = new LongAdder();
+    private final LongAdder clears = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+    private final LongAdder writtenBytes = new LongAdder();
+    private final LongAdder readBytes = new LongAdder();
+
+    private final HistogramRecorder getLatency = new HistogramRecorder();
+    private final HistogramRecorder putLatency = new HistogramRecorder();
+    private final HistogramRecorder removeLatency = new HistogramRecorder();
+    private final HistogramRecorder clearLatency = new HistogramRecorder();
+    private final HistogramRecorder serializeLatency = new HistogramRecorder();
+    private final HistogramRecorder deserializeLatency = new HistogramRecorder();
+    private final HistogramRecorder payloadSize = new HistogramRecorder();
+
+    RegionMetrics(String regionName, CacheMetrics cacheMetrics) {
+        this.regionName = regionName;
+        this.cacheMetrics = cacheMetrics;
+    }
+
+    public String getRegionName() {
+        return regionName;
+    }
+
+    public boolean isEnabled() {
+        return cacheMetrics.isEnabled();
+    }
+
+    /**
+     * start time of an operation, 0 when metrics are disabled
+     */
+    public long start() {
+        return cacheMetrics.start();
+    }
+
+    public void recordGet(long start, boolean hit) {
+        if (start == 0L)
+            return;
+        getLatency.record(System.nanoTime() - start);
+        if (hit) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+    }
+
+    public void recordPut(long start) {
+        if (start == 0L)
+            return;
+        putLatency.record(System.nanoTime() - start);
+        puts.increment();
+    }
+
+    public void recordRemove(long start) {
+        if (start == 0L)
+            return;
+        removeLatency.record(System.nanoTime() - start);
+        removes.increment();
+    }
+
+    public void recordClear(long start) {
+        if (start == 0L)
+            return;
+        clearLatency.record(System.nanoTime() - start);
+        clears.increment();
+    }
+
+    /**
+     * failed operation, logged and answered as a cache miss
+     */
+    public void recordError() {
+        if (isEnabled())
+            errors.increment();
+    }
+
+    /**
+     * value not cached because it exceeds the maximum value size of the region
+     */
+    public void recordRejection() {
+        if (isEnabled())
+            rejections.increment();
+    }
+
+    /**
+     * value serialized to the given number of bytes
+     */
+    public void recordSerialization(long start, int bytes) {
+        if (start == 0L)
+            return;
+        serializeLatency.record(System.nanoTime() - start);
+        payloadSize.record(bytes);
+        writtenBytes.add(bytes);
+    }
+
+    /**
+     * values deserialized from the given number of bytes
+     */
+    public void recordDeserialization(long start, int bytes) {
+        if (start == 0L)
+            return;
+        deserializeLatency.record(System.nanoTime() - start);
+        readBytes.add(bytes);
+    }
+
+    public RegionMetricsSnapshot snapshot() {
+        return new RegionMetricsSnapshot(regionName,
+                                         hits.sum(), misses.sum(), puts.sum(), removes.sum(), clears.sum(), errors.sum(),
+                                         rejections.sum(),
+                                         writtenBytes.sum(), readBytes.sum(),
+                                         getLatency.snapshot(), putLatency.snapshot(),
+                                         removeLatency.snapshot(), clearLatency.snapshot(),
+                                         serializeLatency.snapshot(), deserializeLatency.snapshot(),
+                                         payloadSize.snapshot());
+    }
+
+    /**
+     * cumulative counters in the order of {@link ClusterStatisticsPublisher#COUNTERS}
+     */
+    long[] counters() {
+        return new long[] { hits.sum(), misses.sum(), puts.sum(), removes.sum(), clears.sum(),
+                            writtenBytes.sum(), readBytes.sum() };
+    }
+
+    public void reset() {
+        hits.reset();
+        misses.reset();
+        puts.reset();
+        removes.reset();
+        clears.reset();
+        errors.reset();
+        rejections.reset();
+        writtenBytes.reset();
+        readBytes.reset();
+        getLatency.reset();
+        putLatency.reset();
+        removeLatency.reset();
+        clearLatency.reset();
+        serializeLatency.reset();
+        deserializeLatency.reset();
+        payloadSize.reset();
+    }
+}
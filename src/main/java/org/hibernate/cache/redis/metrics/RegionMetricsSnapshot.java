@@ -0,0 +1,160 @@
+package org.hibernate.cache.redis.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+
+/**
+ * Values of {@link RegionMetrics} at one point in time, cumulative since start or the last reset.
+ * <p/>
+ * Latency histograms are in nanoseconds, the payload histogram in bytes.
+ */
+public class RegionMetricsSnapshot {
+
+    private final String regionName;
+    private final long hits;
+    private final long misses;
+    private final long puts;
+    private final long removes;
+    private final long clears;
+    private final long errors;
+    private final long rejections;
+    private final long writtenBytes;
+    private final long readBytes;
+    private final Histogram getLatency;
+    private final Histogram putLatency;
+    private final Histogram removeLatency;
+    private final Histogram clearLatency;
+    private final Histogram serializeLatency;
+    private final Histogram deserializeLatency;
+    private final Histogram payloadSize;
+
+    RegionMetricsSnapshot(String regionName,
+                          long hits, long misses, long puts, long removes, long clears, long errors,
+                          long rejections,
+                          long writtenBytes, long readBytes,
+                          Histogram getLatency, Histogram putLatency,
+                          Histogram removeLatency, Histogram clearLatency,
+                          Histogram serializeLatency, Histogram deserializeLatency,
+                          Histogram payloadSize) {
+        this.regionName = regionName;
+        this.hits = hits;
+        this.misses = misses;
+        this.puts = puts;
+        this.removes = removes;
+        this.clears = clears;
+        this.errors = errors;
+        this.rejections = rejections;
+        this.writtenBytes = writtenBytes;
+        this.readBytes = readBytes;
+        this.getLatency = getLatency;
+        this.putLatency = putLatency;
+        this.removeLatency = removeLatency;
+        this.clearLatency = clearLatency;
+        this.serializeLatency = serializeLatency;
+        this.deserializeLatency = deserializeLatency;
+        this.payloadSize = payloadSize;
+    }
+
+    public String getRegionName() {
+        return regionName;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * hits / (hits + misses), 0 before the first get
+     */
+    public double getHitRatio() {
+        long gets = hits + misses;
+        return gets == 0 ? 0.0 : (double) hits / gets;
+    }
+
+    public long getPuts() {
+        return puts;
+    }
+
+    public long getRemoves() {
+        return removes;
+    }
+
+    public long getClears() {
+        return clears;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    /**
+     * puts skipped because the value exceeded the maximum value size of the region
+     */
+    public long getRejections() {
+        return rejections;
+    }
+
+    public long getWrittenBytes() {
+        return writtenBytes;
+    }
+
+    public long getReadBytes() {
+        return readBytes;
+    }
+
+    public Histogram getGetLatency() {
+        return getLatency;
+    }
+
+    public Histogram getPutLatency() {
+        return putLatency;
+    }
+
+    public Histogram getRemoveLatency() {
+        return removeLatency;
+    }
+
+    public Histogram getClearLatency() {
+        return clearLatency;
+    }
+
+    public Histogram getSerializeLatency() {
+        return serializeLatency;
+    }
+
+    public Histogram getDeserializeLatency() {
+        return deserializeLatency;
+    }
+
+    public Histogram getPayloadSize() {
+        return payloadSize;
+    }
+
+    /**
+     * percentile of a latency histogram in microseconds
+     */
+    public static double percentileInMicros(Histogram latency, double percentile) {
+        if (latency.getTotalCount() == 0)
+            return 0.0;
+        return latency.getValueAtPercentile(percentile) / (double) TimeUnit.MICROSECONDS.toNanos(1);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("region=[%s], hits=[%d], misses=[%d], hitRatio=[%.3f], puts=[%d], removes=[%d], clears=[%d], errors=[%d], rejections=[%d], "
+                             + "get p50/p99/max=[%.1f/%.1f/%.1f]us, put p50/p99/max=[%.1f/%.1f/%.1f]us, "
+                             + "serialize p99=[%.1f]us, deserialize p99=[%.1f]us, payload mean/max=[%.0f/%d]bytes, "
+                             + "written=[%d]bytes, read=[%d]bytes",
+                             regionName, hits, misses, getHitRatio(), puts, removes, clears, errors, rejections,
+                             percentileInMicros(getLatency, 50), percentileInMicros(getLatency, 99), percentileInMicros(getLatency, 100),
+                             percentileInMicros(putLatency, 50), percentileInMicros(putLatency, 99), percentileInMicros(putLatency, 100),
+                             percentileInMicros(serializeLatency, 99), percentileInMicros(deserializeLatency, 99),
+                             payloadSize.getMean(), payloadSize.getMaxValue(),
+                             writtenBytes, readBytes);
+    }
+}
@@ -0,0 +1,34 @@
+package org.hibernate.cache.redis.metrics;
+
+import java.util.List;
+import java.util.Properties;
+
+import org.HdrHistogram.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Logs one line per region and one for the connection pool at info level.
+ */
+public class Slf4jMetricsReporter implements MetricsReporter {
+
+    private static final Logger log = LoggerFactory.getLogger(Slf4jMetricsReporter.class);
+
+    @Override
+    public void configure(Properties props) {
+    }
+
+    @Override
+    public void report(List<RegionMetricsSnapshot> regions, Histogram poolWait) {
+        if (!log.isInfoEnabled())
+            return;
+        for (RegionMetricsSnapshot region : regions) {
+            log.info("cache metrics. {}", region);
+        }
+        log.info("cache metrics. pool borrows=[{}], wait p50/p99/max=[{}/{}/{}]us",
+                 poolWait.getTotalCount(),
+                 RegionMetricsSnapshot.percentileInMicros(poolWait, 50),
+                 RegionMetricsSnapshot.percentileInMicros(poolWait, 99),
+                 RegionMetricsSnapshot.percentileInMicros(poolWait, 100));
+    }
+}
@@ -51,6 +51,8 @@ public class RedisCollectionRegion extends RedisTransactionalDataRegion implemen
 
     @Override
     public CollectionRegionAccessStrategy buildAccessStrategy(AccessType accessType) throws CacheException {
+        if (accessType == AccessType.READ_WRITE)
+            useReadWriteItems();
         return getAccessStrategyFactory().createCollectionRegionAccessStrategy(this, accessType);
     }
 }
@@ -22,6 +22,7 @@ import java.util.Properties;
 
 import org.hibernate.cache.CacheException;
 import org.hibernate.cache.redis.jedis.JedisClient;
+import org.hibernate.cache.redis.metrics.RegionMetrics;
 import org.hibernate.cache.redis.strategy.RedisAccessStrategyFactory;
 import org.hibernate.cache.redis.timestamper.JedisCacheTimestamper;
 import org.hibernate.cache.redis.util.JedisTool;
@@ -40,6 +41,8 @@ public abstract class RedisDataRegion implements Region {
     private static final String CACHE_LOCK_TIMEOUT_PROPERTY = "io.redis.hibernate.cache_lock_timeout";
     private static final int DEFAULT_CACHE_LOCK_TIMEOUT = 60 * 1000; // 60 seconds
     private static final String EXPIRE_IN_SECONDS = "redis.expiryInSeconds";
+    private static final String MEMORY_USAGE_SAMPLES_PROPERTY = "redis.memoryUsage.samples";
+    private static final int DEFAULT_MEMORY_USAGE_SAMPLES = 16;
     private static final Logger log = LoggerFactory.getLogger(RedisDataRegion.class);
 
     protected final RedisAccessStrategyFactory accessStrategyFactory;
@@ -54,9 +57,21 @@ public abstract class RedisDataRegion implements Region {
      */
     protected final JedisClient redis;
 
+    /**
+     * Counters and latencies of this region.
+     */
+    protected final RegionMetrics metrics;
+
     private final int cacheLockTimeout; // milliseconds
 
-    private final int expireInSeconds;  // seconds
+    private final int memoryUsageSamples;
+
+    private volatile int expireInSeconds;  // seconds
+
+    /**
+     * when set, reads are cache misses and writes remove the cached item
+     */
+    private volatile boolean bypass = false;
 
     protected boolean regionDeleted = false;
 
@@ -71,18 +86,29 @@ public abstract class RedisDataRegion implements Region {
         this.redis = redis;
         this.name = regionName;
         this.timestamper = timestamper;
+        this.metrics = redis.getMetrics().getRegionMetrics(regionName);
 
         this.cacheLockTimeout =
                 Integer.decode(props.getProperty(CACHE_LOCK_TIMEOUT_PROPERTY,
                                                  String.valueOf(DEFAULT_CACHE_LOCK_TIMEOUT)));
 
+        this.memoryUsageSamples =
+                Integer.decode(props.getProperty(MEMORY_USAGE_SAMPLES_PROPERTY,
+                                                 String.valueOf(DEFAULT_MEMORY_USAGE_SAMPLES)));
+
         this.expireInSeconds = JedisTool.getExpireInSeconds(props, name);
+        this.redis.setValueSerializer(name, JedisTool.createValueSerializer(props, name, redis));
+        this.redis.setMaxValueSize(name, JedisTool.getMaxValueSizeInBytes(props, name));
     }
 
     public JedisClient getRedis() {
         return this.redis;
     }
 
+    public RegionMetrics getMetrics() {
+        return this.metrics;
+    }
+
     public int getCacheLockTimeout() {
         return this.cacheLockTimeout;
     }
@@ -91,6 +117,27 @@ public abstract class RedisDataRegion implements Region {
         return this.expireInSeconds;
     }
 
+    /**
+     * change the expiration of items put or read from now on, cached items keep their expiration time
+     */
+    public void setExpireInSeconds(int expireInSeconds) {
+        log.info("change expiration of region. region=[{}], expireInSeconds=[{}]", name, expireInSeconds);
+        this.expireInSeconds = expireInSeconds;
+    }
+
+    public boolean isBypass() {
+        return this.bypass;
+    }
+
+    /**
+     * switch the region into bypass mode, reads are cache misses and writes remove the cached item,
+     * so no stale item is left when the bypass is switched off
+     */
+    public void setBypass(boolean bypass) {
+        log.info("switch bypass of region. region=[{}], bypass=[{}]", name, bypass);
+        this.bypass = bypass;
+    }
+
     public boolean isRegionDeleted() {
         return this.regionDeleted;
     }
@@ -140,25 +187,34 @@ public abstract class RedisDataRegion implements Region {
             log.debug("cache contains items? region=[{}], key=[{}], contains=[{}]", name, key, exists);
             return exists;
         } catch (Throwable ignored) {
+            metrics.recordError();
             log.warn("Fail to check contains key... region=" + name, ignored);
             return false;
         }
     }
 
+    /**
+     * bytes used by this region in redis, extrapolated by redis from
+     * [redis.memoryUsage.samples] (default 16) sampled items
+     */
     @Override
     public long getSizeInMemory() {
         try {
-            return redis.dbSize();
+            return redis.memoryUsageOfRegion(name, memoryUsageSamples);
         } catch (Throwable ignored) {
-            log.warn("Fail to get count of cache items. region=" + name, ignored);
+            log.warn("Fail to get memory usage of cache items. region=" + name, ignored);
             return -1;
         }
     }
 
+    /**
+     * count of cache items in this region, including expired items not removed yet
+     */
     @Override
     public long getElementCountInMemory() {
         try {
-            return redis.keysInRegion(name).size();
+            Long count = redis.keySizeInRegion(name);
+            return count != null ? count : 0L;
         } catch (Throwable ignored) {
             log.warn("Fail to get count of cache items. region=" + name, ignored);
             return -1;
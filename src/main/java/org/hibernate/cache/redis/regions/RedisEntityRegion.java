@@ -21,8 +21,10 @@ import java.util.Properties;
 import org.hibernate.boot.spi.SessionFactoryOptions;
 import org.hibernate.cache.CacheException;
 import org.hibernate.cache.redis.jedis.JedisClient;
+import org.hibernate.cache.redis.serializer.CacheEntryFieldCodec;
 import org.hibernate.cache.redis.strategy.RedisAccessStrategyFactory;
 import org.hibernate.cache.redis.timestamper.JedisCacheTimestamper;
+import org.hibernate.cache.redis.util.JedisTool;
 import org.hibernate.cache.spi.CacheDataDescription;
 import org.hibernate.cache.spi.EntityRegion;
 import org.hibernate.cache.spi.access.AccessType;
@@ -33,6 +35,7 @@ import org.hibernate.cache.spi.access.EntityRegionAccessStrategy;
  * <p/>
  * This implementation returns Redis specific access strategy instances for all the non-transactional access types.
  * Transactional access is not supported.
+ * With [redis.entity.propertyFields] entries are stored as one hash field per property, see {@link CacheEntryFieldCodec}.
  *
  * @author sunghyouk.bae@gmail.com
  * @since 13. 4. 5. 오후 8:51
@@ -47,10 +50,14 @@ public class RedisEntityRegion extends RedisTransactionalDataRegion implements E
                              Properties props,
                              JedisCacheTimestamper timestamper) {
         super(accessStrategyFactory, redis, regionName, settings, metadata, props, timestamper);
+        if (JedisTool.isPropertyFields(props, regionName))
+            redis.setFieldCodec(regionName, new CacheEntryFieldCodec());
     }
 
     @Override
     public EntityRegionAccessStrategy buildAccessStrategy(AccessType accessType) throws CacheException {
+        if (accessType == AccessType.READ_WRITE)
+            useReadWriteItems();
         return getAccessStrategyFactory().createEntityRegionAccessStrategy(this, accessType);
     }
 }
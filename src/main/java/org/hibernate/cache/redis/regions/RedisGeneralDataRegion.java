@@ -46,12 +46,15 @@ public abstract class RedisGeneralDataRegion extends RedisDataRegion implements
 
     @Override
     public Object get(SharedSessionContractImplementor session, Object key) {
-        if (key == null) return null;
+        if (key == null || isBypass()) return null;
+        long start = metrics.start();
         try {
             Object value = redis.get(getName(), key, getExpireInSeconds());
+            metrics.recordGet(start, value != null);
             log.trace("get cache item... key=[{}], value=[{}]", key, value);
             return value;
         } catch (Exception e) {
+            metrics.recordError();
             log.warn("Fail to get cache item... key=" + key, e);
             return null;
         }
@@ -59,27 +62,40 @@ public abstract class RedisGeneralDataRegion extends RedisDataRegion implements
 
     @Override
     public void put(SharedSessionContractImplementor session, Object key, Object value) {
+        if (isBypass()) {
+            evict(key);
+            return;
+        }
+        long start = metrics.start();
         try {
             redis.set(getName(), key, value, getExpireInSeconds());
+            metrics.recordPut(start);
         } catch (Exception e) {
+            metrics.recordError();
             log.warn("Fail to put cache item... key=" + key, e);
         }
     }
 
     @Override
     public void evict(Object key) {
+        long start = metrics.start();
         try {
             redis.del(getName(), key);
+            metrics.recordRemove(start);
         } catch (Exception e) {
+            metrics.recordError();
             log.warn("Fail to remove cache item... key=" + key, e);
         }
     }
 
     @Override
     public void evictAll() {
+        long start = metrics.start();
         try {
             redis.deleteRegion(getName());
+            metrics.recordClear(start);
         } catch (Exception e) {
+            metrics.recordError();
             log.warn("Fail to remove cache items... region=" + getName(), e);
         }
     }
@@ -51,6 +51,8 @@ public class RedisNaturalIdRegion extends RedisTransactionalDataRegion implement
 
     @Override
     public NaturalIdRegionAccessStrategy buildAccessStrategy(AccessType accessType) throws CacheException {
+        if (accessType == AccessType.READ_WRITE)
+            useReadWriteItems();
         return getAccessStrategyFactory().createNaturalIdRegionAccessStrategy(this, accessType);
     }
 }
@@ -16,12 +16,17 @@
 
 package org.hibernate.cache.redis.regions;
 
+import java.util.Collection;
 import java.util.Properties;
 
 import org.hibernate.cache.redis.jedis.JedisClient;
+import org.hibernate.cache.redis.serializer.QueryResultsRedisSerializer;
 import org.hibernate.cache.redis.strategy.RedisAccessStrategyFactory;
 import org.hibernate.cache.redis.timestamper.JedisCacheTimestamper;
 import org.hibernate.cache.spi.QueryResultsRegion;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * A query results region specific wrapper around an Redis instance.
@@ -31,11 +36,40 @@ import org.hibernate.cache.spi.QueryResultsRegion;
  */
 public class RedisQueryResultsRegion extends RedisGeneralDataRegion implements QueryResultsRegion {
 
+    private static final Logger log = LoggerFactory.getLogger(RedisQueryResultsRegion.class);
+
     public RedisQueryResultsRegion(RedisAccessStrategyFactory accessStrategyFactory,
                                    JedisClient redis,
                                    String regionName,
                                    Properties props,
                                    JedisCacheTimestamper timestamper) {
         super(accessStrategyFactory, redis, regionName, props, timestamper);
+        redis.setValueSerializer(regionName, new QueryResultsRedisSerializer(redis.getValueSerializer(regionName)));
+    }
+
+    /**
+     * get a cached query result only if none of its query spaces was updated since it was cached,
+     * the result and the space timestamps are read in one round trip.
+     *
+     * @param timestampsRegion timestamps region of the session factory
+     * @param spaces           query spaces of the result
+     * @return cached result, null if not exists or not up to date
+     */
+    public Object getIfUpToDate(SharedSessionContractImplementor session,
+                                Object key,
+                                Collection<?> spaces,
+                                RedisTimestampsRegion timestampsRegion) {
+        if (key == null || isBypass()) return null;
+        long start = metrics.start();
+        try {
+            Object value = redis.getQueryResult(getName(), key, getExpireInSeconds(), timestampsRegion.getName(), spaces);
+            metrics.recordGet(start, value != null);
+            log.trace("get up to date query result... key=[{}], value=[{}]", key, value);
+            return value;
+        } catch (Exception e) {
+            metrics.recordError();
+            log.warn("Fail to get query result... key=" + key, e);
+            return null;
+        }
     }
 }
@@ -16,26 +16,290 @@
 
 package org.hibernate.cache.redis.regions;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.hibernate.cache.CacheException;
 import org.hibernate.cache.redis.jedis.JedisClient;
 import org.hibernate.cache.redis.strategy.RedisAccessStrategyFactory;
 import org.hibernate.cache.redis.timestamper.JedisCacheTimestamper;
 import org.hibernate.cache.spi.TimestampsRegion;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import redis.clients.jedis.JedisPubSub;
 
 /**
  * A timestamps region specific wrapper around an Redis instance.
+ * <p/>
+ * Query space timestamps are plain numbers in one hash without expiration, not serialized cache items.
+ * Each node keeps a local copy of the timestamps it has read. Every write publishes the changed field on
+ * [hibernate-redis:timestamps:{regionName}], and the nodes drop their copy of it. The next read of an
+ * invalidated space fetches all invalidated spaces with one HMGET. The local copy is only used while the
+ * subscription is active; disable it with [redis.timestamps.localCache=false].
  *
  * @author sunghyouk.bae@gmail.com
  * @since 13. 4. 5. 오후 11:56
  */
 public class RedisTimestampsRegion extends RedisGeneralDataRegion implements TimestampsRegion {
 
+    private static final Logger log = LoggerFactory.getLogger(RedisTimestampsRegion.class);
+
+    private static final String LOCAL_CACHE_PROPERTY = "redis.timestamps.localCache";
+    private static final long RESUBSCRIBE_DELAY_MILLIS = 1000L;
+
+    /**
+     * cached absence of a timestamp
+     */
+    private static final Long NO_TIMESTAMP = Long.MIN_VALUE;
+
+    private final ConcurrentMap<String, Long> localTimestamps = new ConcurrentHashMap<String, Long>();
+    private final Set<String> invalidatedFields =
+            Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    /**
+     * incremented by every invalidation, values read before an invalidation are not kept
+     */
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private volatile boolean subscribed = false;
+    private volatile boolean running = false;
+    private volatile JedisPubSub subscriber = null;
+    private Thread subscriberThread = null;
+
     public RedisTimestampsRegion(RedisAccessStrategyFactory accessStrategyFactory,
                                  JedisClient redis,
                                  String regionName,
                                  Properties props,
                                  JedisCacheTimestamper timestamper) {
         super(accessStrategyFactory, redis, regionName, props, timestamper);
+        if (Boolean.valueOf(props.getProperty(LOCAL_CACHE_PROPERTY, "true"))) {
+            startSubscriber();
+        }
+    }
+
+    public boolean isSubscribed() {
+        return subscribed;
+    }
+
+    @Override
+    public Object get(SharedSessionContractImplementor session, Object key) {
+        if (key == null || isBypass()) return null;
+        long start = metrics.start();
+        try {
+            String field = redis.timestampField(key);
+            Long timestamp = subscribed ? localTimestamps.get(field) : null;
+            if (timestamp == null) {
+                timestamp = load(field);
+            }
+            Long value = NO_TIMESTAMP.equals(timestamp) ? null : timestamp;
+            metrics.recordGet(start, value != null);
+            log.trace("get timestamp... key=[{}], value=[{}]", key, value);
+            return value;
+        } catch (Exception e) {
+            metrics.recordError();
+            log.warn("Fail to get timestamp... key=" + key, e);
+            return null;
+        }
+    }
+
+    /**
+     * read the field and the other invalidated fields, keep them locally if not invalidated meanwhile.
+     * invalidations increment the counter before they drop local values, a value kept before the counter
+     * changed is dropped by the invalidation, a value kept after it by the check that follows the put.
+     */
+    private Long load(String field) {
+        boolean keep = subscribed;
+        long version = invalidations.get();
+        List<String> fields = new ArrayList<String>();
+        fields.add(field);
+        if (keep) {
+            for (String invalidated : invalidatedFields) {
+                if (!invalidated.equals(field))
+                    fields.add(invalidated);
+            }
+        }
+
+        Map<String, Long> timestamps = redis.getTimestamps(getName(), fields);
+        if (keep && subscribed && invalidations.get() == version) {
+            for (String loaded : fields) {
+                Long timestamp = timestamps.get(loaded);
+                Long value = timestamp != null ? timestamp : NO_TIMESTAMP;
+                localTimestamps.put(loaded, value);
+                invalidatedFields.remove(loaded);
+                // an invalidation between the check and the put may have missed the value, drop it again
+                if (invalidations.get() != version) {
+                    localTimestamps.remove(loaded, value);
+                    invalidatedFields.add(loaded);
+                    break;
+                }
+            }
+        }
+        Long timestamp = timestamps.get(field);
+        return timestamp != null ? timestamp : NO_TIMESTAMP;
+    }
+
+    @Override
+    public void put(SharedSessionContractImplementor session, Object key, Object value) {
+        if (isBypass()) {
+            evict(key);
+            return;
+        }
+        long start = metrics.start();
+        String field = null;
+        try {
+            field = redis.timestampField(key);
+            redis.setTimestamp(getName(), field, ((Number) value).longValue());
+            metrics.recordPut(start);
+        } catch (Exception e) {
+            metrics.recordError();
+            log.warn("Fail to put timestamp... key=" + key, e);
+        } finally {
+            // the write may have been applied even if it failed, never keep the old timestamp
+            if (field != null) {
+                invalidate(field);
+            } else {
+                invalidateAll();
+            }
+        }
+    }
+
+    @Override
+    public void evict(Object key) {
+        long start = metrics.start();
+        try {
+            String field = redis.timestampField(key);
+            redis.removeTimestamp(getName(), field);
+            invalidate(field);
+            metrics.recordRemove(start);
+        } catch (Exception e) {
+            metrics.recordError();
+            log.warn("Fail to remove timestamp... key=" + key, e);
+        }
+    }
+
+    @Override
+    public void evictAll() {
+        long start = metrics.start();
+        try {
+            redis.deleteTimestamps(getName());
+            invalidateAll();
+            metrics.recordClear(start);
+        } catch (Exception e) {
+            metrics.recordError();
+            log.warn("Fail to remove timestamps... region=" + getName(), e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Map toMap() {
+        try {
+            return redis.getAllTimestamps(getName());
+        } catch (Throwable e) {
+            log.warn("Fail to read timestamps. return EmptyMap.", e);
+            return Collections.emptyMap();
+        }
+    }
+
+    @Override
+    public void destroy() throws CacheException {
+        stopSubscriber();
+        super.destroy();
+    }
+
+    private void invalidate(String field) {
+        invalidations.incrementAndGet();
+        localTimestamps.remove(field);
+        invalidatedFields.add(field);
+    }
+
+    private void invalidateAll() {
+        invalidations.incrementAndGet();
+        localTimestamps.clear();
+        invalidatedFields.clear();
+    }
+
+    private synchronized void startSubscriber() {
+        running = true;
+        subscriberThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                subscribe();
+            }
+        }, "hibernate-redis-timestamps-" + getName());
+        subscriberThread.setDaemon(true);
+        subscriberThread.start();
+    }
+
+    private synchronized void stopSubscriber() {
+        running = false;
+        JedisPubSub current = subscriber;
+        if (current != null && current.isSubscribed()) {
+            try {
+                current.unsubscribe();
+            } catch (Exception e) {
+                log.debug("Fail to unsubscribe timestamps invalidation.", e);
+            }
+        }
+        if (subscriberThread != null) {
+            subscriberThread.interrupt();
+            subscriberThread = null;
+        }
+    }
+
+    /**
+     * listen to invalidations until stopped, the local copy is dropped whenever the subscription is lost
+     */
+    private void subscribe() {
+        String channel = JedisClient.timestampsChannel(getName());
+        while (running) {
+            subscriber = new JedisPubSub() {
+                @Override
+                public void onSubscribe(String channel, int subscribedChannels) {
+                    if (!running) {
+                        unsubscribe();
+                        return;
+                    }
+                    invalidateAll();
+                    subscribed = true;
+                    log.debug("timestamps invalidation subscribed. channel=[{}]", channel);
+                }
+
+                @Override
+                public void onMessage(String channel, String message) {
+                    if (JedisClient.ALL_TIMESTAMPS.equals(message)) {
+                        invalidateAll();
+                    } else {
+                        invalidate(message);
+                    }
+                }
+            };
+            try {
+                redis.subscribe(subscriber, channel);
+            } catch (Exception e) {
+                if (running)
+                    log.warn("Timestamps invalidation subscription lost, local timestamps are not used. channel=" + channel, e);
+            } finally {
+                subscribed = false;
+                invalidateAll();
+            }
+            if (running) {
+                try {
+                    Thread.sleep(RESUBSCRIBE_DELAY_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
     }
 }
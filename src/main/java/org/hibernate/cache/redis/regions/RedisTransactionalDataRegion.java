@@ -16,11 +16,17 @@
 
 package org.hibernate.cache.redis.regions;
 
+import java.util.Date;
+import java.util.Map;
 import java.util.Properties;
 
 import org.hibernate.boot.spi.SessionFactoryOptions;
 import org.hibernate.cache.CacheException;
 import org.hibernate.cache.redis.jedis.JedisClient;
+import org.hibernate.cache.redis.serializer.ReadWriteRedisSerializer;
+import org.hibernate.cache.redis.serializer.RedisSerializer;
+import org.hibernate.cache.redis.strategy.ReadWriteItem;
+import org.hibernate.cache.redis.strategy.ReadWriteSoftLock;
 import org.hibernate.cache.redis.strategy.RedisAccessStrategyFactory;
 import org.hibernate.cache.redis.timestamper.JedisCacheTimestamper;
 import org.hibernate.cache.spi.CacheDataDescription;
@@ -37,6 +43,7 @@ import org.slf4j.LoggerFactory;
 public class RedisTransactionalDataRegion extends RedisDataRegion implements TransactionalDataRegion {
 
     private static final Logger log = LoggerFactory.getLogger(RedisTransactionalDataRegion.class);
+    private static final String SKIP_UNCHANGED_WRITES_PROPERTY = "redis.readWrite.skipUnchangedWrites";
     /**
      * Hibernate settings associated with the persistence unit.
      */
@@ -45,6 +52,15 @@ public class RedisTransactionalDataRegion extends RedisDataRegion implements Tra
      * Metadata associated with the objects sorted in the region
      */
     protected final CacheDataDescription metadata;
+    /**
+     * read/write items are written with a digest and left in place when locked, updates which do not change
+     * an item only delete its lock
+     */
+    private final boolean skipUnchangedWrites;
+    /**
+     * items read ahead for the current thread, see {@link #setPrefetched(Map)}
+     */
+    private final ThreadLocal<Map<Object, Object>> prefetched = new ThreadLocal<Map<Object, Object>>();
 
     public RedisTransactionalDataRegion(RedisAccessStrategyFactory accessStrategyFactory,
                                         JedisClient redis,
@@ -57,12 +73,32 @@ public class RedisTransactionalDataRegion extends RedisDataRegion implements Tra
 
         this.settings = settings;
         this.metadata = metadata;
+        this.skipUnchangedWrites = Boolean.valueOf(props.getProperty(SKIP_UNCHANGED_WRITES_PROPERTY, "false"));
     }
 
     public SessionFactoryOptions getSettings() {
         return settings;
     }
 
+    public boolean isSkipUnchangedWrites() {
+        return skipUnchangedWrites;
+    }
+
+    /**
+     * store read/write items and soft locks in this region, called when a read/write access strategy is built.
+     * the region serializer writes the values of the items.
+     */
+    protected void useReadWriteItems() {
+        if (redis.getFieldCodec(getName()) != null) {
+            // NOTE: read-write items are locked and replaced as a whole, the fields of an entry cannot be kept in a lock.
+            log.warn("Property fields are not supported by read-write regions, disabled for region=[{}]", getName());
+            redis.setFieldCodec(getName(), null);
+        }
+        RedisSerializer<Object> serializer = redis.getValueSerializer(getName());
+        if (!(serializer instanceof ReadWriteRedisSerializer))
+            redis.setValueSerializer(getName(), new ReadWriteRedisSerializer(serializer, skipUnchangedWrites));
+    }
+
     @Override
     public boolean isTransactionAware() {
         return false;
@@ -73,10 +109,35 @@ public class RedisTransactionalDataRegion extends RedisDataRegion implements Tra
         return metadata;
     }
 
+    /**
+     * items read ahead in bulk, e.g. the entities of a cached query result, which {@link #get(Object)}
+     * returns on the current thread without a round trip, each item once. Keys missing in redis are kept with a null value.
+     * Call {@link #clearPrefetched()} when done.
+     */
+    public void setPrefetched(Map<Object, Object> items) {
+        prefetched.set(items);
+    }
+
+    public void clearPrefetched() {
+        prefetched.remove();
+    }
+
     public Object get(Object key) {
+        if (isBypass())
+            return null;
+        long start = metrics.start();
+        Map<Object, Object> items = prefetched.get();
+        if (items != null && items.containsKey(key)) {
+            Object value = items.remove(key);
+            metrics.recordGet(start, value != null);
+            return value;
+        }
         try {
-            return redis.get(getName(), key, getExpireInSeconds());
+            Object value = redis.get(getName(), key, getExpireInSeconds());
+            metrics.recordGet(start, value != null);
+            return value;
         } catch (Exception e) {
+            metrics.recordError();
             log.warn("Fail to get cache item... key=" + key, e);
             return null;
         }
@@ -84,26 +145,189 @@ public class RedisTransactionalDataRegion extends RedisDataRegion implements Tra
 
 
     public void put(Object key, Object value) {
+        if (isBypass()) {
+            remove(key);
+            return;
+        }
+        long start = metrics.start();
         try {
             redis.set(getName(), key, value, getExpireInSeconds());
+            metrics.recordPut(start);
         } catch (Exception e) {
+            metrics.recordError();
             log.warn("Fail to put cache item... key=" + key, e);
         }
     }
 
+    /**
+     * put a loaded item in one round trip, unless a newer version of the item is cached or, with minimalPut,
+     * the item is cached already. Versions are compared in redis as numbers, which is the order of the version
+     * comparator for numeric and timestamp versions; other versions are not compared.
+     *
+     * @return true if the item was put
+     */
+    public boolean putFromLoad(Object key, Object value, Object version, boolean minimalPut) {
+        if (isBypass())
+            return false;
+        long start = metrics.start();
+        try {
+            boolean put = redis.setIfNewer(getName(), key, value, getExpireInSeconds(), versionNumber(version), minimalPut);
+            metrics.recordPut(start);
+            return put;
+        } catch (Exception e) {
+            metrics.recordError();
+            log.warn("Fail to put loaded cache item... key=" + key, e);
+            return false;
+        }
+    }
+
+    /**
+     * cache a loaded read/write item, stamped with the start of the loading transaction, if the key is absent,
+     * locked by a lock which expired or was released before the transaction started or, unless minimalPut,
+     * cached with an older version.
+     *
+     * @return true if the item was put
+     */
+    public boolean putLoadedItem(Object key, Object value, long txTimestamp, Object version, boolean minimalPut) {
+        if (isBypass())
+            return false;
+        long start = metrics.start();
+        try {
+            Long versionNumber = versionNumber(version);
+            boolean put = redis.putFromLoad(getName(), key, getExpireInSeconds(), txTimestamp, versionNumber, minimalPut,
+                                            new ReadWriteItem(value, txTimestamp, versionNumber));
+            metrics.recordPut(start);
+            return put;
+        } catch (Exception e) {
+            metrics.recordError();
+            log.warn("Fail to put loaded cache item... key=" + key, e);
+            return false;
+        }
+    }
+
+    /**
+     * soft lock a read/write item, the item is removed if it cannot be locked
+     *
+     * @return the lock, null if the item was removed instead
+     */
+    public ReadWriteSoftLock lockItem(Object key, String lockId) {
+        if (isBypass()) {
+            remove(key);
+            return null;
+        }
+        long start = metrics.start();
+        try {
+            long now = nextTimestamp();
+            ReadWriteSoftLock lock = redis.lockItem(getName(), key, getExpireInSeconds(), now + getCacheLockTimeout(), now, lockId);
+            metrics.recordPut(start);
+            return lock;
+        } catch (Exception e) {
+            metrics.recordError();
+            log.warn("Fail to lock cache item, remove it... key=" + key, e);
+            remove(key);
+            return null;
+        }
+    }
+
+    /**
+     * release a soft lock, the item is removed if there is no lock to release or it cannot be released
+     */
+    public void unlockItem(Object key, ReadWriteSoftLock lock) {
+        if (lock == null) {
+            remove(key);
+            return;
+        }
+        long start = metrics.start();
+        try {
+            redis.unlockItem(getName(), key, getExpireInSeconds(), lock.getLockId(), nextTimestamp());
+            metrics.recordPut(start);
+        } catch (Exception e) {
+            metrics.recordError();
+            log.warn("Fail to unlock cache item, remove it... key=" + key, e);
+            remove(key);
+        }
+    }
+
+    /**
+     * cache an inserted read/write item, unless the key was cached or locked meanwhile
+     *
+     * @return true if the item was put
+     */
+    public boolean putInsertedItem(Object key, Object value, Object version) {
+        if (isBypass())
+            return false;
+        long start = metrics.start();
+        try {
+            boolean put = redis.putIfAbsent(getName(), key, getExpireInSeconds(),
+                                            new ReadWriteItem(value, nextTimestamp(), versionNumber(version)));
+            metrics.recordPut(start);
+            return put;
+        } catch (Exception e) {
+            metrics.recordError();
+            log.warn("Fail to put inserted cache item... key=" + key, e);
+            return false;
+        }
+    }
+
+    /**
+     * replace a soft lock by the updated read/write item, or only release it if the item was locked concurrently
+     * or the lock expired. the item is removed if there is no lock to replace or it cannot be replaced.
+     *
+     * @return true if the item was put
+     */
+    public boolean replaceLockedItem(Object key, Object value, Object version, ReadWriteSoftLock lock) {
+        if (isBypass() || lock == null) {
+            remove(key);
+            return false;
+        }
+        long start = metrics.start();
+        try {
+            long now = nextTimestamp();
+            boolean put = redis.replaceLockedItem(getName(), key, getExpireInSeconds(), lock, now,
+                                                  new ReadWriteItem(value, now, versionNumber(version)));
+            metrics.recordPut(start);
+            return put;
+        } catch (Exception e) {
+            metrics.recordError();
+            log.warn("Fail to put updated cache item, remove it... key=" + key, e);
+            remove(key);
+            return false;
+        }
+    }
+
+    /**
+     * version as a number in the order of the version comparator, null if the region is not versioned
+     * or its versions are not numbers or timestamps
+     */
+    private Long versionNumber(Object version) {
+        if (version == null || metadata == null || !metadata.isVersioned())
+            return null;
+        if (version instanceof Long || version instanceof Integer || version instanceof Short || version instanceof Byte)
+            return ((Number) version).longValue();
+        if (version instanceof Date)
+            return ((Date) version).getTime();
+        return null;
+    }
+
     public void remove(Object key) throws CacheException {
+        long start = metrics.start();
         try {
             redis.del(getName(), key);
+            metrics.recordRemove(start);
         } catch (Exception e) {
+            metrics.recordError();
             log.warn("Fail to remove cache item... key=" + key, e);
         }
     }
 
 
     public void clear() {
+        long start = metrics.start();
         try {
             redis.deleteRegion(getName());
+            metrics.recordClear(start);
         } catch (Exception e) {
+            metrics.recordError();
             log.warn("Fail to clear region... name=" + getName(), e);
         }
     }
@@ -0,0 +1,21 @@
+package org.hibernate.cache.redis.serializer;
+
+/**
+ * Serializer which works on reusable buffers instead of allocating intermediate arrays.
+ * <p/>
+ * Wrapping serializers (compression) use it to read the inner serializer output in place
+ * and to hand decompressed bytes to the inner serializer without copying.
+ */
+public interface BufferedRedisSerializer<T> extends RedisSerializer<T> {
+
+    /**
+     * Serialize object into a buffer owned by the current thread.
+     * The buffer is only valid until the next call of this serializer on the same thread.
+     */
+    SerializationBuffer serializeToBuffer(final T graph);
+
+    /**
+     * Deserialize object from the first {@code length} bytes of the array
+     */
+    T deserialize(final byte[] bytes, final int length);
+}
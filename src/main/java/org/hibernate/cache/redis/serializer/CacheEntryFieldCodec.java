@@ -0,0 +1,73 @@
+package org.hibernate.cache.redis.serializer;
+
+import java.io.Serializable;
+import java.lang.reflect.Constructor;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.hibernate.cache.spi.entry.StandardCacheEntryImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stores an entity cache entry ({@link StandardCacheEntryImpl}) as one field per property of its disassembled
+ * state, named by the property index, plus the fields "subclass" and "version".
+ * An update of a wide entity then writes only the changed properties. Other values are stored as a whole.
+ */
+public class CacheEntryFieldCodec implements RedisFieldCodec {
+
+    private static final Logger log = LoggerFactory.getLogger(CacheEntryFieldCodec.class);
+
+    private static final String SUBCLASS = "subclass";
+    private static final String VERSION = "version";
+
+    private static final Constructor<StandardCacheEntryImpl> CACHE_ENTRY_CTOR = cacheEntryConstructor();
+
+    @Override
+    public Map<String, Object> split(Object value) {
+        if (value == null || value.getClass() != StandardCacheEntryImpl.class)
+            return null;
+
+        StandardCacheEntryImpl entry = (StandardCacheEntryImpl) value;
+        Serializable[] state = entry.getDisassembledState();
+        Map<String, Object> fields = new LinkedHashMap<String, Object>(state.length + 2);
+        fields.put(SUBCLASS, entry.getSubclass());
+        fields.put(VERSION, entry.getVersion());
+        for (int i = 0; i < state.length; i++) {
+            fields.put(String.valueOf(i), state[i]);
+        }
+        return fields;
+    }
+
+    @Override
+    public Object join(Map<String, Object> fields) {
+        if (!fields.containsKey(SUBCLASS) || !fields.containsKey(VERSION))
+            return null;
+
+        Serializable[] state = new Serializable[fields.size() - 2];
+        for (int i = 0; i < state.length; i++) {
+            String name = String.valueOf(i);
+            if (!fields.containsKey(name))
+                return null;
+            state[i] = (Serializable) fields.get(name);
+        }
+        try {
+            return CACHE_ENTRY_CTOR.newInstance(state, fields.get(SUBCLASS), fields.get(VERSION));
+        } catch (Exception e) {
+            log.warn("Fail to create cache entry from fields. subclass=" + fields.get(SUBCLASS), e);
+            return null;
+        }
+    }
+
+    private static Constructor<StandardCacheEntryImpl> cacheEntryConstructor() {
+        try {
+            Constructor<StandardCacheEntryImpl> ctor =
+                    StandardCacheEntryImpl.class.getDeclaredConstructor(Serializable[].class, String.class, Object.class);
+            ctor.setAccessible(true);
+            return ctor;
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("Unsupported hibernate version, no constructor in "
+                                            + StandardCacheEntryImpl.class.getName(), e);
+        }
+    }
+}
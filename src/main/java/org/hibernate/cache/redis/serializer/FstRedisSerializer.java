@@ -1,24 +1,69 @@
 package org.hibernate.cache.redis.serializer;
 
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+import org.hibernate.cache.spi.entry.CollectionCacheEntry;
+import org.hibernate.cache.spi.entry.StandardCacheEntryImpl;
 import org.nustaq.serialization.FSTConfiguration;
 import org.nustaq.serialization.FSTObjectInput;
 import org.nustaq.serialization.FSTObjectOutput;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-
 /**
  * Serializer using Fast-Serialization
+ * <p/>
+ * Uses the thread local {@link FSTObjectOutput} / {@link FSTObjectInput} of the configuration,
+ * so no stream objects are created per call.
+ * <p/>
+ * After {@link #registerClasses(Collection)} payloads carry class ids instead of class names,
+ * prefixed by a header [marker(2)][registration fingerprint(4)]. Payloads with another fingerprint
+ * were written by a node with a different class registration and are ignored (cache miss).
+ * Payloads without the complete marker are read as plain FST.
  *
  * @author Sunghyouk Bae
  */
-public class FstRedisSerializer<T> implements RedisSerializer<T> {
+public class FstRedisSerializer<T> implements BufferedRedisSerializer<T> {
+
+    /**
+     * jdk and hibernate types found in most cache values, registered with the mapped classes.
+     */
+    public static final List<Class<?>> COMMON_CLASSES = Collections.unmodifiableList(Arrays.<Class<?>>asList(
+            Boolean.class, Byte.class, Short.class, Integer.class, Long.class, Float.class, Double.class,
+            Character.class, String.class, BigDecimal.class, BigInteger.class,
+            Date.class, java.sql.Date.class, java.sql.Time.class, java.sql.Timestamp.class,
+            Locale.class, UUID.class, byte[].class, Object[].class, Serializable[].class,
+            ArrayList.class, HashMap.class, HashSet.class, LinkedHashMap.class,
+            StandardCacheEntryImpl.class, CollectionCacheEntry.class));
+
+    private static final byte REGISTERED_FORMAT = (byte) 0x46;
+    private static final byte REGISTERED_FORMAT_VERSION = (byte) 0x53;
+    private static final int HEADER_SIZE = 6;
 
     private static final FSTConfiguration conf = FSTConfiguration.createDefaultConfiguration();
     private static final Logger log = LoggerFactory.getLogger(FstRedisSerializer.class);
 
+    private static final List<String> registeredClassNames = new ArrayList<String>();
+    private static volatile byte[] header = null;
+
+    private final ThreadLocal<SerializationBuffer> outputBuffer = SerializationBuffer.threadLocal();
+
     /**
      * Provides access to serialization configuration, to inject custom ClassLoaders
      * among other things.
@@ -28,35 +73,131 @@ public class FstRedisSerializer<T> implements RedisSerializer<T> {
 	return conf;
     }
 
+    /**
+     * Register classes with the shared configuration in deterministic (class name) order,
+     * so nodes registering the same class set assign the same class ids.
+     *
+     * @param classes classes to register, duplicates, already registered classes and classes FST
+     *                can not serialize (not {@link Serializable}) are ignored
+     * @return fingerprint of all classes registered so far
+     */
+    public static synchronized int registerClasses(final Collection<Class<?>> classes) {
+        TreeSet<Class<?>> sorted = new TreeSet<Class<?>>(new Comparator<Class<?>>() {
+            @Override
+            public int compare(Class<?> o1, Class<?> o2) {
+                return o1.getName().compareTo(o2.getName());
+            }
+        });
+        sorted.addAll(classes);
+
+        for (Class<?> clazz : sorted) {
+            if (registeredClassNames.contains(clazz.getName()))
+                continue;
+            if (!clazz.isPrimitive() && !clazz.isArray() && !Serializable.class.isAssignableFrom(clazz)) {
+                log.debug("Skip registering class not serializable by FST. class={}", clazz.getName());
+                continue;
+            }
+            conf.registerClass(clazz);
+            registeredClassNames.add(clazz.getName());
+        }
+
+        CRC32 crc = new CRC32();
+        for (String name : registeredClassNames) {
+            crc.update(name.getBytes(UTF_8));
+            crc.update('\n');
+        }
+        int fingerprint = (int) crc.getValue();
+        header = new byte[] { REGISTERED_FORMAT, REGISTERED_FORMAT_VERSION,
+                              (byte) (fingerprint >>> 24), (byte) (fingerprint >>> 16),
+                              (byte) (fingerprint >>> 8), (byte) fingerprint };
+
+        log.info("Registered classes with FST. classes=[{}], fingerprint=[{}]",
+                 registeredClassNames.size(), Integer.toHexString(fingerprint));
+        return fingerprint;
+    }
+
+    /**
+     * names of registered classes in registration order
+     */
+    public static synchronized List<String> getRegisteredClassNames() {
+        return new ArrayList<String>(registeredClassNames);
+    }
+
     @Override
     public byte[] serialize(final T graph) {
+        return serializeToBuffer(graph).toByteArray();
+    }
+
+    /**
+     * serialize into the thread local output of FST, returned buffer wraps the internal FST buffer.
+     */
+    @Override
+    public SerializationBuffer serializeToBuffer(final T graph) {
+        SerializationBuffer buffer = outputBuffer.get();
         if (graph == null)
-            return EMPTY_BYTES;
+            return buffer.set(EMPTY_BYTES, 0);
 
-        try (ByteArrayOutputStream os = new ByteArrayOutputStream()){
-            FSTObjectOutput oos = conf.getObjectOutput(os);
+        try {
+            FSTObjectOutput oos = conf.getObjectOutput();
+            byte[] currentHeader = header;
+            if (currentHeader != null) {
+                oos.getCodec().writeRawBytes(currentHeader, 0, HEADER_SIZE);
+            }
             oos.writeObject(graph);
-            oos.flush();
-
-            return os.toByteArray();
+            return buffer.set(oos.getBuffer(), oos.getWritten());
         } catch (Exception e) {
             log.warn("Fail to serializer graph. graph=" + graph, e);
-            return EMPTY_BYTES;
+            return buffer.set(EMPTY_BYTES, 0);
         }
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public T deserialize(final byte[] bytes) {
         if (SerializationTool.isEmpty(bytes))
             return null;
+        return deserialize(bytes, bytes.length);
+    }
+
+    @Override
+    public T deserialize(final byte[] bytes, final int length) {
+        if (bytes == null || length == 0)
+            return null;
 
-        try (ByteArrayInputStream is = new ByteArrayInputStream(bytes)){
-            FSTObjectInput ois = conf.getObjectInput(is);
-            return (T) ois.readObject();
+        try {
+            return read(conf.getObjectInput(bytes, length), bytes, 0, length);
         } catch (Exception e) {
             log.warn("Fail to deserialize bytes.", e);
             return null;
         }
     }
+
+    /**
+     * Deserialize object from a range of the array (copies the range)
+     */
+    public T deserialize(final byte[] bytes, final int offset, final int length) {
+        if (bytes == null || length == 0)
+            return null;
+
+        try {
+            return read(conf.getObjectInputCopyFrom(bytes, offset, length), bytes, offset, length);
+        } catch (Exception e) {
+            log.warn("Fail to deserialize bytes.", e);
+            return null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private T read(final FSTObjectInput ois, final byte[] bytes, final int offset, final int length) throws Exception {
+        if (length >= HEADER_SIZE && bytes[offset] == REGISTERED_FORMAT && bytes[offset + 1] == REGISTERED_FORMAT_VERSION) {
+            byte[] currentHeader = header;
+            if (currentHeader == null
+                || bytes[offset + 2] != currentHeader[2] || bytes[offset + 3] != currentHeader[3]
+                || bytes[offset + 4] != currentHeader[4] || bytes[offset + 5] != currentHeader[5]) {
+                log.debug("Value written with another class registration, ignore cached value.");
+                return null;
+            }
+            ois.getCodec().skip(HEADER_SIZE);
+        }
+        return (T) ois.readObject();
+    }
 }
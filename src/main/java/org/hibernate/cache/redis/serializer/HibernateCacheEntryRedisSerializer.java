@@ -0,0 +1,471 @@
+package org.hibernate.cache.redis.serializer;
+
+import java.io.Serializable;
+import java.lang.reflect.Constructor;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.hibernate.cache.spi.entry.CollectionCacheEntry;
+import org.hibernate.cache.spi.entry.StandardCacheEntryImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compact codec for hibernate second level cache values.
+ * <p/>
+ * Understands {@link StandardCacheEntryImpl} (entity), {@link CollectionCacheEntry} (collection)
+ * and query result lists, and writes their disassembled state positionally with one tag byte per value
+ * for common JDBC types. Values of other types are written with FST.
+ * <p/>
+ * Payloads start with a format byte. Payloads without it (e.g. written by {@link FstRedisSerializer}
+ * before the region switched serializer) are read with FST.
+ */
+public class HibernateCacheEntryRedisSerializer<T> implements BufferedRedisSerializer<T> {
+
+    private static final Logger log = LoggerFactory.getLogger(HibernateCacheEntryRedisSerializer.class);
+
+    private static final byte FORMAT = (byte) 0xC7;
+
+    private static final byte NULL = 0;
+    private static final byte TRUE = 1;
+    private static final byte FALSE = 2;
+    private static final byte INT = 3;
+    private static final byte LONG = 4;
+    private static final byte STRING = 5;
+    private static final byte BIG_DECIMAL = 6;
+    private static final byte BIG_INTEGER = 7;
+    private static final byte DATE = 8;
+    private static final byte SQL_DATE = 9;
+    private static final byte SQL_TIME = 10;
+    private static final byte TIMESTAMP = 11;
+    private static final byte DOUBLE = 12;
+    private static final byte FLOAT = 13;
+    private static final byte SHORT = 14;
+    private static final byte BYTE = 15;
+    private static final byte BYTE_ARRAY = 16;
+    private static final byte SERIALIZABLE_ARRAY = 17;
+    private static final byte OBJECT_ARRAY = 18;
+    private static final byte LIST = 19;
+    private static final byte CACHE_ENTRY = 20;
+    private static final byte COLLECTION_ENTRY = 21;
+    private static final byte FST = 22;
+    private static final byte LONG_LIST = 23;
+
+    private static final Constructor<StandardCacheEntryImpl> CACHE_ENTRY_CTOR =
+            constructor(StandardCacheEntryImpl.class, Serializable[].class, String.class, Object.class);
+    private static final Constructor<CollectionCacheEntry> COLLECTION_ENTRY_CTOR =
+            constructor(CollectionCacheEntry.class, Serializable.class);
+
+    private static final FstRedisSerializer<Object> fallback = new FstRedisSerializer<Object>();
+    private final ThreadLocal<SerializationBuffer> outputBuffer = SerializationBuffer.threadLocal();
+
+    @Override
+    public byte[] serialize(final T graph) {
+        SerializationBuffer buffer = serializeToBuffer(graph);
+        byte[] result = buffer.toByteArray();
+        buffer.trim();
+        return result;
+    }
+
+    @Override
+    public SerializationBuffer serializeToBuffer(final T graph) {
+        SerializationBuffer buffer = outputBuffer.get();
+        if (graph == null)
+            return buffer.setLength(0);
+
+        try {
+            buffer.setLength(0);
+            writeByte(buffer, FORMAT);
+            writeValue(buffer, graph);
+            return buffer;
+        } catch (Exception e) {
+            log.warn("Fail to serializer graph. graph=" + graph, e);
+            return buffer.setLength(0);
+        }
+    }
+
+    @Override
+    public T deserialize(final byte[] bytes) {
+        if (SerializationTool.isEmpty(bytes))
+            return null;
+        return deserialize(bytes, bytes.length);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T deserialize(final byte[] bytes, final int length) {
+        if (bytes == null || length == 0)
+            return null;
+        if (bytes[0] != FORMAT)
+            return (T) fallback.deserialize(bytes, length);
+
+        try {
+            Input in = new Input(bytes, 1, length);
+            return (T) in.readValue();
+        } catch (Exception e) {
+            log.warn("Fail to deserialize bytes.", e);
+            return null;
+        }
+    }
+
+    // ----------------------------------------------------------------------------------------------------------------
+    // write
+
+    private void writeValue(final SerializationBuffer out, final Object value) throws Exception {
+        if (value == null) {
+            writeByte(out, NULL);
+            return;
+        }
+
+        Class<?> clazz = value.getClass();
+        if (clazz == Long.class) {
+            writeByte(out, LONG);
+            writeVarLong(out, (Long) value);
+        } else if (clazz == Integer.class) {
+            writeByte(out, INT);
+            writeVarLong(out, (Integer) value);
+        } else if (clazz == String.class) {
+            writeByte(out, STRING);
+            writeString(out, (String) value);
+        } else if (clazz == Boolean.class) {
+            writeByte(out, (Boolean) value ? TRUE : FALSE);
+        } else if (clazz == BigDecimal.class) {
+            BigDecimal decimal = (BigDecimal) value;
+            writeByte(out, BIG_DECIMAL);
+            writeVarLong(out, decimal.scale());
+            writeBytes(out, decimal.unscaledValue().toByteArray());
+        } else if (clazz == Timestamp.class) {
+            Timestamp timestamp = (Timestamp) value;
+            writeByte(out, TIMESTAMP);
+            writeVarLong(out, timestamp.getTime());
+            writeVarLong(out, timestamp.getNanos());
+        } else if (clazz == Date.class) {
+            writeByte(out, DATE);
+            writeVarLong(out, ((Date) value).getTime());
+        } else if (clazz == java.sql.Date.class) {
+            writeByte(out, SQL_DATE);
+            writeVarLong(out, ((Date) value).getTime());
+        } else if (clazz == Time.class) {
+            writeByte(out, SQL_TIME);
+            writeVarLong(out, ((Date) value).getTime());
+        } else if (clazz == Serializable[].class) {
+            writeByte(out, SERIALIZABLE_ARRAY);
+            writeArray(out, (Object[]) value);
+        } else if (clazz == Object[].class) {
+            writeByte(out, OBJECT_ARRAY);
+            writeArray(out, (Object[]) value);
+        } else if (clazz == ArrayList.class) {
+            List<?> list = (List<?>) value;
+            if (isLongList(list)) {
+                // e.g. query results of entity ids
+                writeByte(out, LONG_LIST);
+                writeVarLong(out, list.size());
+                for (Object element : list) {
+                    writeVarLong(out, (Long) element);
+                }
+                return;
+            }
+            writeByte(out, LIST);
+            writeVarLong(out, list.size());
+            for (Object element : list) {
+                writeValue(out, element);
+            }
+        } else if (clazz == StandardCacheEntryImpl.class) {
+            StandardCacheEntryImpl entry = (StandardCacheEntryImpl) value;
+            writeByte(out, CACHE_ENTRY);
+            writeString(out, entry.getSubclass());
+            writeValue(out, entry.getVersion());
+            writeArray(out, entry.getDisassembledState());
+        } else if (clazz == CollectionCacheEntry.class) {
+            writeByte(out, COLLECTION_ENTRY);
+            writeArray(out, ((CollectionCacheEntry) value).getState());
+        } else if (clazz == byte[].class) {
+            writeByte(out, BYTE_ARRAY);
+            writeBytes(out, (byte[]) value);
+        } else if (clazz == Double.class) {
+            writeByte(out, DOUBLE);
+            writeVarLong(out, Double.doubleToRawLongBits((Double) value));
+        } else if (clazz == Float.class) {
+            writeByte(out, FLOAT);
+            writeVarLong(out, Float.floatToRawIntBits((Float) value));
+        } else if (clazz == Short.class) {
+            writeByte(out, SHORT);
+            writeVarLong(out, (Short) value);
+        } else if (clazz == Byte.class) {
+            writeByte(out, BYTE);
+            writeByte(out, (Byte) value);
+        } else if (clazz == BigInteger.class) {
+            writeByte(out, BIG_INTEGER);
+            writeBytes(out, ((BigInteger) value).toByteArray());
+        } else {
+            SerializationBuffer fst = fallback.serializeToBuffer(value);
+            if (fst.length() == 0)
+                throw new IllegalArgumentException("Fail to serialize value of " + clazz.getName());
+            writeByte(out, FST);
+            writeBytes(out, fst.array(), fst.length());
+        }
+    }
+
+    private static boolean isLongList(final List<?> list) {
+        if (list.isEmpty())
+            return false;
+        for (Object element : list) {
+            if (element == null || element.getClass() != Long.class)
+                return false;
+        }
+        return true;
+    }
+
+    private void writeArray(final SerializationBuffer out, final Object[] values) throws Exception {
+        writeVarLong(out, values.length);
+        for (Object value : values) {
+            writeValue(out, value);
+        }
+    }
+
+    private static void writeByte(final SerializationBuffer out, final int b) {
+        int position = out.length();
+        out.grow(position + 1)[position] = (byte) b;
+        out.setLength(position + 1);
+    }
+
+    /**
+     * zig-zag encoded variable length long
+     */
+    private static void writeVarLong(final SerializationBuffer out, final long value) {
+        long v = (value << 1) ^ (value >> 63);
+        int position = out.length();
+        byte[] array = out.grow(position + 10);
+        while ((v & ~0x7FL) != 0) {
+            array[position++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        array[position++] = (byte) v;
+        out.setLength(position);
+    }
+
+    private static void writeBytes(final SerializationBuffer out, final byte[] bytes) {
+        writeBytes(out, bytes, bytes.length);
+    }
+
+    private static void writeBytes(final SerializationBuffer out, final byte[] bytes, final int length) {
+        writeVarLong(out, length);
+        int position = out.length();
+        System.arraycopy(bytes, 0, out.grow(position + length), position, length);
+        out.setLength(position + length);
+    }
+
+    /**
+     * length prefixed UTF-8, encoded without intermediate arrays
+     */
+    private static void writeString(final SerializationBuffer out, final String value) {
+        int length = value.length();
+        int utf8Length = 0;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                utf8Length += 1;
+            } else if (c < 0x800) {
+                utf8Length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                utf8Length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                utf8Length += 1;
+            } else {
+                utf8Length += 3;
+            }
+        }
+        writeVarLong(out, utf8Length);
+
+        int position = out.length();
+        byte[] array = out.grow(position + utf8Length);
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                array[position++] = (byte) c;
+            } else if (c < 0x800) {
+                array[position++] = (byte) (0xC0 | (c >> 6));
+                array[position++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                array[position++] = (byte) (0xF0 | (codePoint >> 18));
+                array[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                array[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                array[position++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // malformed, same replacement as String#getBytes
+                array[position++] = (byte) '?';
+            } else {
+                array[position++] = (byte) (0xE0 | (c >> 12));
+                array[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                array[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        out.setLength(position);
+    }
+
+    // ----------------------------------------------------------------------------------------------------------------
+    // read
+
+    private static final class Input {
+        private final byte[] bytes;
+        private final int limit;
+        private int position;
+
+        Input(byte[] bytes, int position, int limit) {
+            this.bytes = bytes;
+            this.position = position;
+            this.limit = limit;
+        }
+
+        Object readValue() throws Exception {
+            byte tag = readByte();
+            switch (tag) {
+                case NULL:
+                    return null;
+                case TRUE:
+                    return Boolean.TRUE;
+                case FALSE:
+                    return Boolean.FALSE;
+                case INT:
+                    return (int) readVarLong();
+                case LONG:
+                    return readVarLong();
+                case STRING:
+                    return readString();
+                case BIG_DECIMAL:
+                    int scale = (int) readVarLong();
+                    return new BigDecimal(new BigInteger(readBytes()), scale);
+                case BIG_INTEGER:
+                    return new BigInteger(readBytes());
+                case DATE:
+                    return new Date(readVarLong());
+                case SQL_DATE:
+                    return new java.sql.Date(readVarLong());
+                case SQL_TIME:
+                    return new Time(readVarLong());
+                case TIMESTAMP:
+                    Timestamp timestamp = new Timestamp(readVarLong());
+                    timestamp.setNanos((int) readVarLong());
+                    return timestamp;
+                case DOUBLE:
+                    return Double.longBitsToDouble(readVarLong());
+                case FLOAT:
+                    return Float.intBitsToFloat((int) readVarLong());
+                case SHORT:
+                    return (short) readVarLong();
+                case BYTE:
+                    return readByte();
+                case BYTE_ARRAY:
+                    return readBytes();
+                case SERIALIZABLE_ARRAY:
+                    return readArray(new Serializable[readCount()]);
+                case OBJECT_ARRAY:
+                    return readArray(new Object[readCount()]);
+                case LIST:
+                    int size = readCount();
+                    List<Object> list = new ArrayList<Object>(size);
+                    for (int i = 0; i < size; i++) {
+                        list.add(readValue());
+                    }
+                    return list;
+                case LONG_LIST:
+                    int longCount = readCount();
+                    List<Object> longs = new ArrayList<Object>(longCount);
+                    for (int i = 0; i < longCount; i++) {
+                        longs.add(readVarLong());
+                    }
+                    return longs;
+                case CACHE_ENTRY:
+                    String subclass = readString();
+                    Object version = readValue();
+                    Serializable[] state = readArray(new Serializable[readCount()]);
+                    return CACHE_ENTRY_CTOR.newInstance(state, subclass, version);
+                case COLLECTION_ENTRY:
+                    return COLLECTION_ENTRY_CTOR.newInstance((Serializable) readArray(new Serializable[readCount()]));
+                case FST:
+                    int length = readLength();
+                    Object value = fallback.deserialize(bytes, position, length);
+                    if (value == null)
+                        throw new IllegalStateException("Fail to read value written by FST");
+                    position += length;
+                    return value;
+                default:
+                    throw new IllegalStateException("Unknown value tag " + tag);
+            }
+        }
+
+        <A extends Object> A[] readArray(final A[] array) throws Exception {
+            for (int i = 0; i < array.length; i++) {
+                @SuppressWarnings("unchecked")
+                A value = (A) readValue();
+                array[i] = value;
+            }
+            return array;
+        }
+
+        byte readByte() {
+            if (position >= limit)
+                throw new IllegalStateException("Unexpected end of value");
+            return bytes[position++];
+        }
+
+        long readVarLong() {
+            long v = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = readByte();
+                v |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return (v >>> 1) ^ -(v & 1);
+        }
+
+        int readLength() {
+            long length = readVarLong();
+            if (length < 0 || length > limit - position)
+                throw new IllegalStateException("Unexpected end of value");
+            return (int) length;
+        }
+
+        /**
+         * number of elements of an array or a list. every element takes at least one byte, so a count larger than
+         * the remaining bytes is corrupt and rejected before anything is allocated for it
+         */
+        int readCount() {
+            return readLength();
+        }
+
+        byte[] readBytes() {
+            int length = readLength();
+            byte[] result = new byte[length];
+            System.arraycopy(bytes, position, result, 0, length);
+            position += length;
+            return result;
+        }
+
+        String readString() {
+            int length = readLength();
+            String result = new String(bytes, position, length, UTF_8);
+            position += length;
+            return result;
+        }
+    }
+
+    private static <C> Constructor<C> constructor(Class<C> clazz, Class<?>... parameterTypes) {
+        try {
+            Constructor<C> ctor = clazz.getDeclaredConstructor(parameterTypes);
+            ctor.setAccessible(true);
+            return ctor;
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("Unsupported hibernate version, no constructor in " + clazz.getName(), e);
+        }
+    }
+}
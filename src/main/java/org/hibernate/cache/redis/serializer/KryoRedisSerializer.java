@@ -0,0 +1,221 @@
+package org.hibernate.cache.redis.serializer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+
+import org.hibernate.cache.redis.jedis.JedisClient;
+import org.objenesis.strategy.StdInstantiatorStrategy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.unsafe.UnsafeInput;
+import com.esotericsoftware.kryo.unsafe.UnsafeOutput;
+import com.esotericsoftware.kryo.util.DefaultInstantiatorStrategy;
+
+/**
+ * Serializer using Kryo.
+ * <p/>
+ * Kryo is not thread safe, every thread uses its own {@link Kryo} instance with a reusable
+ * {@link Output} / {@link Input}.
+ * <p/>
+ * properties:
+ * <ul>
+ * <li>redis.serializer.kryo.register : register {@link FstRedisSerializer#COMMON_CLASSES}, mapped classes
+ * and [redis.serializer.kryo.classes] (default false). Registered classes are written as ids instead of
+ * class names, and every value starts with a header [format(1)][registration fingerprint(4)].
+ * Values with another fingerprint are ignored (cache miss).</li>
+ * <li>redis.serializer.kryo.classes : comma separated class names to register</li>
+ * <li>redis.serializer.kryo.registrationRequired : fail on unregistered classes (default false)</li>
+ * <li>redis.serializer.kryo.references : track shared and circular references (default true)</li>
+ * <li>redis.serializer.kryo.unsafe : use unsafe input / output (default false),
+ * values are written in native byte order, so all nodes must run on the same platform</li>
+ * </ul>
+ */
+public class KryoRedisSerializer<T> implements RegionAwareRedisSerializer<T>, BufferedRedisSerializer<T> {
+
+    private static final String REGISTER = "redis.serializer.kryo.register";
+    private static final String CLASSES = "redis.serializer.kryo.classes";
+    private static final String REGISTRATION_REQUIRED = "redis.serializer.kryo.registrationRequired";
+    private static final String REFERENCES = "redis.serializer.kryo.references";
+    private static final String UNSAFE = "redis.serializer.kryo.unsafe";
+
+    private static final byte REGISTERED_FORMAT = (byte) 0x4B;
+    private static final int HEADER_SIZE = 5;
+    private static final int BUFFER_SIZE = 4096;
+
+    private static final Logger log = LoggerFactory.getLogger(KryoRedisSerializer.class);
+
+    private static volatile List<Class<?>> mappedClasses = Collections.emptyList();
+
+    private List<Class<?>> registeredClasses = Collections.emptyList();
+    private byte[] header = null;
+    private boolean registrationRequired = false;
+    private boolean references = true;
+    private boolean unsafe = false;
+
+    private final ThreadLocal<SerializationBuffer> outputBuffer = SerializationBuffer.threadLocal();
+    private final ThreadLocal<KryoContext> context = new ThreadLocal<KryoContext>() {
+        @Override
+        protected KryoContext initialValue() {
+            return new KryoContext();
+        }
+    };
+
+    /**
+     * Set the mapped classes, registered by serializers configured afterwards with [redis.serializer.kryo.register].
+     */
+    public static void setMappedClasses(final Collection<Class<?>> classes) {
+        mappedClasses = Collections.unmodifiableList(new ArrayList<Class<?>>(classes));
+    }
+
+    @Override
+    public void configure(String regionName, Properties props, JedisClient jedisClient) {
+        this.registrationRequired = Boolean.valueOf(props.getProperty(REGISTRATION_REQUIRED, "false"));
+        this.references = Boolean.valueOf(props.getProperty(REFERENCES, "true"));
+        this.unsafe = Boolean.valueOf(props.getProperty(UNSAFE, "false"));
+
+        if (registrationRequired || Boolean.valueOf(props.getProperty(REGISTER, "false"))) {
+            TreeSet<Class<?>> sorted = new TreeSet<Class<?>>(new Comparator<Class<?>>() {
+                @Override
+                public int compare(Class<?> o1, Class<?> o2) {
+                    return o1.getName().compareTo(o2.getName());
+                }
+            });
+            sorted.addAll(FstRedisSerializer.COMMON_CLASSES);
+            sorted.addAll(mappedClasses);
+            for (String name : props.getProperty(CLASSES, "").split(",")) {
+                if (name.trim().length() == 0)
+                    continue;
+                try {
+                    sorted.add(Class.forName(name.trim()));
+                } catch (ClassNotFoundException e) {
+                    log.warn("Fail to load class to register with kryo. class=" + name, e);
+                }
+            }
+            registerClasses(sorted);
+        }
+        log.debug("Kryo serializer configured. region=[{}], registered classes=[{}], unsafe=[{}]",
+                  regionName, registeredClasses.size(), unsafe);
+    }
+
+    private void registerClasses(final Collection<Class<?>> classes) {
+        CRC32 crc = new CRC32();
+        for (Class<?> clazz : classes) {
+            crc.update(clazz.getName().getBytes(UTF_8));
+            crc.update('\n');
+        }
+        int fingerprint = (int) crc.getValue();
+
+        this.registeredClasses = Collections.unmodifiableList(new ArrayList<Class<?>>(classes));
+        this.header = new byte[] { REGISTERED_FORMAT,
+                                   (byte) (fingerprint >>> 24), (byte) (fingerprint >>> 16),
+                                   (byte) (fingerprint >>> 8), (byte) fingerprint };
+    }
+
+    @Override
+    public byte[] serialize(final T graph) {
+        return serializeToBuffer(graph).toByteArray();
+    }
+
+    @Override
+    public SerializationBuffer serializeToBuffer(final T graph) {
+        SerializationBuffer buffer = outputBuffer.get();
+        if (graph == null)
+            return buffer.set(EMPTY_BYTES, 0);
+
+        KryoContext ctx = context.get();
+        Output output = ctx.output;
+        try {
+            output.reset();
+            if (header != null) {
+                output.writeBytes(header);
+            }
+            ctx.kryo.writeClassAndObject(output, graph);
+            return buffer.set(output.getBuffer(), output.position());
+        } catch (Exception e) {
+            log.warn("Fail to serializer graph. graph=" + graph, e);
+            return buffer.set(EMPTY_BYTES, 0);
+        } finally {
+            ctx.trim();
+        }
+    }
+
+    @Override
+    public T deserialize(final byte[] bytes) {
+        if (SerializationTool.isEmpty(bytes))
+            return null;
+        return deserialize(bytes, bytes.length);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T deserialize(final byte[] bytes, final int length) {
+        if (bytes == null || length == 0)
+            return null;
+
+        int offset = 0;
+        if (header != null) {
+            if (length < HEADER_SIZE || bytes[0] != header[0]
+                || bytes[1] != header[1] || bytes[2] != header[2] || bytes[3] != header[3] || bytes[4] != header[4]) {
+                log.debug("Value written with another class registration, ignore cached value.");
+                return null;
+            }
+            offset = HEADER_SIZE;
+        }
+
+        KryoContext ctx = context.get();
+        Input input = ctx.input;
+        try {
+            input.setBuffer(bytes, offset, length - offset);
+            return (T) ctx.kryo.readClassAndObject(input);
+        } catch (Exception e) {
+            log.warn("Fail to deserialize bytes.", e);
+            return null;
+        } finally {
+            input.setBuffer(EMPTY_BYTES);
+        }
+    }
+
+    /**
+     * Kryo instance with its reusable input / output, owned by one thread
+     */
+    private final class KryoContext {
+        private final Kryo kryo;
+        private Output output;
+        private final Input input;
+
+        private KryoContext() {
+            kryo = new Kryo();
+            kryo.setRegistrationRequired(registrationRequired);
+            kryo.setReferences(references);
+            kryo.setInstantiatorStrategy(new DefaultInstantiatorStrategy(new StdInstantiatorStrategy()));
+            for (Class<?> clazz : registeredClasses) {
+                kryo.register(clazz);
+            }
+            output = newOutput();
+            input = unsafe ? new UnsafeInput() : new Input();
+        }
+
+        private Output newOutput() {
+            return unsafe ? new UnsafeOutput(BUFFER_SIZE, -1) : new Output(BUFFER_SIZE, -1);
+        }
+
+        /**
+         * drop an output buffer grown for a large value
+         */
+        private void trim() {
+            if (output.getBuffer().length > SerializationBuffer.MAX_RETAINED_CAPACITY) {
+                output = newOutput();
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package org.hibernate.cache.redis.serializer;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Serializer of query results regions.
+ * <p/>
+ * A query result cached by {@link org.hibernate.cache.internal.StandardQueryCache} is a list starting with
+ * the timestamp of the query. The timestamp is written as a readable header [0x00]['q'][decimal timestamp]['\n']
+ * before the value serialized by the region serializer, so a script can validate the result against the
+ * timestamps of its query spaces without deserializing it.
+ * Values without header, like the ones written by older versions, are passed to the region serializer as is.
+ */
+public class QueryResultsRedisSerializer implements RedisSerializer<Object> {
+
+    private static final byte MARK = 0;
+    private static final byte QUERY = 'q';
+    private static final byte END = '\n';
+    private static final int MAX_HEADER_LENGTH = 2 + 20 + 1;
+
+    private final RedisSerializer<Object> inner;
+
+    public QueryResultsRedisSerializer(RedisSerializer<Object> innerSerializer) {
+        assert (innerSerializer != null);
+        this.inner = innerSerializer;
+    }
+
+    public RedisSerializer<Object> getInner() {
+        return inner;
+    }
+
+    @Override
+    public byte[] serialize(Object graph) {
+        byte[] bytes = inner.serialize(graph);
+        Long timestamp = timestampOf(graph);
+        if (bytes == null || timestamp == null)
+            return bytes;
+
+        byte[] digits = String.valueOf(timestamp).getBytes(UTF_8);
+        byte[] result = new byte[digits.length + 3 + bytes.length];
+        result[0] = MARK;
+        result[1] = QUERY;
+        System.arraycopy(digits, 0, result, 2, digits.length);
+        result[digits.length + 2] = END;
+        System.arraycopy(bytes, 0, result, digits.length + 3, bytes.length);
+        return result;
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) {
+        int headerLength = headerLength(bytes);
+        return inner.deserialize(headerLength == 0 ? bytes : Arrays.copyOfRange(bytes, headerLength, bytes.length));
+    }
+
+    /**
+     * timestamp of a cached query result, null if the value is not a query result
+     */
+    private static Long timestampOf(Object graph) {
+        if (graph instanceof List) {
+            List<?> list = (List<?>) graph;
+            if (!list.isEmpty() && list.get(0) instanceof Long)
+                return (Long) list.get(0);
+        }
+        return null;
+    }
+
+    /**
+     * length of the timestamp header, 0 if the value has no header
+     */
+    private static int headerLength(byte[] bytes) {
+        if (bytes == null || bytes.length < 4 || bytes[0] != MARK || bytes[1] != QUERY)
+            return 0;
+
+        int limit = Math.min(bytes.length, MAX_HEADER_LENGTH);
+        for (int i = 2; i < limit; i++) {
+            if (bytes[i] == END)
+                return i > 2 ? i + 1 : 0;
+            if (bytes[i] < '0' || bytes[i] > '9')
+                return 0;
+        }
+        return 0;
+    }
+}
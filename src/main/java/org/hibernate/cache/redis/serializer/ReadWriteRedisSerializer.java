@@ -0,0 +1,122 @@
+package org.hibernate.cache.redis.serializer;
+
+import java.util.Arrays;
+
+import org.hibernate.cache.redis.strategy.ReadWriteItem;
+import org.hibernate.cache.redis.strategy.ReadWriteSoftLock;
+
+/**
+ * Serializer of read/write regions, writes the state scripts need to lock and unlock items atomically
+ * as a readable header.
+ * <p/>
+ * item : [0x00]['i'][timestamp]:[version]:[digest]['\n'] followed by the value serialized by the region serializer
+ * <br/>
+ * lock : [0x00]['l'][timeout]:[unlock timestamp]:[multiplicity]:[concurrent 0|1]:[digest]:[lock id]['\n']
+ * <br/>
+ * Locks are only written by the soft lock scripts of {@link org.hibernate.cache.redis.jedis.JedisClient},
+ * this serializer reads them.
+ * <p/>
+ * The version is empty if the item is not versioned.
+ * The digest, a 64 bit FNV-1a hash of the serialized value, is written only if enabled. The lock of an item with
+ * digest keeps only the digest and is stored beside the item, which stays in place, so an update which does not
+ * change the value only deletes the lock instead of sending and writing the value again.
+ * <p/>
+ * Values without header, written before the region was read/write, are passed to the region serializer as is.
+ */
+public class ReadWriteRedisSerializer implements RedisSerializer<Object> {
+
+    private static final byte MARK = 0;
+    private static final byte ITEM = 'i';
+    private static final byte LOCK = 'l';
+    private static final byte END = '\n';
+
+    private final RedisSerializer<Object> inner;
+    private final boolean digest;
+
+    public ReadWriteRedisSerializer(RedisSerializer<Object> innerSerializer) {
+        this(innerSerializer, false);
+    }
+
+    public ReadWriteRedisSerializer(RedisSerializer<Object> innerSerializer, boolean digest) {
+        assert (innerSerializer != null);
+        this.inner = innerSerializer;
+        this.digest = digest;
+    }
+
+    public boolean isDigest() {
+        return digest;
+    }
+
+    public RedisSerializer<Object> getInner() {
+        return inner;
+    }
+
+    @Override
+    public byte[] serialize(Object graph) {
+        if (graph instanceof ReadWriteSoftLock)
+            throw new IllegalArgumentException("soft locks are written by the soft lock scripts only. lock=" + graph);
+        if (graph instanceof ReadWriteItem) {
+            ReadWriteItem item = (ReadWriteItem) graph;
+            byte[] bytes = inner.serialize(item.getValue());
+            if (bytes == null)
+                return null;
+            byte[] header = header(ITEM, item.getTimestamp() + ":" + (item.getVersion() != null ? item.getVersion() : "")
+                                         + ":" + (digest ? Long.toHexString(SerializationTool.digest(bytes)) : ""));
+            byte[] result = Arrays.copyOf(header, header.length + bytes.length);
+            System.arraycopy(bytes, 0, result, header.length, bytes.length);
+            return result;
+        }
+        return inner.serialize(graph);
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) {
+        if (bytes == null || bytes.length < 4 || bytes[0] != MARK || (bytes[1] != ITEM && bytes[1] != LOCK))
+            return inner.deserialize(bytes);
+
+        int end = 2;
+        while (end < bytes.length && bytes[end] != END) {
+            end++;
+        }
+        if (end == bytes.length)
+            return inner.deserialize(bytes);
+
+        String header = new String(bytes, 2, end - 2, UTF_8);
+        try {
+            if (bytes[1] == ITEM) {
+                String[] parts = header.split(":", 3);
+                Long version = parts.length == 3 && parts[1].length() > 0 ? Long.valueOf(parts[1]) : null;
+                return new ReadWriteItem(inner.deserialize(Arrays.copyOfRange(bytes, end + 1, bytes.length)),
+                                         Long.parseLong(parts[0]), version);
+            }
+            String[] parts = header.split(":", 6);
+            return new ReadWriteSoftLock(parts[5], parts[4].length() > 0 ? parts[4] : null);
+        } catch (RuntimeException e) {
+            // not a header, a value written before the region was read/write
+            return inner.deserialize(bytes);
+        }
+    }
+
+    /**
+     * digest of a serialized item, null if the value is not an item with digest
+     */
+    public static String digestOf(byte[] bytes) {
+        if (bytes == null || bytes.length < 4 || bytes[0] != MARK || bytes[1] != ITEM)
+            return null;
+        int separator = -1;
+        for (int i = 2; i < bytes.length && i < 64; i++) {
+            if (bytes[i] == ':')
+                separator = i;
+            else if (bytes[i] == END)
+                return separator > 0 && i > separator + 1 ? new String(bytes, separator + 1, i - separator - 1, UTF_8) : null;
+        }
+        return null;
+    }
+
+    private static byte[] header(byte type, String content) {
+        byte[] bytes = ("  " + content + "\n").getBytes(UTF_8);
+        bytes[0] = MARK;
+        bytes[1] = type;
+        return bytes;
+    }
+}
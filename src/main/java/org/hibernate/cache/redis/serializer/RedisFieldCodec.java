@@ -0,0 +1,23 @@
+package org.hibernate.cache.redis.serializer;
+
+import java.util.Map;
+
+/**
+ * Splits cache values into named fields stored in a hash of their own, so a write sends only the fields
+ * which changed. Each field is serialized with the region serializer.
+ *
+ * @see org.hibernate.cache.redis.jedis.JedisClient#setFieldCodec(String, RedisFieldCodec)
+ */
+public interface RedisFieldCodec {
+
+    /**
+     * fields of the value in a stable order, null if the value is stored as a whole.
+     * field names must not be "d", which keeps the digest of the fields
+     */
+    Map<String, Object> split(Object value);
+
+    /**
+     * value of the fields returned by {@link #split(Object)}, null if they are incomplete
+     */
+    Object join(Map<String, Object> fields);
+}
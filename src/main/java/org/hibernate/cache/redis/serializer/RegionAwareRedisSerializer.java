@@ -0,0 +1,23 @@
+package org.hibernate.cache.redis.serializer;
+
+import java.util.Properties;
+
+import org.hibernate.cache.redis.jedis.JedisClient;
+
+/**
+ * Serializer which keeps state per cache region (e.g. a trained compression dictionary).
+ * <p/>
+ * {@link org.hibernate.cache.redis.util.JedisTool} creates one instance per region
+ * and calls {@link #configure(String, Properties, JedisClient)} before first use.
+ */
+public interface RegionAwareRedisSerializer<T> extends RedisSerializer<T> {
+
+    /**
+     * configure serializer for the specified region
+     *
+     * @param regionName  region name
+     * @param props       cache properties
+     * @param jedisClient JedisClient for sharing serializer state between nodes
+     */
+    void configure(String regionName, Properties props, JedisClient jedisClient);
+}
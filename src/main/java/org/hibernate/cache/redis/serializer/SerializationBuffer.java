@@ -0,0 +1,96 @@
+package org.hibernate.cache.redis.serializer;
+
+import java.util.Arrays;
+
+/**
+ * Reusable byte buffer confined to one thread.
+ * <p/>
+ * Holds a backing array and the count of valid bytes at its start.
+ * Arrays grown beyond {@link #MAX_RETAINED_CAPACITY} are dropped by {@link #trim()},
+ * so a single huge value doesn't stay referenced by every pooled thread.
+ *
+ * @see BufferedRedisSerializer
+ */
+public final class SerializationBuffer {
+
+    public static final int MAX_RETAINED_CAPACITY = 1024 * 1024;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private byte[] array;
+    private int length;
+
+    public SerializationBuffer() {
+        this.array = new byte[INITIAL_CAPACITY];
+    }
+
+    /**
+     * create thread local buffers for a serializer
+     */
+    public static ThreadLocal<SerializationBuffer> threadLocal() {
+        return new ThreadLocal<SerializationBuffer>() {
+            @Override
+            protected SerializationBuffer initialValue() {
+                return new SerializationBuffer();
+            }
+        };
+    }
+
+    public byte[] array() {
+        return array;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    /**
+     * get backing array with at least the specified capacity. contents are not preserved on growth.
+     */
+    public byte[] ensureCapacity(final int capacity) {
+        if (array.length < capacity) {
+            array = new byte[Math.max(capacity, array.length * 2)];
+        }
+        return array;
+    }
+
+    /**
+     * get backing array with at least the specified capacity, preserving the valid bytes.
+     */
+    public byte[] grow(final int capacity) {
+        if (array.length < capacity) {
+            array = Arrays.copyOf(array, Math.max(capacity, array.length * 2));
+        }
+        return array;
+    }
+
+    /**
+     * point this buffer to the specified array (e.g. the internal buffer of a serializer output)
+     */
+    public SerializationBuffer set(final byte[] array, final int length) {
+        this.array = array;
+        this.length = length;
+        return this;
+    }
+
+    public SerializationBuffer setLength(final int length) {
+        this.length = length;
+        return this;
+    }
+
+    /**
+     * copy valid bytes to a new array of exact size
+     */
+    public byte[] toByteArray() {
+        return length == 0 ? RedisSerializer.EMPTY_BYTES : Arrays.copyOf(array, length);
+    }
+
+    /**
+     * drop too large backing array after use
+     */
+    public void trim() {
+        if (array.length > MAX_RETAINED_CAPACITY) {
+            array = new byte[INITIAL_CAPACITY];
+        }
+        length = 0;
+    }
+}
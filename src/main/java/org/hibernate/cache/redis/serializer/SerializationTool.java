@@ -30,6 +30,18 @@ public abstract class SerializationTool {
         return (data == null || data.length == 0);
     }
 
+    /**
+     * 64 bit FNV-1a hash of serialized bytes, a compact digest to detect unchanged values
+     */
+    public static long digest(byte[] data) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : data) {
+            hash ^= (b & 0xff);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
     @SuppressWarnings("unchecked")
     private static <T extends Collection<?>> T deserializeValues(Collection<byte[]> rawValues,
                                                                  Class<T> clazz,
@@ -0,0 +1,11 @@
+package org.hibernate.cache.redis.serializer;
+
+/**
+ * Snappy compressed {@link HibernateCacheEntryRedisSerializer}, configurable by class name.
+ */
+public class SnappyHibernateCacheEntryRedisSerializer<T> extends SnappyRedisSerializer<T> {
+
+    public SnappyHibernateCacheEntryRedisSerializer() {
+        super(new HibernateCacheEntryRedisSerializer<T>());
+    }
+}
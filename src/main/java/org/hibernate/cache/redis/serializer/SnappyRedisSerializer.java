@@ -8,13 +8,19 @@ import java.io.IOException;
 
 /**
  * SnappyRedisSerializer
+ * <p/>
+ * Compresses the inner serializer output in place and decompresses into a thread local buffer,
+ * when the inner serializer is a {@link BufferedRedisSerializer}.
  * Created by debop on 2014. 3. 15.
  */
-public class SnappyRedisSerializer<T> implements RedisSerializer<T> {
+public class SnappyRedisSerializer<T> implements BufferedRedisSerializer<T> {
 
     private static final Logger log = LoggerFactory.getLogger(SnappyRedisSerializer.class);
     private final RedisSerializer<T> inner;
 
+    private final ThreadLocal<SerializationBuffer> compressBuffer = SerializationBuffer.threadLocal();
+    private final ThreadLocal<SerializationBuffer> uncompressBuffer = SerializationBuffer.threadLocal();
+
     public SnappyRedisSerializer() {
         this(new FstRedisSerializer<T>());
     }
@@ -26,11 +32,34 @@ public class SnappyRedisSerializer<T> implements RedisSerializer<T> {
 
     @Override
     public byte[] serialize(T graph) {
+        SerializationBuffer buffer = serializeToBuffer(graph);
+        byte[] result = buffer.toByteArray();
+        buffer.trim();
+        return result;
+    }
+
+    @Override
+    public SerializationBuffer serializeToBuffer(T graph) {
+        SerializationBuffer buffer = compressBuffer.get();
         try {
-            return Snappy.compress(inner.serialize(graph));
+            byte[] src;
+            int length;
+            if (inner instanceof BufferedRedisSerializer) {
+                SerializationBuffer raw = ((BufferedRedisSerializer<T>) inner).serializeToBuffer(graph);
+                src = raw.array();
+                length = raw.length();
+            } else {
+                src = inner.serialize(graph);
+                length = src.length;
+            }
+            if (length == 0)
+                return buffer.setLength(0);
+
+            byte[] dst = buffer.ensureCapacity(Snappy.maxCompressedLength(length));
+            return buffer.setLength(Snappy.compress(src, 0, length, dst, 0));
         } catch (IOException e) {
             log.error("Fail to serialize graph.", e);
-            return EMPTY_BYTES;
+            return buffer.setLength(0);
         }
     }
 
@@ -38,11 +67,29 @@ public class SnappyRedisSerializer<T> implements RedisSerializer<T> {
     public T deserialize(byte[] bytes) {
         if (bytes == null || bytes.length == 0)
             return null;
+        return deserialize(bytes, bytes.length);
+    }
+
+    @Override
+    public T deserialize(byte[] bytes, int length) {
+        if (bytes == null || length == 0)
+            return null;
+
+        SerializationBuffer buffer = uncompressBuffer.get();
         try {
-            return inner.deserialize(Snappy.uncompress(bytes));
+            int uncompressedLength = Snappy.uncompressedLength(bytes, 0, length);
+            byte[] dst = buffer.ensureCapacity(uncompressedLength);
+            Snappy.uncompress(bytes, 0, length, dst, 0);
+
+            if (inner instanceof BufferedRedisSerializer) {
+                return ((BufferedRedisSerializer<T>) inner).deserialize(dst, uncompressedLength);
+            }
+            return inner.deserialize(buffer.setLength(uncompressedLength).toByteArray());
         } catch (IOException e) {
             log.error("Fail to deserialize graph.", e);
             return null;
+        } finally {
+            buffer.trim();
         }
     }
 }
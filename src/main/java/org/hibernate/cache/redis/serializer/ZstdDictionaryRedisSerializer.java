@@ -0,0 +1,460 @@
+package org.hibernate.cache.redis.serializer;
+
+import java.util.Iterator;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.hibernate.cache.redis.jedis.JedisClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdCompressCtx;
+import com.github.luben.zstd.ZstdDecompressCtx;
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdDictDecompress;
+import com.github.luben.zstd.ZstdDictTrainer;
+
+/**
+ * Zstd serializer which compresses values with a dictionary trained per region.
+ * <p/>
+ * Every serialized value starts with a header [format(1)][dictionary version(4)].
+ * Version 0 means the value was compressed without dictionary.
+ * Dictionaries are stored in redis under versioned keys, so all nodes can read values
+ * written with any of the last [redis.serializer.zstd.keepVersions] dictionary versions, and the dictionary is
+ * retrained from sampled values every [redis.serializer.zstd.retrainIntervalInSeconds]. Only the node holding the
+ * training lease trains a dictionary in an interval, the others adopt the published one. Publishing a version
+ * deletes the oldest kept one, values compressed with it are treated as misses.
+ * Serializing only copies sampled values, refreshing and training dictionaries run on a shared daemon thread.
+ * Values which decompress to more than [redis.serializer.zstd.maxDecompressedSizeInBytes] are treated as misses.
+ * <p/>
+ * Compression contexts and buffers are reused per thread.
+ * <p/>
+ * redis keys for region {region}:
+ * <ul>
+ * <li>hibernate-redis:dictionary:{region} : current version, "{version}:{publishedAtMillis}"</li>
+ * <li>hibernate-redis:dictionary:{region}:{version} : dictionary bytes</li>
+ * <li>hibernate-redis:dictionary:{region}:seq : version sequence</li>
+ * <li>hibernate-redis:dictionary:{region}:lease : training lease, expires after the interval or a minute</li>
+ * </ul>
+ */
+public class ZstdDictionaryRedisSerializer<T> implements RegionAwareRedisSerializer<T>, BufferedRedisSerializer<T> {
+
+    public static final String DICTIONARY_KEY_PREFIX = "hibernate-redis:dictionary:";
+
+    private static final String COMPRESSION_LEVEL = "redis.serializer.zstd.level";
+    private static final String DICTIONARY_SIZE = "redis.serializer.zstd.dictionarySize";
+    private static final String SAMPLE_COUNT = "redis.serializer.zstd.sampleCount";
+    private static final String SAMPLE_RATE = "redis.serializer.zstd.sampleRate";
+    private static final String RETRAIN_INTERVAL = "redis.serializer.zstd.retrainIntervalInSeconds";
+    private static final String REFRESH_INTERVAL = "redis.serializer.zstd.refreshIntervalInSeconds";
+    private static final String MAX_DECOMPRESSED_SIZE = "redis.serializer.zstd.maxDecompressedSizeInBytes";
+    private static final String KEEP_VERSIONS = "redis.serializer.zstd.keepVersions";
+
+    private static final long TRAINING_LEASE_MILLIS = 60 * 1000L;
+
+    private static final byte FORMAT = (byte) 0x5A;
+    private static final int HEADER_SIZE = 5;
+    private static final int NO_DICTIONARY = 0;
+
+    private static final Logger log = LoggerFactory.getLogger(ZstdDictionaryRedisSerializer.class);
+
+    private static final ExecutorService maintenanceExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "hibernate-redis-zstd-dictionary");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final RedisSerializer<T> inner;
+
+    private JedisClient jedisClient;
+    private String regionName;
+    private String versionKey;
+
+    private int level = 3;
+    private int dictionarySize = 16 * 1024;
+    private int sampleRate = 10;
+    private long retrainIntervalMillis = 3600 * 1000L;
+    private long refreshIntervalMillis = 60 * 1000L;
+    private int maxDecompressedSize = 16 * 1024 * 1024;
+    private int keepVersions = 3;
+
+    private volatile Dictionary current = new Dictionary(NO_DICTIONARY, 0L, null);
+    private final ConcurrentMap<Integer, ZstdDictDecompress> decompressors = new ConcurrentHashMap<Integer, ZstdDictDecompress>();
+
+    private AtomicReferenceArray<byte[]> samples = new AtomicReferenceArray<byte[]>(1000);
+    private final AtomicInteger sampleCursor = new AtomicInteger();
+    private final AtomicLong serializeCount = new AtomicLong();
+    private final AtomicLong nextRefreshAt = new AtomicLong();
+    private final AtomicBoolean maintaining = new AtomicBoolean(false);
+
+    private final ThreadLocal<SerializationBuffer> compressBuffer = SerializationBuffer.threadLocal();
+    private final ThreadLocal<SerializationBuffer> decompressBuffer = SerializationBuffer.threadLocal();
+    private final ThreadLocal<CompressContext> compressContext = new ThreadLocal<CompressContext>() {
+        @Override
+        protected CompressContext initialValue() {
+            return new CompressContext();
+        }
+    };
+    private final ThreadLocal<ZstdDecompressCtx> decompressContext = new ThreadLocal<ZstdDecompressCtx>() {
+        @Override
+        protected ZstdDecompressCtx initialValue() {
+            return new ZstdDecompressCtx();
+        }
+    };
+
+    public ZstdDictionaryRedisSerializer() {
+        this(new FstRedisSerializer<T>());
+    }
+
+    public ZstdDictionaryRedisSerializer(RedisSerializer<T> innerSerializer) {
+        assert (innerSerializer != null);
+        this.inner = innerSerializer;
+    }
+
+    @Override
+    public void configure(String regionName, Properties props, JedisClient jedisClient) {
+        this.regionName = regionName;
+        this.jedisClient = jedisClient;
+        this.versionKey = DICTIONARY_KEY_PREFIX + regionName;
+
+        this.level = Integer.decode(props.getProperty(COMPRESSION_LEVEL, String.valueOf(level)));
+        this.dictionarySize = Integer.decode(props.getProperty(DICTIONARY_SIZE, String.valueOf(dictionarySize)));
+        this.sampleRate = Math.max(1, Integer.decode(props.getProperty(SAMPLE_RATE, String.valueOf(sampleRate))));
+        this.samples = new AtomicReferenceArray<byte[]>(
+                Integer.decode(props.getProperty(SAMPLE_COUNT, String.valueOf(samples.length()))));
+        this.retrainIntervalMillis =
+                Long.decode(props.getProperty(RETRAIN_INTERVAL, String.valueOf(retrainIntervalMillis / 1000))) * 1000L;
+        this.refreshIntervalMillis =
+                Long.decode(props.getProperty(REFRESH_INTERVAL, String.valueOf(refreshIntervalMillis / 1000))) * 1000L;
+        this.maxDecompressedSize =
+                Integer.decode(props.getProperty(MAX_DECOMPRESSED_SIZE, String.valueOf(maxDecompressedSize)));
+        this.keepVersions = Math.max(1, Integer.decode(props.getProperty(KEEP_VERSIONS, String.valueOf(keepVersions))));
+
+        try {
+            refreshDictionary();
+        } catch (Exception e) {
+            log.warn("Fail to load compression dictionary. region=" + regionName, e);
+        }
+    }
+
+    @Override
+    public byte[] serialize(final T graph) {
+        SerializationBuffer buffer = serializeToBuffer(graph);
+        byte[] result = buffer.toByteArray();
+        buffer.trim();
+        return result;
+    }
+
+    @Override
+    public SerializationBuffer serializeToBuffer(final T graph) {
+        SerializationBuffer buffer = compressBuffer.get();
+
+        byte[] raw;
+        int rawLength;
+        if (inner instanceof BufferedRedisSerializer) {
+            SerializationBuffer rawBuffer = ((BufferedRedisSerializer<T>) inner).serializeToBuffer(graph);
+            raw = rawBuffer.array();
+            rawLength = rawBuffer.length();
+        } else {
+            raw = inner.serialize(graph);
+            rawLength = raw.length;
+        }
+        if (rawLength == 0)
+            return buffer.setLength(0);
+
+        sample(raw, rawLength);
+        scheduleMaintenance();
+
+        try {
+            Dictionary dictionary = current;
+            ZstdCompressCtx ctx = compressContext.get().use(dictionary, level);
+            byte[] dst = buffer.ensureCapacity(HEADER_SIZE + (int) Zstd.compressBound(rawLength));
+            int size = ctx.compressByteArray(dst, HEADER_SIZE, dst.length - HEADER_SIZE, raw, 0, rawLength);
+            writeHeader(dst, dictionary.version);
+            return buffer.setLength(HEADER_SIZE + size);
+        } catch (Exception e) {
+            log.error("Fail to serialize graph.", e);
+            return buffer.setLength(0);
+        }
+    }
+
+    @Override
+    public T deserialize(final byte[] bytes) {
+        if (SerializationTool.isEmpty(bytes))
+            return null;
+        return deserialize(bytes, bytes.length);
+    }
+
+    @Override
+    public T deserialize(final byte[] bytes, final int length) {
+        if (bytes == null || length == 0)
+            return null;
+        if (length < HEADER_SIZE || bytes[0] != FORMAT) {
+            log.warn("Unknown value format, ignore cached value. region=[{}]", regionName);
+            return null;
+        }
+
+        SerializationBuffer buffer = decompressBuffer.get();
+        try {
+            int version = readVersion(bytes);
+            int srcLength = length - HEADER_SIZE;
+            long decompressedSize = Zstd.decompressedSize(bytes, HEADER_SIZE, srcLength);
+            if (decompressedSize <= 0 || decompressedSize > maxDecompressedSize) {
+                log.warn("Invalid decompressed size, ignore cached value. region=[{}], size=[{}]",
+                         regionName, decompressedSize);
+                return null;
+            }
+            int rawLength = (int) decompressedSize;
+            byte[] dst = buffer.ensureCapacity(rawLength);
+
+            ZstdDecompressCtx ctx = decompressContext.get();
+            ctx.reset();
+            if (version != NO_DICTIONARY) {
+                ZstdDictDecompress dictionary = getDecompressor(version);
+                if (dictionary == null) {
+                    log.warn("Compression dictionary not found. region=[{}], version=[{}]", regionName, version);
+                    return null;
+                }
+                ctx.loadDict(dictionary);
+            }
+            int size = ctx.decompressByteArray(dst, 0, rawLength, bytes, HEADER_SIZE, srcLength);
+
+            if (inner instanceof BufferedRedisSerializer) {
+                return ((BufferedRedisSerializer<T>) inner).deserialize(dst, size);
+            }
+            return inner.deserialize(buffer.setLength(size).toByteArray());
+        } catch (Exception e) {
+            log.error("Fail to deserialize graph.", e);
+            return null;
+        } finally {
+            buffer.trim();
+        }
+    }
+
+    /**
+     * current dictionary version used for new values. 0 means no dictionary.
+     */
+    public int getDictionaryVersion() {
+        return current.version;
+    }
+
+    private void sample(final byte[] raw, final int length) {
+        if (serializeCount.incrementAndGet() % sampleRate != 0)
+            return;
+        int index = sampleCursor.getAndIncrement();
+        if (index < samples.length()) {
+            byte[] sample = new byte[length];
+            System.arraycopy(raw, 0, sample, 0, length);
+            samples.set(index, sample);
+        }
+    }
+
+    /**
+     * run {@link #maintainDictionary()} in background when a refresh or a retrain is due, one at a time per region.
+     */
+    private void scheduleMaintenance() {
+        if (jedisClient == null)
+            return;
+
+        long now = System.currentTimeMillis();
+        if (now < nextRefreshAt.get() && !isRetrainDue(now))
+            return;
+        if (!maintaining.compareAndSet(false, true))
+            return;
+        try {
+            maintenanceExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        maintainDictionary();
+                    } finally {
+                        maintaining.set(false);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            maintaining.set(false);
+            log.warn("Fail to schedule compression dictionary maintenance. region=" + regionName, e);
+        }
+    }
+
+    private boolean isRetrainDue(final long now) {
+        return sampleCursor.get() >= samples.length() && now - current.publishedAt >= retrainIntervalMillis;
+    }
+
+    /**
+     * adopt dictionary published by other nodes, and retrain when the current dictionary is too old.
+     */
+    private void maintainDictionary() {
+        long now = System.currentTimeMillis();
+        if (now >= nextRefreshAt.get()) {
+            nextRefreshAt.set(now + refreshIntervalMillis);
+            try {
+                refreshDictionary();
+            } catch (Exception e) {
+                log.warn("Fail to refresh compression dictionary. region=" + regionName, e);
+            }
+        }
+
+        if (isRetrainDue(now)) {
+            try {
+                trainDictionary();
+            } catch (Exception e) {
+                log.warn("Fail to train compression dictionary. region=" + regionName, e);
+            } finally {
+                sampleCursor.set(0);
+            }
+        }
+    }
+
+    private void refreshDictionary() {
+        byte[] rawVersion = jedisClient.getRaw(versionKey);
+        if (rawVersion == null)
+            return;
+
+        String[] versionAndTime = new String(rawVersion, UTF_8).split(":");
+        int version = Integer.parseInt(versionAndTime[0]);
+        long publishedAt = Long.parseLong(versionAndTime[1]);
+        if (version <= current.version)
+            return;
+
+        byte[] dictionary = jedisClient.getRaw(versionKey + ":" + version);
+        if (dictionary != null) {
+            adopt(version, publishedAt, dictionary);
+        }
+    }
+
+    /**
+     * train and publish a dictionary if this node holds the training lease and no other node published one
+     * within the retrain interval
+     */
+    private void trainDictionary() {
+        long leaseMillis = Math.max(1L, Math.min(retrainIntervalMillis, TRAINING_LEASE_MILLIS));
+        if (!jedisClient.setRawIfAbsent(versionKey + ":lease", new byte[0], leaseMillis)) {
+            log.debug("Another node trains the compression dictionary. region=[{}]", regionName);
+            return;
+        }
+        refreshDictionary();
+        if (System.currentTimeMillis() - current.publishedAt < retrainIntervalMillis) {
+            log.debug("Adopted compression dictionary of another node. region=[{}], version=[{}]",
+                      regionName, current.version);
+            return;
+        }
+
+        int sampleBytes = 0;
+        for (int i = 0; i < samples.length(); i++) {
+            byte[] sample = samples.get(i);
+            if (sample != null) sampleBytes += sample.length;
+        }
+
+        ZstdDictTrainer trainer = new ZstdDictTrainer(sampleBytes, dictionarySize);
+        for (int i = 0; i < samples.length(); i++) {
+            byte[] sample = samples.getAndSet(i, null);
+            if (sample != null) trainer.addSample(sample);
+        }
+        byte[] dictionary = trainer.trainSamples();
+
+        int version = (int) jedisClient.increment(versionKey + ":seq");
+        long publishedAt = System.currentTimeMillis();
+        jedisClient.setRaw(versionKey + ":" + version, dictionary);
+        jedisClient.setRaw(versionKey, (version + ":" + publishedAt).getBytes(UTF_8));
+        if (version > keepVersions)
+            jedisClient.delRaw(versionKey + ":" + (version - keepVersions));
+
+        adopt(version, publishedAt, dictionary);
+        log.info("Trained compression dictionary. region=[{}], version=[{}], samples=[{}] bytes, dictionary=[{}] bytes",
+                 regionName, version, sampleBytes, dictionary.length);
+    }
+
+    private synchronized void adopt(int version, long publishedAt, byte[] dictionary) {
+        if (version <= current.version)
+            return;
+        decompressors.putIfAbsent(version, new ZstdDictDecompress(dictionary));
+        current = new Dictionary(version, publishedAt, new ZstdDictCompress(dictionary, level));
+        for (Iterator<Integer> versions = decompressors.keySet().iterator(); versions.hasNext(); ) {
+            if (!isKept(versions.next()))
+                versions.remove();
+        }
+    }
+
+    /**
+     * true if the dictionary of the version is one of the last kept versions
+     */
+    private boolean isKept(final int version) {
+        return version > current.version - keepVersions;
+    }
+
+    private ZstdDictDecompress getDecompressor(final int version) {
+        if (!isKept(version))
+            return null;
+        ZstdDictDecompress decompressor = decompressors.get(version);
+        if (decompressor != null || jedisClient == null)
+            return decompressor;
+
+        byte[] dictionary = jedisClient.getRaw(versionKey + ":" + version);
+        if (dictionary == null)
+            return null;
+
+        decompressor = new ZstdDictDecompress(dictionary);
+        ZstdDictDecompress previous = decompressors.putIfAbsent(version, decompressor);
+        return previous != null ? previous : decompressor;
+    }
+
+    private static void writeHeader(final byte[] dst, final int version) {
+        dst[0] = FORMAT;
+        dst[1] = (byte) (version >>> 24);
+        dst[2] = (byte) (version >>> 16);
+        dst[3] = (byte) (version >>> 8);
+        dst[4] = (byte) version;
+    }
+
+    private static int readVersion(final byte[] bytes) {
+        return ((bytes[1] & 0xFF) << 24) | ((bytes[2] & 0xFF) << 16) | ((bytes[3] & 0xFF) << 8) | (bytes[4] & 0xFF);
+    }
+
+    /**
+     * zstd compression context of one thread, remembers the dictionary loaded into it
+     */
+    private static final class CompressContext {
+        final ZstdCompressCtx ctx = new ZstdCompressCtx();
+        Dictionary loaded;
+
+        ZstdCompressCtx use(Dictionary dictionary, int level) {
+            if (loaded != dictionary) {
+                ctx.reset();
+                if (dictionary.compress == null) {
+                    ctx.setLevel(level);
+                } else {
+                    ctx.loadDict(dictionary.compress);
+                }
+                loaded = dictionary;
+            }
+            return ctx;
+        }
+    }
+
+    private static final class Dictionary {
+        final int version;
+        final long publishedAt;
+        final ZstdDictCompress compress;
+
+        Dictionary(int version, long publishedAt, ZstdDictCompress compress) {
+            this.version = version;
+            this.publishedAt = publishedAt;
+            this.compress = compress;
+        }
+    }
+}
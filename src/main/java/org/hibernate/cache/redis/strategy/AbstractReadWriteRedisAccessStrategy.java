@@ -16,15 +16,20 @@
 
 package org.hibernate.cache.redis.strategy;
 
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
 import org.hibernate.boot.spi.SessionFactoryOptions;
 import org.hibernate.cache.redis.regions.RedisTransactionalDataRegion;
 import org.hibernate.cache.spi.access.SoftLock;
 import org.hibernate.engine.spi.SharedSessionContractImplementor;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 /**
  * Superclass for all Redis specific read/write AccessStrategy implementations.
+ * <p/>
+ * Items are cached with the timestamp they were cached at, and replaced by a soft lock while they are updated.
+ * Every state change (lock, unlock, put from load) is one script, so nodes sharing the region see
+ * the same lock without a distributed lock manager.
  *
  * @param <T> the type of the enclosed cache region
  * @author sunghyouk.bae@gmail.com
@@ -33,7 +38,8 @@ import org.slf4j.LoggerFactory;
 public class AbstractReadWriteRedisAccessStrategy<T extends RedisTransactionalDataRegion>
         extends AbstractRedisAccessStrategy<T> {
 
-    private static final Logger log = LoggerFactory.getLogger(AbstractReadWriteRedisAccessStrategy.class);
+    private final String lockIdPrefix = UUID.randomUUID().toString() + "-";
+    private final AtomicLong nextLockId = new AtomicLong();
 
     /**
      * Creates a read/write cache access strategy around the given cache region.
@@ -47,34 +53,55 @@ public class AbstractReadWriteRedisAccessStrategy<T extends RedisTransactionalDa
      * after the start of this transaction.
      */
     public final Object get(SharedSessionContractImplementor session, Object key, long txTimestamp) {
-        return region.get(key);
+        Object value = region.get(key);
+        if (value instanceof ReadWriteSoftLock)
+            return null;
+        if (value instanceof ReadWriteItem) {
+            ReadWriteItem item = (ReadWriteItem) value;
+            return item.isReadable(txTimestamp) ? item.getValue() : null;
+        }
+        return value;
     }
 
+    /**
+     * Caches the loaded value unless the item is cached already with the same or a newer version, or locked by
+     * a transaction which did not complete before this transaction started.
+     */
     @Override
     public final boolean putFromLoad(SharedSessionContractImplementor session, Object key,
                                      Object value,
                                      long txTimestamp,
                                      Object version,
                                      boolean minimalPutOverride) {
-        region.put(key, value);
-        return true;
+        return region.putLoadedItem(key, value, txTimestamp, version, minimalPutOverride);
     }
 
     /**
      * Soft-lock a cache item.
      */
     public final SoftLock lockItem(SharedSessionContractImplementor session, Object key, Object version) {
-        region.remove(key);
-        return null;
+        return region.lockItem(key, lockIdPrefix + Long.toHexString(nextLockId.incrementAndGet()));
     }
 
     /**
      * Soft-unlock a cache item.
      */
     public final void unlockItem(SharedSessionContractImplementor session, Object key, SoftLock lock) {
-        region.remove(key);
+        region.unlockItem(key, lock instanceof ReadWriteSoftLock ? (ReadWriteSoftLock) lock : null);
     }
-    
 
+    /**
+     * Caches a value inserted by this transaction, unless the key was cached or locked meanwhile.
+     */
+    protected final boolean putIfAbsent(Object key, Object value, Object version) {
+        return region.putInsertedItem(key, value, version);
+    }
 
+    /**
+     * Replaces the lock of this transaction by the updated value, or only releases it if the item was locked
+     * concurrently or the lock expired. An unchanged value is not sent, only its lock is deleted, if the region skips unchanged writes.
+     */
+    protected final boolean replaceLock(Object key, Object value, Object version, SoftLock lock) {
+        return region.replaceLockedItem(key, value, version, lock instanceof ReadWriteSoftLock ? (ReadWriteSoftLock) lock : null);
+    }
 }
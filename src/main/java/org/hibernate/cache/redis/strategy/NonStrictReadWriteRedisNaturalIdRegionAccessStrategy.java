@@ -61,11 +61,7 @@ public class NonStrictReadWriteRedisNaturalIdRegionAccessStrategy
 	@Override
 	public boolean putFromLoad(SharedSessionContractImplementor session, Object key, Object value, long txTimestamp,
 			Object version, boolean minimalPutOverride) {
-		if (minimalPutOverride && region.contains(key)) {
-			return false;
-		}
-		region.put(key, value);
-		return true;
+		return region.putFromLoad(key, value, version, minimalPutOverride);
 	}
 
 	@Override
@@ -0,0 +1,50 @@
+package org.hibernate.cache.redis.strategy;
+
+/**
+ * Cached value of a read/write region, with the timestamp it was cached at and its version.
+ *
+ * @see org.hibernate.cache.redis.serializer.ReadWriteRedisSerializer
+ */
+public final class ReadWriteItem {
+
+    private final Object value;
+    private final long timestamp;
+    private final Long version;
+
+    public ReadWriteItem(Object value, long timestamp) {
+        this(value, timestamp, null);
+    }
+
+    public ReadWriteItem(Object value, long timestamp, Long version) {
+        this.value = value;
+        this.timestamp = timestamp;
+        this.version = version;
+    }
+
+    public Object getValue() {
+        return value;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * version as a number in the order of the version comparator, null if not versioned
+     */
+    public Long getVersion() {
+        return version;
+    }
+
+    /**
+     * items cached after the start of the transaction are not readable
+     */
+    public boolean isReadable(long txTimestamp) {
+        return txTimestamp > timestamp;
+    }
+
+    @Override
+    public String toString() {
+        return "ReadWriteItem(timestamp=" + timestamp + ", version=" + version + ", value=" + value + ')';
+    }
+}
@@ -50,14 +50,12 @@ public class ReadWriteRedisEntityRegionAccessStrategy
 
     @Override
     public boolean insert(SharedSessionContractImplementor session, Object key, Object value, Object version) {
-        region.put(key, value);
-        return true;
+        return false;
     }
 
     @Override
     public boolean afterInsert(SharedSessionContractImplementor session, Object key, Object value, Object version) {
-        region.put(key, value);
-        return true;
+        return putIfAbsent(key, value, version);
     }
 
     @Override
@@ -65,8 +63,7 @@ public class ReadWriteRedisEntityRegionAccessStrategy
                           Object value,
                           Object currentVersion,
                           Object previousVersion) {
-        region.put(key, value);
-        return true;
+        return false;
     }
 
     @Override
@@ -75,8 +72,7 @@ public class ReadWriteRedisEntityRegionAccessStrategy
                                Object currentVersion,
                                Object previousVersion,
                                SoftLock lock) {
-        region.put(key, value);
-        return true;
+        return replaceLock(key, value, currentVersion, lock);
     }
     @Override
 	public Object generateCacheKey(Object id, EntityPersister persister, SessionFactoryImplementor factory, String tenantIdentifier) {
@@ -49,26 +49,22 @@ public class ReadWriteRedisNaturalIdRegionAccessStrategy
 
     @Override
     public boolean insert(SharedSessionContractImplementor session, Object key, Object value) {
-        region.put(key, value);
-        return true;
+        return false;
     }
 
     @Override
     public boolean afterInsert(SharedSessionContractImplementor session, Object key, Object value) {
-        region.put(key, value);
-        return true;
+        return putIfAbsent(key, value, null);
     }
 
     @Override
     public boolean update(SharedSessionContractImplementor session, Object key, Object value) {
-        region.put(key, value);
-        return true;
+        return false;
     }
 
     @Override
     public boolean afterUpdate(SharedSessionContractImplementor session, Object key, Object value, SoftLock lock) {
-        region.put(key, value);
-        return true;
+        return replaceLock(key, value, null, lock);
     }
     
     @Override
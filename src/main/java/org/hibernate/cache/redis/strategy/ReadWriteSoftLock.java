@@ -0,0 +1,46 @@
+package org.hibernate.cache.redis.strategy;
+
+import org.hibernate.cache.spi.access.SoftLock;
+
+/**
+ * Soft lock of a read/write item, stored in place of the item while it is updated. The lock of an item with digest
+ * is stored beside the item instead, which stays in place, and keeps its digest.
+ * <p/>
+ * A lock is released when all concurrent lockers unlocked it, after which it rejects values loaded by
+ * transactions started before the unlock. A lock expires at its timeout, so a lock left by a crashed
+ * node does not block the item for longer than the cache lock timeout.
+ * Locks are created and changed by scripts of {@link org.hibernate.cache.redis.jedis.JedisClient},
+ * this class is the handle returned to hibernate and the value read in place of a locked item.
+ *
+ * @see org.hibernate.cache.redis.serializer.ReadWriteRedisSerializer
+ */
+public final class ReadWriteSoftLock implements SoftLock {
+
+    private final String lockId;
+    private final String digest;
+
+    public ReadWriteSoftLock(String lockId) {
+        this(lockId, null);
+    }
+
+    public ReadWriteSoftLock(String lockId, String digest) {
+        this.lockId = lockId;
+        this.digest = digest;
+    }
+
+    public String getLockId() {
+        return lockId;
+    }
+
+    /**
+     * digest of the locked item left in place, null if the item was replaced by the lock
+     */
+    public String getDigest() {
+        return digest;
+    }
+
+    @Override
+    public String toString() {
+        return "ReadWriteSoftLock(lockId=" + lockId + (digest != null ? ", digest=" + digest : "") + ')';
+    }
+}
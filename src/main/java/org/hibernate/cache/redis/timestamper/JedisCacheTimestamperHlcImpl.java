@@ -0,0 +1,119 @@
+package org.hibernate.cache.redis.timestamper;
+
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hibernate.boot.spi.SessionFactoryOptions;
+import org.hibernate.cache.redis.jedis.JedisClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hybrid logical clock timestamper, strictly increasing per jvm without a redis call per timestamp.
+ * <p/>
+ * Timestamps are milliseconds of the redis clock: the local clock plus an offset to redis TIME,
+ * or the last timestamp + 1 if that is greater. A lease is valid for [redis.timestamper.leaseMillis]
+ * (default 1000) milliseconds of the local clock. When it ends, the node publishes its last timestamp on the key
+ * shared with {@link JedisCacheTimestamperJedisImpl} and resynchronizes the offset with redis TIME in one round trip.
+ * The key is only a monotonic floor, max(key, timestamp), which the next timestamps of the node do not go below;
+ * a lease does not move it ahead of the clock. Within a lease a timestamp costs one CAS.
+ * <p/>
+ * Nodes stay within the offset error of redis TIME, plus the timestamps a node issues faster than one per millisecond.
+ * Timestamps of different nodes may be equal, like those of two clocks.
+ * If redis is not available the timestamper continues with local leases.
+ */
+public class JedisCacheTimestamperHlcImpl implements JedisCacheTimestamper {
+
+    public static final String LEASE_MILLIS_PROPERTY_KEY = "redis.timestamper.leaseMillis";
+    private static final int DEFAULT_LEASE_MILLIS = 1000;
+
+    private static final Logger log = LoggerFactory.getLogger(JedisCacheTimestamperHlcImpl.class);
+
+    private final AtomicLong last = new AtomicLong();
+    private volatile Lease lease = new Lease(0L, 0L);
+    private volatile long offset = 0L;
+
+    private JedisClient jedisClient;
+    private String timestampCacheKey = JedisCacheTimestamperJedisImpl.TIMESTAMP_KEY;
+    private int leaseMillis = DEFAULT_LEASE_MILLIS;
+
+    @Override
+    public void setSettings(SessionFactoryOptions settings) {
+        String cacheRegionPrefix = settings == null || settings.getCacheRegionPrefix() == null
+                                   ? ""
+                                   : settings.getCacheRegionPrefix() + ".";
+        timestampCacheKey = cacheRegionPrefix + JedisCacheTimestamperJedisImpl.TIMESTAMP_KEY;
+    }
+
+    @Override
+    public void setProperties(Properties properties) {
+        leaseMillis = Integer.decode(properties.getProperty(LEASE_MILLIS_PROPERTY_KEY, String.valueOf(DEFAULT_LEASE_MILLIS)));
+        if (leaseMillis <= 0)
+            throw new IllegalArgumentException(LEASE_MILLIS_PROPERTY_KEY + " must be positive. leaseMillis=" + leaseMillis);
+        log.debug("redis cache timestamper hlc implementation. key=[{}], leaseMillis=[{}]", timestampCacheKey, leaseMillis);
+    }
+
+    @Override
+    public void setJedisClient(JedisClient jedisClient) {
+        this.jedisClient = jedisClient;
+    }
+
+    @Override
+    public long next() {
+        while (true) {
+            Lease current = lease;
+            long now = System.currentTimeMillis();
+            long prev = last.get();
+            if (now >= current.end) {
+                renew(current, prev);
+                continue;
+            }
+            long next = Math.max(Math.max(prev + 1, now + offset), current.first);
+            if (last.compareAndSet(prev, next))
+                return next;
+        }
+    }
+
+    /**
+     * redis time in milliseconds estimated from the local clock
+     */
+    public long clock() {
+        return System.currentTimeMillis() + offset;
+    }
+
+    /**
+     * publish the last timestamp and start the next lease with timestamps greater than the floor of all nodes,
+     * unless another thread did already
+     */
+    private synchronized void renew(Lease expired, long floor) {
+        if (lease != expired)
+            return;
+
+        long first;
+        long start = System.currentTimeMillis();
+        try {
+            long[] leased = jedisClient.leaseTimestamps(timestampCacheKey, floor);
+            long end = System.currentTimeMillis();
+            first = leased[0];
+            offset = leased[1] - (start + end) / 2;
+        } catch (Exception e) {
+            log.warn("Fail to lease timestamps, continue with a local lease. key=" + timestampCacheKey, e);
+            first = floor + 1;
+        }
+        lease = new Lease(first, start + leaseMillis);
+        log.trace("redis cache timestamper lease. first=[{}], offset=[{}]", first, offset);
+    }
+
+    /**
+     * timestamps from first, until the local clock reaches end
+     */
+    private static final class Lease {
+        final long first;
+        final long end;
+
+        Lease(long first, long end) {
+            this.first = first;
+            this.end = end;
+        }
+    }
+}
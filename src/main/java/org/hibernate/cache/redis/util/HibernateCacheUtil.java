@@ -1,8 +1,27 @@
 package org.hibernate.cache.redis.util;
 
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
 import org.hibernate.SessionFactory;
+import org.hibernate.boot.Metadata;
+import org.hibernate.cache.redis.jedis.JedisClient;
+import org.hibernate.cache.redis.metrics.ClusterRegionStatistics;
+import org.hibernate.cache.redis.metrics.ClusterStatisticsPublisher;
+import org.hibernate.cache.redis.metrics.ClusterStatisticsWindow;
 import org.hibernate.internal.SessionFactoryImpl;
+import org.hibernate.mapping.Collection;
+import org.hibernate.mapping.Component;
+import org.hibernate.mapping.PersistentClass;
+import org.hibernate.mapping.Property;
+import org.hibernate.mapping.Value;
 import org.hibernate.persister.entity.EntityPersister;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Hibernate utility class
@@ -12,10 +31,103 @@ import org.hibernate.persister.entity.EntityPersister;
  */
 public final class HibernateCacheUtil {
 
+    private static final Logger log = LoggerFactory.getLogger(HibernateCacheUtil.class);
+
     public static String getRegionName(SessionFactory sessionFactory, Class entityClass) {
         EntityPersister p = ((SessionFactoryImpl) sessionFactory).getEntityPersister(entityClass.getName());
         return p.hasCache()
                 ? p.getCacheAccessStrategy().getRegion().getName()
                 : "";
     }
+
+    /**
+     * cluster wide statistics of the windows starting between fromMillis and toMillis,
+     * published by the nodes with [redis.metrics.cluster.enabled=true]
+     *
+     * @return windows ordered by start time
+     */
+    public static List<ClusterStatisticsWindow> getClusterStatistics(JedisClient redis, long fromMillis, long toMillis) {
+        return ClusterStatisticsPublisher.read(redis, fromMillis, toMillis);
+    }
+
+    /**
+     * cluster wide statistics of each region, summed over the windows starting between fromMillis and toMillis
+     *
+     * @return statistics by region name
+     */
+    public static Map<String, ClusterRegionStatistics> getClusterRegionStatistics(JedisClient redis, long fromMillis, long toMillis) {
+        Map<String, ClusterRegionStatistics> regions = new TreeMap<String, ClusterRegionStatistics>();
+        for (ClusterStatisticsWindow window : getClusterStatistics(redis, fromMillis, toMillis)) {
+            for (ClusterRegionStatistics statistics : window.getRegions().values()) {
+                ClusterRegionStatistics sum = regions.get(statistics.getRegionName());
+                if (sum == null) {
+                    sum = new ClusterRegionStatistics(statistics.getRegionName());
+                    regions.put(statistics.getRegionName(), sum);
+                }
+                sum.add(statistics);
+            }
+        }
+        return regions;
+    }
+
+    /**
+     * collect mapped entity classes, identifier classes, embeddable (component) classes
+     * and property value classes of the mapping.
+     *
+     * @param metadata hibernate mapping metadata
+     * @return mapped classes, interfaces and primitives excluded
+     */
+    public static Set<Class<?>> getMappedClasses(Metadata metadata) {
+        Set<Class<?>> classes = new LinkedHashSet<Class<?>>();
+
+        for (PersistentClass persistentClass : metadata.getEntityBindings()) {
+            addClass(classes, persistentClass.getMappedClass());
+            addValueClasses(classes, persistentClass.getIdentifier());
+            if (persistentClass.getIdentifierMapper() != null) {
+                addValueClasses(classes, persistentClass.getIdentifierMapper());
+            }
+            Iterator<?> properties = persistentClass.getPropertyClosureIterator();
+            while (properties.hasNext()) {
+                addValueClasses(classes, ((Property) properties.next()).getValue());
+            }
+        }
+        for (Collection collection : metadata.getCollectionBindings()) {
+            addValueClasses(classes, collection.getElement());
+            if (collection.isIndexed()) {
+                addValueClasses(classes, ((org.hibernate.mapping.IndexedCollection) collection).getIndex());
+            }
+        }
+        return classes;
+    }
+
+    private static void addValueClasses(Set<Class<?>> classes, Value value) {
+        if (value == null)
+            return;
+
+        if (value instanceof Component) {
+            Component component = (Component) value;
+            if (!component.isDynamic()) {
+                addClass(classes, component.getComponentClass());
+            }
+            Iterator<?> properties = component.getPropertyIterator();
+            while (properties.hasNext()) {
+                addValueClasses(classes, ((Property) properties.next()).getValue());
+            }
+            return;
+        }
+        if (value instanceof Collection)
+            return;
+
+        try {
+            addClass(classes, value.getType().getReturnedClass());
+        } catch (Exception e) {
+            log.debug("Fail to resolve type of mapped value. value=[{}]", value, e);
+        }
+    }
+
+    private static void addClass(Set<Class<?>> classes, Class<?> clazz) {
+        if (clazz != null && !clazz.isInterface() && !clazz.isPrimitive()) {
+            classes.add(clazz);
+        }
+    }
 }
@@ -28,6 +28,13 @@ import java.util.Set;
 import org.hibernate.boot.spi.SessionFactoryOptions;
 import org.hibernate.cache.redis.DataSourceContextHolderKey;
 import org.hibernate.cache.redis.jedis.JedisClient;
+import org.hibernate.cache.redis.jedis.OperationListener;
+import org.hibernate.cache.redis.jedis.SlowOperationLog;
+import org.hibernate.cache.redis.metrics.ClusterStatisticsPublisher;
+import org.hibernate.cache.redis.metrics.MetricsReporter;
+import org.hibernate.cache.redis.serializer.RedisSerializer;
+import org.hibernate.cache.redis.serializer.RegionAwareRedisSerializer;
+import org.hibernate.cache.redis.serializer.SnappyRedisSerializer;
 import org.hibernate.cache.redis.timestamper.JedisCacheTimestamper;
 import org.hibernate.cache.redis.timestamper.JedisCacheTimestamperJvmImpl;
 import org.hibernate.cfg.Environment;
@@ -56,8 +63,26 @@ public final class JedisTool {
     public static final Class<?> DEFAULT_DYNAMIC_KEY_CLASS = DataSourceContextHolderKey.class;
     public static final String DYNAMIC_KEY_CLASS = "redis.dynamicKey.class";
     public static final Class<?> DEFAULT_TIMESTAMPER_CLASS = JedisCacheTimestamperJvmImpl.class;
-    
-    
+    public static final String SERIALIZER_PROPERTY_KEY = "redis.serializer.class";
+    private static final String SERIALIZER_PROPERTY_PREFIX = SERIALIZER_PROPERTY_KEY + ".";
+    public static final Class<?> DEFAULT_SERIALIZER_CLASS = SnappyRedisSerializer.class;
+    public static final String METRICS_ENABLED_PROPERTY_KEY = "redis.metrics.enabled";
+    public static final String METRICS_REPORTER_PROPERTY_KEY = "redis.metrics.reporter.class";
+    public static final String METRICS_REPORTER_INTERVAL_PROPERTY_KEY = "redis.metrics.reporter.intervalInSeconds";
+    private static final long DEFAULT_METRICS_REPORTER_INTERVAL_IN_SECONDS = 60L;
+    public static final String CLUSTER_STATISTICS_ENABLED_PROPERTY_KEY = "redis.metrics.cluster.enabled";
+    public static final String CLUSTER_STATISTICS_INTERVAL_PROPERTY_KEY = "redis.metrics.cluster.intervalInSeconds";
+    public static final String CLUSTER_STATISTICS_WINDOW_PROPERTY_KEY = "redis.metrics.cluster.windowInSeconds";
+    public static final String CLUSTER_STATISTICS_RETENTION_PROPERTY_KEY = "redis.metrics.cluster.retentionInSeconds";
+    public static final String SLOWLOG_ENABLED_PROPERTY_KEY = "redis.slowlog.enabled";
+    public static final String SLOWLOG_THRESHOLD_PROPERTY_KEY = "redis.slowlog.thresholdInMillis";
+    public static final String SLOWLOG_CAPACITY_PROPERTY_KEY = "redis.slowlog.capacity";
+    public static final String JFR_ENABLED_PROPERTY_KEY = "redis.jfr.enabled";
+    public static final String CHUNK_SIZE_PROPERTY_KEY = "redis.chunk.sizeInBytes";
+    public static final String MAX_VALUE_SIZE_PROPERTY_KEY = "redis.maxValueSizeInBytes";
+    public static final String PROPERTY_FIELDS_PROPERTY_KEY = "redis.entity.propertyFields";
+    private static final String JFR_LISTENER_CLASS = "org.hibernate.cache.redis.jfr.JfrOperationListener";
+
     private static final Logger log = LoggerFactory.getLogger(JedisTool.class);
 
     private JedisTool() { }
@@ -68,7 +93,36 @@ public final class JedisTool {
     public static JedisClient createJedisClient(Properties props) {
         log.info("Creating JedisClient.");
 
-        return new JedisClient(createJedisPool(props), getDefaultExpireInSeconds(props), getSourceContextHolderKey(props));
+        JedisClient jedisClient = new JedisClient(createJedisPool(props), getDefaultExpireInSeconds(props), getSourceContextHolderKey(props));
+        jedisClient.getMetrics().setEnabled(Boolean.valueOf(props.getProperty(METRICS_ENABLED_PROPERTY_KEY, "true")));
+        if (Boolean.valueOf(props.getProperty(SLOWLOG_ENABLED_PROPERTY_KEY, "false"))) {
+            Long threshold = Long.decode(props.getProperty(SLOWLOG_THRESHOLD_PROPERTY_KEY, "50"));
+            Integer capacity = Integer.decode(props.getProperty(SLOWLOG_CAPACITY_PROPERTY_KEY, "128"));
+            jedisClient.setSlowOperationLog(new SlowOperationLog(threshold, capacity));
+            log.info("Slow operation log enabled. thresholdInMillis=[{}], capacity=[{}]", threshold, capacity);
+        }
+        if (Boolean.valueOf(props.getProperty(JFR_ENABLED_PROPERTY_KEY, "false"))) {
+            addJfrListener(jedisClient);
+        }
+        jedisClient.setChunkSizeInBytes(Integer.decode(props.getProperty(CHUNK_SIZE_PROPERTY_KEY, "0")));
+        jedisClient.setPassword(props.getProperty("redis.password", null));
+        return jedisClient;
+    }
+
+    /**
+     * emit JFR events for the operations of the client, if the jvm supports jdk.jfr.
+     * the listener is loaded by name, so jvms without jdk.jfr never link the event classes.
+     */
+    public static void addJfrListener(JedisClient jedisClient) {
+        try {
+            Class.forName("jdk.jfr.Event");
+            jedisClient.addOperationListener((OperationListener) Class.forName(JFR_LISTENER_CLASS).newInstance());
+            log.info("JFR events of cache operations enabled.");
+        } catch (ClassNotFoundException e) {
+            log.warn("JFR is not supported by this jvm, cache operation events are disabled.");
+        } catch (Exception e) {
+            log.warn("Fail to enable JFR events of cache operations.", e);
+        }
     }
 
     /**
@@ -119,6 +173,86 @@ public final class JedisTool {
         return timestamper;
     }
 
+    /**
+     * create the metrics reporter of [redis.metrics.reporter.class], null if not configured.
+     */
+    public static MetricsReporter createMetricsReporter(Properties properties) {
+        String reporterClazzName = properties.getProperty(METRICS_REPORTER_PROPERTY_KEY);
+        if (reporterClazzName == null || reporterClazzName.trim().length() == 0)
+            return null;
+
+        MetricsReporter reporter;
+        try {
+            Class<?> clazz = Class.forName(reporterClazzName.trim());
+            reporter = (MetricsReporter) clazz.newInstance();
+        } catch (Exception e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+        reporter.configure(properties);
+        return reporter;
+    }
+
+    /**
+     * Get the metrics report interval, [redis.metrics.reporter.intervalInSeconds] (default 60)
+     */
+    public static long getMetricsReporterIntervalInSeconds(Properties properties) {
+        return Long.decode(properties.getProperty(METRICS_REPORTER_INTERVAL_PROPERTY_KEY,
+                                                  String.valueOf(DEFAULT_METRICS_REPORTER_INTERVAL_IN_SECONDS)));
+    }
+
+    /**
+     * create the publisher of cluster wide statistics if [redis.metrics.cluster.enabled] (default false), else null.
+     * windows are [redis.metrics.cluster.windowInSeconds] (default 60) long and kept
+     * [redis.metrics.cluster.retentionInSeconds] (default 86400).
+     */
+    public static ClusterStatisticsPublisher createClusterStatisticsPublisher(Properties properties, JedisClient jedisClient) {
+        if (!Boolean.valueOf(properties.getProperty(CLUSTER_STATISTICS_ENABLED_PROPERTY_KEY, "false")))
+            return null;
+
+        Integer window = Integer.decode(properties.getProperty(CLUSTER_STATISTICS_WINDOW_PROPERTY_KEY, "60"));
+        Integer retention = Integer.decode(properties.getProperty(CLUSTER_STATISTICS_RETENTION_PROPERTY_KEY, "86400"));
+        return new ClusterStatisticsPublisher(jedisClient, window, retention);
+    }
+
+    /**
+     * Get the interval of publishing cluster wide statistics, [redis.metrics.cluster.intervalInSeconds] (default 10)
+     */
+    public static long getClusterStatisticsIntervalInSeconds(Properties properties) {
+        return Long.decode(properties.getProperty(CLUSTER_STATISTICS_INTERVAL_PROPERTY_KEY, "10"));
+    }
+
+    /**
+     * create value serializer for the specified region.
+     * <p/>
+     * uses [redis.serializer.class.{regionName}] if exists, else [redis.serializer.class].
+     *
+     * @param props       properties containing serializer settings
+     * @param regionName  region name
+     * @param jedisClient JedisClient passed to region aware serializers
+     * @return new serializer instance
+     */
+    @SuppressWarnings("unchecked")
+    public static RedisSerializer<Object> createValueSerializer(final Properties props,
+                                                                final String regionName,
+                                                                final JedisClient jedisClient) {
+        String defaultClazzName = props.getProperty(SERIALIZER_PROPERTY_KEY, DEFAULT_SERIALIZER_CLASS.getName());
+        String serializerClazzName = props.getProperty(SERIALIZER_PROPERTY_PREFIX + regionName, defaultClazzName);
+
+        RedisSerializer<Object> serializer;
+        try {
+            Class<?> clazz = Class.forName(serializerClazzName.trim());
+            serializer = (RedisSerializer<Object>) clazz.newInstance();
+        } catch (Exception e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+
+        if (serializer instanceof RegionAwareRedisSerializer) {
+            ((RegionAwareRedisSerializer<Object>) serializer).configure(regionName, props, jedisClient);
+        }
+        log.debug("createValueSerializer. regionName=[{}], serializer=[{}]", regionName, serializerClazzName);
+        return serializer;
+    }
+
     private static JedisPoolConfig createJedisPoolConfig() {
         JedisPoolConfig poolConfig = new JedisPoolConfig();
         poolConfig.setMaxTotal(256);
@@ -175,6 +309,38 @@ public final class JedisTool {
         return expireInSeconds;
     }
 
+    /**
+     * Get the maximum size of values cached in the specified region,
+     * [redis.maxValueSizeInBytes.{regionName}] if exists, else [redis.maxValueSizeInBytes]
+     *
+     * @param props      properties containing value size settings
+     * @param regionName region name defined at Entity
+     * @return maximum value size in bytes, 0 for no limit
+     */
+    public static int getMaxValueSizeInBytes(final Properties props, final String regionName) {
+        if (props == null)
+            return 0;
+        String defaultMaxValueSize = props.getProperty(MAX_VALUE_SIZE_PROPERTY_KEY, "0");
+        int maxValueSize = Integer.decode(props.getProperty(MAX_VALUE_SIZE_PROPERTY_KEY + "." + regionName, defaultMaxValueSize));
+        log.debug("getMaxValueSizeInBytes. regionName=[{}], maxValueSizeInBytes=[{}]", regionName, maxValueSize);
+        return maxValueSize;
+    }
+
+    /**
+     * whether the entries of the specified entity region are stored as one hash field per property
+     *
+     * @param props      properties containing the setting
+     * @param regionName entity region name
+     */
+    public static boolean isPropertyFields(final Properties props, final String regionName) {
+        if (props == null)
+            return false;
+        String defaultPropertyFields = props.getProperty(PROPERTY_FIELDS_PROPERTY_KEY, "false");
+        boolean propertyFields = Boolean.valueOf(props.getProperty(PROPERTY_FIELDS_PROPERTY_KEY + "." + regionName, defaultPropertyFields));
+        log.debug("isPropertyFields. regionName=[{}], propertyFields=[{}]", regionName, propertyFields);
+        return propertyFields;
+    }
+
     /**
      * Get the default expire time from the supplied properties
      *
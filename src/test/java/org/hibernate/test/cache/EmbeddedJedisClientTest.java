@@ -0,0 +1,559 @@
+package org.hibernate.test.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Serializable;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.hibernate.cache.redis.jedis.JedisClient;
+import org.hibernate.cache.redis.jedis.OperationListener;
+import org.hibernate.cache.redis.jedis.OperationTrace;
+import org.hibernate.cache.redis.serializer.CacheEntryFieldCodec;
+import org.hibernate.cache.redis.serializer.SnappyRedisSerializer;
+import org.hibernate.cache.redis.serializer.StringRedisSerializer;
+import org.hibernate.cache.spi.entry.StandardCacheEntryImpl;
+import org.hibernate.test.cache.server.EmbeddedRedisServer;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+/**
+ * {@link JedisClient} against {@link EmbeddedRedisServer}, the cases of JedisClientTest without a redis server
+ */
+public class EmbeddedJedisClientTest {
+
+    private static final String REGION = JedisClient.DEFAULT_REGION_NAME;
+
+    private static EmbeddedRedisServer server;
+    private static JedisPool pool;
+    private static JedisClient client;
+
+    @BeforeClass
+    public static void startServer() throws Exception {
+        server = EmbeddedRedisServer.start();
+        pool = new JedisPool(server.getHost(), server.getPort());
+        client = new JedisClient(pool);
+    }
+
+    @AfterClass
+    public static void stopServer() {
+        pool.destroy();
+        server.close();
+    }
+
+    @Before
+    public void setup() {
+        client.flushDb();
+    }
+
+    @Test
+    public void connection() {
+        assertEquals("PONG", client.ping());
+    }
+
+    @Test
+    public void getAndSet() {
+        client.set(REGION, "key", 123, -1);
+        assertEquals(123, client.get(REGION, "key"));
+    }
+
+    @Test
+    public void expire() throws Exception {
+        client.set(REGION, "expireTest", "Value", 1);
+        assertEquals("Value", client.get(REGION, "expireTest"));
+
+        Thread.sleep(1500);
+        client.expire(REGION);
+        assertNull(client.get(REGION, "expireTest"));
+    }
+
+    @Test
+    public void flushDb() {
+        client.set(REGION, "a", "a");
+        assertTrue(client.dbSize() > 0);
+
+        client.flushDb();
+        assertEquals(0L, (long) client.dbSize());
+    }
+
+    @Test
+    public void delete() {
+        client.set(REGION, "d", "d");
+        assertEquals("d", client.get(REGION, "d"));
+        assertTrue(client.exists(REGION, "d"));
+
+        client.del(REGION, "d");
+        assertNull(client.get(REGION, "d"));
+        assertFalse(client.exists(REGION, "d"));
+    }
+
+    @Test
+    public void mgetAndMdel() {
+        List<Integer> keys = new ArrayList<Integer>();
+        for (int i = 0; i < 100; i++) {
+            keys.add(i);
+            client.set(REGION, i, i, -1);
+        }
+        List<Object> values = client.mget(REGION, keys);
+        assertEquals(keys.size(), values.size());
+        assertEquals(42, values.get(42));
+
+        client.mdel(REGION, keys);
+        for (Integer key : keys) {
+            assertNull(client.get(REGION, key));
+        }
+    }
+
+    @Test
+    public void mgetRegions() throws Exception {
+        client.set("users", 1L, "user1", -1);
+        client.set("users", 2L, "user2", 1);
+        client.set("orders", 1L, "order1", 60);
+        Thread.sleep(1100);
+
+        Map<String, List<Long>> keysByRegion = new HashMap<String, List<Long>>();
+        keysByRegion.put("users", Arrays.asList(1L, 2L, 3L));
+        keysByRegion.put("orders", Arrays.asList(1L));
+        Map<String, List<Object>> values = client.mget(keysByRegion);
+
+        assertEquals(Arrays.<Object>asList("user1", null, null), values.get("users"));
+        assertEquals(Arrays.<Object>asList("order1"), values.get("orders"));
+    }
+
+    @Test
+    public void chunkedValues() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            builder.append("chunked value ").append(i);
+        }
+        String large = builder.toString();
+
+        client.setChunkSizeInBytes(1024);
+        try {
+            client.set(REGION, "large", large, 60);
+            client.set(REGION, "small", "value", 60);
+
+            Jedis jedis = new Jedis(server.getHost(), server.getPort());
+            try {
+                byte[] header = jedis.hget(REGION.getBytes(), "#large".getBytes());
+                assertEquals(0, header[0]);
+                assertEquals('c', header[1]);
+            } finally {
+                jedis.close();
+            }
+
+            assertEquals(large, client.get(REGION, "large", 60));
+            assertEquals(Arrays.<Object>asList(large, "value"), client.mget(REGION, Arrays.asList("large", "small")));
+            assertEquals(large, client.hgetAll(REGION).get("#large"));
+        } finally {
+            client.setChunkSizeInBytes(0);
+        }
+        assertEquals(large, client.get(REGION, "large"));
+    }
+
+    @Test
+    public void chunkedValuesRoundTrips() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            builder.append("chunked value ").append(i);
+        }
+        String large = builder.toString();
+
+        final List<OperationTrace> traces = new ArrayList<OperationTrace>();
+        OperationListener listener = new OperationListener() {
+            @Override
+            public void operationStarted(OperationTrace trace) {
+            }
+
+            @Override
+            public void operationCompleted(OperationTrace trace) {
+                traces.add(trace);
+            }
+
+            @Override
+            public void connectionBorrowed(long waitNanos) {
+            }
+        };
+        client.setChunkSizeInBytes(1024);
+        try {
+            client.set(REGION, "large", large, 60);
+            client.set("other", "large", large, 60);
+            client.addOperationListener(listener);
+
+            // the header with its expiration, then the chunks with the new expiration
+            assertEquals(large, client.get(REGION, "large", 60));
+            assertEquals(2, traces.get(0).getCommands());
+
+            // the chunks of all regions in one pipeline
+            traces.clear();
+            Map<String, List<String>> keys = new HashMap<String, List<String>>();
+            keys.put(REGION, Arrays.asList("large"));
+            keys.put("other", Arrays.asList("large"));
+            Map<String, List<Object>> values = client.mget(keys);
+            assertEquals(2, traces.get(0).getCommands());
+            assertEquals(large, values.get(REGION).get(0));
+            assertEquals(large, values.get("other").get(0));
+        } finally {
+            client.removeOperationListener(listener);
+            client.setChunkSizeInBytes(0);
+        }
+    }
+
+    @Test
+    public void headerOfMissingChunksIsDeleted() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            builder.append("chunked value ").append(i);
+        }
+        String large = builder.toString();
+
+        client.setChunkSizeInBytes(1024);
+        Jedis jedis = new Jedis(server.getHost(), server.getPort());
+        try {
+            // a region which never expires
+            client.set(REGION, "large", large, 0);
+            byte[] header = jedis.hget(REGION.getBytes(), "#large".getBytes());
+            String chunks = new String(header, 2, header.length - 3);
+            String chunkKey = "c:" + REGION + ":" + chunks.substring(chunks.indexOf(':') + 1);
+            assertTrue(jedis.ttl(chunkKey) > 0);
+
+            // the chunks expired, the header is a miss and deleted, so the value is cached again.
+            // the scripts are flushed, the pipelined delete falls back to EVAL
+            jedis.del(chunkKey);
+            jedis.scriptFlush();
+            assertNull(client.get(REGION, "large"));
+            assertFalse(jedis.hexists(REGION.getBytes(), "#large".getBytes()));
+            assertTrue(client.setIfNewer(REGION, "large", large, 0, null, true));
+            assertEquals(large, client.get(REGION, "large"));
+        } finally {
+            jedis.close();
+            client.setChunkSizeInBytes(0);
+        }
+    }
+
+    @Test
+    public void propertyFields() throws Exception {
+        Constructor<StandardCacheEntryImpl> ctor =
+                StandardCacheEntryImpl.class.getDeclaredConstructor(Serializable[].class, String.class, Object.class);
+        ctor.setAccessible(true);
+        Serializable[] state = new Serializable[80];
+        for (int i = 0; i < state.length; i++) {
+            state[i] = "column " + i;
+        }
+
+        client.setFieldCodec("entity", new CacheEntryFieldCodec());
+        JedisClient other = new JedisClient(pool);
+        other.setFieldCodec("entity", new CacheEntryFieldCodec());
+        Jedis jedis = new Jedis(server.getHost(), server.getPort());
+        try {
+            client.set("entity", "key", ctor.newInstance(state, "Entity", 1), 60);
+            byte[] header = jedis.hget("entity".getBytes(), "#key".getBytes());
+            assertEquals(0, header[0]);
+            assertEquals('p', header[1]);
+
+            // one changed property, written as delta to the same fields hash
+            state[42] = "changed";
+            client.set("entity", "key", ctor.newInstance(state, "Entity", 2), 60);
+            assertArrayEquals(header, jedis.hget("entity".getBytes(), "#key".getBytes()));
+
+            StandardCacheEntryImpl entry = (StandardCacheEntryImpl) other.get("entity", "key", 60);
+            assertEquals("Entity", entry.getSubclass());
+            assertEquals(2, entry.getVersion());
+            assertArrayEquals(state, entry.getDisassembledState());
+
+            // the other client read the fields, its update is a delta too
+            state[7] = null;
+            other.set("entity", "key", ctor.newInstance(state, "Entity", 3), 60);
+            assertArrayEquals(header, jedis.hget("entity".getBytes(), "#key".getBytes()));
+
+            // the fields of the first client are outdated, all fields are written again
+            String replaced = new String(header, 2, header.length - 3, "UTF-8");
+            String replacedFields = "p:entity:" + replaced.substring(replaced.indexOf(':') + 1);
+            assertTrue(jedis.exists(replacedFields));
+            state[8] = "again";
+            client.set("entity", "key", ctor.newInstance(state, "Entity", 4), 60);
+            assertFalse(Arrays.equals(header, jedis.hget("entity".getBytes(), "#key".getBytes())));
+            // the fields hash of the replaced header is deleted with the swap
+            assertFalse(jedis.exists(replacedFields));
+
+            List<Object> entries = client.mget("entity", Arrays.asList("key", "missing"));
+            assertArrayEquals(state, ((StandardCacheEntryImpl) entries.get(0)).getDisassembledState());
+            assertNull(entries.get(1));
+
+            // a client that never read the fields learns the hash to replace from the script and deletes it
+            header = jedis.hget("entity".getBytes(), "#key".getBytes());
+            replaced = new String(header, 2, header.length - 3, "UTF-8");
+            replacedFields = "p:entity:" + replaced.substring(replaced.indexOf(':') + 1);
+            JedisClient third = new JedisClient(pool);
+            third.setFieldCodec("entity", new CacheEntryFieldCodec());
+            state[9] = "third";
+            third.set("entity", "key", ctor.newInstance(state, "Entity", 5), 60);
+            assertFalse(jedis.exists(replacedFields));
+            assertArrayEquals(state, ((StandardCacheEntryImpl) other.get("entity", "key", 60)).getDisassembledState());
+
+            // other values are stored as a whole
+            client.set("entity", "plain", "value", 60);
+            assertEquals("value", client.get("entity", "plain"));
+        } finally {
+            jedis.close();
+            client.setFieldCodec("entity", null);
+        }
+    }
+
+    @Test
+    public void propertyFieldsRoundTrips() throws Exception {
+        Constructor<StandardCacheEntryImpl> ctor =
+                StandardCacheEntryImpl.class.getDeclaredConstructor(Serializable[].class, String.class, Object.class);
+        ctor.setAccessible(true);
+        Serializable[] state = new Serializable[] { "a", "b", "c" };
+
+        final List<OperationTrace> traces = new ArrayList<OperationTrace>();
+        OperationListener listener = new OperationListener() {
+            @Override
+            public void operationStarted(OperationTrace trace) {
+            }
+
+            @Override
+            public void operationCompleted(OperationTrace trace) {
+                traces.add(trace);
+            }
+
+            @Override
+            public void connectionBorrowed(long waitNanos) {
+            }
+        };
+        client.setFieldCodec("entity", new CacheEntryFieldCodec());
+        try {
+            for (int i = 0; i < 3; i++) {
+                client.set("entity", "key" + i, ctor.newInstance(state, "Entity", i), 60);
+            }
+            client.set("entity", "plain", "value", 60);
+            client.addOperationListener(listener);
+
+            // header and fields in one script, with the expiration
+            StandardCacheEntryImpl entry = (StandardCacheEntryImpl) client.get("entity", "key0", 60);
+            assertArrayEquals(state, entry.getDisassembledState());
+            assertEquals(1, traces.get(0).getCommands());
+            assertTrue(traces.get(0).getDeserializeNanos() > 0);
+
+            // a client that did not read or write the fields before reads them once the header named the hash
+            JedisClient other = new JedisClient(pool);
+            other.setFieldCodec("entity", new CacheEntryFieldCodec());
+            other.addOperationListener(listener);
+            traces.clear();
+            assertArrayEquals(state, ((StandardCacheEntryImpl) other.get("entity", "key0", 60)).getDisassembledState());
+            assertEquals(2, traces.get(0).getCommands());
+            traces.clear();
+            assertArrayEquals(state, ((StandardCacheEntryImpl) other.get("entity", "key0", 60)).getDisassembledState());
+            assertEquals(1, traces.get(0).getCommands());
+
+            // all fields of a multiple get in one pipeline
+            traces.clear();
+            other.removeOperationListener(listener);
+            List<Object> entries = client.mget("entity", Arrays.asList("key0", "plain", "key1", "key2", "missing"));
+            assertEquals(2, traces.get(0).getCommands());
+            assertEquals(0, ((StandardCacheEntryImpl) entries.get(0)).getVersion());
+            assertEquals("value", entries.get(1));
+            assertEquals(2, ((StandardCacheEntryImpl) entries.get(3)).getVersion());
+            assertNull(entries.get(4));
+
+            traces.clear();
+            Map<String, List<String>> keys = new HashMap<String, List<String>>();
+            keys.put("entity", Arrays.asList("key1", "key2"));
+            keys.put(REGION, Arrays.asList("other"));
+            Map<String, List<Object>> values = client.mget(keys);
+            assertEquals(2, traces.get(0).getCommands());
+            assertEquals(1, ((StandardCacheEntryImpl) values.get("entity").get(0)).getVersion());
+            assertNull(values.get(REGION).get(0));
+
+            assertEquals(4, client.hgetAll("entity").size());
+        } finally {
+            client.removeOperationListener(listener);
+            client.setFieldCodec("entity", null);
+        }
+    }
+
+    @Test
+    public void propertyFieldsVersioned() throws Exception {
+        Constructor<StandardCacheEntryImpl> ctor =
+                StandardCacheEntryImpl.class.getDeclaredConstructor(Serializable[].class, String.class, Object.class);
+        ctor.setAccessible(true);
+        Serializable[] state = new Serializable[] { "a", "b", "c" };
+
+        client.setFieldCodec("entity", new CacheEntryFieldCodec());
+        Jedis jedis = new Jedis(server.getHost(), server.getPort());
+        try {
+            assertTrue(client.setIfNewer("entity", "key", ctor.newInstance(state, "Entity", 2), 60, 2L, true));
+            String header = jedis.hget("entity", "#key");
+            assertEquals('p', header.charAt(1));
+            assertTrue(header.endsWith(":2\n"));
+
+            // minimal puts do not replace the same version, older versions are not saved either
+            assertFalse(client.setIfNewer("entity", "key", ctor.newInstance(state, "Entity", 2), 60, 2L, true));
+            assertFalse(client.setIfNewer("entity", "key", ctor.newInstance(state, "Entity", 1), 60, 1L, false));
+            assertEquals(2, ((StandardCacheEntryImpl) client.get("entity", "key", 60)).getVersion());
+
+            state[1] = "changed";
+            assertTrue(client.setIfNewer("entity", "key", ctor.newInstance(state, "Entity", 3), 60, 3L, false));
+            assertTrue(jedis.hget("entity", "#key").endsWith(":3\n"));
+            StandardCacheEntryImpl entry = (StandardCacheEntryImpl) client.get("entity", "key", 60);
+            assertEquals(3, entry.getVersion());
+            assertArrayEquals(state, entry.getDisassembledState());
+        } finally {
+            jedis.close();
+            client.setFieldCodec("entity", null);
+        }
+    }
+
+    @Test
+    public void maxValueSize() {
+        client.setMaxValueSize(REGION, 100);
+        try {
+            client.set(REGION, "key", "small", 60);
+            assertEquals("small", client.get(REGION, "key"));
+
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < 100; i++) {
+                builder.append(i);
+            }
+            long rejections = client.getMetrics().getRegionMetrics(REGION).snapshot().getRejections();
+            client.set(REGION, "key", builder.toString(), 60);
+            assertNull(client.get(REGION, "key"));
+            assertEquals(rejections + 1, client.getMetrics().getRegionMetrics(REGION).snapshot().getRejections());
+        } finally {
+            client.setMaxValueSize(REGION, 0);
+        }
+    }
+
+    @Test
+    public void setIfNewer() {
+        // minimal puts: only if absent or newer
+        assertTrue(client.setIfNewer(REGION, "versioned", "v2", 60, 2L, true));
+        assertFalse(client.setIfNewer(REGION, "versioned", "v2", 60, 2L, true));
+        assertFalse(client.setIfNewer(REGION, "versioned", "v1", 60, 1L, true));
+        assertTrue(client.setIfNewer(REGION, "versioned", "v3", 60, 3L, true));
+        assertEquals("v3", client.get(REGION, "versioned"));
+        assertEquals(Arrays.asList((Object) "v3"), client.mget(REGION, Arrays.asList("versioned")));
+
+        // stale puts are rejected without minimal puts too
+        assertFalse(client.setIfNewer(REGION, "versioned", "v1", 60, 1L, false));
+        assertTrue(client.setIfNewer(REGION, "versioned", "v3'", 60, 3L, false));
+        assertEquals("v3'", client.get(REGION, "versioned"));
+
+        // unversioned values
+        assertTrue(client.setIfNewer(REGION, "plain", "a", 60, null, true));
+        assertFalse(client.setIfNewer(REGION, "plain", "b", 60, null, true));
+        assertTrue(client.setIfNewer(REGION, "plain", "b", 60, null, false));
+        assertEquals("b", client.get(REGION, "plain"));
+    }
+
+    @Test
+    public void keysInRegion() {
+        for (int i = 0; i < 100; i++) {
+            client.set(REGION, i, i, -1);
+        }
+        assertEquals(100, client.keysInRegion(REGION).size());
+        assertEquals(100L, (long) client.keySizeInRegion(REGION));
+
+        client.deleteRegion(REGION);
+        assertEquals(0, client.keysInRegion(REGION).size());
+    }
+
+    @Test
+    public void memoryUsageOfRegion() {
+        assertEquals(0L, client.memoryUsageOfRegion(REGION, 5));
+
+        client.set(REGION, "key", "value", 60);
+        long small = client.memoryUsageOfRegion(REGION, 5);
+        assertTrue(small > 0);
+
+        for (int i = 0; i < 100; i++) {
+            client.set(REGION, "key-" + i, "value-" + i, 60);
+        }
+        assertTrue(client.memoryUsageOfRegion(REGION, 5) > small);
+    }
+
+    @Test
+    public void addMember() {
+        assertEquals(new TreeSet<String>(Arrays.asList("a")), client.addMember("members", "a", 100L, 0L));
+        // concurrent members are all seen, members scored below the minimum are removed
+        assertEquals(new TreeSet<String>(Arrays.asList("a", "b")), client.addMember("members", "b", 200L, 50L));
+        assertEquals(new TreeSet<String>(Arrays.asList("b", "c")), client.addMember("members", "c", 300L, 150L));
+    }
+
+    @Test
+    public void nextTimestamp() {
+        long currentMillis = System.currentTimeMillis();
+        long timestampOne = client.nextTimestamp("cacheTest");
+        long timestampTwo = client.nextTimestamp("cacheTest");
+
+        assertTrue(timestampOne > currentMillis);
+        assertTrue(timestampTwo > timestampOne);
+    }
+
+    @Test
+    public void scriptsAreLoadedAgainAfterFlush() {
+        long timestamp = client.nextTimestamp("cacheTest");
+        Jedis jedis = new Jedis(server.getHost(), server.getPort());
+        try {
+            jedis.scriptFlush();
+            long leased = client.leaseTimestamps("cacheTest", timestamp)[0];
+            assertTrue(leased > timestamp);
+
+            jedis.scriptFlush();
+            assertTrue(client.nextTimestamp("cacheTest") > leased);
+            assertTrue(client.setIfNewer(REGION, "versioned", "value", 60, 1L, false));
+        } finally {
+            jedis.close();
+        }
+    }
+
+    @Test
+    public void nextTimestampWithExistingFutureValue() {
+        long futureTimestamp = System.currentTimeMillis() + 100000;
+        Jedis jedis = pool.getResource();
+        try {
+            // timestamp keys are prefixed with the (empty) data source key
+            jedis.set(new StringRedisSerializer().serialize("#cacheTest"),
+                      new SnappyRedisSerializer<Object>().serialize(futureTimestamp));
+        } finally {
+            jedis.close();
+        }
+        assertEquals(futureTimestamp + 1, client.nextTimestamp("cacheTest"));
+    }
+
+    @Test
+    public void nextTimestampStoredAsNumber() {
+        byte[] rawKey = new StringRedisSerializer().serialize("#cacheTest");
+        long timestamp = client.nextTimestamp("cacheTest");
+        Jedis jedis = pool.getResource();
+        try {
+            assertEquals(String.valueOf(timestamp), jedis.get("#cacheTest"));
+
+            // converted from the serialized value
+            long futureTimestamp = System.currentTimeMillis() + 100000;
+            jedis.set(rawKey, new SnappyRedisSerializer<Object>().serialize(futureTimestamp));
+            assertEquals(futureTimestamp + 1, client.nextTimestamp("cacheTest"));
+            assertEquals(String.valueOf(futureTimestamp + 1), jedis.get("#cacheTest"));
+
+            jedis.set("#cacheTest", String.valueOf(futureTimestamp + 10));
+            assertEquals(futureTimestamp + 11, client.nextTimestamp("cacheTest"));
+        } finally {
+            jedis.close();
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package org.hibernate.test.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.Serializable;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import org.hibernate.CacheMode;
+import org.hibernate.cache.redis.RedisQueryCache;
+import org.hibernate.cache.redis.jedis.JedisClient;
+import org.hibernate.cache.redis.jedis.OperationListener;
+import org.hibernate.cache.redis.jedis.OperationTrace;
+import org.hibernate.cache.redis.regions.RedisEntityRegion;
+import org.hibernate.cache.redis.regions.RedisQueryResultsRegion;
+import org.hibernate.cache.redis.regions.RedisTimestampsRegion;
+import org.hibernate.cache.redis.strategy.RedisAccessStrategyFactoryImpl;
+import org.hibernate.cache.spi.QueryKey;
+import org.hibernate.cache.spi.access.AccessType;
+import org.hibernate.cache.spi.access.EntityRegionAccessStrategy;
+import org.hibernate.engine.spi.CacheImplementor;
+import org.hibernate.engine.spi.PersistenceContext;
+import org.hibernate.engine.spi.SessionEventListenerManager;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.metamodel.spi.MetamodelImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.test.cache.server.EmbeddedRedisServer;
+import org.hibernate.transform.CacheableResultTransformer;
+import org.hibernate.type.LongType;
+import org.hibernate.type.ManyToOneType;
+import org.hibernate.type.Type;
+import org.hibernate.type.TypeFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import redis.clients.jedis.JedisPool;
+
+/**
+ * runs {@link RedisQueryCache#get} with stubbed hibernate internals, entities are assembled from their cache region.
+ */
+public class RedisQueryCacheTest {
+
+    private EmbeddedRedisServer server;
+    private JedisClient client;
+    private RedisQueryResultsRegion queries;
+    private RedisTimestampsRegion timestamps;
+    private RedisEntityRegion entities;
+    private EntityRegionAccessStrategy accessStrategy;
+    private EntityPersister persister;
+    private SessionFactoryImplementor factory;
+    private SharedSessionContractImplementor session;
+    private final List<OperationTrace> traces = new ArrayList<OperationTrace>();
+
+    @Before
+    public void setup() throws Exception {
+        server = EmbeddedRedisServer.start();
+        client = new JedisClient(new JedisPool(server.getHost(), server.getPort()));
+        Properties props = new Properties();
+        props.setProperty("redis.timestamps.localCache", "false");
+        queries = new RedisQueryResultsRegion(new RedisAccessStrategyFactoryImpl(), client,
+                                              "org.hibernate.cache.internal.StandardQueryCache", props, null);
+        timestamps = new RedisTimestampsRegion(new RedisAccessStrategyFactoryImpl(), client,
+                                               "org.hibernate.cache.spi.UpdateTimestampsCache", props, null);
+        entities = new RedisEntityRegion(new RedisAccessStrategyFactoryImpl(), client, "entities", null, null, props, null);
+        accessStrategy = entities.buildAccessStrategy(AccessType.NONSTRICT_READ_WRITE);
+
+        Map<String, Object> persisterMethods = new HashMap<String, Object>();
+        persisterMethods.put("hasCache", true);
+        persisterMethods.put("getIdentifierType", LongType.INSTANCE);
+        persisterMethods.put("getCacheAccessStrategy", accessStrategy);
+        persisterMethods.put("getRootEntityName", "Entity");
+        persisterMethods.put("getEntityName", "Entity");
+        persister = stub(EntityPersister.class, persisterMethods);
+        MetamodelImplementor metamodel =
+                stub(MetamodelImplementor.class, Collections.<String, Object>singletonMap("entityPersister", persister));
+        factory = stub(SessionFactoryImplementor.class, Collections.<String, Object>singletonMap("getMetamodel", metamodel));
+
+        Map<String, Object> sessionMethods = new HashMap<String, Object>();
+        sessionMethods.put("getCacheMode", CacheMode.NORMAL);
+        sessionMethods.put("getFactory", factory);
+        sessionMethods.put("getPersistenceContext", stub(PersistenceContext.class, Collections.<String, Object>emptyMap()));
+        sessionMethods.put("getEventListenerManager",
+                           stub(SessionEventListenerManager.class, Collections.<String, Object>emptyMap()));
+        session = stub(SharedSessionContractImplementor.class, sessionMethods);
+
+        client.addOperationListener(new OperationListener() {
+            @Override
+            public void operationStarted(OperationTrace trace) {
+            }
+
+            @Override
+            public void operationCompleted(OperationTrace trace) {
+                traces.add(trace);
+            }
+
+            @Override
+            public void connectionBorrowed(long waitNanos) {
+            }
+        });
+    }
+
+    @After
+    public void cleanup() {
+        timestamps.destroy();
+        client.destroy();
+        server.close();
+    }
+
+    @Test
+    public void entitiesArePrefetchedWithOneMultiGet() throws Exception {
+        entities.put(cacheKey(1L), "entity 1");
+        entities.put(cacheKey(2L), "entity 2");
+        QueryKey key = queryKey();
+        queries.put(null, key, new ArrayList<Object>(Arrays.<Object>asList(client.nextTimestamp(queries.getName()), 1L, 2L, 3L)));
+        RedisQueryCache cache = queryCache();
+
+        traces.clear();
+        List<?> result = cache.get(key, new Type[] { new CachedEntityType(false) }, false,
+                                   Collections.<Serializable>singleton("entity_table"), session);
+        assertEquals(Arrays.asList("entity 1", "entity 2", null), result);
+
+        // the query result and all entities of its rows, missing entities included
+        assertEquals(2, traces.size());
+        assertEquals("HMGET ZSCORE", traces.get(1).getCommand());
+
+        // cleared after assembling, reads go to redis again
+        traces.clear();
+        assertEquals("entity 1", entities.get(cacheKey(1L)));
+        assertEquals(1, traces.size());
+    }
+
+    @Test
+    public void prefetchedItemsAreClearedOnFailure() throws Exception {
+        entities.put(cacheKey(1L), "entity 1");
+        entities.put(cacheKey(2L), "entity 2");
+        QueryKey key = queryKey();
+        queries.put(null, key, new ArrayList<Object>(Arrays.<Object>asList(client.nextTimestamp(queries.getName()), 1L, 2L)));
+        RedisQueryCache cache = queryCache();
+
+        try {
+            cache.get(key, new Type[] { new CachedEntityType(true) }, false,
+                      Collections.<Serializable>singleton("entity_table"), session);
+            fail("assembling should fail");
+        } catch (IllegalStateException expected) {
+            // thrown by the first row
+        }
+
+        // the item prefetched for the second row is not left on this thread
+        traces.clear();
+        assertEquals("entity 2", entities.get(cacheKey(2L)));
+        assertEquals(1, traces.size());
+        assertTrue(traces.get(0).getCommands() > 0);
+    }
+
+    private RedisQueryCache queryCache() {
+        return new RedisQueryCache(queries, timestamps, stub(CacheImplementor.class, Collections.<String, Object>emptyMap()));
+    }
+
+    private Object cacheKey(long id) {
+        return accessStrategy.generateCacheKey(id, persister, factory, null);
+    }
+
+    private static QueryKey queryKey() throws Exception {
+        Constructor<QueryKey> ctor = QueryKey.class.getDeclaredConstructor(
+                String.class, Type[].class, Object[].class, Map.class, Integer.class, Integer.class, Set.class,
+                String.class, CacheableResultTransformer.class);
+        ctor.setAccessible(true);
+        return ctor.newInstance("select e from Entity e", new Type[0], new Object[0], Collections.emptyMap(), null, null,
+                                Collections.emptySet(), null, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T stub(final Class<T> type, final Map<String, Object> returns) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (returns.containsKey(method.getName()))
+                    return returns.get(method.getName());
+                if ("equals".equals(method.getName()))
+                    return proxy == args[0];
+                if ("hashCode".equals(method.getName()))
+                    return System.identityHashCode(proxy);
+                if ("toString".equals(method.getName()))
+                    return type.getSimpleName();
+                if (method.getReturnType() == boolean.class)
+                    return false;
+                if (method.getReturnType() == int.class)
+                    return 0;
+                if (method.getReturnType() == long.class)
+                    return 0L;
+                return null;
+            }
+        });
+    }
+
+    /**
+     * many-to-one reference which assembles entities from their cache region, as loading a cached entity does
+     */
+    private class CachedEntityType extends ManyToOneType {
+        private static final long serialVersionUID = 1L;
+
+        private final boolean failing;
+
+        CachedEntityType(boolean failing) {
+            super(new TypeFactory.TypeScope() {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                public SessionFactoryImplementor resolveFactory() {
+                    return factory;
+                }
+            }, "Entity");
+            this.failing = failing;
+        }
+
+        @Override
+        public void beforeAssemble(Serializable oid, SharedSessionContractImplementor session) {
+        }
+
+        @Override
+        public Object assemble(Serializable oid, SharedSessionContractImplementor session, Object owner) {
+            if (failing)
+                throw new IllegalStateException("Fail to assemble entity " + oid);
+            return accessStrategy.get(session, cacheKey((Long) oid), Long.MAX_VALUE);
+        }
+    }
+}
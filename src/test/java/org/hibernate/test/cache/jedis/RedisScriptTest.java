@@ -0,0 +1,80 @@
+package org.hibernate.test.cache.jedis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+
+import org.hibernate.cache.redis.jedis.RedisScript;
+import org.hibernate.test.cache.server.EmbeddedRedisServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+
+public class RedisScriptTest {
+
+    private static final RedisScript INCR = new RedisScript("return redis.call('INCRBY', KEYS[1], ARGV[1])");
+
+    private EmbeddedRedisServer server;
+    private Jedis jedis;
+
+    @Before
+    public void setup() throws Exception {
+        server = EmbeddedRedisServer.start();
+        jedis = new Jedis(server.getHost(), server.getPort());
+        jedis.scriptFlush();
+    }
+
+    @After
+    public void cleanup() {
+        jedis.close();
+        server.close();
+    }
+
+    @Test
+    public void sha1MatchesScriptLoad() {
+        assertEquals(jedis.scriptLoad("return redis.call('INCRBY', KEYS[1], ARGV[1])"), INCR.getSha1());
+    }
+
+    @Test
+    public void evalLoadsUnknownScript() {
+        assertFalse(jedis.scriptExists(INCR.getSha1()));
+        assertEquals(2L, INCR.eval(jedis, keys(), args("2")));
+        assertTrue(jedis.scriptExists(INCR.getSha1()));
+        assertEquals(5L, INCR.eval(jedis, keys(), args("3")));
+
+        jedis.scriptFlush();
+        assertEquals(6L, INCR.eval(jedis, keys(), args("1")));
+    }
+
+    @Test
+    public void pipelinedUnknownScript() {
+        Pipeline pipeline = jedis.pipelined();
+        Response<Object> unknown = INCR.evalsha(pipeline, keys(), args("1"));
+        pipeline.sync();
+        assertTrue(RedisScript.isNoScript(unknown));
+        assertEquals(null, jedis.get("counter"));
+
+        jedis.scriptLoad("return redis.call('INCRBY', KEYS[1], ARGV[1])");
+        pipeline = jedis.pipelined();
+        Response<Object> known = INCR.evalsha(pipeline, keys(), args("1"));
+        pipeline.sync();
+        assertFalse(RedisScript.isNoScript(known));
+        assertEquals(1L, known.get());
+    }
+
+    private static List<byte[]> keys() {
+        return Collections.singletonList("counter".getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static List<byte[]> args(String arg) {
+        return Collections.singletonList(arg.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,97 @@
+package org.hibernate.test.cache.jedis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.cache.redis.jedis.JedisClient;
+import org.hibernate.cache.redis.jedis.OperationTrace;
+import org.hibernate.cache.redis.jedis.SlowOperationLog;
+import org.hibernate.cache.redis.jmx.SlowOperationLogControl;
+import org.hibernate.test.cache.server.EmbeddedRedisServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import redis.clients.jedis.JedisPool;
+
+public class SlowOperationLogTest {
+
+    private EmbeddedRedisServer server;
+    private JedisClient client;
+    private SlowOperationLog slowLog;
+
+    @Before
+    public void setup() throws Exception {
+        server = EmbeddedRedisServer.start();
+        client = new JedisClient(new JedisPool(server.getHost(), server.getPort()));
+        slowLog = new SlowOperationLog(20, 2);
+        client.setSlowOperationLog(slowLog);
+    }
+
+    @After
+    public void cleanup() {
+        client.destroy();
+        server.close();
+    }
+
+    @Test
+    public void recordsSlowOperations() {
+        // the first operation loads the serializer and opens the connection
+        client.set("region", "warmup", "value", 60);
+        slowLog.clear();
+
+        client.set("region", "fast", "value", 60);
+        assertEquals(0, slowLog.getRecordedCount());
+
+        server.setLatency(30, TimeUnit.MILLISECONDS);
+        client.set("region", "key", "value", 60);
+        client.get("region", "key", 60);
+        client.del("region", "key");
+
+        assertEquals(3, slowLog.getRecordedCount());
+        List<OperationTrace> entries = slowLog.getEntries();
+        // capacity 2, newest first
+        assertEquals(2, entries.size());
+        assertEquals(OperationTrace.REMOVE, entries.get(0).getOperation());
+        OperationTrace get = entries.get(1);
+        assertEquals(OperationTrace.GET, get.getOperation());
+        assertEquals("region", get.getRegion());
+        assertTrue(get.getCommand().contains("HGET"));
+        assertTrue(get.getRedisNanos() >= TimeUnit.MILLISECONDS.toNanos(20));
+        assertTrue(get.getPayloadBytes() > 0);
+
+        slowLog.clear();
+        assertEquals(0, slowLog.getEntries().size());
+    }
+
+    @Test
+    public void controlAndDump() throws Exception {
+        server.setLatency(30, TimeUnit.MILLISECONDS);
+        client.set("region", "key", "value", 60);
+
+        SlowOperationLogControl control = new SlowOperationLogControl(slowLog);
+        String[] entries = control.getEntries();
+        assertEquals(1, entries.length);
+        assertTrue(entries[0].contains("operation=[put]"));
+
+        File file = File.createTempFile("slow-operations", ".log");
+        try {
+            assertEquals(1, control.dump(file.getPath()));
+            List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+            assertEquals(1, lines.size());
+            assertTrue(lines.get(0).contains("region=[region]"));
+        } finally {
+            file.delete();
+        }
+
+        control.setThresholdMillis(1000);
+        client.set("region", "key", "value", 60);
+        assertEquals(1, control.getRecordedCount());
+    }
+}
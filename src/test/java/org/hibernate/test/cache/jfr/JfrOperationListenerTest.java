@@ -0,0 +1,121 @@
+package org.hibernate.test.cache.jfr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hibernate.cache.redis.jedis.JedisClient;
+import org.hibernate.cache.redis.jedis.OperationListener;
+import org.hibernate.cache.redis.jedis.OperationTrace;
+import org.hibernate.cache.redis.util.JedisTool;
+import org.hibernate.test.cache.server.EmbeddedRedisServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import redis.clients.jedis.JedisPool;
+
+public class JfrOperationListenerTest {
+
+    private EmbeddedRedisServer server;
+    private JedisClient client;
+
+    @Before
+    public void setup() throws Exception {
+        server = EmbeddedRedisServer.start();
+        client = new JedisClient(new JedisPool(server.getHost(), server.getPort()));
+    }
+
+    @After
+    public void cleanup() {
+        client.destroy();
+        server.close();
+    }
+
+    @Test
+    public void traceBreakdown() {
+        final List<OperationTrace> traces = new ArrayList<OperationTrace>();
+        client.addOperationListener(new OperationListener() {
+            @Override
+            public void operationStarted(OperationTrace trace) {
+            }
+
+            @Override
+            public void operationCompleted(OperationTrace trace) {
+                traces.add(trace);
+            }
+
+            @Override
+            public void connectionBorrowed(long waitNanos) {
+            }
+        });
+
+        client.set("region", "key", "value", 60);
+        client.get("region", "key", 60);
+        client.get("region", "missing", 60);
+
+        assertEquals(3, traces.size());
+        OperationTrace put = traces.get(0);
+        assertEquals(OperationTrace.PUT, put.getOperation());
+        assertEquals("region", put.getRegion());
+        assertEquals(1, put.getCommands());
+        assertTrue(put.getPayloadBytes() > 0);
+        assertTrue(put.getRedisNanos() > 0);
+
+        OperationTrace hit = traces.get(1);
+        assertEquals(OperationTrace.GET, hit.getOperation());
+        assertEquals(Boolean.TRUE, hit.getHit());
+        assertEquals(put.getPayloadBytes(), hit.getPayloadBytes());
+        assertEquals(Boolean.FALSE, traces.get(2).getHit());
+    }
+
+    @Test
+    public void events() throws Exception {
+        JedisTool.addJfrListener(client);
+
+        File file = File.createTempFile("cache-events", ".jfr");
+        Recording recording = new Recording();
+        try {
+            recording.enable("org.hibernate.cache.redis.CacheOperation");
+            recording.enable("org.hibernate.cache.redis.PoolBorrow");
+            recording.start();
+
+            client.set("region", "key", "value", 60);
+            client.get("region", "key", 60);
+            client.nextTimestamp("timestamp");
+
+            recording.stop();
+            recording.dump(file.toPath());
+
+            List<String> operations = new ArrayList<String>();
+            int borrows = 0;
+            for (RecordedEvent event : RecordingFile.readAllEvents(file.toPath())) {
+                String name = event.getEventType().getName();
+                if ("org.hibernate.cache.redis.CacheOperation".equals(name)) {
+                    operations.add(event.getString("operation"));
+                    if ("get".equals(event.getString("operation"))) {
+                        assertEquals("region", event.getString("region"));
+                        assertTrue(event.getBoolean("hit"));
+                        assertTrue(event.getInt("payloadSize") > 0);
+                    }
+                } else if ("org.hibernate.cache.redis.PoolBorrow".equals(name)) {
+                    borrows++;
+                }
+            }
+            assertEquals(3, operations.size());
+            assertTrue(operations.contains("put"));
+            assertTrue(operations.contains("timestamp"));
+            assertFalse(borrows < 3);
+        } finally {
+            recording.close();
+            file.delete();
+        }
+    }
+}
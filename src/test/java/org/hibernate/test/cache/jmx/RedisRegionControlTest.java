@@ -0,0 +1,90 @@
+package org.hibernate.test.cache.jmx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.Properties;
+
+import javax.management.Attribute;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.hibernate.cache.redis.jedis.JedisClient;
+import org.hibernate.cache.redis.jmx.RedisRegionControl;
+import org.hibernate.cache.redis.regions.RedisQueryResultsRegion;
+import org.hibernate.cache.redis.strategy.RedisAccessStrategyFactoryImpl;
+import org.hibernate.test.cache.server.EmbeddedRedisServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import redis.clients.jedis.JedisPool;
+
+public class RedisRegionControlTest {
+
+    private EmbeddedRedisServer server;
+    private JedisClient client;
+    private RedisQueryResultsRegion region;
+    private ObjectName name;
+
+    @Before
+    public void setup() throws Exception {
+        server = EmbeddedRedisServer.start();
+        client = new JedisClient(new JedisPool(server.getHost(), server.getPort()));
+        region = new RedisQueryResultsRegion(new RedisAccessStrategyFactoryImpl(), client, "query", new Properties(), null);
+        name = RedisRegionControl.register("test", region);
+        assertNotNull(name);
+    }
+
+    @After
+    public void cleanup() {
+        RedisRegionControl.unregister(name);
+        client.destroy();
+        server.close();
+    }
+
+    @Test
+    public void statistics() throws Exception {
+        MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+
+        region.put(null, "k1", "v1");
+        region.put(null, "k2", "v2");
+        region.get(null, "k1");
+        region.get(null, "missing");
+
+        assertEquals(1L, mbeanServer.getAttribute(name, "Hits"));
+        assertEquals(1L, mbeanServer.getAttribute(name, "Misses"));
+        assertEquals(2L, mbeanServer.getAttribute(name, "Puts"));
+        assertEquals(2L, mbeanServer.getAttribute(name, "ElementCount"));
+        assertTrue((Long) mbeanServer.getAttribute(name, "SizeInMemory") > 0);
+        assertTrue((Double) mbeanServer.getAttribute(name, "GetLatencyP99Micros") > 0);
+
+        mbeanServer.invoke(name, "resetStatistics", null, null);
+        assertEquals(0L, mbeanServer.getAttribute(name, "Hits"));
+
+        mbeanServer.invoke(name, "clear", null, null);
+        assertEquals(0L, mbeanServer.getAttribute(name, "ElementCount"));
+    }
+
+    @Test
+    public void runtimeSettings() throws Exception {
+        MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+
+        mbeanServer.setAttribute(name, new Attribute("ExpireInSeconds", 30));
+        assertEquals(30, region.getExpireInSeconds());
+
+        region.put(null, "key", "v1");
+        mbeanServer.setAttribute(name, new Attribute("Bypass", true));
+        assertNull(region.get(null, "key"));
+
+        // writes in bypass mode remove the cached item
+        region.put(null, "key", "v2");
+        mbeanServer.setAttribute(name, new Attribute("Bypass", false));
+        assertFalse(region.isBypass());
+        assertNull(region.get(null, "key"));
+    }
+}
@@ -0,0 +1,107 @@
+package org.hibernate.test.cache.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.HdrHistogram.Histogram;
+import org.hibernate.cache.redis.jedis.JedisClient;
+import org.hibernate.cache.redis.metrics.CacheMetrics;
+import org.hibernate.cache.redis.metrics.MetricsReporter;
+import org.hibernate.cache.redis.metrics.RegionMetrics;
+import org.hibernate.cache.redis.metrics.RegionMetricsSnapshot;
+import org.hibernate.test.cache.server.EmbeddedRedisServer;
+import org.junit.Test;
+
+import redis.clients.jedis.JedisPool;
+
+public class CacheMetricsTest {
+
+    @Test
+    public void countersAndLatencies() {
+        CacheMetrics cacheMetrics = new CacheMetrics();
+        RegionMetrics metrics = cacheMetrics.getRegionMetrics("region");
+        assertSame(metrics, cacheMetrics.getRegionMetrics("region"));
+
+        metrics.recordGet(metrics.start(), true);
+        metrics.recordGet(metrics.start(), true);
+        metrics.recordGet(metrics.start(), false);
+        metrics.recordPut(metrics.start());
+        metrics.recordRemove(metrics.start());
+        metrics.recordError();
+        metrics.recordSerialization(metrics.start(), 100);
+        metrics.recordSerialization(metrics.start(), 300);
+
+        RegionMetricsSnapshot snapshot = metrics.snapshot();
+        assertEquals(2, snapshot.getHits());
+        assertEquals(1, snapshot.getMisses());
+        assertEquals(2.0 / 3.0, snapshot.getHitRatio(), 0.0001);
+        assertEquals(1, snapshot.getPuts());
+        assertEquals(1, snapshot.getRemoves());
+        assertEquals(1, snapshot.getErrors());
+        assertEquals(400, snapshot.getWrittenBytes());
+        assertEquals(3, snapshot.getGetLatency().getTotalCount());
+        assertEquals(2, snapshot.getPayloadSize().getTotalCount());
+
+        // snapshots are cumulative
+        metrics.recordGet(metrics.start(), false);
+        assertEquals(4, metrics.snapshot().getGetLatency().getTotalCount());
+
+        metrics.reset();
+        assertEquals(0, metrics.snapshot().getHits());
+        assertEquals(0, metrics.snapshot().getGetLatency().getTotalCount());
+    }
+
+    @Test
+    public void disabled() {
+        CacheMetrics cacheMetrics = new CacheMetrics();
+        cacheMetrics.setEnabled(false);
+        RegionMetrics metrics = cacheMetrics.getRegionMetrics("region");
+
+        metrics.recordGet(metrics.start(), true);
+        metrics.recordError();
+
+        assertEquals(0, metrics.snapshot().getHits());
+        assertEquals(0, metrics.snapshot().getErrors());
+    }
+
+    @Test
+    public void jedisClientAndReporter() throws Exception {
+        EmbeddedRedisServer server = EmbeddedRedisServer.start();
+        JedisClient client = new JedisClient(new JedisPool(server.getHost(), server.getPort()));
+        try {
+            client.set("region", "key", "value", -1);
+            assertEquals("value", client.get("region", "key"));
+
+            final List<RegionMetricsSnapshot> reported = new ArrayList<RegionMetricsSnapshot>();
+            client.getMetrics().report(new MetricsReporter() {
+                @Override
+                public void configure(Properties props) {
+                }
+
+                @Override
+                public void report(List<RegionMetricsSnapshot> regions, Histogram poolWait) {
+                    reported.addAll(regions);
+                    assertTrue(poolWait.getTotalCount() >= 2);
+                }
+            });
+
+            assertEquals(1, reported.size());
+            RegionMetricsSnapshot snapshot = reported.get(0);
+            assertEquals("region", snapshot.getRegionName());
+            assertEquals(1, snapshot.getSerializeLatency().getTotalCount());
+            assertEquals(1, snapshot.getDeserializeLatency().getTotalCount());
+            assertTrue(snapshot.getWrittenBytes() > 0);
+            assertEquals(snapshot.getWrittenBytes(), snapshot.getReadBytes());
+            assertNotNull(snapshot.toString());
+        } finally {
+            client.destroy();
+            server.close();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package org.hibernate.test.cache.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+
+import org.hibernate.cache.redis.jedis.JedisClient;
+import org.hibernate.cache.redis.metrics.ClusterRegionStatistics;
+import org.hibernate.cache.redis.metrics.ClusterStatisticsPublisher;
+import org.hibernate.cache.redis.metrics.ClusterStatisticsWindow;
+import org.hibernate.cache.redis.metrics.RegionMetrics;
+import org.hibernate.cache.redis.util.HibernateCacheUtil;
+import org.hibernate.test.cache.server.EmbeddedRedisServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import redis.clients.jedis.JedisPool;
+
+public class ClusterStatisticsTest {
+
+    private EmbeddedRedisServer server;
+    private JedisClient node1;
+    private JedisClient node2;
+
+    @Before
+    public void setup() throws Exception {
+        server = EmbeddedRedisServer.start();
+        node1 = new JedisClient(new JedisPool(server.getHost(), server.getPort()));
+        node2 = new JedisClient(new JedisPool(server.getHost(), server.getPort()));
+    }
+
+    @After
+    public void cleanup() {
+        node1.destroy();
+        node2.destroy();
+        server.close();
+    }
+
+    @Test
+    public void publishAndRead() {
+        long from = System.currentTimeMillis() - 60000L;
+        ClusterStatisticsPublisher publisher1 = new ClusterStatisticsPublisher(node1, 60, 3600);
+        ClusterStatisticsPublisher publisher2 = new ClusterStatisticsPublisher(node2, 60, 3600);
+
+        RegionMetrics metrics1 = node1.getMetrics().getRegionMetrics("region.a");
+        metrics1.recordGet(metrics1.start(), true);
+        metrics1.recordGet(metrics1.start(), false);
+        metrics1.recordPut(metrics1.start());
+        metrics1.recordSerialization(metrics1.start(), 100);
+        RegionMetrics metrics2 = node2.getMetrics().getRegionMetrics("region.a");
+        metrics2.recordGet(metrics2.start(), true);
+        metrics2.recordRemove(metrics2.start());
+        node2.getMetrics().getRegionMetrics("region.b").recordPut(metrics2.start());
+
+        publisher1.publish();
+        publisher2.publish();
+        // only increments are published
+        publisher1.publish();
+        metrics1.recordGet(metrics1.start(), true);
+        publisher1.publish();
+
+        long to = System.currentTimeMillis();
+        List<ClusterStatisticsWindow> windows = HibernateCacheUtil.getClusterStatistics(node1, from, to);
+        assertTrue(windows.size() >= 1);
+
+        Map<String, ClusterRegionStatistics> regions = HibernateCacheUtil.getClusterRegionStatistics(node1, from, to);
+        assertEquals(2, regions.size());
+        ClusterRegionStatistics a = regions.get("region.a");
+        assertEquals(3, a.getHits());
+        assertEquals(1, a.getMisses());
+        assertEquals(0.75, a.getHitRatio(), 0.0001);
+        assertEquals(1, a.getPuts());
+        assertEquals(1, a.getEvictions());
+        assertEquals(100, a.getWrittenBytes());
+        assertEquals(1, regions.get("region.b").getPuts());
+
+        assertTrue(HibernateCacheUtil.getClusterRegionStatistics(node2, to + 60000L, to + 120000L).isEmpty());
+    }
+
+    @Test
+    public void resetCountersArePublished() {
+        ClusterStatisticsPublisher publisher = new ClusterStatisticsPublisher(node1, 60, 3600);
+        RegionMetrics metrics = node1.getMetrics().getRegionMetrics("region");
+        metrics.recordPut(metrics.start());
+        metrics.recordPut(metrics.start());
+        publisher.publish();
+
+        metrics.reset();
+        metrics.recordPut(metrics.start());
+        publisher.publish();
+
+        Map<String, ClusterRegionStatistics> regions =
+                HibernateCacheUtil.getClusterRegionStatistics(node1, 0L, System.currentTimeMillis());
+        assertEquals(3, regions.get("region").getPuts());
+    }
+}
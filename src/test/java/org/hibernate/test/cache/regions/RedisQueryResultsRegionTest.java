@@ -0,0 +1,129 @@
+package org.hibernate.test.cache.regions;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import org.hibernate.cache.redis.jedis.JedisClient;
+import org.hibernate.cache.redis.jedis.OperationListener;
+import org.hibernate.cache.redis.jedis.OperationTrace;
+import org.hibernate.cache.redis.regions.RedisQueryResultsRegion;
+import org.hibernate.cache.redis.regions.RedisTimestampsRegion;
+import org.hibernate.cache.redis.strategy.RedisAccessStrategyFactoryImpl;
+import org.hibernate.test.cache.server.EmbeddedRedisServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+public class RedisQueryResultsRegionTest {
+
+    private EmbeddedRedisServer server;
+    private JedisClient client;
+    private RedisQueryResultsRegion queries;
+    private RedisTimestampsRegion timestamps;
+    private final List<OperationTrace> traces = new ArrayList<OperationTrace>();
+
+    @Before
+    public void setup() throws Exception {
+        server = EmbeddedRedisServer.start();
+        client = new JedisClient(new JedisPool(server.getHost(), server.getPort()));
+        Properties props = new Properties();
+        props.setProperty("redis.timestamps.localCache", "false");
+        queries = new RedisQueryResultsRegion(new RedisAccessStrategyFactoryImpl(), client,
+                                              "org.hibernate.cache.internal.StandardQueryCache", props, null);
+        timestamps = new RedisTimestampsRegion(new RedisAccessStrategyFactoryImpl(), client,
+                                               "org.hibernate.cache.spi.UpdateTimestampsCache", props, null);
+        client.addOperationListener(new OperationListener() {
+            @Override
+            public void operationStarted(OperationTrace trace) {
+            }
+
+            @Override
+            public void operationCompleted(OperationTrace trace) {
+                traces.add(trace);
+            }
+
+            @Override
+            public void connectionBorrowed(long waitNanos) {
+            }
+        });
+    }
+
+    @After
+    public void cleanup() {
+        timestamps.destroy();
+        client.destroy();
+        server.close();
+    }
+
+    @Test
+    public void upToDateInOneRoundTrip() {
+        List<Object> cacheable = new ArrayList<Object>(Arrays.<Object>asList(1000L, "row1", "row2"));
+        queries.put(null, "query", cacheable);
+        assertEquals(cacheable, queries.get(null, "query"));
+
+        timestamps.put(null, "users", 900L);
+        traces.clear();
+        assertEquals(cacheable, queries.getIfUpToDate(null, "query", Arrays.asList("users", "orders"), timestamps));
+        assertEquals(1, traces.size());
+        assertEquals("EVALSHA", traces.get(0).getCommand());
+
+        timestamps.put(null, "orders", 1000L);
+        assertNull(queries.getIfUpToDate(null, "query", Arrays.asList("users", "orders"), timestamps));
+        assertEquals(cacheable, queries.getIfUpToDate(null, "query", Collections.singleton("users"), timestamps));
+        assertEquals(cacheable, queries.getIfUpToDate(null, "query", Collections.emptySet(), timestamps));
+
+        assertNull(queries.getIfUpToDate(null, "missing", Collections.singleton("users"), timestamps));
+    }
+
+    @Test
+    public void largeResultIsNotChunked() {
+        List<Object> cacheable = new ArrayList<Object>();
+        cacheable.add(1000L);
+        for (long i = 0; i < 2000; i++) {
+            cacheable.add("row" + i);
+        }
+        client.setChunkSizeInBytes(512);
+        queries.put(null, "query", cacheable);
+        timestamps.put(null, "users", 900L);
+
+        // the script reads only keys it declares, the result is stored as one field
+        Jedis jedis = new Jedis(server.getHost(), server.getPort());
+        try {
+            byte[] rawValue = jedis.hget(queries.getName().getBytes(), "#query".getBytes());
+            assertEquals('q', rawValue[1]);
+            assertTrue(jedis.keys("c:*").isEmpty());
+
+            assertEquals(cacheable, queries.getIfUpToDate(null, "query", Collections.singleton("users"), timestamps));
+            timestamps.put(null, "users", 1000L);
+            assertNull(queries.getIfUpToDate(null, "query", Collections.singleton("users"), timestamps));
+
+            // a chunked result written by an older version is a miss and its header is deleted
+            byte[] header = "  2:feed\n".getBytes();
+            header[0] = 0;
+            header[1] = 'c';
+            jedis.hset(queries.getName().getBytes(), "#legacy".getBytes(), header);
+            assertNull(queries.getIfUpToDate(null, "legacy", Collections.singleton("users"), timestamps));
+            assertFalse(jedis.hexists(queries.getName().getBytes(), "#legacy".getBytes()));
+        } finally {
+            jedis.close();
+        }
+    }
+
+    @Test
+    public void valuesWithoutTimestamp() {
+        queries.put(null, "plain", "value");
+        assertEquals("value", queries.get(null, "plain"));
+        assertNull(queries.getIfUpToDate(null, "plain", Collections.emptySet(), timestamps));
+    }
+}
@@ -0,0 +1,181 @@
+package org.hibernate.test.cache.regions;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Field;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hibernate.cache.redis.jedis.JedisClient;
+import org.hibernate.cache.redis.jedis.OperationListener;
+import org.hibernate.cache.redis.jedis.OperationTrace;
+import org.hibernate.cache.redis.regions.RedisTimestampsRegion;
+import org.hibernate.cache.redis.strategy.RedisAccessStrategyFactoryImpl;
+import org.hibernate.test.cache.server.EmbeddedRedisServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+
+public class RedisTimestampsRegionTest {
+
+    private static final String REGION = "org.hibernate.cache.spi.UpdateTimestampsCache";
+
+    private EmbeddedRedisServer server;
+    private JedisClient client1;
+    private JedisClient client2;
+    private RedisTimestampsRegion node1;
+    private RedisTimestampsRegion node2;
+    private final AtomicInteger reads = new AtomicInteger();
+
+    @Before
+    public void setup() throws Exception {
+        server = EmbeddedRedisServer.start();
+        client1 = new JedisClient(new JedisPool(server.getHost(), server.getPort()));
+        client2 = new JedisClient(new JedisPool(server.getHost(), server.getPort()));
+        client1.addOperationListener(new OperationListener() {
+            @Override
+            public void operationStarted(OperationTrace trace) {
+            }
+
+            @Override
+            public void operationCompleted(OperationTrace trace) {
+                if (OperationTrace.GET.equals(trace.getOperation()))
+                    reads.incrementAndGet();
+            }
+
+            @Override
+            public void connectionBorrowed(long waitNanos) {
+            }
+        });
+        node1 = new RedisTimestampsRegion(new RedisAccessStrategyFactoryImpl(), client1, REGION, new Properties(), null);
+        node2 = new RedisTimestampsRegion(new RedisAccessStrategyFactoryImpl(), client2, REGION, new Properties(), null);
+        awaitSubscribed(node1);
+        awaitSubscribed(node2);
+    }
+
+    @After
+    public void cleanup() {
+        node1.destroy();
+        node2.destroy();
+        client1.destroy();
+        client2.destroy();
+        server.close();
+    }
+
+    private static void awaitSubscribed(RedisTimestampsRegion region) throws InterruptedException {
+        for (int i = 0; i < 100 && !region.isSubscribed(); i++) {
+            Thread.sleep(20);
+        }
+        assertTrue(region.isSubscribed());
+    }
+
+    private static Object awaitValue(RedisTimestampsRegion region, Object key, Object expected) throws InterruptedException {
+        Object value = region.get(null, key);
+        for (int i = 0; i < 100 && (expected == null ? value != null : !expected.equals(value)); i++) {
+            Thread.sleep(20);
+            value = region.get(null, key);
+        }
+        return value;
+    }
+
+    @Test
+    public void plainValuesAndLocalCopy() throws Exception {
+        node1.put(null, "users", 100L);
+        // the invalidation of its own write reaches node1 asynchronously
+        Thread.sleep(100);
+
+        Jedis jedis = new Jedis(server.getHost(), server.getPort());
+        try {
+            assertEquals("100", jedis.hget(REGION, "#users"));
+        } finally {
+            jedis.close();
+        }
+
+        reads.set(0);
+        assertEquals(100L, node1.get(null, "users"));
+        assertNull(node1.get(null, "orders"));
+        assertEquals(2, reads.get());
+
+        // served locally, missing spaces included
+        assertEquals(100L, node1.get(null, "users"));
+        assertNull(node1.get(null, "orders"));
+        assertEquals(2, reads.get());
+        assertEquals(100L, node1.toMap().get("#users"));
+    }
+
+    @Test
+    public void invalidatedByOtherNode() throws Exception {
+        node1.put(null, "users", 100L);
+        assertEquals(100L, node1.get(null, "users"));
+        assertEquals(100L, node2.get(null, "users"));
+
+        node1.put(null, "users", 200L);
+        assertEquals(200L, node1.get(null, "users"));
+        assertEquals(200L, awaitValue(node2, "users", 200L));
+
+        node2.evict("users");
+        assertNull(awaitValue(node1, "users", null));
+
+        node2.put(null, "orders", 300L);
+        assertEquals(300L, awaitValue(node1, "orders", 300L));
+        node2.evictAll();
+        assertNull(awaitValue(node1, "orders", null));
+    }
+
+    @Test
+    public void loadInterleavedWithInvalidation() throws Exception {
+        node1.put(null, "users", 100L);
+        Thread.sleep(100);
+
+        // node1 writes a new timestamp after a load of the old one checked for invalidations, before it is kept
+        final AtomicBoolean armed = new AtomicBoolean(true);
+        Field field = RedisTimestampsRegion.class.getDeclaredField("localTimestamps");
+        field.setAccessible(true);
+        field.set(node1, new ConcurrentHashMap<String, Long>() {
+            @Override
+            public Long put(String key, Long value) {
+                if (armed.compareAndSet(true, false))
+                    node1.put(null, "users", 200L);
+                return super.put(key, value);
+            }
+        });
+
+        assertEquals(100L, node1.get(null, "users"));
+        assertFalse(armed.get());
+        assertEquals(200L, node1.get(null, "users"));
+    }
+
+    @Test
+    public void subscriptionOutsideOfThePool() throws Exception {
+        JedisPoolConfig config = new JedisPoolConfig();
+        config.setMaxTotal(1);
+        config.setMaxWaitMillis(500);
+        // a pooled connection would time out while no invalidation is published
+        JedisClient client = new JedisClient(new JedisPool(config, server.getHost(), server.getPort(), 100));
+        RedisTimestampsRegion node = new RedisTimestampsRegion(new RedisAccessStrategyFactoryImpl(), client, REGION, new Properties(), null);
+        try {
+            awaitSubscribed(node);
+            Thread.sleep(300);
+            assertTrue(node.isSubscribed());
+
+            // the only pooled connection is still available
+            node.put(null, "users", 100L);
+            assertEquals(100L, awaitValue(node, "users", 100L));
+            node2.put(null, "users", 200L);
+            assertEquals(200L, awaitValue(node, "users", 200L));
+            assertTrue(node.isSubscribed());
+        } finally {
+            node.destroy();
+            client.destroy();
+        }
+    }
+}
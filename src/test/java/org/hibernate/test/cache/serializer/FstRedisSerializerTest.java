@@ -0,0 +1,92 @@
+package org.hibernate.test.cache.serializer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.List;
+
+import org.hibernate.cache.redis.serializer.FstRedisSerializer;
+import org.junit.Test;
+import org.nustaq.serialization.FSTConfiguration;
+
+public class FstRedisSerializerTest {
+
+    private final FstRedisSerializer<Object> serializer = new FstRedisSerializer<Object>();
+
+    @Test
+    public void registrationOrder() {
+        int fingerprint = FstRedisSerializer.registerClasses(Arrays.<Class<?>>asList(Zeta.class, Alpha.class, Zeta.class));
+        List<String> names = FstRedisSerializer.getRegisteredClassNames();
+
+        // sorted by class name, so every node assigns the same ids whatever the mapping order
+        assertTrue(names.indexOf(Alpha.class.getName()) < names.indexOf(Zeta.class.getName()));
+        assertEquals(names.lastIndexOf(Zeta.class.getName()), names.indexOf(Zeta.class.getName()));
+        assertFalse(names.contains(NotSerializable.class.getName()));
+
+        // registering again does not change the fingerprint, classes FST can not serialize are skipped
+        assertEquals(fingerprint,
+                     FstRedisSerializer.registerClasses(Arrays.<Class<?>>asList(Alpha.class, NotSerializable.class)));
+        assertFalse(FstRedisSerializer.getRegisteredClassNames().contains(NotSerializable.class.getName()));
+
+        Alpha value = new Alpha("registered");
+        assertEquals(value, serializer.deserialize(serializer.serialize(value)));
+    }
+
+    @Test
+    public void fingerprintMismatchIsMiss() {
+        FstRedisSerializer.registerClasses(Arrays.<Class<?>>asList(Alpha.class));
+        byte[] bytes = serializer.serialize(new Alpha("value"));
+        assertEquals(new Alpha("value"), serializer.deserialize(bytes));
+
+        // written by a node with another class registration
+        bytes[5] ^= 0xFF;
+        assertNull(serializer.deserialize(bytes));
+        // incomplete header
+        assertNull(serializer.deserialize(Arrays.copyOf(bytes, 4)));
+    }
+
+    @Test
+    public void legacyValues() {
+        FstRedisSerializer.registerClasses(Arrays.<Class<?>>asList(Alpha.class));
+
+        // written without registration, before classes were registered
+        FSTConfiguration legacy = FSTConfiguration.createDefaultConfiguration();
+        assertEquals(new Alpha("legacy"), serializer.deserialize(legacy.asByteArray(new Alpha("legacy"))));
+        assertEquals("legacy", serializer.deserialize(legacy.asByteArray("legacy")));
+
+        byte[] bytes = legacy.asByteArray(Arrays.asList(1L, 2L));
+        byte[] padded = Arrays.copyOf(bytes, bytes.length + 3);
+        assertEquals(Arrays.asList(1L, 2L), serializer.deserialize(padded, bytes.length));
+    }
+
+    public static class Alpha implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final String name;
+
+        public Alpha(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Alpha && name.equals(((Alpha) o).name);
+        }
+
+        @Override
+        public int hashCode() {
+            return name.hashCode();
+        }
+    }
+
+    public static class Zeta implements Serializable {
+        private static final long serialVersionUID = 1L;
+    }
+
+    public static class NotSerializable {
+    }
+}
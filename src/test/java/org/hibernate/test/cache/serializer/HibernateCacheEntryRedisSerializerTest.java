@@ -0,0 +1,170 @@
+package org.hibernate.test.cache.serializer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.Serializable;
+import java.lang.reflect.Constructor;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.hibernate.cache.redis.serializer.FstRedisSerializer;
+import org.hibernate.cache.redis.serializer.HibernateCacheEntryRedisSerializer;
+import org.hibernate.cache.spi.entry.CollectionCacheEntry;
+import org.hibernate.cache.spi.entry.StandardCacheEntryImpl;
+import org.junit.Test;
+
+public class HibernateCacheEntryRedisSerializerTest {
+
+    private final HibernateCacheEntryRedisSerializer<Object> serializer = new HibernateCacheEntryRedisSerializer<Object>();
+
+    @Test
+    public void valuesRoundTrip() {
+        Timestamp timestamp = new Timestamp(1466412345678L);
+        timestamp.setNanos(678901234);
+        List<Object> values = Arrays.<Object>asList(
+                Boolean.TRUE, Boolean.FALSE,
+                0, 1, -1, Integer.MAX_VALUE, Integer.MIN_VALUE,
+                0L, -300L, Long.MAX_VALUE, Long.MIN_VALUE,
+                "", "text", "\u00e9\u4e2d\ud83d\ude00",
+                new BigDecimal("-1234.5600"), new BigInteger("-98765432109876543210"),
+                new Date(1466412345678L), new java.sql.Date(1466380800000L), new Time(-3600000L), timestamp,
+                -1.5d, Double.NaN, 2.25f, (short) -7, (byte) -128,
+                new Money("EUR", -1050L));
+        for (Object value : values) {
+            assertEquals(value, roundTrip(value));
+        }
+        assertArrayEquals(new byte[] { 0, -1, 127 }, (byte[]) roundTrip(new byte[] { 0, -1, 127 }));
+    }
+
+    @Test
+    public void nullValues() {
+        assertEquals(0, serializer.serialize(null).length);
+        assertNull(serializer.deserialize(null));
+        assertNull(serializer.deserialize(new byte[0]));
+
+        Object[] row = (Object[]) roundTrip(new Object[] { null, 1L, null });
+        assertArrayEquals(new Object[] { null, 1L, null }, row);
+        assertEquals(Arrays.asList(1L, null, 2L), roundTrip(new ArrayList<Object>(Arrays.asList(1L, null, 2L))));
+    }
+
+    @Test
+    public void listsRoundTrip() {
+        // entity ids of query results, written as a list of longs
+        List<Object> ids = new ArrayList<Object>(Arrays.<Object>asList(1L, -2L, Long.MAX_VALUE, 0L));
+        byte[] longs = serializer.serialize(ids);
+        assertEquals(ids, serializer.deserialize(longs));
+
+        List<Object> mixed = new ArrayList<Object>(Arrays.<Object>asList(1L, -2L, Long.MAX_VALUE, 0, "x"));
+        assertEquals(mixed, roundTrip(mixed));
+        assertEquals(new ArrayList<Object>(), roundTrip(new ArrayList<Object>()));
+
+        Serializable[] state = new Serializable[] { 1L, "a" };
+        assertArrayEquals(state, (Serializable[]) roundTrip(state));
+    }
+
+    @Test
+    public void cacheEntriesRoundTrip() throws Exception {
+        Constructor<StandardCacheEntryImpl> ctor =
+                StandardCacheEntryImpl.class.getDeclaredConstructor(Serializable[].class, String.class, Object.class);
+        ctor.setAccessible(true);
+        Serializable[] state = new Serializable[] { "name", null, 42, new Money("USD", 5L) };
+
+        StandardCacheEntryImpl entry = (StandardCacheEntryImpl) roundTrip(ctor.newInstance(state, "Entity", 3));
+        assertEquals("Entity", entry.getSubclass());
+        assertEquals(3, entry.getVersion());
+        assertArrayEquals(state, entry.getDisassembledState());
+
+        Constructor<CollectionCacheEntry> collectionCtor = CollectionCacheEntry.class.getDeclaredConstructor(Serializable.class);
+        collectionCtor.setAccessible(true);
+        Serializable[] elements = new Serializable[] { 1L, 2L, 3L };
+        CollectionCacheEntry collection = (CollectionCacheEntry) roundTrip(collectionCtor.newInstance((Serializable) elements));
+        assertArrayEquals(elements, collection.getState());
+    }
+
+    @Test
+    public void fstFallback() {
+        // values of other types are written with FST inside the compact format
+        Money money = new Money("JPY", 100L);
+        byte[] bytes = serializer.serialize(money);
+        assertEquals((byte) 0xC7, bytes[0]);
+        assertEquals(money, serializer.deserialize(bytes));
+
+        // values written by FstRedisSerializer before the region switched serializer
+        FstRedisSerializer<Object> fst = new FstRedisSerializer<Object>();
+        assertEquals(money, serializer.deserialize(fst.serialize(money)));
+        assertEquals("legacy", serializer.deserialize(fst.serialize("legacy")));
+    }
+
+    @Test
+    public void truncatedValueIsMiss() {
+        byte[] bytes = serializer.serialize("truncated value");
+        assertNull(serializer.deserialize(Arrays.copyOf(bytes, bytes.length - 3)));
+        assertNull(serializer.deserialize(new byte[] { (byte) 0xC7, 99 }));
+    }
+
+    @Test
+    public void corruptCountIsMiss() {
+        List<Object> list = new ArrayList<Object>(Arrays.asList("a", "b", "c"));
+        byte[] bytes = serializer.serialize(list);
+        assertEquals(list, serializer.deserialize(bytes));
+
+        // more elements than remaining bytes
+        byte[] corrupt = bytes.clone();
+        corrupt[2] = 8;
+        assertNull(serializer.deserialize(corrupt));
+
+        // negative counts
+        assertNull(serializer.deserialize(new byte[] { (byte) 0xC7, 17, 1, 0 }));
+        assertNull(serializer.deserialize(new byte[] { (byte) 0xC7, 19, 3, 0 }));
+        // huge counts are rejected before allocating, also beyond the int range
+        assertNull(serializer.deserialize(new byte[] { (byte) 0xC7, 18, (byte) 0xFE, (byte) 0xFF, (byte) 0xFF, 0x07, 0 }));
+        assertNull(serializer.deserialize(new byte[] { (byte) 0xC7, 23, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x40 }));
+        assertNull(serializer.deserialize(new byte[] { (byte) 0xC7, 21, (byte) 0xFE, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F }));
+    }
+
+    @Test
+    public void bufferLengthIsRespected() {
+        byte[] bytes = serializer.serialize("value");
+        byte[] padded = Arrays.copyOf(bytes, bytes.length + 8);
+        assertEquals("value", serializer.deserialize(padded, bytes.length));
+        assertSame(Boolean.TRUE, roundTrip(Boolean.TRUE));
+    }
+
+    private Object roundTrip(Object value) {
+        return serializer.deserialize(serializer.serialize(value));
+    }
+
+    public static class Money implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final String currency;
+        private final long amount;
+
+        public Money(String currency, long amount) {
+            this.currency = currency;
+            this.amount = amount;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Money))
+                return false;
+            Money other = (Money) o;
+            return currency.equals(other.currency) && amount == other.amount;
+        }
+
+        @Override
+        public int hashCode() {
+            return currency.hashCode() * 31 + (int) amount;
+        }
+    }
+}
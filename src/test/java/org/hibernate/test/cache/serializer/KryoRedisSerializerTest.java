@@ -0,0 +1,130 @@
+package org.hibernate.test.cache.serializer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Serializable;
+import java.lang.reflect.Constructor;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+
+import org.hibernate.cache.redis.serializer.KryoRedisSerializer;
+import org.hibernate.cache.spi.entry.StandardCacheEntryImpl;
+import org.junit.Test;
+
+public class KryoRedisSerializerTest {
+
+    @Test
+    public void roundTrip() throws Exception {
+        KryoRedisSerializer<Object> serializer = serializer(new Properties());
+        assertRoundTrips(serializer);
+
+        assertEquals(0, serializer.serialize(null).length);
+        assertNull(serializer.deserialize(new byte[0]));
+    }
+
+    @Test
+    public void registeredRoundTrip() throws Exception {
+        Properties props = new Properties();
+        props.setProperty("redis.serializer.kryo.register", "true");
+        props.setProperty("redis.serializer.kryo.classes", Node.class.getName());
+        KryoRedisSerializer<Object> serializer = serializer(props);
+        assertRoundTrips(serializer);
+
+        // written as an id instead of the class name
+        byte[] registered = serializer.serialize(new Node("n"));
+        byte[] unregistered = serializer(new Properties()).serialize(new Node("n"));
+        assertEquals(0x4B, registered[0]);
+        assertTrue(registered.length < unregistered.length);
+    }
+
+    @Test
+    public void fingerprintMismatchIsMiss() {
+        Properties props = new Properties();
+        props.setProperty("redis.serializer.kryo.register", "true");
+        KryoRedisSerializer<Object> common = serializer(props);
+        props.setProperty("redis.serializer.kryo.classes", Node.class.getName());
+        KryoRedisSerializer<Object> withNode = serializer(props);
+
+        // nodes registering other classes ignore each other's values
+        assertNull(common.deserialize(withNode.serialize("value")));
+        assertNull(withNode.deserialize(common.serialize("value")));
+        assertNull(withNode.deserialize(new byte[] { 0x4B, 0, 0 }));
+        // values written before classes were registered
+        assertNull(withNode.deserialize(serializer(new Properties()).serialize("value")));
+    }
+
+    @Test
+    public void unsafeRoundTrip() throws Exception {
+        Properties props = new Properties();
+        props.setProperty("redis.serializer.kryo.unsafe", "true");
+        KryoRedisSerializer<Object> serializer = serializer(props);
+        assertRoundTrips(serializer);
+
+        props.setProperty("redis.serializer.kryo.register", "true");
+        assertRoundTrips(serializer(props));
+    }
+
+    @Test
+    public void largeValues() {
+        for (String unsafe : Arrays.asList("false", "true")) {
+            Properties props = new Properties();
+            props.setProperty("redis.serializer.kryo.unsafe", unsafe);
+            KryoRedisSerializer<Object> serializer = serializer(props);
+
+            // larger than the output buffer kept per thread
+            byte[] large = new byte[2 * 1024 * 1024];
+            Arrays.fill(large, (byte) 7);
+            assertArrayEquals(large, (byte[]) serializer.deserialize(serializer.serialize(large)));
+            assertEquals("small", serializer.deserialize(serializer.serialize("small")));
+        }
+    }
+
+    private static KryoRedisSerializer<Object> serializer(Properties props) {
+        KryoRedisSerializer<Object> serializer = new KryoRedisSerializer<Object>();
+        serializer.configure("kryo", props, null);
+        return serializer;
+    }
+
+    private static void assertRoundTrips(KryoRedisSerializer<Object> serializer) throws Exception {
+        List<Object> values = Arrays.<Object>asList(
+                -1L, 42, "text", new BigDecimal("-12.50"), new Date(1466412345678L), Boolean.TRUE,
+                new ArrayList<Object>(Arrays.<Object>asList(1L, null, "x")));
+        for (Object value : values) {
+            assertEquals(value, serializer.deserialize(serializer.serialize(value)));
+        }
+
+        Constructor<StandardCacheEntryImpl> ctor =
+                StandardCacheEntryImpl.class.getDeclaredConstructor(Serializable[].class, String.class, Object.class);
+        ctor.setAccessible(true);
+        Serializable[] state = new Serializable[] { "name", null, 7L };
+        StandardCacheEntryImpl entry =
+                (StandardCacheEntryImpl) serializer.deserialize(serializer.serialize(ctor.newInstance(state, "Entity", 2)));
+        assertEquals("Entity", entry.getSubclass());
+        assertEquals(2, entry.getVersion());
+        assertArrayEquals(state, entry.getDisassembledState());
+
+        // shared and circular references are kept
+        Node node = new Node("self");
+        node.next = node;
+        Node read = (Node) serializer.deserialize(serializer.serialize(node));
+        assertEquals("self", read.name);
+        assertSame(read, read.next);
+    }
+
+    public static class Node {
+        private String name;
+        private Node next;
+
+        public Node(String name) {
+            this.name = name;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package org.hibernate.test.cache.serializer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.hibernate.cache.redis.serializer.SerializationBuffer;
+import org.hibernate.cache.redis.serializer.SnappyRedisSerializer;
+import org.junit.Test;
+
+public class SnappyRedisSerializerTest {
+
+    @Test
+    public void serializedArraysAreIndependent() {
+        SnappyRedisSerializer<Object> serializer = new SnappyRedisSerializer<Object>();
+        byte[] first = serializer.serialize("first value");
+        byte[] copy = Arrays.copyOf(first, first.length);
+
+        // the thread local buffers are reused, returned arrays are not
+        byte[] second = serializer.serialize("second value, longer than the first one");
+        assertNotSame(first, second);
+        assertArrayEquals(copy, first);
+        assertEquals("first value", serializer.deserialize(first));
+        assertEquals("second value, longer than the first one", serializer.deserialize(second));
+
+        assertEquals(0, serializer.serialize(null).length);
+        assertNull(serializer.deserialize(new byte[0]));
+    }
+
+    @Test
+    public void largeValues() {
+        SnappyRedisSerializer<Object> serializer = new SnappyRedisSerializer<Object>();
+        byte[] large = new byte[2 * 1024 * 1024];
+        for (int i = 0; i < large.length; i++) {
+            large[i] = (byte) (i * 31 >>> 7);
+        }
+        byte[] bytes = serializer.serialize(large);
+        assertArrayEquals(large, (byte[]) serializer.deserialize(bytes));
+        assertEquals("small", serializer.deserialize(serializer.serialize("small")));
+    }
+
+    @Test
+    public void buffersArePerThread() throws Exception {
+        final ThreadLocal<SerializationBuffer> buffers = SerializationBuffer.threadLocal();
+        SerializationBuffer buffer = buffers.get();
+        assertSame(buffer, buffers.get());
+
+        final AtomicReference<SerializationBuffer> other = new AtomicReference<SerializationBuffer>();
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                other.set(buffers.get());
+            }
+        });
+        thread.start();
+        thread.join();
+        assertNotSame(buffer, other.get());
+    }
+
+    @Test
+    public void largeBuffersAreDropped() {
+        SerializationBuffer buffer = new SerializationBuffer();
+        byte[] array = buffer.ensureCapacity(100);
+        buffer.setLength(3);
+        byte[] copy = buffer.toByteArray();
+        assertEquals(3, copy.length);
+        assertNotSame(array, copy);
+
+        // kept up to the retained capacity
+        buffer.trim();
+        assertSame(array, buffer.array());
+        assertEquals(0, buffer.length());
+        byte[] retained = buffer.ensureCapacity(SerializationBuffer.MAX_RETAINED_CAPACITY);
+        buffer.trim();
+        assertSame(retained, buffer.array());
+
+        buffer.ensureCapacity(SerializationBuffer.MAX_RETAINED_CAPACITY + 1);
+        buffer.trim();
+        assertTrue(buffer.array().length < SerializationBuffer.MAX_RETAINED_CAPACITY);
+    }
+}
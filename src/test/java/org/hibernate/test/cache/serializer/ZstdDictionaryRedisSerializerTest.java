@@ -0,0 +1,190 @@
+package org.hibernate.test.cache.serializer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Properties;
+
+import org.hibernate.cache.redis.jedis.JedisClient;
+import org.hibernate.cache.redis.serializer.ZstdDictionaryRedisSerializer;
+import org.hibernate.test.cache.server.EmbeddedRedisServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+public class ZstdDictionaryRedisSerializerTest {
+
+    private static final String REGION = "zstd";
+
+    private EmbeddedRedisServer server;
+    private JedisClient client;
+
+    @Before
+    public void setup() throws Exception {
+        server = EmbeddedRedisServer.start();
+        client = new JedisClient(new JedisPool(server.getHost(), server.getPort()));
+    }
+
+    @After
+    public void cleanup() {
+        client.destroy();
+        server.close();
+    }
+
+    @Test
+    public void roundTrip() {
+        ZstdDictionaryRedisSerializer<Object> serializer = serializer(new Properties());
+        assertEquals(0, serializer.getDictionaryVersion());
+
+        String value = value(1);
+        byte[] bytes = serializer.serialize(value);
+        assertEquals(0x5A, bytes[0]);
+        assertEquals(value, serializer.deserialize(bytes));
+        assertNull(serializer.deserialize(new byte[0]));
+        assertNull(serializer.deserialize(new byte[] { 0x46, 0, 0, 0, 0, 1, 2 }));
+    }
+
+    @Test
+    public void dictionarySwitch() throws Exception {
+        ZstdDictionaryRedisSerializer<Object> serializer = trainedSerializer();
+        byte[] withoutDictionary = serializer(new Properties()).serialize(value(0));
+
+        byte[] withDictionary = serializer.serialize(value(1));
+        assertEquals(serializer.getDictionaryVersion(), withDictionary[4]);
+        assertEquals(value(1), serializer.deserialize(withDictionary));
+        assertEquals(value(0), serializer.deserialize(withoutDictionary));
+
+        // another node adopts the published dictionary
+        ZstdDictionaryRedisSerializer<Object> other = serializer(new Properties());
+        assertEquals(serializer.getDictionaryVersion(), other.getDictionaryVersion());
+        assertEquals(value(1), other.deserialize(withDictionary));
+    }
+
+    @Test
+    public void missingDictionary() throws Exception {
+        ZstdDictionaryRedisSerializer<Object> serializer = trainedSerializer();
+        byte[] bytes = serializer.serialize(value(1));
+
+        Jedis jedis = new Jedis(server.getHost(), server.getPort());
+        try {
+            jedis.del(ZstdDictionaryRedisSerializer.DICTIONARY_KEY_PREFIX + REGION + ":" + serializer.getDictionaryVersion());
+        } finally {
+            jedis.close();
+        }
+        // a node which never loaded the dictionary treats the value as a miss
+        ZstdDictionaryRedisSerializer<Object> other = serializer(new Properties());
+        assertEquals(0, other.getDictionaryVersion());
+        assertNull(other.deserialize(bytes));
+    }
+
+    @Test
+    public void oneNodeTrainsPerInterval() throws Exception {
+        Properties props = trainingProperties();
+        props.setProperty("redis.serializer.zstd.retrainIntervalInSeconds", "3600");
+        ZstdDictionaryRedisSerializer<Object> first = serializer(props);
+        ZstdDictionaryRedisSerializer<Object> second = serializer(props);
+
+        Jedis jedis = new Jedis(server.getHost(), server.getPort());
+        try {
+            // another node holds the lease, nothing is trained
+            String lease = ZstdDictionaryRedisSerializer.DICTIONARY_KEY_PREFIX + REGION + ":lease";
+            jedis.set(lease, "", "NX", "PX", 60000L);
+            assertEquals(0, train(first, 10));
+            jedis.del(lease);
+
+            assertEquals(1, train(first, 100));
+            assertTrue(jedis.pttl(lease) > 0);
+
+            // the second node takes the expired lease, but adopts the dictionary published within the interval
+            jedis.del(lease);
+            assertEquals(1, train(second, 100));
+            assertEquals("1", jedis.get(ZstdDictionaryRedisSerializer.DICTIONARY_KEY_PREFIX + REGION + ":seq"));
+        } finally {
+            jedis.close();
+        }
+    }
+
+    @Test
+    public void oldVersionsAreDeleted() throws Exception {
+        Properties props = trainingProperties();
+        props.setProperty("redis.serializer.zstd.keepVersions", "2");
+        ZstdDictionaryRedisSerializer<Object> serializer = serializer(props);
+
+        assertEquals(1, train(serializer, 100));
+        byte[] first = serializer.serialize(value(1));
+        assertEquals(2, train(serializer, 100));
+        byte[] second = serializer.serialize(value(2));
+        assertEquals(3, train(serializer, 100));
+
+        Jedis jedis = new Jedis(server.getHost(), server.getPort());
+        try {
+            String prefix = ZstdDictionaryRedisSerializer.DICTIONARY_KEY_PREFIX + REGION + ":";
+            assertFalse(jedis.exists(prefix + 1));
+            assertTrue(jedis.exists(prefix + 2));
+            assertTrue(jedis.exists(prefix + 3));
+        } finally {
+            jedis.close();
+        }
+        // the decompressor of the deleted version is evicted, its values are misses
+        assertNull(serializer.deserialize(first));
+        assertEquals(value(2), serializer.deserialize(second));
+    }
+
+    @Test
+    public void oversizedValueIsMiss() {
+        Properties props = new Properties();
+        props.setProperty("redis.serializer.zstd.maxDecompressedSizeInBytes", "100");
+        ZstdDictionaryRedisSerializer<Object> serializer = serializer(props);
+
+        assertEquals("small", serializer.deserialize(serializer.serialize("small")));
+        assertNull(serializer.deserialize(serializer.serialize(value(1))));
+    }
+
+    private ZstdDictionaryRedisSerializer<Object> serializer(Properties props) {
+        ZstdDictionaryRedisSerializer<Object> serializer = new ZstdDictionaryRedisSerializer<Object>();
+        serializer.configure(REGION, props, client);
+        return serializer;
+    }
+
+    private ZstdDictionaryRedisSerializer<Object> trainedSerializer() throws InterruptedException {
+        ZstdDictionaryRedisSerializer<Object> serializer = serializer(trainingProperties());
+        assertTrue(train(serializer, 100) > 0);
+        return serializer;
+    }
+
+    private static Properties trainingProperties() {
+        Properties props = new Properties();
+        props.setProperty("redis.serializer.zstd.sampleCount", "200");
+        props.setProperty("redis.serializer.zstd.sampleRate", "1");
+        props.setProperty("redis.serializer.zstd.dictionarySize", "1024");
+        props.setProperty("redis.serializer.zstd.retrainIntervalInSeconds", "0");
+        return props;
+    }
+
+    /**
+     * sample values until the dictionary version changes, trained or adopted in background
+     *
+     * @return dictionary version
+     */
+    private static int train(ZstdDictionaryRedisSerializer<Object> serializer, int rounds) throws InterruptedException {
+        int version = serializer.getDictionaryVersion();
+        for (int i = 0; i < rounds && serializer.getDictionaryVersion() == version; i++) {
+            for (int j = 0; j < 200; j++) {
+                serializer.serialize(value(j));
+            }
+            Thread.sleep(20);
+        }
+        return serializer.getDictionaryVersion();
+    }
+
+    private static String value(int i) {
+        return "{\"id\":" + i + ",\"name\":\"customer " + i + "\",\"street\":\"" + (i * 31) + " main street\","
+               + "\"city\":\"springfield\",\"country\":\"united states\",\"email\":\"customer" + i + "@example.com\","
+               + "\"status\":\"active\",\"created\":\"2016-0" + (i % 9 + 1) + "-1" + (i % 10) + "\"}";
+    }
+}
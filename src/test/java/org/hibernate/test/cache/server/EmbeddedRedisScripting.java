@@ -0,0 +1,251 @@
+package org.hibernate.test.cache.server;
+
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.luaj.vm2.Globals;
+import org.luaj.vm2.LuaError;
+import org.luaj.vm2.LuaString;
+import org.luaj.vm2.LuaTable;
+import org.luaj.vm2.LuaValue;
+import org.luaj.vm2.Varargs;
+import org.luaj.vm2.lib.OneArgFunction;
+import org.luaj.vm2.lib.VarArgFunction;
+import org.luaj.vm2.lib.jse.JsePlatform;
+
+/**
+ * Lua scripting of {@link EmbeddedRedisStore} (luaj), called under the store lock so scripts run atomically.
+ * <p/>
+ * Provides KEYS, ARGV, redis.call, redis.pcall, redis.status_reply, redis.error_reply, redis.sha1hex and redis.log,
+ * with the reply conversions of redis.
+ */
+final class EmbeddedRedisScripting {
+
+    private final EmbeddedRedisStore store;
+    private final Map<String, LuaValue> scripts = new HashMap<String, LuaValue>();
+    private Globals globals;
+    private int database;
+
+    EmbeddedRedisScripting(EmbeddedRedisStore store) {
+        this.store = store;
+    }
+
+    Object eval(int database, String script, List<byte[]> keys, List<byte[]> args) {
+        return evalsha(database, load(script), keys, args);
+    }
+
+    Object evalsha(int database, String sha, List<byte[]> keys, List<byte[]> args) {
+        LuaValue function = scripts.get(sha);
+        if (function == null)
+            return EmbeddedRedisStore.error("NOSCRIPT No matching script. Please use EVAL.");
+
+        this.database = database;
+        Globals g = globals();
+        g.set("KEYS", toTable(keys));
+        g.set("ARGV", toTable(args));
+        try {
+            return toReply(function.call());
+        } catch (LuaError e) {
+            String message = e.getMessage();
+            if (message != null && (message.startsWith("ERR") || message.startsWith("WRONGTYPE")))
+                return EmbeddedRedisStore.error(message);
+            return EmbeddedRedisStore.error("ERR Error running script (call to f_" + sha + "): " + message);
+        }
+    }
+
+    /**
+     * compile and cache a script, returns its sha1
+     *
+     * @throws IllegalArgumentException if the script does not compile
+     */
+    String load(String script) {
+        String sha = sha1hex(script);
+        if (!scripts.containsKey(sha)) {
+            try {
+                scripts.put(sha, globals().load(script, "@user_script"));
+            } catch (LuaError e) {
+                throw new IllegalArgumentException("ERR Error compiling script " + e.getMessage(), e);
+            }
+        }
+        return sha;
+    }
+
+    boolean exists(String sha) {
+        return scripts.containsKey(sha);
+    }
+
+    void flush() {
+        scripts.clear();
+    }
+
+    private Globals globals() {
+        if (globals != null)
+            return globals;
+
+        globals = JsePlatform.standardGlobals();
+        LuaTable redis = new LuaTable();
+        redis.set("call", new RedisCall(true));
+        redis.set("pcall", new RedisCall(false));
+        redis.set("status_reply", new OneArgFunction() {
+            @Override
+            public LuaValue call(LuaValue message) {
+                LuaTable table = new LuaTable();
+                table.set("ok", message);
+                return table;
+            }
+        });
+        redis.set("error_reply", new OneArgFunction() {
+            @Override
+            public LuaValue call(LuaValue message) {
+                LuaTable table = new LuaTable();
+                table.set("err", message);
+                return table;
+            }
+        });
+        redis.set("sha1hex", new OneArgFunction() {
+            @Override
+            public LuaValue call(LuaValue value) {
+                return LuaValue.valueOf(sha1hex(value.tojstring()));
+            }
+        });
+        redis.set("log", new VarArgFunction() {
+            @Override
+            public Varargs invoke(Varargs args) {
+                return LuaValue.NONE;
+            }
+        });
+        redis.set("LOG_DEBUG", 0);
+        redis.set("LOG_VERBOSE", 1);
+        redis.set("LOG_NOTICE", 2);
+        redis.set("LOG_WARNING", 3);
+        globals.set("redis", redis);
+        return globals;
+    }
+
+    /**
+     * redis.call / redis.pcall
+     */
+    private final class RedisCall extends VarArgFunction {
+        private final boolean raise;
+
+        private RedisCall(boolean raise) {
+            this.raise = raise;
+        }
+
+        @Override
+        public Varargs invoke(Varargs args) {
+            if (args.narg() == 0)
+                throw new LuaError("ERR Please specify at least one argument for redis.call()");
+
+            List<byte[]> command = new ArrayList<byte[]>(args.narg());
+            for (int i = 1; i <= args.narg(); i++) {
+                LuaValue arg = args.arg(i);
+                if (arg.type() == LuaValue.TNUMBER) {
+                    double d = arg.todouble();
+                    command.add(EmbeddedRedisServer.bytes(d == Math.rint(d) && !Double.isInfinite(d)
+                                                                  ? String.valueOf((long) d)
+                                                                  : String.valueOf(d)));
+                } else if (arg.type() == LuaValue.TSTRING) {
+                    command.add(toBytes(arg.checkstring()));
+                } else {
+                    throw new LuaError("ERR Lua redis() command arguments must be strings or integers");
+                }
+            }
+            String name = EmbeddedRedisServer.string(command.get(0)).toUpperCase();
+            if ("EVAL".equals(name) || "EVALSHA".equals(name) || "SCRIPT".equals(name) || !store.isCommand(name))
+                throw new LuaError("ERR Unknown Redis command called from Lua script");
+
+            Object reply = store.execute(database, command);
+            if (reply instanceof EmbeddedRedisStore.Error) {
+                String message = ((EmbeddedRedisStore.Error) reply).message;
+                if (raise)
+                    throw new LuaError(message);
+                LuaTable table = new LuaTable();
+                table.set("err", message);
+                return table;
+            }
+            return toLua(reply);
+        }
+    }
+
+    private static LuaValue toLua(Object reply) {
+        if (reply == null || reply == EmbeddedRedisServer.NULL_ARRAY)
+            return LuaValue.FALSE;
+        if (reply instanceof Long)
+            return LuaValue.valueOf((double) (Long) reply);
+        if (reply instanceof byte[])
+            return LuaString.valueOf((byte[]) reply);
+        if (reply instanceof EmbeddedRedisStore.Status) {
+            LuaTable table = new LuaTable();
+            table.set("ok", ((EmbeddedRedisStore.Status) reply).message);
+            return table;
+        }
+        if (reply instanceof List) {
+            LuaTable table = new LuaTable();
+            int i = 1;
+            for (Object value : (List<?>) reply) {
+                table.set(i++, toLua(value));
+            }
+            return table;
+        }
+        throw new LuaError("ERR unsupported reply type " + reply.getClass().getName());
+    }
+
+    private static Object toReply(LuaValue value) {
+        switch (value.type()) {
+            case LuaValue.TNUMBER:
+                return (long) value.todouble();
+            case LuaValue.TSTRING:
+                return toBytes(value.checkstring());
+            case LuaValue.TBOOLEAN:
+                return value.toboolean() ? (Object) 1L : null;
+            case LuaValue.TTABLE:
+                LuaValue ok = value.get("ok");
+                if (ok.isstring())
+                    return EmbeddedRedisStore.status(ok.tojstring());
+                LuaValue err = value.get("err");
+                if (err.isstring())
+                    return EmbeddedRedisStore.error(err.tojstring());
+                List<Object> values = new ArrayList<Object>();
+                for (int i = 1; ; i++) {
+                    LuaValue element = value.get(i);
+                    if (element.isnil())
+                        break;
+                    values.add(toReply(element));
+                }
+                return values;
+            default:
+                return null;
+        }
+    }
+
+    private static LuaTable toTable(List<byte[]> values) {
+        LuaTable table = new LuaTable();
+        for (int i = 0; i < values.size(); i++) {
+            table.set(i + 1, LuaString.valueOf(values.get(i)));
+        }
+        return table;
+    }
+
+    private static byte[] toBytes(LuaString value) {
+        byte[] bytes = new byte[value.rawlen()];
+        value.copyInto(0, bytes, 0, bytes.length);
+        return bytes;
+    }
+
+    private static String sha1hex(String script) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(script.getBytes(EmbeddedRedisServer.UTF_8));
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.toString();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
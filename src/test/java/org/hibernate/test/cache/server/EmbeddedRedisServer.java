@@ -0,0 +1,592 @@
+package org.hibernate.test.cache.server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * In-process redis stand-in speaking RESP, for tests and benchmarks which cannot rely on a redis server.
+ * <p/>
+ * Supports the commands used by JedisClient: strings, hashes, sorted sets, keys and expiration,
+ * MULTI / EXEC / DISCARD with WATCH, pipelining, pub/sub and EVAL / EVALSHA (Lua through luaj).
+ * See {@link EmbeddedRedisStore} for the command list.
+ * <p/>
+ * Every round trip (a batch of pipelined commands answered with one flush) can be delayed by an injected
+ * latency, see {@link #setLatency(long, TimeUnit)}.
+ * <pre>
+ * EmbeddedRedisServer server = EmbeddedRedisServer.start();
+ * JedisPool pool = new JedisPool(server.getHost(), server.getPort());
+ * ...
+ * server.close();
+ * </pre>
+ */
+public class EmbeddedRedisServer implements Closeable {
+
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final Logger log = LoggerFactory.getLogger(EmbeddedRedisServer.class);
+    private static final AtomicInteger serverCount = new AtomicInteger();
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService executor;
+    private final EmbeddedRedisStore store = new EmbeddedRedisStore();
+    private final Set<Connection> connections = new CopyOnWriteArraySet<Connection>();
+    private final ConcurrentMap<String, Set<Connection>> channels = new ConcurrentHashMap<String, Set<Connection>>();
+    private final ConcurrentMap<String, Set<Connection>> patterns = new ConcurrentHashMap<String, Set<Connection>>();
+
+    private final AtomicLong commandCount = new AtomicLong();
+    private final AtomicLong roundTripCount = new AtomicLong();
+    private volatile long latencyNanos = 0L;
+    private volatile boolean closed = false;
+
+    /**
+     * start a server on a free port of the loopback interface
+     */
+    public static EmbeddedRedisServer start() throws IOException {
+        return start(0);
+    }
+
+    /**
+     * start a server on the given port of the loopback interface, 0 for a free port
+     */
+    public static EmbeddedRedisServer start(int port) throws IOException {
+        return new EmbeddedRedisServer(port);
+    }
+
+    private EmbeddedRedisServer(int port) throws IOException {
+        serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+
+        final String name = "embedded-redis-" + serverCount.incrementAndGet();
+        executor = Executors.newCachedThreadPool(new ThreadFactory() {
+            private final AtomicInteger threadCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, name + "-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                accept();
+            }
+        });
+        log.info("Embedded redis server started. port=[{}]", getPort());
+    }
+
+    public String getHost() {
+        return serverSocket.getInetAddress().getHostAddress();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * delay every round trip by the given latency, 0 for none
+     */
+    public void setLatency(long latency, TimeUnit unit) {
+        this.latencyNanos = unit.toNanos(latency);
+    }
+
+    public long getLatency(TimeUnit unit) {
+        return unit.convert(latencyNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * commands executed so far (commands queued by MULTI count when executed)
+     */
+    public long getCommandCount() {
+        return commandCount.get();
+    }
+
+    /**
+     * round trips (replies flushed to a client) so far
+     */
+    public long getRoundTripCount() {
+        return roundTripCount.get();
+    }
+
+    public int getConnectionCount() {
+        return connections.size();
+    }
+
+    /**
+     * remove all keys of all databases
+     */
+    public void flushAll() {
+        store.flushAll();
+    }
+
+    @Override
+    public void close() {
+        if (closed)
+            return;
+        closed = true;
+        try {
+            serverSocket.close();
+        } catch (IOException ignored) {
+        }
+        for (Connection connection : connections) {
+            connection.close();
+        }
+        executor.shutdownNow();
+        log.info("Embedded redis server stopped. port=[{}]", getPort());
+    }
+
+    private void accept() {
+        while (!closed) {
+            try {
+                Socket socket = serverSocket.accept();
+                if (closed) {
+                    socket.close();
+                    break;
+                }
+                socket.setTcpNoDelay(true);
+                Connection connection = new Connection(socket);
+                connections.add(connection);
+                try {
+                    executor.execute(connection);
+                } catch (RejectedExecutionException e) {
+                    // stopped while accepting
+                    connection.close();
+                }
+            } catch (IOException e) {
+                if (!closed) {
+                    log.warn("Fail to accept connection.", e);
+                }
+            }
+        }
+    }
+
+    private int publish(String channel, byte[] message) {
+        int receivers = 0;
+        Set<Connection> subscribers = channels.get(channel);
+        if (subscribers != null) {
+            for (Connection subscriber : subscribers) {
+                subscriber.push(Arrays.<Object>asList(bytes("message"), bytes(channel), message));
+                receivers++;
+            }
+        }
+        for (Map.Entry<String, Set<Connection>> entry : patterns.entrySet()) {
+            if (!EmbeddedRedisStore.globToRegex(entry.getKey()).matcher(channel).matches())
+                continue;
+            for (Connection subscriber : entry.getValue()) {
+                subscriber.push(Arrays.<Object>asList(bytes("pmessage"), bytes(entry.getKey()), bytes(channel), message));
+                receivers++;
+            }
+        }
+        return receivers;
+    }
+
+    static byte[] bytes(String value) {
+        return value.getBytes(UTF_8);
+    }
+
+    static String string(byte[] value) {
+        return new String(value, UTF_8);
+    }
+
+    /**
+     * client connection, one thread per connection
+     */
+    private final class Connection implements Runnable {
+
+        private final Socket socket;
+        private final InputStream in;
+        private final OutputStream out;
+
+        private int database = 0;
+        private List<List<byte[]>> queued = null;
+        private boolean queueFailed = false;
+        private final Map<EmbeddedRedisStore.Key, Long> watched = new HashMap<EmbeddedRedisStore.Key, Long>();
+        private final Set<String> subscribedChannels = new LinkedHashSet<String>();
+        private final Set<String> subscribedPatterns = new LinkedHashSet<String>();
+
+        private Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            this.in = new BufferedInputStream(socket.getInputStream(), 16 * 1024);
+            this.out = new BufferedOutputStream(socket.getOutputStream(), 16 * 1024);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!closed) {
+                    List<byte[]> command = readCommand();
+                    if (command == null)
+                        break;
+                    if (command.isEmpty())
+                        continue;
+
+                    Object reply = handle(command);
+                    if (reply == QUIT) {
+                        write(EmbeddedRedisStore.OK);
+                        flush();
+                        break;
+                    }
+                    if (reply != NO_REPLY) {
+                        write(reply);
+                    }
+                    if (in.available() == 0) {
+                        delay();
+                        flush();
+                    }
+                }
+            } catch (SocketException ignored) {
+                // closed by client or server
+            } catch (EOFException ignored) {
+                // closed by client
+            } catch (Exception e) {
+                if (!closed) {
+                    log.warn("Embedded redis connection failed.", e);
+                }
+            } finally {
+                close();
+            }
+        }
+
+        private Object handle(List<byte[]> command) {
+            String name = string(command.get(0)).toUpperCase();
+            List<byte[]> args = command.subList(1, command.size());
+
+            if (queued != null && !"EXEC".equals(name) && !"DISCARD".equals(name)
+                && !"MULTI".equals(name) && !"WATCH".equals(name)) {
+                if (!store.isCommand(name)) {
+                    queueFailed = true;
+                    return EmbeddedRedisStore.error("ERR unknown command '" + name.toLowerCase() + "'");
+                }
+                queued.add(command);
+                return EmbeddedRedisStore.status("QUEUED");
+            }
+            if ((!subscribedChannels.isEmpty() || !subscribedPatterns.isEmpty())
+                && !name.endsWith("SUBSCRIBE") && !"PING".equals(name) && !"QUIT".equals(name)) {
+                return EmbeddedRedisStore.error("ERR only (P)SUBSCRIBE / (P)UNSUBSCRIBE / PING / QUIT allowed in this context");
+            }
+
+            if ("QUIT".equals(name))
+                return QUIT;
+            if ("SELECT".equals(name)) {
+                commandCount.incrementAndGet();
+                int index = Integer.parseInt(string(args.get(0)));
+                if (index < 0 || index >= EmbeddedRedisStore.DATABASES)
+                    return EmbeddedRedisStore.error("ERR DB index is out of range");
+                database = index;
+                return EmbeddedRedisStore.OK;
+            }
+            if ("MULTI".equals(name)) {
+                if (queued != null)
+                    return EmbeddedRedisStore.error("ERR MULTI calls can not be nested");
+                queued = new ArrayList<List<byte[]>>();
+                queueFailed = false;
+                return EmbeddedRedisStore.OK;
+            }
+            if ("DISCARD".equals(name)) {
+                if (queued == null)
+                    return EmbeddedRedisStore.error("ERR DISCARD without MULTI");
+                queued = null;
+                watched.clear();
+                return EmbeddedRedisStore.OK;
+            }
+            if ("EXEC".equals(name))
+                return exec();
+            if ("WATCH".equals(name)) {
+                if (queued != null)
+                    return EmbeddedRedisStore.error("ERR WATCH inside MULTI is not allowed");
+                for (byte[] key : args) {
+                    EmbeddedRedisStore.Key watchedKey = new EmbeddedRedisStore.Key(key);
+                    if (!watched.containsKey(watchedKey)) {
+                        watched.put(watchedKey, store.version(database, watchedKey));
+                    }
+                }
+                return EmbeddedRedisStore.OK;
+            }
+            if ("UNWATCH".equals(name)) {
+                watched.clear();
+                return EmbeddedRedisStore.OK;
+            }
+            if ("PUBLISH".equals(name)) {
+                commandCount.incrementAndGet();
+                return (long) publish(string(args.get(0)), args.get(1));
+            }
+            if ("SUBSCRIBE".equals(name) || "PSUBSCRIBE".equals(name)) {
+                subscribe(args, "PSUBSCRIBE".equals(name));
+                return NO_REPLY;
+            }
+            if ("UNSUBSCRIBE".equals(name) || "PUNSUBSCRIBE".equals(name)) {
+                unsubscribe(args, "PUNSUBSCRIBE".equals(name));
+                return NO_REPLY;
+            }
+            if ("INFO".equals(name)) {
+                return bytes("# Server\r\nredis_version:3.2.0\r\nredis_mode:standalone\r\ntcp_port:" + getPort() + "\r\n"
+                             + "# Clients\r\nconnected_clients:" + connections.size() + "\r\n"
+                             + "# Stats\r\ntotal_commands_processed:" + commandCount.get() + "\r\n");
+            }
+
+            commandCount.incrementAndGet();
+            return store.execute(database, command);
+        }
+
+        private Object exec() {
+            if (queued == null)
+                return EmbeddedRedisStore.error("ERR EXEC without MULTI");
+
+            List<List<byte[]>> commands = queued;
+            queued = null;
+            try {
+                if (queueFailed)
+                    return EmbeddedRedisStore.error("EXECABORT Transaction discarded because of previous errors.");
+                commandCount.addAndGet(commands.size());
+                List<Object> replies = store.executeAll(database, commands, watched);
+                return replies != null ? replies : NULL_ARRAY;
+            } finally {
+                watched.clear();
+            }
+        }
+
+        private void subscribe(List<byte[]> names, boolean pattern) {
+            ConcurrentMap<String, Set<Connection>> registry = pattern ? patterns : channels;
+            Set<String> subscribed = pattern ? subscribedPatterns : subscribedChannels;
+            for (byte[] raw : names) {
+                String channel = string(raw);
+                Set<Connection> subscribers = registry.get(channel);
+                if (subscribers == null) {
+                    registry.putIfAbsent(channel, new CopyOnWriteArraySet<Connection>());
+                    subscribers = registry.get(channel);
+                }
+                subscribers.add(this);
+                subscribed.add(channel);
+                write(Arrays.<Object>asList(bytes(pattern ? "psubscribe" : "subscribe"), raw,
+                                            (long) (subscribedChannels.size() + subscribedPatterns.size())));
+            }
+        }
+
+        private void unsubscribe(List<byte[]> names, boolean pattern) {
+            ConcurrentMap<String, Set<Connection>> registry = pattern ? patterns : channels;
+            Set<String> subscribed = pattern ? subscribedPatterns : subscribedChannels;
+            List<String> targets = new ArrayList<String>();
+            if (names.isEmpty()) {
+                targets.addAll(subscribed);
+            } else {
+                for (byte[] raw : names) {
+                    targets.add(string(raw));
+                }
+            }
+            String kind = pattern ? "punsubscribe" : "unsubscribe";
+            if (targets.isEmpty()) {
+                write(Arrays.<Object>asList(bytes(kind), null, 0L));
+                return;
+            }
+            for (String channel : targets) {
+                Set<Connection> subscribers = registry.get(channel);
+                if (subscribers != null) {
+                    subscribers.remove(this);
+                }
+                subscribed.remove(channel);
+                write(Arrays.<Object>asList(bytes(kind), bytes(channel),
+                                            (long) (subscribedChannels.size() + subscribedPatterns.size())));
+            }
+        }
+
+        /**
+         * send a pub/sub message from another connection
+         */
+        private void push(Object message) {
+            try {
+                synchronized (out) {
+                    Resp.write(out, message);
+                    out.flush();
+                }
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        private void write(Object reply) {
+            try {
+                synchronized (out) {
+                    Resp.write(out, reply);
+                }
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        private void flush() throws IOException {
+            synchronized (out) {
+                out.flush();
+            }
+            roundTripCount.incrementAndGet();
+        }
+
+        private void delay() {
+            long nanos = latencyNanos;
+            if (nanos <= 0)
+                return;
+            long deadline = System.nanoTime() + nanos;
+            while (System.nanoTime() < deadline) {
+                LockSupport.parkNanos(deadline - System.nanoTime());
+            }
+        }
+
+        private List<byte[]> readCommand() throws IOException {
+            int first = in.read();
+            if (first < 0)
+                return null;
+            if (first != '*') {
+                // inline command
+                String line = (char) first + Resp.readLine(in);
+                List<byte[]> command = new ArrayList<byte[]>();
+                for (String part : WHITESPACE.split(line.trim())) {
+                    if (part.length() > 0) {
+                        command.add(bytes(part));
+                    }
+                }
+                return command;
+            }
+            int count = Integer.parseInt(Resp.readLine(in));
+            List<byte[]> command = new ArrayList<byte[]>(Math.max(count, 0));
+            for (int i = 0; i < count; i++) {
+                if (in.read() != '$')
+                    throw new IOException("Protocol error: expected bulk string");
+                int length = Integer.parseInt(Resp.readLine(in));
+                byte[] arg = new byte[length];
+                int read = 0;
+                while (read < length) {
+                    int n = in.read(arg, read, length - read);
+                    if (n < 0)
+                        throw new EOFException();
+                    read += n;
+                }
+                if (in.read() != '\r' || in.read() != '\n')
+                    throw new IOException("Protocol error: expected CRLF");
+                command.add(arg);
+            }
+            return command;
+        }
+
+        private void close() {
+            connections.remove(this);
+            for (String channel : subscribedChannels) {
+                Set<Connection> subscribers = channels.get(channel);
+                if (subscribers != null) {
+                    subscribers.remove(this);
+                }
+            }
+            for (String pattern : subscribedPatterns) {
+                Set<Connection> subscribers = patterns.get(pattern);
+                if (subscribers != null) {
+                    subscribers.remove(this);
+                }
+            }
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Object QUIT = new Object();
+    private static final Object NO_REPLY = new Object();
+    static final Object NULL_ARRAY = new Object();
+
+    /**
+     * RESP encoding of replies: {@link EmbeddedRedisStore.Status}, {@link EmbeddedRedisStore.Error},
+     * Long, byte[] (bulk string), null (nil bulk string), List (array) and {@link #NULL_ARRAY}
+     */
+    static final class Resp {
+
+        private static final byte[] CRLF = new byte[] { '\r', '\n' };
+
+        private Resp() { }
+
+        static void write(OutputStream out, Object reply) throws IOException {
+            if (reply == null) {
+                out.write(bytes("$-1\r\n"));
+            } else if (reply == NULL_ARRAY) {
+                out.write(bytes("*-1\r\n"));
+            } else if (reply instanceof byte[]) {
+                byte[] value = (byte[]) reply;
+                out.write('$');
+                out.write(bytes(String.valueOf(value.length)));
+                out.write(CRLF);
+                out.write(value);
+                out.write(CRLF);
+            } else if (reply instanceof Long || reply instanceof Integer) {
+                out.write(':');
+                out.write(bytes(reply.toString()));
+                out.write(CRLF);
+            } else if (reply instanceof EmbeddedRedisStore.Status) {
+                out.write('+');
+                out.write(bytes(((EmbeddedRedisStore.Status) reply).message));
+                out.write(CRLF);
+            } else if (reply instanceof EmbeddedRedisStore.Error) {
+                out.write('-');
+                out.write(bytes(((EmbeddedRedisStore.Error) reply).message));
+                out.write(CRLF);
+            } else if (reply instanceof List) {
+                List<?> values = (List<?>) reply;
+                out.write('*');
+                out.write(bytes(String.valueOf(values.size())));
+                out.write(CRLF);
+                for (Object value : values) {
+                    write(out, value);
+                }
+            } else {
+                throw new IllegalArgumentException("unsupported reply type. reply=" + reply);
+            }
+        }
+
+        static String readLine(InputStream in) throws IOException {
+            StringBuilder sb = new StringBuilder();
+            while (true) {
+                int c = in.read();
+                if (c < 0)
+                    throw new EOFException();
+                if (c == '\r') {
+                    if (in.read() != '\n')
+                        throw new IOException("Protocol error: expected LF");
+                    return sb.toString();
+                }
+                sb.append((char) c);
+            }
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package org.hibernate.test.cache.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPubSub;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.Transaction;
+
+/**
+ * {@link EmbeddedRedisServer} with the jedis client
+ */
+public class EmbeddedRedisServerTest {
+
+    private EmbeddedRedisServer server;
+    private Jedis jedis;
+
+    @Before
+    public void setup() throws Exception {
+        server = EmbeddedRedisServer.start();
+        jedis = new Jedis(server.getHost(), server.getPort());
+    }
+
+    @After
+    public void tearDown() {
+        jedis.close();
+        server.close();
+    }
+
+    @Test
+    public void stringsHashesAndSortedSets() {
+        jedis.set("s", "1");
+        assertEquals(Long.valueOf(2), jedis.incr("s"));
+        assertEquals(Arrays.asList("2", null), jedis.mget("s", "missing"));
+
+        jedis.hset("h", "a", "1");
+        jedis.hset("h", "b", "2");
+        assertEquals(Long.valueOf(2), jedis.hlen("h"));
+        assertEquals(Arrays.asList("1", null), jedis.hmget("h", "a", "c"));
+        assertEquals(Long.valueOf(1), jedis.hdel("h", "a"));
+
+        jedis.zadd("z", 3, "c");
+        jedis.zadd("z", 1, "a");
+        jedis.zadd("z", 2, "b");
+        assertEquals(Double.valueOf(2), jedis.zscore("z", "b"));
+        assertEquals(2, jedis.zrangeByScore("z", 1.5, Double.POSITIVE_INFINITY).size());
+        assertEquals(Long.valueOf(2), jedis.zremrangeByScore("z", Double.NEGATIVE_INFINITY, 2));
+        assertEquals(Collections.singleton("c"), jedis.zrange("z", 0, -1));
+
+        assertEquals("WRONGTYPE", errorOf(new Runnable() {
+            @Override
+            public void run() {
+                jedis.get("h");
+            }
+        }).split(" ")[0]);
+    }
+
+    @Test
+    public void expiration() throws Exception {
+        jedis.psetex("e", 50L, "v");
+        assertTrue(jedis.pttl("e") > 0);
+        Thread.sleep(100);
+        assertNull(jedis.get("e"));
+        assertEquals(Long.valueOf(0), jedis.dbSize());
+    }
+
+    @Test
+    public void transactionWithWatch() {
+        jedis.set("k", "1");
+        jedis.watch("k");
+        Transaction tx = jedis.multi();
+        tx.set("k", "2");
+        tx.incr("k");
+        assertEquals(Arrays.<Object>asList("OK", 3L), tx.exec());
+
+        jedis.watch("k");
+        Jedis other = new Jedis(server.getHost(), server.getPort());
+        try {
+            other.set("k", "changed");
+        } finally {
+            other.close();
+        }
+        tx = jedis.multi();
+        tx.set("k", "mine");
+        assertNull(tx.exec());
+        assertEquals("changed", jedis.get("k"));
+    }
+
+    @Test
+    public void pipelineIsOneRoundTrip() {
+        long roundTrips = server.getRoundTripCount();
+        Pipeline pipeline = jedis.pipelined();
+        for (int i = 0; i < 100; i++) {
+            pipeline.set("p" + i, String.valueOf(i));
+        }
+        Response<String> last = pipeline.get("p99");
+        pipeline.sync();
+
+        assertEquals("99", last.get());
+        assertTrue(server.getRoundTripCount() - roundTrips <= 2);
+    }
+
+    @Test
+    public void eval() {
+        Object result = jedis.eval("redis.call('set', KEYS[1], ARGV[1]); return redis.call('incrby', KEYS[1], 5)",
+                                   Collections.singletonList("counter"), Collections.singletonList("10"));
+        assertEquals(15L, result);
+
+        String sha = jedis.scriptLoad("return {KEYS[1], tonumber(ARGV[1]) * 2, redis.call('get', 'missing')}");
+        List<?> values = (List<?>) jedis.evalsha(sha, Collections.singletonList("k"), Collections.singletonList("21"));
+        assertEquals(Arrays.<Object>asList("k", 42L, null), values);
+
+        assertEquals("ERR", errorOf(new Runnable() {
+            @Override
+            public void run() {
+                jedis.eval("return redis.call('hget', 'counter', 'f')", 0);
+            }
+        }).split(" ")[0].replace("WRONGTYPE", "ERR"));
+    }
+
+    @Test
+    public void publishSubscribe() throws Exception {
+        final CountDownLatch subscribed = new CountDownLatch(1);
+        final CountDownLatch received = new CountDownLatch(1);
+        final String[] message = new String[1];
+        final JedisPubSub pubSub = new JedisPubSub() {
+            @Override
+            public void onSubscribe(String channel, int subscribedChannels) {
+                subscribed.countDown();
+            }
+
+            @Override
+            public void onMessage(String channel, String value) {
+                message[0] = value;
+                received.countDown();
+                unsubscribe();
+            }
+        };
+        Thread subscriber = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Jedis subscriberJedis = new Jedis(server.getHost(), server.getPort());
+                try {
+                    subscriberJedis.subscribe(pubSub, "invalidate");
+                } finally {
+                    subscriberJedis.close();
+                }
+            }
+        });
+        subscriber.start();
+
+        assertTrue(subscribed.await(5, TimeUnit.SECONDS));
+        assertEquals(Long.valueOf(1), jedis.publish("invalidate", "region"));
+        assertTrue(received.await(5, TimeUnit.SECONDS));
+        assertEquals("region", message[0]);
+        subscriber.join(5000);
+    }
+
+    @Test
+    public void injectedLatency() {
+        server.setLatency(20, TimeUnit.MILLISECONDS);
+        long start = System.nanoTime();
+        jedis.ping();
+        jedis.ping();
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(40));
+    }
+
+    private static String errorOf(Runnable command) {
+        try {
+            command.run();
+        } catch (RuntimeException e) {
+            return e.getMessage();
+        }
+        throw new AssertionError("expected an error reply");
+    }
+}
@@ -0,0 +1,955 @@
+package org.hibernate.test.cache.server;
+
+import static org.hibernate.test.cache.server.EmbeddedRedisServer.bytes;
+import static org.hibernate.test.cache.server.EmbeddedRedisServer.string;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+/**
+ * Keys and values of {@link EmbeddedRedisServer}, every command runs under the store lock.
+ * <p/>
+ * commands:
+ * <ul>
+ * <li>server : PING, ECHO, TIME, DBSIZE, FLUSHDB, FLUSHALL</li>
+ * <li>keys : EXISTS, DEL, TYPE, KEYS, SCAN, EXPIRE, PEXPIRE, EXPIREAT, PEXPIREAT, TTL, PTTL, PERSIST, MEMORY USAGE</li>
+ * <li>strings : GET, SET (EX / PX / NX / XX), SETEX, PSETEX, SETNX, GETSET, MGET, MSET, INCR, INCRBY, DECR, DECRBY, APPEND, STRLEN</li>
+ * <li>hashes : HSET, HSETNX, HMSET, HGET, HMGET, HDEL, HEXISTS, HLEN, HKEYS, HVALS, HGETALL, HINCRBY, HSCAN</li>
+ * <li>sorted sets : ZADD, ZINCRBY, ZREM, ZSCORE, ZCARD, ZRANGE, ZRANGEBYSCORE, ZREMRANGEBYSCORE</li>
+ * <li>scripting : EVAL, EVALSHA, SCRIPT LOAD / EXISTS / FLUSH</li>
+ * </ul>
+ * MULTI / EXEC / WATCH, SELECT and pub/sub are handled per connection by {@link EmbeddedRedisServer}.
+ */
+final class EmbeddedRedisStore {
+
+    static final int DATABASES = 16;
+    static final Status OK = new Status("OK");
+
+    private static final Error WRONG_TYPE = error("WRONGTYPE Operation against a key holding the wrong kind of value");
+    private static final Error NOT_INTEGER = error("ERR value is not an integer or out of range");
+    private static final Error SYNTAX = error("ERR syntax error");
+
+    private static final Set<String> COMMANDS = new HashSet<String>(Arrays.asList(
+            "PING", "ECHO", "TIME", "DBSIZE", "FLUSHDB", "FLUSHALL",
+            "EXISTS", "DEL", "TYPE", "KEYS", "SCAN", "EXPIRE", "PEXPIRE", "EXPIREAT", "PEXPIREAT", "TTL", "PTTL", "PERSIST", "MEMORY",
+            "GET", "SET", "SETEX", "PSETEX", "SETNX", "GETSET", "MGET", "MSET", "INCR", "INCRBY", "DECR", "DECRBY", "APPEND", "STRLEN",
+            "HSET", "HSETNX", "HMSET", "HGET", "HMGET", "HDEL", "HEXISTS", "HLEN", "HKEYS", "HVALS", "HGETALL", "HINCRBY", "HSCAN",
+            "ZADD", "ZINCRBY", "ZREM", "ZSCORE", "ZCARD", "ZRANGE", "ZRANGEBYSCORE", "ZREMRANGEBYSCORE",
+            "EVAL", "EVALSHA", "SCRIPT"));
+
+    private final Database[] databases = new Database[DATABASES];
+    private final EmbeddedRedisScripting scripting = new EmbeddedRedisScripting(this);
+    private long modificationCount = 0L;
+
+    EmbeddedRedisStore() {
+        for (int i = 0; i < DATABASES; i++) {
+            databases[i] = new Database();
+        }
+    }
+
+    boolean isCommand(String name) {
+        return COMMANDS.contains(name);
+    }
+
+    synchronized void flushAll() {
+        for (Database db : databases) {
+            flush(db);
+        }
+    }
+
+    /**
+     * modification version of the key, for WATCH
+     */
+    synchronized long version(int database, Key key) {
+        Database db = databases[database];
+        lookup(db, key);
+        Long version = db.versions.get(key);
+        return version != null ? version : 0L;
+    }
+
+    /**
+     * execute the commands of a transaction, null if a watched key was modified
+     */
+    synchronized List<Object> executeAll(int database, List<List<byte[]>> commands, Map<Key, Long> watched) {
+        for (Map.Entry<Key, Long> entry : watched.entrySet()) {
+            if (version(database, entry.getKey()) != entry.getValue())
+                return null;
+        }
+        List<Object> replies = new ArrayList<Object>(commands.size());
+        for (List<byte[]> command : commands) {
+            replies.add(execute(database, command));
+        }
+        return replies;
+    }
+
+    synchronized Object execute(int database, List<byte[]> command) {
+        String name = string(command.get(0)).toUpperCase();
+        List<byte[]> args = command.subList(1, command.size());
+        Database db = databases[database];
+        try {
+            return execute(database, db, name, args);
+        } catch (NumberFormatException e) {
+            return NOT_INTEGER;
+        } catch (IndexOutOfBoundsException e) {
+            return error("ERR wrong number of arguments for '" + name.toLowerCase() + "' command");
+        } catch (WrongTypeException e) {
+            return WRONG_TYPE;
+        } catch (IllegalArgumentException e) {
+            return error(e.getMessage());
+        }
+    }
+
+    private Object execute(int database, Database db, String name, List<byte[]> args) {
+        // server
+        if ("PING".equals(name))
+            return args.isEmpty() ? new Status("PONG") : args.get(0);
+        if ("ECHO".equals(name))
+            return args.get(0);
+        if ("TIME".equals(name)) {
+            long micros = System.currentTimeMillis() * 1000L + (System.nanoTime() / 1000L) % 1000L;
+            return Arrays.<Object>asList(bytes(String.valueOf(micros / 1000000L)), bytes(String.valueOf(micros % 1000000L)));
+        }
+        if ("DBSIZE".equals(name)) {
+            purgeExpired(db);
+            return (long) db.data.size();
+        }
+        if ("FLUSHDB".equals(name)) {
+            flush(db);
+            return OK;
+        }
+        if ("FLUSHALL".equals(name)) {
+            for (Database each : databases) {
+                flush(each);
+            }
+            return OK;
+        }
+
+        // keys
+        if ("EXISTS".equals(name)) {
+            long count = 0;
+            for (byte[] key : args) {
+                if (lookup(db, new Key(key)) != null)
+                    count++;
+            }
+            return count;
+        }
+        if ("DEL".equals(name)) {
+            long count = 0;
+            for (byte[] key : args) {
+                if (remove(db, new Key(key)))
+                    count++;
+            }
+            return count;
+        }
+        if ("TYPE".equals(name)) {
+            Object value = lookup(db, new Key(args.get(0)));
+            if (value == null)
+                return new Status("none");
+            if (value instanceof byte[])
+                return new Status("string");
+            return new Status(value instanceof ZSet ? "zset" : "hash");
+        }
+        if ("KEYS".equals(name)) {
+            purgeExpired(db);
+            Pattern pattern = globToRegex(string(args.get(0)));
+            List<Object> keys = new ArrayList<Object>();
+            for (Key key : db.data.keySet()) {
+                if (pattern.matcher(key.toString()).matches())
+                    keys.add(key.bytes);
+            }
+            return keys;
+        }
+        if ("SCAN".equals(name)) {
+            purgeExpired(db);
+            return scan(new ArrayList<Key>(db.data.keySet()), args, 0, null);
+        }
+        if ("EXPIRE".equals(name) || "PEXPIRE".equals(name) || "EXPIREAT".equals(name) || "PEXPIREAT".equals(name)) {
+            Key key = new Key(args.get(0));
+            if (lookup(db, key) == null)
+                return 0L;
+            long value = parseLong(args.get(1));
+            long expireAt;
+            if ("EXPIRE".equals(name)) {
+                expireAt = System.currentTimeMillis() + value * 1000L;
+            } else if ("PEXPIRE".equals(name)) {
+                expireAt = System.currentTimeMillis() + value;
+            } else if ("EXPIREAT".equals(name)) {
+                expireAt = value * 1000L;
+            } else {
+                expireAt = value;
+            }
+            db.expires.put(key, expireAt);
+            touch(db, key);
+            lookup(db, key);
+            return 1L;
+        }
+        if ("TTL".equals(name) || "PTTL".equals(name)) {
+            Key key = new Key(args.get(0));
+            if (lookup(db, key) == null)
+                return -2L;
+            Long expireAt = db.expires.get(key);
+            if (expireAt == null)
+                return -1L;
+            long millis = Math.max(0L, expireAt - System.currentTimeMillis());
+            return "TTL".equals(name) ? (millis + 500L) / 1000L : millis;
+        }
+        if ("PERSIST".equals(name)) {
+            Key key = new Key(args.get(0));
+            if (lookup(db, key) == null || db.expires.remove(key) == null)
+                return 0L;
+            touch(db, key);
+            return 1L;
+        }
+        if ("MEMORY".equals(name)) {
+            if (!"USAGE".equalsIgnoreCase(string(args.get(0))))
+                return error("ERR unknown subcommand '" + string(args.get(0)) + "'");
+            Key key = new Key(args.get(1));
+            Object value = lookup(db, key);
+            return value != null ? (Object) (long) memoryUsage(key, value) : null;
+        }
+
+        // strings
+        if ("GET".equals(name))
+            return getString(db, new Key(args.get(0)));
+        if ("SET".equals(name))
+            return set(db, args);
+        if ("SETEX".equals(name) || "PSETEX".equals(name)) {
+            long ttl = parseLong(args.get(1));
+            if (ttl <= 0)
+                return error("ERR invalid expire time in " + name.toLowerCase());
+            Key key = new Key(args.get(0));
+            put(db, key, args.get(2));
+            db.expires.put(key, System.currentTimeMillis() + ("SETEX".equals(name) ? ttl * 1000L : ttl));
+            return OK;
+        }
+        if ("SETNX".equals(name)) {
+            Key key = new Key(args.get(0));
+            if (lookup(db, key) != null)
+                return 0L;
+            put(db, key, args.get(1));
+            return 1L;
+        }
+        if ("GETSET".equals(name)) {
+            Key key = new Key(args.get(0));
+            byte[] old = getString(db, key);
+            put(db, key, args.get(1));
+            return old;
+        }
+        if ("MGET".equals(name)) {
+            List<Object> values = new ArrayList<Object>(args.size());
+            for (byte[] key : args) {
+                Object value = lookup(db, new Key(key));
+                values.add(value instanceof byte[] ? value : null);
+            }
+            return values;
+        }
+        if ("MSET".equals(name)) {
+            if (args.isEmpty() || args.size() % 2 != 0)
+                return error("ERR wrong number of arguments for 'mset' command");
+            for (int i = 0; i < args.size(); i += 2) {
+                put(db, new Key(args.get(i)), args.get(i + 1));
+            }
+            return OK;
+        }
+        if ("INCR".equals(name))
+            return incrementBy(db, new Key(args.get(0)), 1L);
+        if ("DECR".equals(name))
+            return incrementBy(db, new Key(args.get(0)), -1L);
+        if ("INCRBY".equals(name))
+            return incrementBy(db, new Key(args.get(0)), parseLong(args.get(1)));
+        if ("DECRBY".equals(name))
+            return incrementBy(db, new Key(args.get(0)), -parseLong(args.get(1)));
+        if ("APPEND".equals(name)) {
+            Key key = new Key(args.get(0));
+            byte[] old = getString(db, key);
+            byte[] value = args.get(1);
+            if (old != null) {
+                byte[] joined = Arrays.copyOf(old, old.length + value.length);
+                System.arraycopy(value, 0, joined, old.length, value.length);
+                value = joined;
+            }
+            putKeepTtl(db, key, value);
+            return (long) value.length;
+        }
+        if ("STRLEN".equals(name)) {
+            byte[] value = getString(db, new Key(args.get(0)));
+            return value != null ? (long) value.length : 0L;
+        }
+
+        // hashes
+        if ("HSET".equals(name) || "HMSET".equals(name)) {
+            if (args.size() < 3 || args.size() % 2 != 1)
+                return error("ERR wrong number of arguments for '" + name.toLowerCase() + "' command");
+            Key key = new Key(args.get(0));
+            Map<Key, byte[]> hash = hash(db, key, true);
+            long added = 0;
+            for (int i = 1; i < args.size(); i += 2) {
+                if (hash.put(new Key(args.get(i)), args.get(i + 1)) == null)
+                    added++;
+            }
+            touch(db, key);
+            return "HSET".equals(name) ? (Object) added : OK;
+        }
+        if ("HSETNX".equals(name)) {
+            Key key = new Key(args.get(0));
+            Map<Key, byte[]> hash = hash(db, key, true);
+            Key field = new Key(args.get(1));
+            if (hash.containsKey(field))
+                return 0L;
+            hash.put(field, args.get(2));
+            touch(db, key);
+            return 1L;
+        }
+        if ("HGET".equals(name)) {
+            Map<Key, byte[]> hash = hash(db, new Key(args.get(0)), false);
+            return hash != null ? hash.get(new Key(args.get(1))) : null;
+        }
+        if ("HMGET".equals(name)) {
+            Map<Key, byte[]> hash = hash(db, new Key(args.get(0)), false);
+            List<Object> values = new ArrayList<Object>(args.size() - 1);
+            for (int i = 1; i < args.size(); i++) {
+                values.add(hash != null ? hash.get(new Key(args.get(i))) : null);
+            }
+            return values;
+        }
+        if ("HDEL".equals(name)) {
+            Key key = new Key(args.get(0));
+            Map<Key, byte[]> hash = hash(db, key, false);
+            if (hash == null)
+                return 0L;
+            long removed = 0;
+            for (int i = 1; i < args.size(); i++) {
+                if (hash.remove(new Key(args.get(i))) != null)
+                    removed++;
+            }
+            if (removed > 0) {
+                touch(db, key);
+                removeIfEmpty(db, key, hash.isEmpty());
+            }
+            return removed;
+        }
+        if ("HEXISTS".equals(name)) {
+            Map<Key, byte[]> hash = hash(db, new Key(args.get(0)), false);
+            return hash != null && hash.containsKey(new Key(args.get(1))) ? 1L : 0L;
+        }
+        if ("HLEN".equals(name)) {
+            Map<Key, byte[]> hash = hash(db, new Key(args.get(0)), false);
+            return hash != null ? (long) hash.size() : 0L;
+        }
+        if ("HKEYS".equals(name) || "HVALS".equals(name) || "HGETALL".equals(name)) {
+            Map<Key, byte[]> hash = hash(db, new Key(args.get(0)), false);
+            List<Object> values = new ArrayList<Object>();
+            if (hash != null) {
+                for (Map.Entry<Key, byte[]> entry : hash.entrySet()) {
+                    if (!"HVALS".equals(name))
+                        values.add(entry.getKey().bytes);
+                    if (!"HKEYS".equals(name))
+                        values.add(entry.getValue());
+                }
+            }
+            return values;
+        }
+        if ("HINCRBY".equals(name)) {
+            Key key = new Key(args.get(0));
+            Map<Key, byte[]> hash = hash(db, key, true);
+            Key field = new Key(args.get(1));
+            byte[] old = hash.get(field);
+            long value;
+            try {
+                value = (old != null ? parseLong(old) : 0L) + parseLong(args.get(2));
+            } catch (NumberFormatException e) {
+                return error("ERR hash value is not an integer");
+            }
+            hash.put(field, bytes(String.valueOf(value)));
+            touch(db, key);
+            return value;
+        }
+        if ("HSCAN".equals(name)) {
+            Map<Key, byte[]> hash = hash(db, new Key(args.get(0)), false);
+            List<Key> fields = hash != null ? new ArrayList<Key>(hash.keySet()) : Collections.<Key>emptyList();
+            return scan(fields, args.subList(1, args.size()), 0, hash);
+        }
+
+        // sorted sets
+        if ("ZADD".equals(name))
+            return zadd(db, args);
+        if ("ZINCRBY".equals(name)) {
+            Key key = new Key(args.get(0));
+            ZSet zset = zset(db, key, true);
+            Key member = new Key(args.get(2));
+            Double old = zset.scores.get(member);
+            double score = (old != null ? old : 0d) + parseDouble(args.get(1));
+            zset.put(member, score);
+            touch(db, key);
+            return bytes(formatScore(score));
+        }
+        if ("ZREM".equals(name)) {
+            Key key = new Key(args.get(0));
+            ZSet zset = zset(db, key, false);
+            if (zset == null)
+                return 0L;
+            long removed = 0;
+            for (int i = 1; i < args.size(); i++) {
+                if (zset.remove(new Key(args.get(i))))
+                    removed++;
+            }
+            if (removed > 0) {
+                touch(db, key);
+                removeIfEmpty(db, key, zset.scores.isEmpty());
+            }
+            return removed;
+        }
+        if ("ZSCORE".equals(name)) {
+            ZSet zset = zset(db, new Key(args.get(0)), false);
+            Double score = zset != null ? zset.scores.get(new Key(args.get(1))) : null;
+            return score != null ? bytes(formatScore(score)) : null;
+        }
+        if ("ZCARD".equals(name)) {
+            ZSet zset = zset(db, new Key(args.get(0)), false);
+            return zset != null ? (long) zset.scores.size() : 0L;
+        }
+        if ("ZRANGE".equals(name)) {
+            ZSet zset = zset(db, new Key(args.get(0)), false);
+            boolean withScores = args.size() > 3 && "WITHSCORES".equalsIgnoreCase(string(args.get(3)));
+            List<ZMember> members = zset != null ? new ArrayList<ZMember>(zset.ordered) : Collections.<ZMember>emptyList();
+            int size = members.size();
+            long start = parseLong(args.get(1));
+            long stop = parseLong(args.get(2));
+            if (start < 0)
+                start = Math.max(0, size + start);
+            if (stop < 0)
+                stop = size + stop;
+            stop = Math.min(stop, size - 1);
+            List<Object> values = new ArrayList<Object>();
+            for (long i = start; i <= stop; i++) {
+                addMember(values, members.get((int) i), withScores);
+            }
+            return values;
+        }
+        if ("ZRANGEBYSCORE".equals(name)) {
+            ZSet zset = zset(db, new Key(args.get(0)), false);
+            ScoreBound min = ScoreBound.parse(args.get(1));
+            ScoreBound max = ScoreBound.parse(args.get(2));
+            boolean withScores = false;
+            long offset = 0;
+            long count = -1;
+            for (int i = 3; i < args.size(); i++) {
+                String option = string(args.get(i));
+                if ("WITHSCORES".equalsIgnoreCase(option)) {
+                    withScores = true;
+                } else if ("LIMIT".equalsIgnoreCase(option)) {
+                    offset = parseLong(args.get(++i));
+                    count = parseLong(args.get(++i));
+                } else {
+                    return SYNTAX;
+                }
+            }
+            List<Object> values = new ArrayList<Object>();
+            if (zset != null) {
+                long index = 0;
+                for (ZMember member : zset.ordered) {
+                    if (!min.belowOrEqual(member.score))
+                        continue;
+                    if (!max.aboveOrEqual(member.score))
+                        break;
+                    if (index++ < offset)
+                        continue;
+                    if (count >= 0 && index - offset > count)
+                        break;
+                    addMember(values, member, withScores);
+                }
+            }
+            return values;
+        }
+        if ("ZREMRANGEBYSCORE".equals(name)) {
+            Key key = new Key(args.get(0));
+            ZSet zset = zset(db, key, false);
+            if (zset == null)
+                return 0L;
+            ScoreBound min = ScoreBound.parse(args.get(1));
+            ScoreBound max = ScoreBound.parse(args.get(2));
+            long removed = 0;
+            Iterator<ZMember> it = zset.ordered.iterator();
+            while (it.hasNext()) {
+                ZMember member = it.next();
+                if (!min.belowOrEqual(member.score))
+                    continue;
+                if (!max.aboveOrEqual(member.score))
+                    break;
+                it.remove();
+                zset.scores.remove(member.key);
+                removed++;
+            }
+            if (removed > 0) {
+                touch(db, key);
+                removeIfEmpty(db, key, zset.scores.isEmpty());
+            }
+            return removed;
+        }
+
+        // scripting
+        if ("EVAL".equals(name) || "EVALSHA".equals(name)) {
+            int keyCount = (int) parseLong(args.get(1));
+            if (keyCount < 0 || keyCount > args.size() - 2)
+                return error("ERR Number of keys can't be greater than number of args");
+            List<byte[]> keys = args.subList(2, 2 + keyCount);
+            List<byte[]> argv = args.subList(2 + keyCount, args.size());
+            return "EVAL".equals(name)
+                    ? scripting.eval(database, string(args.get(0)), keys, argv)
+                    : scripting.evalsha(database, string(args.get(0)).toLowerCase(), keys, argv);
+        }
+        if ("SCRIPT".equals(name)) {
+            String subcommand = string(args.get(0)).toUpperCase();
+            if ("LOAD".equals(subcommand))
+                return bytes(scripting.load(string(args.get(1))));
+            if ("EXISTS".equals(subcommand)) {
+                List<Object> exists = new ArrayList<Object>();
+                for (int i = 1; i < args.size(); i++) {
+                    exists.add(scripting.exists(string(args.get(i)).toLowerCase()) ? 1L : 0L);
+                }
+                return exists;
+            }
+            if ("FLUSH".equals(subcommand)) {
+                scripting.flush();
+                return OK;
+            }
+            return error("ERR Unknown SCRIPT subcommand or wrong number of arguments for '" + subcommand + "'");
+        }
+
+        return error("ERR unknown command '" + name.toLowerCase() + "'");
+    }
+
+    private Object set(Database db, List<byte[]> args) {
+        Key key = new Key(args.get(0));
+        byte[] value = args.get(1);
+        Long expireAt = null;
+        boolean nx = false;
+        boolean xx = false;
+        for (int i = 2; i < args.size(); i++) {
+            String option = string(args.get(i)).toUpperCase();
+            if ("NX".equals(option)) {
+                nx = true;
+            } else if ("XX".equals(option)) {
+                xx = true;
+            } else if ("EX".equals(option)) {
+                expireAt = System.currentTimeMillis() + parseLong(args.get(++i)) * 1000L;
+            } else if ("PX".equals(option)) {
+                expireAt = System.currentTimeMillis() + parseLong(args.get(++i));
+            } else {
+                return SYNTAX;
+            }
+        }
+        boolean exists = lookup(db, key) != null;
+        if ((nx && exists) || (xx && !exists))
+            return null;
+        put(db, key, value);
+        if (expireAt != null) {
+            db.expires.put(key, expireAt);
+        }
+        return OK;
+    }
+
+    private Object zadd(Database db, List<byte[]> args) {
+        Key key = new Key(args.get(0));
+        int i = 1;
+        boolean nx = false;
+        boolean xx = false;
+        boolean changed = false;
+        while (i < args.size()) {
+            String option = string(args.get(i)).toUpperCase();
+            if ("NX".equals(option)) {
+                nx = true;
+            } else if ("XX".equals(option)) {
+                xx = true;
+            } else if ("CH".equals(option)) {
+                changed = true;
+            } else {
+                break;
+            }
+            i++;
+        }
+        if (i >= args.size() || (args.size() - i) % 2 != 0)
+            return SYNTAX;
+
+        ZSet zset = zset(db, key, !xx);
+        if (zset == null)
+            return 0L;
+        long count = 0;
+        for (; i < args.size(); i += 2) {
+            double score = parseDouble(args.get(i));
+            Key member = new Key(args.get(i + 1));
+            Double old = zset.scores.get(member);
+            if ((nx && old != null) || (xx && old == null))
+                continue;
+            zset.put(member, score);
+            if (old == null || (changed && old != score))
+                count++;
+        }
+        touch(db, key);
+        removeIfEmpty(db, key, zset.scores.isEmpty());
+        return count;
+    }
+
+    private Object incrementBy(Database db, Key key, long delta) {
+        byte[] old = getString(db, key);
+        long value = (old != null ? parseLong(old) : 0L) + delta;
+        putKeepTtl(db, key, bytes(String.valueOf(value)));
+        return value;
+    }
+
+    /**
+     * single pass SCAN / HSCAN, ignores the cursor and returns every match with cursor 0
+     */
+    private static Object scan(List<Key> keys, List<byte[]> args, int cursorIndex, Map<Key, byte[]> hash) {
+        Pattern pattern = null;
+        for (int i = cursorIndex + 1; i < args.size(); i++) {
+            String option = string(args.get(i));
+            if ("MATCH".equalsIgnoreCase(option)) {
+                pattern = globToRegex(string(args.get(++i)));
+            } else if ("COUNT".equalsIgnoreCase(option)) {
+                i++;
+            }
+        }
+        List<Object> values = new ArrayList<Object>();
+        for (Key key : keys) {
+            if (pattern != null && !pattern.matcher(key.toString()).matches())
+                continue;
+            values.add(key.bytes);
+            if (hash != null)
+                values.add(hash.get(key));
+        }
+        return Arrays.<Object>asList(bytes("0"), values);
+    }
+
+    private static void addMember(List<Object> values, ZMember member, boolean withScores) {
+        values.add(member.key.bytes);
+        if (withScores)
+            values.add(bytes(formatScore(member.score)));
+    }
+
+    // ---------------------------------------------------------------------------------------------------------------
+    // storage
+
+    private Object lookup(Database db, Key key) {
+        Long expireAt = db.expires.get(key);
+        if (expireAt != null && expireAt <= System.currentTimeMillis()) {
+            remove(db, key);
+            return null;
+        }
+        return db.data.get(key);
+    }
+
+    private byte[] getString(Database db, Key key) {
+        Object value = lookup(db, key);
+        if (value != null && !(value instanceof byte[]))
+            throw new WrongTypeException();
+        return (byte[]) value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<Key, byte[]> hash(Database db, Key key, boolean create) {
+        Object value = lookup(db, key);
+        if (value == null && create) {
+            value = new HashMap<Key, byte[]>();
+            db.data.put(key, value);
+        }
+        if (value != null && !(value instanceof HashMap))
+            throw new WrongTypeException();
+        return (Map<Key, byte[]>) value;
+    }
+
+    private ZSet zset(Database db, Key key, boolean create) {
+        Object value = lookup(db, key);
+        if (value == null && create) {
+            value = new ZSet();
+            db.data.put(key, value);
+        }
+        if (value != null && !(value instanceof ZSet))
+            throw new WrongTypeException();
+        return (ZSet) value;
+    }
+
+    private void put(Database db, Key key, byte[] value) {
+        db.data.put(key, value);
+        db.expires.remove(key);
+        touch(db, key);
+    }
+
+    private void putKeepTtl(Database db, Key key, byte[] value) {
+        db.data.put(key, value);
+        touch(db, key);
+    }
+
+    private boolean remove(Database db, Key key) {
+        db.expires.remove(key);
+        if (db.data.remove(key) == null)
+            return false;
+        touch(db, key);
+        return true;
+    }
+
+    private void removeIfEmpty(Database db, Key key, boolean empty) {
+        if (empty) {
+            remove(db, key);
+        }
+    }
+
+    private void touch(Database db, Key key) {
+        db.versions.put(key, ++modificationCount);
+    }
+
+    private void flush(Database db) {
+        for (Key key : db.data.keySet()) {
+            touch(db, key);
+        }
+        db.data.clear();
+        db.expires.clear();
+    }
+
+    private void purgeExpired(Database db) {
+        for (Key key : new ArrayList<Key>(db.expires.keySet())) {
+            lookup(db, key);
+        }
+    }
+
+    /**
+     * rough estimate of the memory used by a key and its value, for MEMORY USAGE
+     */
+    @SuppressWarnings("unchecked")
+    private static int memoryUsage(Key key, Object value) {
+        int size = 48 + key.bytes.length;
+        if (value instanceof byte[]) {
+            size += ((byte[]) value).length;
+        } else if (value instanceof ZSet) {
+            for (Key member : ((ZSet) value).scores.keySet()) {
+                size += 64 + member.bytes.length;
+            }
+        } else {
+            for (Map.Entry<Key, byte[]> entry : ((Map<Key, byte[]>) value).entrySet()) {
+                size += 32 + entry.getKey().bytes.length + entry.getValue().length;
+            }
+        }
+        return size;
+    }
+
+    // ---------------------------------------------------------------------------------------------------------------
+    // helpers
+
+    static long parseLong(byte[] value) {
+        return Long.parseLong(string(value));
+    }
+
+    private static double parseDouble(byte[] value) {
+        ScoreBound bound = ScoreBound.parse(value);
+        if (bound.exclusive)
+            throw new NumberFormatException();
+        return bound.value;
+    }
+
+    static String formatScore(double score) {
+        if (Double.isInfinite(score))
+            return score > 0 ? "inf" : "-inf";
+        if (score == Math.rint(score) && Math.abs(score) < 1e17)
+            return String.valueOf((long) score);
+        return String.valueOf(score);
+    }
+
+    static Pattern globToRegex(String glob) {
+        StringBuilder regex = new StringBuilder();
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            switch (c) {
+                case '*':
+                    regex.append(".*");
+                    break;
+                case '?':
+                    regex.append('.');
+                    break;
+                case '[':
+                    int end = glob.indexOf(']', i);
+                    if (end > i) {
+                        regex.append('[').append(glob.substring(i + 1, end).replace("\\", "\\\\")).append(']');
+                        i = end;
+                    } else {
+                        regex.append("\\[");
+                    }
+                    break;
+                case '\\':
+                    if (i + 1 < glob.length()) {
+                        regex.append(Pattern.quote(String.valueOf(glob.charAt(++i))));
+                    }
+                    break;
+                default:
+                    regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return Pattern.compile(regex.toString(), Pattern.DOTALL);
+    }
+
+    static Error error(String message) {
+        return new Error(message);
+    }
+
+    static Status status(String message) {
+        return new Status(message);
+    }
+
+    static final class Status {
+        final String message;
+
+        Status(String message) {
+            this.message = message;
+        }
+
+        @Override
+        public String toString() {
+            return message;
+        }
+    }
+
+    static final class Error {
+        final String message;
+
+        Error(String message) {
+            this.message = message;
+        }
+
+        @Override
+        public String toString() {
+            return message;
+        }
+    }
+
+    /**
+     * binary safe key
+     */
+    static final class Key implements Comparable<Key> {
+        final byte[] bytes;
+        private final int hash;
+
+        Key(byte[] bytes) {
+            this.bytes = bytes;
+            this.hash = Arrays.hashCode(bytes);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && Arrays.equals(bytes, ((Key) o).bytes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public int compareTo(Key o) {
+            int length = Math.min(bytes.length, o.bytes.length);
+            for (int i = 0; i < length; i++) {
+                int diff = (bytes[i] & 0xFF) - (o.bytes[i] & 0xFF);
+                if (diff != 0)
+                    return diff;
+            }
+            return bytes.length - o.bytes.length;
+        }
+
+        @Override
+        public String toString() {
+            return new String(bytes, EmbeddedRedisServer.UTF_8);
+        }
+    }
+
+    private static final class Database {
+        private final Map<Key, Object> data = new HashMap<Key, Object>();
+        private final Map<Key, Long> expires = new HashMap<Key, Long>();
+        private final Map<Key, Long> versions = new HashMap<Key, Long>();
+    }
+
+    private static final class ZMember {
+        private final Key key;
+        private final double score;
+
+        private ZMember(Key key, double score) {
+            this.key = key;
+            this.score = score;
+        }
+    }
+
+    private static final class ZSet {
+        private final Map<Key, Double> scores = new HashMap<Key, Double>();
+        private final TreeSet<ZMember> ordered = new TreeSet<ZMember>(new Comparator<ZMember>() {
+            @Override
+            public int compare(ZMember o1, ZMember o2) {
+                int diff = Double.compare(o1.score, o2.score);
+                return diff != 0 ? diff : o1.key.compareTo(o2.key);
+            }
+        });
+
+        private void put(Key member, double score) {
+            Double old = scores.put(member, score);
+            if (old != null) {
+                ordered.remove(new ZMember(member, old));
+            }
+            ordered.add(new ZMember(member, score));
+        }
+
+        private boolean remove(Key member) {
+            Double old = scores.remove(member);
+            if (old == null)
+                return false;
+            ordered.remove(new ZMember(member, old));
+            return true;
+        }
+    }
+
+    private static final class ScoreBound {
+        private final double value;
+        private final boolean exclusive;
+
+        private ScoreBound(double value, boolean exclusive) {
+            this.value = value;
+            this.exclusive = exclusive;
+        }
+
+        static ScoreBound parse(byte[] raw) {
+            String text = string(raw).trim();
+            boolean exclusive = text.startsWith("(");
+            if (exclusive)
+                text = text.substring(1);
+            String lower = text.toLowerCase();
+            double value;
+            if ("inf".equals(lower) || "+inf".equals(lower) || "infinity".equals(lower) || "+infinity".equals(lower)) {
+                value = Double.POSITIVE_INFINITY;
+            } else if ("-inf".equals(lower) || "-infinity".equals(lower)) {
+                value = Double.NEGATIVE_INFINITY;
+            } else {
+                value = Double.parseDouble(text);
+                if (Double.isNaN(value))
+                    throw new NumberFormatException();
+            }
+            return new ScoreBound(value, exclusive);
+        }
+
+        boolean belowOrEqual(double score) {
+            return exclusive ? value < score : value <= score;
+        }
+
+        boolean aboveOrEqual(double score) {
+            return exclusive ? value > score : value >= score;
+        }
+    }
+
+    private static final class WrongTypeException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+    }
+}
@@ -0,0 +1,262 @@
+package org.hibernate.test.cache.strategy;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Properties;
+
+import org.hibernate.cache.internal.CacheDataDescriptionImpl;
+import org.hibernate.cache.redis.jedis.JedisClient;
+import org.hibernate.cache.redis.metrics.RegionMetricsSnapshot;
+import org.hibernate.cache.redis.regions.RedisEntityRegion;
+import org.hibernate.cache.redis.serializer.CacheEntryFieldCodec;
+import org.hibernate.cache.redis.strategy.ReadWriteRedisEntityRegionAccessStrategy;
+import org.hibernate.cache.redis.strategy.ReadWriteSoftLock;
+import org.hibernate.cache.redis.strategy.RedisAccessStrategyFactoryImpl;
+import org.hibernate.cache.redis.timestamper.JedisCacheTimestamperHlcImpl;
+import org.hibernate.cache.spi.access.AccessType;
+import org.hibernate.cache.spi.access.SoftLock;
+import org.hibernate.test.cache.server.EmbeddedRedisServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+public class ReadWriteRedisAccessStrategyTest {
+
+    private EmbeddedRedisServer server;
+    private JedisClient client;
+    private JedisCacheTimestamperHlcImpl timestamper;
+    private RedisEntityRegion region;
+    private ReadWriteRedisEntityRegionAccessStrategy node1;
+    private ReadWriteRedisEntityRegionAccessStrategy node2;
+
+    @Before
+    public void setup() throws Exception {
+        server = EmbeddedRedisServer.start();
+        client = new JedisClient(new JedisPool(server.getHost(), server.getPort()));
+        timestamper = new JedisCacheTimestamperHlcImpl();
+        timestamper.setSettings(null);
+        timestamper.setProperties(new Properties());
+        timestamper.setJedisClient(client);
+
+        Properties props = new Properties();
+        props.setProperty("io.redis.hibernate.cache_lock_timeout", "200");
+        region = new RedisEntityRegion(new RedisAccessStrategyFactoryImpl(), client, "entity", null, null, props, timestamper);
+        node1 = (ReadWriteRedisEntityRegionAccessStrategy) region.buildAccessStrategy(AccessType.READ_WRITE);
+        node2 = (ReadWriteRedisEntityRegionAccessStrategy) region.buildAccessStrategy(AccessType.READ_WRITE);
+    }
+
+    @After
+    public void cleanup() {
+        client.destroy();
+        server.close();
+    }
+
+    @Test
+    public void itemsReadableAfterTheyWereCached() {
+        long before = region.nextTimestamp();
+        assertTrue(node1.putFromLoad(null, "key", "value", region.nextTimestamp(), null, false));
+        // cached already
+        assertFalse(node2.putFromLoad(null, "key", "other", region.nextTimestamp(), null, false));
+
+        assertNull(node1.get(null, "key", before));
+        assertEquals("value", node2.get(null, "key", region.nextTimestamp()));
+
+        assertFalse(node1.insert(null, "inserted", "value", null));
+        assertTrue(node1.afterInsert(null, "inserted", "value", null));
+        assertFalse(node2.afterInsert(null, "inserted", "other", null));
+        assertEquals("value", node2.get(null, "inserted", region.nextTimestamp()));
+    }
+
+    @Test
+    public void updateReplacesLock() {
+        node1.putFromLoad(null, "key", "value", region.nextTimestamp(), null, false);
+        long loading = region.nextTimestamp();
+
+        SoftLock lock = node1.lockItem(null, "key", null);
+        assertNull(node2.get(null, "key", region.nextTimestamp()));
+        assertFalse(node1.update(null, "key", "updated", null, null));
+        assertTrue(node1.afterUpdate(null, "key", "updated", null, null, lock));
+
+        // a value loaded before the update does not replace it
+        assertFalse(node2.putFromLoad(null, "key", "stale", loading, null, false));
+        assertEquals("updated", node2.get(null, "key", region.nextTimestamp()));
+    }
+
+    @Test
+    public void concurrentLocksRejectStaleLoads() {
+        node1.putFromLoad(null, "key", "value", region.nextTimestamp(), null, false);
+        long loading = region.nextTimestamp();
+
+        SoftLock lock1 = node1.lockItem(null, "key", null);
+        SoftLock lock2 = node2.lockItem(null, "key", null);
+        assertFalse(node1.putFromLoad(null, "key", "stale", loading, null, false));
+
+        // locked concurrently, neither update is cached
+        assertFalse(node1.afterUpdate(null, "key", "first", null, null, lock1));
+        assertNull(node1.get(null, "key", region.nextTimestamp()));
+        assertFalse(node2.putFromLoad(null, "key", "stale", region.nextTimestamp(), null, false));
+        assertFalse(node2.afterUpdate(null, "key", "second", null, null, lock2));
+
+        // released, only loads started after the unlock are cached
+        assertFalse(node1.putFromLoad(null, "key", "stale", loading, null, false));
+        assertTrue(node1.putFromLoad(null, "key", "loaded", region.nextTimestamp(), null, false));
+        assertEquals("loaded", node2.get(null, "key", region.nextTimestamp()));
+    }
+
+    @Test
+    public void unchangedUpdateKeepsItemInPlace() {
+        Properties props = new Properties();
+        props.setProperty("redis.readWrite.skipUnchangedWrites", "true");
+        RedisEntityRegion digested = new RedisEntityRegion(new RedisAccessStrategyFactoryImpl(), client, "digested",
+                                                           null, null, props, timestamper);
+        ReadWriteRedisEntityRegionAccessStrategy strategy =
+                (ReadWriteRedisEntityRegionAccessStrategy) digested.buildAccessStrategy(AccessType.READ_WRITE);
+        strategy.putFromLoad(null, "key", "value", digested.nextTimestamp(), null, false);
+
+        Jedis jedis = new Jedis(server.getHost(), server.getPort());
+        try {
+            byte[] field = "#key".getBytes(StandardCharsets.UTF_8);
+            byte[] cached = jedis.hget("digested".getBytes(StandardCharsets.UTF_8), field);
+
+            // the locked item stays in place, the lock only keeps its digest
+            SoftLock lock = strategy.lockItem(null, "key", null);
+            assertArrayEquals(cached, jedis.hget("digested".getBytes(StandardCharsets.UTF_8), field));
+            byte[] locked = jedis.hget("l:digested".getBytes(StandardCharsets.UTF_8), field);
+            assertEquals('l', locked[1]);
+            assertEquals('\n', locked[locked.length - 1]);
+            assertNull(strategy.get(null, "key", digested.nextTimestamp()));
+            assertTrue(client.mget("digested", Collections.singletonList("key")).get(0) instanceof ReadWriteSoftLock);
+
+            // the unchanged item is not sent, only the lock is deleted
+            assertTrue(strategy.afterUpdate(null, "key", "value", null, null, lock));
+            assertArrayEquals(cached, jedis.hget("digested".getBytes(StandardCharsets.UTF_8), field));
+            assertFalse(jedis.hexists("l:digested".getBytes(StandardCharsets.UTF_8), field));
+            assertEquals("value", strategy.get(null, "key", digested.nextTimestamp()));
+
+            lock = strategy.lockItem(null, "key", null);
+            assertTrue(strategy.afterUpdate(null, "key", "updated", null, null, lock));
+            assertFalse(jedis.hexists("l:digested".getBytes(StandardCharsets.UTF_8), field));
+            assertEquals("updated", strategy.get(null, "key", digested.nextTimestamp()));
+
+            // a concurrent lock replaces the item, a stale load is rejected after both unlock
+            long loading = digested.nextTimestamp();
+            SoftLock lock1 = strategy.lockItem(null, "key", null);
+            SoftLock lock2 = strategy.lockItem(null, "key", null);
+            assertFalse(jedis.hexists("l:digested".getBytes(StandardCharsets.UTF_8), field));
+            assertFalse(strategy.afterUpdate(null, "key", "updated", null, null, lock1));
+            strategy.unlockItem(null, "key", lock2);
+            assertFalse(strategy.putFromLoad(null, "key", "stale", loading, null, false));
+        } finally {
+            jedis.close();
+        }
+    }
+
+    @Test
+    public void oversizedUpdateReleasesLock() {
+        Properties props = new Properties();
+        props.setProperty("redis.readWrite.skipUnchangedWrites", "true");
+        props.setProperty("redis.maxValueSizeInBytes", "256");
+        RedisEntityRegion limited = new RedisEntityRegion(new RedisAccessStrategyFactoryImpl(), client, "limited",
+                                                          null, null, props, timestamper);
+        ReadWriteRedisEntityRegionAccessStrategy strategy =
+                (ReadWriteRedisEntityRegionAccessStrategy) limited.buildAccessStrategy(AccessType.READ_WRITE);
+        strategy.putFromLoad(null, "key", "value", limited.nextTimestamp(), null, false);
+        long loading = limited.nextTimestamp();
+
+        StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 64; i++) {
+            large.append(Integer.toHexString(i * 7919));
+        }
+        SoftLock lock = strategy.lockItem(null, "key", null);
+        assertFalse(strategy.afterUpdate(null, "key", large.toString(), null, null, lock));
+
+        // not cached, the lock is released
+        assertNull(strategy.get(null, "key", limited.nextTimestamp()));
+        assertFalse(strategy.putFromLoad(null, "key", "stale", loading, null, false));
+        assertTrue(strategy.putFromLoad(null, "key", "loaded", limited.nextTimestamp(), null, false));
+        assertEquals("loaded", strategy.get(null, "key", limited.nextTimestamp()));
+    }
+
+    @Test
+    public void expiredLockIsReplaced() throws Exception {
+        SoftLock lock = node1.lockItem(null, "key", null);
+        assertFalse(node2.putFromLoad(null, "key", "value", region.nextTimestamp(), null, false));
+
+        // the locking node never unlocks
+        Thread.sleep(300);
+        assertTrue(node2.putFromLoad(null, "key", "value", region.nextTimestamp(), null, false));
+
+        // a late update is not cached, the item is invalidated since the lock had expired
+        assertFalse(node1.afterUpdate(null, "key", "late", null, null, lock));
+        assertNull(node2.get(null, "key", region.nextTimestamp()));
+        node1.unlockItem(null, "key", lock);
+        assertTrue(node2.putFromLoad(null, "key", "value", region.nextTimestamp(), null, false));
+        assertEquals("value", node2.get(null, "key", region.nextTimestamp()));
+    }
+
+    @Test
+    public void newerVersionsReplaceItems() {
+        @SuppressWarnings("unchecked")
+        Comparator<Object> comparator = (Comparator) Comparator.naturalOrder();
+        RedisEntityRegion versioned = new RedisEntityRegion(new RedisAccessStrategyFactoryImpl(), client, "versioned",
+                                                            null, new CacheDataDescriptionImpl(true, true, comparator, null),
+                                                            new Properties(), timestamper);
+        ReadWriteRedisEntityRegionAccessStrategy strategy =
+                (ReadWriteRedisEntityRegionAccessStrategy) versioned.buildAccessStrategy(AccessType.READ_WRITE);
+
+        assertTrue(strategy.putFromLoad(null, "key", "v2", versioned.nextTimestamp(), 2L, false));
+        // minimal puts do not replace cached items, older or equal versions do not either
+        assertFalse(strategy.putFromLoad(null, "key", "v3", versioned.nextTimestamp(), 3L, true));
+        assertFalse(strategy.putFromLoad(null, "key", "v1", versioned.nextTimestamp(), 1L, false));
+        assertFalse(strategy.putFromLoad(null, "key", "v2'", versioned.nextTimestamp(), 2L, false));
+        assertEquals("v2", strategy.get(null, "key", versioned.nextTimestamp()));
+
+        assertTrue(strategy.putFromLoad(null, "key", "v3", versioned.nextTimestamp(), 3L, false));
+        assertEquals("v3", strategy.get(null, "key", versioned.nextTimestamp()));
+
+        // the version of an update is kept with the item
+        SoftLock lock = strategy.lockItem(null, "key", 3L);
+        assertTrue(strategy.afterUpdate(null, "key", "v4", 4L, 3L, lock));
+        assertFalse(strategy.putFromLoad(null, "key", "v3", versioned.nextTimestamp(), 3L, false));
+        assertEquals("v4", strategy.get(null, "key", versioned.nextTimestamp()));
+    }
+
+    @Test
+    public void propertyFieldsAreDisabled() {
+        RedisEntityRegion fielded = new RedisEntityRegion(new RedisAccessStrategyFactoryImpl(), client, "fielded",
+                                                          null, null, new Properties(), timestamper);
+        client.setFieldCodec("fielded", new CacheEntryFieldCodec());
+        fielded.buildAccessStrategy(AccessType.READ_WRITE);
+        assertNull(client.getFieldCodec("fielded"));
+    }
+
+    @Test
+    public void bypassedRegionIsNotLocked() {
+        node1.putFromLoad(null, "key", "value", region.nextTimestamp(), null, false);
+        RegionMetricsSnapshot before = region.getMetrics().snapshot();
+
+        region.setBypass(true);
+        try {
+            assertNull(node1.lockItem(null, "key", null));
+            assertFalse(node1.putFromLoad(null, "key", "value", region.nextTimestamp(), null, false));
+            assertNull(node1.get(null, "key", region.nextTimestamp()));
+        } finally {
+            region.setBypass(false);
+        }
+        // the item was removed rather than locked
+        assertNull(node1.get(null, "key", region.nextTimestamp()));
+        assertTrue(node1.putFromLoad(null, "key", "loaded", region.nextTimestamp(), null, false));
+        assertEquals("loaded", node1.get(null, "key", region.nextTimestamp()));
+        assertTrue(region.getMetrics().snapshot().getPuts() > before.getPuts());
+    }
+}
@@ -0,0 +1,182 @@
+package org.hibernate.test.cache.timestamper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.hibernate.cache.redis.jedis.JedisClient;
+import org.hibernate.cache.redis.jedis.OperationListener;
+import org.hibernate.cache.redis.jedis.OperationTrace;
+import org.hibernate.cache.redis.timestamper.JedisCacheTimestamperHlcImpl;
+import org.hibernate.test.cache.server.EmbeddedRedisServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+public class JedisCacheTimestamperHlcImplTest {
+
+    private EmbeddedRedisServer server;
+    private JedisClient client;
+
+    @Before
+    public void setup() throws Exception {
+        server = EmbeddedRedisServer.start();
+        client = new JedisClient(new JedisPool(server.getHost(), server.getPort()));
+    }
+
+    @After
+    public void cleanup() {
+        client.destroy();
+        server.close();
+    }
+
+    private JedisCacheTimestamperHlcImpl timestamper(int leaseMillis) {
+        JedisCacheTimestamperHlcImpl timestamper = new JedisCacheTimestamperHlcImpl();
+        timestamper.setSettings(null);
+        Properties properties = new Properties();
+        properties.setProperty(JedisCacheTimestamperHlcImpl.LEASE_MILLIS_PROPERTY_KEY, String.valueOf(leaseMillis));
+        timestamper.setProperties(properties);
+        timestamper.setJedisClient(client);
+        return timestamper;
+    }
+
+    @Test
+    public void increasingWithFewRoundTrips() {
+        final List<OperationTrace> leases = new ArrayList<OperationTrace>();
+        client.addOperationListener(new OperationListener() {
+            @Override
+            public void operationStarted(OperationTrace trace) {
+            }
+
+            @Override
+            public void operationCompleted(OperationTrace trace) {
+                leases.add(trace);
+            }
+
+            @Override
+            public void connectionBorrowed(long waitNanos) {
+            }
+        });
+
+        JedisCacheTimestamperHlcImpl timestamper = timestamper(10000);
+        long start = System.currentTimeMillis();
+        long prev = 0L;
+        for (int i = 0; i < 5000; i++) {
+            long next = timestamper.next();
+            assertTrue(next > prev);
+            prev = next;
+        }
+        assertTrue(prev >= start);
+        assertTrue(leases.size() <= 2);
+        assertEquals(OperationTrace.TIMESTAMP, leases.get(0).getOperation());
+    }
+
+    @Test
+    public void uniqueAcrossThreads() throws Exception {
+        final JedisCacheTimestamperHlcImpl node = timestamper(5);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<List<Long>>> futures = new ArrayList<Future<List<Long>>>();
+            for (int t = 0; t < 4; t++) {
+                futures.add(executor.submit(new Callable<List<Long>>() {
+                    @Override
+                    public List<Long> call() {
+                        List<Long> values = new ArrayList<Long>();
+                        for (int i = 0; i < 1000; i++) {
+                            values.add(node.next());
+                        }
+                        return values;
+                    }
+                }));
+            }
+
+            Set<Long> all = new HashSet<Long>();
+            for (Future<List<Long>> future : futures) {
+                List<Long> values = future.get();
+                for (int i = 1; i < values.size(); i++) {
+                    assertTrue(values.get(i) > values.get(i - 1));
+                }
+                all.addAll(values);
+            }
+            assertEquals(4000, all.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void nodesStayCloseToRedisTime() throws Exception {
+        final int nodes = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(nodes);
+        try {
+            final long before = redisTime();
+            List<Future<List<Long>>> futures = new ArrayList<Future<List<Long>>>();
+            for (int t = 0; t < nodes; t++) {
+                final JedisCacheTimestamperHlcImpl node = timestamper(10);
+                futures.add(executor.submit(new Callable<List<Long>>() {
+                    @Override
+                    public List<Long> call() throws Exception {
+                        // [timestamp, redis time] pairs, every lease of every node is renewed many times
+                        List<Long> values = new ArrayList<Long>();
+                        for (int i = 0; i < 100; i++) {
+                            values.add(node.next());
+                            values.add(redisTime());
+                            Thread.sleep(2);
+                        }
+                        return values;
+                    }
+                }));
+            }
+
+            long maxDrift = 0L;
+            for (Future<List<Long>> future : futures) {
+                List<Long> values = future.get();
+                for (int i = 0; i < values.size(); i += 2) {
+                    // the timestamp was issued before redis time was read
+                    maxDrift = Math.max(maxDrift, values.get(i) - values.get(i + 1));
+                    assertTrue(values.get(i) >= before - 5);
+                }
+            }
+            // leases do not push the shared key ahead, nodes stay within a few millis of redis TIME
+            assertTrue("drift=" + maxDrift, maxDrift <= 5);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private long redisTime() {
+        Jedis jedis = new Jedis(server.getHost(), server.getPort());
+        try {
+            List<String> time = jedis.time();
+            return Long.parseLong(time.get(0)) * 1000L + Long.parseLong(time.get(1)) / 1000L;
+        } finally {
+            jedis.close();
+        }
+    }
+
+    @Test
+    public void continuesWithoutRedis() {
+        JedisCacheTimestamperHlcImpl timestamper = timestamper(10);
+        long first = timestamper.next();
+        server.close();
+        long prev = first;
+        for (int i = 0; i < 30; i++) {
+            long next = timestamper.next();
+            assertTrue(next > prev);
+            prev = next;
+        }
+    }
+}